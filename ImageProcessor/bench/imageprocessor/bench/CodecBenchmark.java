@@ -0,0 +1,74 @@
+package imageprocessor.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import imageprocessor.controller.io.ImageIOHelper;
+import imageprocessor.model.Raster;
+
+/**
+ * CodecBenchmark, measures reading and saving a synthetic image in every format the controller
+ * supports, through the same ImageIOHelpers (and, for png/jpg/bmp, the same ImageIO encoders)
+ * that the controller uses.
+ * The file that is read is written once per trial, the file that is saved is overwritten by each
+ * invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CodecBenchmark {
+
+  @Param({"VGA", "UHD_4K", "MP_50"})
+  public ImageSize size;
+
+  @Param({"ppm", "pnm", "pgm", "png", "jpg", "bmp"})
+  public String format;
+
+  private Raster image;
+  private ImageIOHelper helper;
+  private File input;
+  private File output;
+
+  /**
+   * Generates the image, and writes the file to be read.
+   *
+   * @throws IOException if the file could not be written.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.image = SyntheticImages.generate(this.size);
+    this.helper = SyntheticImages.helper(this.format);
+    this.input = SyntheticImages.write(this.image, this.format);
+    this.output = File.createTempFile("imageprocessor-bench-out", "." + this.format);
+    this.output.deleteOnExit();
+  }
+
+  @Benchmark
+  public Raster read(PixelCounter counter) {
+    counter.pixels += this.size.getPixels();
+    return this.helper.readRaster(this.input.getPath());
+  }
+
+  @Benchmark
+  public void save(PixelCounter counter) throws IOException {
+    counter.pixels += this.size.getPixels();
+    SyntheticImages.save(this.image, this.output.getPath(), this.format);
+  }
+}
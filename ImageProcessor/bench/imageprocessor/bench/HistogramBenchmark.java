@@ -0,0 +1,96 @@
+package imageprocessor.bench;
+
+import java.awt.image.WritableRenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import imageprocessor.controller.ControllerGUI;
+import imageprocessor.controller.Features;
+import imageprocessor.model.EnhancedModelImpl;
+import imageprocessor.view.IViewGUI;
+
+/**
+ * HistogramBenchmark, measures the histogram path of the GUI: loading an image in the GUI
+ * controller decodes it, converts it for display, and computes the histograms of its red, green,
+ * blue and intensity components, which are handed to the view. The view used here only keeps
+ * what it is given, so nothing is drawn.
+ * The histograms are computed by a private method of the controller, so they are measured as part
+ * of loading; subtracting the read benchmark of CodecBenchmark (bmp) gives their share.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Djava.awt.headless=true"})
+public class HistogramBenchmark {
+
+  @Param({"VGA", "UHD_4K", "MP_50"})
+  public ImageSize size;
+
+  private ControllerGUI controller;
+  private RecordingView view;
+  private File input;
+
+  /**
+   * Writes the image to be loaded, and creates the controller and its view.
+   *
+   * @throws IOException if the file could not be written.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.input = SyntheticImages.write(SyntheticImages.generate(this.size), "bmp");
+    this.controller = new ControllerGUI(new EnhancedModelImpl());
+    this.view = new RecordingView();
+    this.controller.setView(this.view);
+  }
+
+  @Benchmark
+  public Map<Integer, Integer>[] load(PixelCounter counter) {
+    counter.pixels += this.size.getPixels();
+    this.controller.loadImage(this.input.getPath());
+    return this.view.histograms;
+  }
+
+  // A view that keeps the last image and histograms it was given, and fails on any message, since
+  // every message of the controller is an error.
+  private static final class RecordingView implements IViewGUI {
+    private WritableRenderedImage image;
+    private Map<Integer, Integer>[] histograms;
+
+    @Override
+    public void setImage(WritableRenderedImage image) {
+      this.image = image;
+    }
+
+    @Override
+    public void addFeatures(Features features) {
+      // nothing to register, there are no buttons.
+    }
+
+    @Override
+    public void showHistogram(Map<Integer, Integer>[] map) {
+      this.histograms = map;
+    }
+
+    @Override
+    public void renderMessage(String message) {
+      throw new IllegalStateException(message);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package imageprocessor.bench;
+
+/**
+ * ImageSize, represents the sizes of the synthetic images that the benchmarks run on, from a small
+ * VGA frame to a 50 megapixel photo.
+ */
+public enum ImageSize {
+  VGA(640, 480),
+  UHD_4K(3840, 2160),
+  MP_50(8660, 5774);
+
+  private final int width;
+  private final int height;
+
+  ImageSize(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Gets the width of images of this size.
+   *
+   * @return an int representing the width, in pixels.
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Gets the height of images of this size.
+   *
+   * @return an int representing the height, in pixels.
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Gets the number of pixels of images of this size.
+   *
+   * @return a long representing the width times the height.
+   */
+  public long getPixels() {
+    return (long) this.width * this.height;
+  }
+}
@@ -0,0 +1,166 @@
+package imageprocessor.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import imageprocessor.model.BandExecutor;
+import imageprocessor.model.EnhancedModelImpl;
+import imageprocessor.model.MaskedImageModel;
+import imageprocessor.model.Raster;
+
+/**
+ * ModelBenchmark, measures every operation of the model on a synthetic image: flipping,
+ * visualizing components, brightening, the color transformations, the filters, convolving with a
+ * separable and a non-separable kernel, and downscaling.
+ * Each invocation runs the operation on the source image, then reads the result back from the
+ * history, so that operations that the model pipelines lazily are measured computed, like they
+ * are when the controller saves or displays them.
+ * The benchmarks are parameterized by the size of the image, the model (the enhanced model, or
+ * the masked model that only changes the dark pixels), and the executor the model runs on (the
+ * common fork join pool, or serially on the benchmark thread).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class ModelBenchmark {
+  private static final String SOURCE = "source";
+  private static final String DEST = "dest";
+  // A 5x5 gaussian blur, which is separable.
+  private static final double[][] GAUSSIAN = {
+      {1 / 256.0, 4 / 256.0, 6 / 256.0, 4 / 256.0, 1 / 256.0},
+      {4 / 256.0, 16 / 256.0, 24 / 256.0, 16 / 256.0, 4 / 256.0},
+      {6 / 256.0, 24 / 256.0, 36 / 256.0, 24 / 256.0, 6 / 256.0},
+      {4 / 256.0, 16 / 256.0, 24 / 256.0, 16 / 256.0, 4 / 256.0},
+      {1 / 256.0, 4 / 256.0, 6 / 256.0, 4 / 256.0, 1 / 256.0}};
+  // A 3x3 edge detection kernel, which is not separable.
+  private static final double[][] EDGES = {{-1, -1, -1}, {-1, 8, -1}, {-1, -1, -1}};
+
+  @Param({"VGA", "UHD_4K", "MP_50"})
+  public ImageSize size;
+
+  @Param({"enhanced", "masked"})
+  public String model;
+
+  @Param({"common", "serial"})
+  public String executor;
+
+  private EnhancedModelImpl subject;
+
+  /**
+   * Creates the model, and stores the synthetic image in its history.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.subject = this.model.equals("masked") ? new MaskedImageModel() : new EnhancedModelImpl();
+    this.subject.setExecutor(this.executor.equals("serial")
+            ? BandExecutor.serial() : BandExecutor.common());
+    this.subject.addRasterToHistory(SyntheticImages.generate(this.size), SOURCE);
+  }
+
+  @Benchmark
+  public Raster flipHorizontal(PixelCounter counter) {
+    this.subject.flip(true, SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster flipVertical(PixelCounter counter) {
+    this.subject.flip(false, SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster brighten(PixelCounter counter) {
+    this.subject.brightenOrDarkenBy(30, SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster visualizeRed(PixelCounter counter) {
+    this.subject.visualizeComponent("r", SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster visualizeValue(PixelCounter counter) {
+    this.subject.visualizeComponent("value", SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster visualizeIntensity(PixelCounter counter) {
+    this.subject.visualizeComponent("intensity", SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster visualizeLuma(PixelCounter counter) {
+    this.subject.visualizeComponent("luma", SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster sepia(PixelCounter counter) {
+    this.subject.colorTransform("sepia", SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster luma(PixelCounter counter) {
+    this.subject.colorTransform("luma", SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster blur(PixelCounter counter) {
+    this.subject.filter("blur", SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster sharpen(PixelCounter counter) {
+    this.subject.filter("sharpen", SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster convolveSeparable(PixelCounter counter) {
+    this.subject.convolve(GAUSSIAN, SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster convolveDense(PixelCounter counter) {
+    this.subject.convolve(EDGES, SOURCE, DEST);
+    return this.result(counter);
+  }
+
+  @Benchmark
+  public Raster downscaleHalf(PixelCounter counter) {
+    this.subject.downscaleImage(SOURCE, DEST, this.size.getHeight() / 2,
+            this.size.getWidth() / 2);
+    return this.result(counter);
+  }
+
+  // Reads the result of the operation back from the history, computing it if it is pending, and
+  // counts the pixels of the source image as processed.
+  private Raster result(PixelCounter counter) {
+    counter.pixels += this.size.getPixels();
+    return this.subject.getRasterFromHistory(DEST);
+  }
+}
@@ -0,0 +1,31 @@
+package imageprocessor.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * PixelCounter, counts the pixels processed by a benchmark, which JMH reports as a secondary
+ * result next to the operations per time unit. The benchmarks report their throughput per
+ * microsecond, so this counter reads directly in megapixels per second (MP/s), which can be
+ * compared across image sizes.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class PixelCounter {
+  /**
+   * The number of pixels processed during the current iteration. Public, as JMH reads the
+   * public fields of a counter.
+   */
+  public long pixels;
+
+  /**
+   * Resets the counter before each iteration.
+   */
+  @Setup(Level.Iteration)
+  public void reset() {
+    this.pixels = 0;
+  }
+}
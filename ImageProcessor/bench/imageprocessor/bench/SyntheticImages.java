@@ -0,0 +1,114 @@
+package imageprocessor.bench;
+
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import javax.imageio.ImageIO;
+
+import imageprocessor.controller.io.ImageBinaryPPM;
+import imageprocessor.controller.io.ImageIOHelper;
+import imageprocessor.controller.io.ImagePNGJPGBMP;
+import imageprocessor.controller.io.ImagePPM;
+import imageprocessor.model.Raster;
+
+/**
+ * SyntheticImages, generates the images that the benchmarks run on. The images are deterministic,
+ * so that two runs (or two versions of the code) are measured on exactly the same pixels: smooth
+ * gradients, like the ones of a photo, with some noise on top, so that no codec or operation can
+ * take a shortcut on flat areas. Every pixel is opaque.
+ */
+public final class SyntheticImages {
+  private static final long SEED = 0x1a2b3c4dL;
+
+  // Utility class, not meant to be instantiated.
+  private SyntheticImages() {
+  }
+
+  /**
+   * Generates an image of the given size.
+   *
+   * @param size ImageSize represents the size of the image to be generated.
+   * @return a new Raster representing the generated image.
+   */
+  public static Raster generate(ImageSize size) {
+    int width = size.getWidth();
+    int height = size.getHeight();
+    SplittableRandom random = new SplittableRandom(SEED);
+    int[] pixels = new int[width * height];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int noise = random.nextInt(32) - 16;
+        int r = clamp(j * 255 / Math.max(1, width - 1) + noise);
+        int g = clamp(i * 255 / Math.max(1, height - 1) - noise);
+        int b = clamp((i + j) * 255 / Math.max(1, width + height - 2) + random.nextInt(32) - 16);
+        pixels[i * width + j] = 0xff000000 | r << 16 | g << 8 | b;
+      }
+    }
+    return new Raster(width, height, pixels);
+  }
+
+  /**
+   * Writes the given image to a temporary file in the given format, the same way the controller
+   * saves images. The file is deleted when the JVM exits.
+   *
+   * @param raster Raster represents the image to be written.
+   * @param format String represents the extension of the file: ppm, pnm, pgm, png, jpg or bmp.
+   * @return the File that was written.
+   * @throws IOException if the file could not be written.
+   */
+  public static File write(Raster raster, String format) throws IOException {
+    File file = File.createTempFile("imageprocessor-bench", "." + format);
+    file.deleteOnExit();
+    save(raster, file.getPath(), format);
+    return file;
+  }
+
+  /**
+   * Saves the given image to the given path in the given format, through the ImageIOHelper that
+   * the controller uses for that format.
+   *
+   * @param raster Raster represents the image to be saved.
+   * @param path   String represents the path of the file to be written.
+   * @param format String represents the extension of the file: ppm, pnm, pgm, png, jpg or bmp.
+   * @throws IOException if the file could not be written.
+   */
+  public static void save(Raster raster, String path, String format) throws IOException {
+    RenderedImage image = (RenderedImage) helper(format).saveRaster(path, raster);
+    if (image != null) {
+      try (FileOutputStream out = new FileOutputStream(path)) {
+        ImageIO.write(image, format.equals("jpg") ? "jpeg" : format, out);
+      }
+    }
+  }
+
+  /**
+   * Gets the ImageIOHelper that the controller uses for the given format.
+   *
+   * @param format String represents the extension of a file: ppm, pnm, pgm, png, jpg or bmp.
+   * @return the ImageIOHelper reading and writing files of that format.
+   * @throws IllegalArgumentException if the given format is not supported.
+   */
+  public static ImageIOHelper helper(String format) throws IllegalArgumentException {
+    switch (format) {
+      case "ppm":
+        return new ImagePPM();
+      case "pnm":
+        return new ImageBinaryPPM(false, 255);
+      case "pgm":
+        return new ImageBinaryPPM(true, 255);
+      case "png":
+      case "jpg":
+      case "bmp":
+        return new ImagePNGJPGBMP();
+      default:
+        throw new IllegalArgumentException("unsupported format: " + format);
+    }
+  }
+
+  // Clamps the given value between 0 and 255.
+  private static int clamp(int value) {
+    return Math.max(0, Math.min(255, value));
+  }
+}
@@ -3,13 +3,24 @@ package imageprocessor;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
+import imageprocessor.controller.BatchController;
 import imageprocessor.controller.Controller;
 import imageprocessor.controller.ControllerGUI;
+import imageprocessor.controller.DecodedImages;
 import imageprocessor.controller.IController;
+import imageprocessor.controller.ImageServer;
+import imageprocessor.model.CachingModel;
 import imageprocessor.model.EnhancedModel;
 import imageprocessor.model.EnhancedModelImpl;
 import imageprocessor.model.MaskedImageModel;
+import imageprocessor.model.ResultCache;
+import imageprocessor.model.SpillingHistoryStore;
+import imageprocessor.model.TileCache;
+import imageprocessor.model.TiledModel;
 import imageprocessor.view.IView;
 import imageprocessor.view.JView;
 import imageprocessor.view.View;
@@ -18,6 +29,14 @@ import imageprocessor.view.View;
  * Image Processor, class that holds the main program for our ImageProcessor application.
  */
 public class ImageProcessor {
+  // The bytes of images the GUI keeps in memory, the older images are spilled to disk.
+  private static final long HISTORY_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+  // The bytes of results of operations kept in memory to be reused, see CachingModel.
+  private static final long CACHE_BUDGET = Runtime.getRuntime().maxMemory() / 8;
+  // The bytes of tiles of images a tiled script keeps in memory (the -tiled option).
+  private static final long TILE_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+  // The directory keeping the results of script operations across runs (the -cache option).
+  private static final String CACHE_DIRECTORY = ".image-cache";
 
   /**
    * Runs the Image Processor application, by creating a Model, a View, and a Controller.
@@ -30,11 +49,37 @@ public class ImageProcessor {
     EnhancedModel model = new EnhancedModelImpl();
     IView view = new View();
     if (args.length == 0) {
+      model = new CachingModel(new EnhancedModelImpl(new SpillingHistoryStore(HISTORY_BUDGET)),
+          new ResultCache(CACHE_BUDGET));
       ControllerGUI controller = new ControllerGUI(model);
+      controller.setAsynchronous(true);
+      controller.setView(new JView("Image Processor"));
+    } else if (args.length == 1 && args[0].equals("-preview")) {
+      model = new CachingModel(new EnhancedModelImpl(new SpillingHistoryStore(HISTORY_BUDGET)),
+          new ResultCache(CACHE_BUDGET));
+      ControllerGUI controller = new ControllerGUI(model, new EnhancedModelImpl());
       controller.setView(new JView("Image Processor"));
     } else if (acceptScriptFile(args) != null) {
-      IController controller = new Controller(model, view, acceptScriptFile(args));
+      List<String> options = Arrays.asList(args).subList(1, args.length);
+      if (options.contains("-masked")) {
+        model = new MaskedImageModel();
+      } else if (options.contains("-cache")) {
+        model = new CachingModel(model,
+            new ResultCache(CACHE_BUDGET, Paths.get(CACHE_DIRECTORY)));
+      } else if (options.contains("-tiled")) {
+        model = new TiledModel(new TileCache(TILE_BUDGET));
+      }
+      IController controller;
+      if (options.contains("-batch")) {
+        controller = new BatchController(model, view, acceptScriptFile(args));
+      } else {
+        controller = new Controller(model, view, acceptScriptFile(args));
+      }
       controller.goImageProcessor();
+      if (model instanceof TiledModel) {
+        // deletes the tile files of the images.
+        ((TiledModel) model).close();
+      }
     }
     else if (args.length == 1 && args[0].equals("-text")) {
       IController controller = new Controller(model, view);
@@ -45,13 +90,34 @@ public class ImageProcessor {
       IController controller = new Controller(model, view);
       controller.goImageProcessor();
     }
+    else if (args.length == 2 && args[0].equals("-server")) {
+      serve(args[1]);
+    }
     else {
       System.out.println("Invalid command-line argument given!");
     }
   }
 
+  // Runs an ImageServer on the given port or socket file until the program is stopped, each
+  // session on its own model, all sessions sharing the images they decode.
+  private static void serve(String address) {
+    ImageServer server;
+    try {
+      server = new ImageServer(ImageServer.open(address), EnhancedModelImpl::new,
+          new DecodedImages(CACHE_BUDGET));
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return;
+    }
+    // deletes the socket file when the program is stopped.
+    Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+    System.out.println("Image Processor listening on " + server.getAddress());
+    server.serve();
+  }
+
   private static Readable acceptScriptFile(String[] args) {
     if (args.length >= 1 && args[0].endsWith(".txt")) {
+      List<String> options = Arrays.asList(args).subList(1, args.length);
       if (args.length == 1) {
         try {
           File file = new File(args[0]);
@@ -60,7 +126,13 @@ public class ImageProcessor {
           System.out.println("Invalid file given!");
         }
       }
-      else if (args.length == 2 && args[1].equals("-masked")) {
+      else if (options.stream().allMatch(option -> option.equals("-masked")
+              || option.equals("-batch") || option.equals("-cache") || option.equals("-tiled"))
+              // the results of the masked model cannot be cached, see CachingModel.
+              && !(options.contains("-masked") && options.contains("-cache"))
+              // the tiled model has its own history, it cannot be masked or cached.
+              && !(options.contains("-tiled")
+              && (options.contains("-masked") || options.contains("-cache")))) {
         try {
           File file = new File(args[0]);
           return new FileReader(file);
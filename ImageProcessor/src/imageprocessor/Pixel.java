@@ -10,8 +10,25 @@ import java.util.Objects;
  * r/g/b/a components will remain positive integers (because the constructor checks for that
  * condition, and the methods of this class preserve this invariant).
  * r/g/b/a components will
+ * The model keeps pixels packed in ints (ARGB, see toARGB), the static methods of this class are
+ * the same operations on packed pixels, which do not create any Pixel. The 256 opaque greys are
+ * interned (see grey): the methods returning a grey Pixel return the shared one, as a Pixel is
+ * immutable.
  */
 public class Pixel {
+  /**
+   * The multiplier dividing by 3: (sum * THIRD) >>> 17 is sum / 3 for every sum of three
+   * components (0 to 765), and unlike the division, the JIT compiler vectorizes it.
+   */
+  public static final int THIRD = 43691;
+  private static final Pixel[] GREYS = new Pixel[256];
+
+  static {
+    for (int v = 0; v < GREYS.length; v++) {
+      GREYS[v] = new Pixel(v, v, v);
+    }
+  }
+
   private final int r;
   private final int g;
   private final int b;
@@ -54,32 +71,42 @@ public class Pixel {
     this.a = a;
   }
 
+  /**
+   * Returns the opaque grey Pixel whose r, g and b components are the given value. There is a
+   * single such Pixel per value, shared by all the callers.
+   *
+   * @param value int represents the r, g and b components of the grey, from 0 to 255.
+   * @return the interned Pixel of the given grey.
+   * @throws IllegalArgumentException if the value is not between 0 and 255.
+   */
+  public static Pixel grey(int value) throws IllegalArgumentException {
+    if (value < 0 || value > 255) {
+      throw new IllegalArgumentException("invalid grey value, must be between 0 and 255!");
+    }
+    return GREYS[value];
+  }
+
+  // Returns the grey Pixel of the given value and alpha, the interned one if it is opaque.
+  private static Pixel grey(int value, int alpha) {
+    return alpha == 255 && value <= 255 ? GREYS[value] : new Pixel(value, value, value, alpha);
+  }
+
   /**
    * Returns a new Pixel that is the red/green/blue-component version of this Pixel.
-   * Valid components are the following: "r", "g", "b"
+   * Valid components are the following: 0 (r), 1 (g), 2 (b)
    *
-   * @param component String represents the component to be visualized.
+   * @param component int represents the component to be visualized.
    * @return a new Pixel with new r g b values based on the given component.
-   * @throws IllegalArgumentException if given an invalid component.
    */
-  private Pixel setToColor(String component) throws IllegalArgumentException {
-    switch (component) {
-      case "r":
-        return new Pixel(r, r, r, a);
-      case "g":
-        return new Pixel(g, g, g, a);
-      case "b":
-        return new Pixel(b, b, b, a);
-      default:
-        throw new IllegalArgumentException("Undefined componenet given!");
-    }
+  private Pixel setToColor(int component) {
+    return grey(this.getComponent(component), a);
   }
 
   /**
    * Executes the -component command of this Image Processor.
    * This method will return a new Pixel with new rgb values based on which component will be
-   * visualized.
-   * Valid components/command: "luma", "intensity", "value", "r", "g", "b"
+   * visualized. An unidentified command fails before any component is computed.
+   * Valid components/command: "luma", "intensity", "value", "r", "g", "b", "sepia"
    *
    * @param command String represents the given command/component to be visualized.
    * @return a new Pixel with new rgb values based on which command/component was given.
@@ -87,6 +114,12 @@ public class Pixel {
    */
   public Pixel executeCommand(String command) throws IllegalArgumentException {
     switch (command) {
+      case "r":
+        return this.setToColor(0);
+      case "g":
+        return this.setToColor(1);
+      case "b":
+        return this.setToColor(2);
       case "luma":
         return this.setToLuma();
       case "intensity":
@@ -96,7 +129,7 @@ public class Pixel {
       case "sepia":
         return this.setToSepia();
       default:
-        return this.setToColor(command);
+        throw new IllegalArgumentException("Undefined componenet given!");
     }
   }
 
@@ -106,19 +139,21 @@ public class Pixel {
    * @return a new Pixel with new rgb values
    */
   private Pixel setToMax() {
-    int max = Math.max(r, Math.max(g, b));
-    return new Pixel(max, max, max, a);
+    return grey(Math.max(r, Math.max(g, b)), a);
   }
 
   /**
    * If a pixel value component is greater than 255,
    * this method will clamp it to be 255 exactly.
-   * @return a new pixel with adjusted value components
+   * @return a new pixel with adjusted value components, or this pixel if none is greater than 255
    */
   public Pixel clamp() {
-    int red = this.handleRange(r, 255);
-    int green = this.handleRange(g, 255);
-    int blue = this.handleRange(b, 255);
+    if (r <= 255 && g <= 255 && b <= 255) {
+      return this;
+    }
+    int red = handleRange(r, 255);
+    int green = handleRange(g, 255);
+    int blue = handleRange(b, 255);
     return new Pixel(red, green, blue, a);
   }
 
@@ -128,8 +163,7 @@ public class Pixel {
    * @return a new Pixel with new rgb values
    */
   private Pixel setToAvg() {
-    int avg = (r + g + b) / 3;
-    return new Pixel(avg, avg, avg, a);
+    return grey((r + g + b) / 3, a);
   }
 
   /**
@@ -138,9 +172,7 @@ public class Pixel {
    * @return a new Pixel with new rgb values
    */
   private Pixel setToLuma() {
-    int luma = this.handleRange((int) (0.2126 * (double) r +
-            0.7152 * (double) g + 0.0722 * (double) b), 255);
-    return new Pixel(luma, luma, luma, a).clamp();
+    return grey(lumaOf(r, g, b), a);
   }
 
   /**
@@ -148,15 +180,30 @@ public class Pixel {
    * @return a new Pixel with new rgb values
    */
   private Pixel setToSepia() {
-    int sepiaR = this.handleRange((int) (0.393 * (double) r + 0.769 *
-            (double) g + 0.189 * (double) b), 255);
-    int sepiaG = this.handleRange((int) (0.349 * (double) r + 0.686 *
-            (double) g + 0.168 * (double) b), 255);
-    int sepiaB = this.handleRange((int) (0.272 * (double) r + 0.534 *
-            (double) g + 0.131 * (double) b), 255);
-    return new Pixel(sepiaR, sepiaG, sepiaB, a).clamp();
+    return new Pixel(sepiaRedOf(r, g, b), sepiaGreenOf(r, g, b), sepiaBlueOf(r, g, b), a);
   }
 
+  // The luma and sepia of the given components, truncated, then clamped to 255. They cannot be
+  // negative, as the components and the weights are not.
+  private static int lumaOf(int r, int g, int b) {
+    return Math.min(255, (int) (0.2126 * (double) r +
+            0.7152 * (double) g + 0.0722 * (double) b));
+  }
+
+  private static int sepiaRedOf(int r, int g, int b) {
+    return Math.min(255, (int) (0.393 * (double) r + 0.769 *
+            (double) g + 0.189 * (double) b));
+  }
+
+  private static int sepiaGreenOf(int r, int g, int b) {
+    return Math.min(255, (int) (0.349 * (double) r + 0.686 *
+            (double) g + 0.168 * (double) b));
+  }
+
+  private static int sepiaBlueOf(int r, int g, int b) {
+    return Math.min(255, (int) (0.272 * (double) r + 0.534 *
+            (double) g + 0.131 * (double) b));
+  }
 
   /**
    * Returns a new Pixel with its values equal to this pixel's value + increment.
@@ -169,9 +216,9 @@ public class Pixel {
    * @return a new Pixel with its values set to this pixel + increment.
    */
   public Pixel incrementPixel(int increment, int maxDepth) {
-    int red = this.handleRange(r + increment, maxDepth);
-    int green = this.handleRange(g + increment, maxDepth);
-    int blue = this.handleRange(b + increment, maxDepth);
+    int red = handleRange(r + increment, maxDepth);
+    int green = handleRange(g + increment, maxDepth);
+    int blue = handleRange(b + increment, maxDepth);
     return new Pixel(red, green, blue, a);
   }
 
@@ -184,7 +231,7 @@ public class Pixel {
    * @return an int representing the handled componentValue based on the given range
    *          (0 <= componentValue <= maxDepth)
    */
-  private int handleRange(int componentValue, int maxDepth) {
+  private static int handleRange(int componentValue, int maxDepth) {
     if (componentValue < 0) {
       return 0;
     } else if (componentValue > maxDepth) {
@@ -209,6 +256,174 @@ public class Pixel {
     return Objects.hash(r, g, b, a);
   }
 
+  /**
+   * Packs this pixel into a single int in the ARGB format, which is the format used by the model
+   * to store images. Each component takes 8 bits, thus a component greater than 255 is clamped
+   * to 255.
+   *
+   * @return an int representing this pixel, with alpha in the highest byte and blue in the lowest.
+   */
+  public int toARGB() {
+    return handleRange(a, 255) << 24 | handleRange(r, 255) << 16
+            | handleRange(g, 255) << 8 | handleRange(b, 255);
+  }
+
+  /**
+   * Returns a new Pixel from the given int in the ARGB format.
+   *
+   * @param argb int represents a pixel with alpha in the highest byte and blue in the lowest.
+   * @return a new Pixel with the r, g, b, a components unpacked from the given int, the interned
+   *          one (see grey) if the given pixel is an opaque grey.
+   */
+  public static Pixel fromARGB(int argb) {
+    int blue = argb & 0xff;
+    if (argb == packGrey(0xff000000, blue)) {
+      return GREYS[blue];
+    }
+    return new Pixel((argb >> 16) & 0xff, (argb >> 8) & 0xff, blue, argb >>> 24);
+  }
+
+  /**
+   * Packs the given components into a single int in the ARGB format, like toARGB does, each
+   * component being clamped between 0 and 255.
+   *
+   * @param r int represents the red component.
+   * @param g int represents the green component.
+   * @param b int represents the blue component.
+   * @param a int represents the alpha component.
+   * @return an int representing the packed pixel.
+   */
+  public static int pack(int r, int g, int b, int a) {
+    return clamp(a) << 24 | clamp(r) << 16 | clamp(g) << 8 | clamp(b);
+  }
+
+  /**
+   * Gets the red component of the given packed pixel.
+   *
+   * @param argb int represents a pixel in the ARGB format.
+   * @return an int representing the red component, from 0 to 255.
+   */
+  public static int red(int argb) {
+    return (argb >> 16) & 0xff;
+  }
+
+  /**
+   * Gets the green component of the given packed pixel.
+   *
+   * @param argb int represents a pixel in the ARGB format.
+   * @return an int representing the green component, from 0 to 255.
+   */
+  public static int green(int argb) {
+    return (argb >> 8) & 0xff;
+  }
+
+  /**
+   * Gets the blue component of the given packed pixel.
+   *
+   * @param argb int represents a pixel in the ARGB format.
+   * @return an int representing the blue component, from 0 to 255.
+   */
+  public static int blue(int argb) {
+    return argb & 0xff;
+  }
+
+  /**
+   * Gets the alpha component of the given packed pixel.
+   *
+   * @param argb int represents a pixel in the ARGB format.
+   * @return an int representing the alpha component, from 0 to 255.
+   */
+  public static int alpha(int argb) {
+    return argb >>> 24;
+  }
+
+  /**
+   * Clamps the given component value between 0 and 255, the range of a packed component.
+   *
+   * @param componentValue int represents the value of some component.
+   * @return an int representing the value, kept between 0 and 255.
+   */
+  public static int clamp(int componentValue) {
+    return handleRange(componentValue, 255);
+  }
+
+  /**
+   * Increments the given packed pixel, like incrementPixel: each of its r, g and b components is
+   * incremented, then kept between 0 and the given max depth (and 255). The alpha is kept.
+   * The components are clamped without any branch, so that a loop calling this method on every
+   * pixel of a row can be vectorized by the JIT compiler (see PointKernels).
+   *
+   * @param argb      int represents a pixel in the ARGB format.
+   * @param increment int represents the increment, negative to darken.
+   * @param maxDepth  int represents the maximum value of each component.
+   * @return an int representing the incremented packed pixel.
+   */
+  public static int increment(int argb, int increment, int maxDepth) {
+    // clamping between 0 and maxDepth, then between 0 and 255, is clamping between 0 and max.
+    int max = Math.max(0, Math.min(255, maxDepth));
+    return argb & 0xff000000 | clampTo(red(argb) + increment, max) << 16
+            | clampTo(green(argb) + increment, max) << 8 | clampTo(blue(argb) + increment, max);
+  }
+
+  // Keeps the given value between 0 and the given max, which is between 0 and 255, without any
+  // branch nor Math.min/max, which the JIT compiler does not vectorize on ints.
+  private static int clampTo(int value, int max) {
+    int positive = value & ~(value >> 31);
+    // positive - max cannot overflow, it is at least -255.
+    int over = positive - max;
+    return max + (over & (over >> 31));
+  }
+
+  /**
+   * Computes the grey of the luma of the given packed pixel, like executeCommand("luma").
+   *
+   * @param argb int represents a pixel in the ARGB format.
+   * @return an int representing the packed grey pixel, with the alpha of the given pixel.
+   */
+  public static int luma(int argb) {
+    return packGrey(argb, lumaOf(red(argb), green(argb), blue(argb)));
+  }
+
+  /**
+   * Computes the sepia of the given packed pixel, like executeCommand("sepia").
+   *
+   * @param argb int represents a pixel in the ARGB format.
+   * @return an int representing the packed sepia pixel, with the alpha of the given pixel.
+   */
+  public static int sepia(int argb) {
+    int red = red(argb);
+    int green = green(argb);
+    int blue = blue(argb);
+    return argb & 0xff000000 | sepiaRedOf(red, green, blue) << 16
+            | sepiaGreenOf(red, green, blue) << 8 | sepiaBlueOf(red, green, blue);
+  }
+
+  /**
+   * Computes the grey of the intensity of the given packed pixel, like
+   * executeCommand("intensity").
+   *
+   * @param argb int represents a pixel in the ARGB format.
+   * @return an int representing the packed grey pixel, with the alpha of the given pixel.
+   */
+  public static int intensity(int argb) {
+    return packGrey(argb, ((red(argb) + green(argb) + blue(argb)) * THIRD) >>> 17);
+  }
+
+  /**
+   * Computes the grey of the value of the given packed pixel, like executeCommand("value").
+   *
+   * @param argb int represents a pixel in the ARGB format.
+   * @return an int representing the packed grey pixel, with the alpha of the given pixel.
+   */
+  public static int value(int argb) {
+    return packGrey(argb, Math.max(red(argb), Math.max(green(argb), blue(argb))));
+  }
+
+  // Packs the grey of the given value, from 0 to 255, with the alpha of the given pixel.
+  private static int packGrey(int argb, int value) {
+    return argb & 0xff000000 | value << 16 | value << 8 | value;
+  }
+
   /**
    * Returns an int representing this pixel's r g or b component.
    * If given 0, then r, 1, then g, 2 then b.
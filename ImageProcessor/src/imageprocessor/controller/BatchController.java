@@ -0,0 +1,209 @@
+package imageprocessor.controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import imageprocessor.model.EnhancedModel;
+import imageprocessor.view.IView;
+
+/**
+ * BatchController, a Controller for script files that runs the independent instructions of a
+ * script at the same time, on a pool of worker threads.
+ * The whole script is parsed up front, then every instruction is scheduled as soon as the
+ * instructions it depends on are done. An instruction depends on every earlier instruction that
+ * writes a resource it reads or writes (an image of the model, or a file), and on every earlier
+ * instruction that reads a resource it writes. Thus, every instruction sees the model and the
+ * files exactly as it would have if the script was run one instruction after another, e.g. a
+ * script loading ten images and applying a chain of commands on each of them runs the ten
+ * chains in parallel.
+ * The messages of each instruction are buffered, and rendered in the order of the script, so the
+ * output is the same as the output of the Controller. The script must end with a quit, like for
+ * the Controller: the instructions after it are ignored, and a script without one throws once all
+ * of its instructions were run. If a script is cut in the middle of an instruction, or a number
+ * is expected but not given, the instructions before it are run, then the exception is thrown.
+ * The model must be thread-safe, like the models of this image processor are.
+ * Invariants:
+ * threads is at least 1.
+ */
+public class BatchController extends Controller {
+  private final int threads;
+  // The messages of the instruction running on the current thread, null on the main thread.
+  private final ThreadLocal<List<String>> messages = new ThreadLocal<>();
+
+  /**
+   * Constructs a BatchController running the given script with as many worker threads as there
+   * are available processors.
+   *
+   * @param model  EnhancedModel represents the model component of the ImageProcessor program.
+   * @param view   IView represents the view component of the ImageProcessor program.
+   * @param inputs Readable represents the script to be run.
+   * @throws IllegalArgumentException if given a null model, view or input.
+   */
+  public BatchController(EnhancedModel model, IView view, Readable inputs)
+          throws IllegalArgumentException {
+    this(model, view, inputs, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a BatchController running the given script with the given number of worker
+   * threads.
+   *
+   * @param model   EnhancedModel represents the model component of the ImageProcessor program.
+   * @param view    IView represents the view component of the ImageProcessor program.
+   * @param inputs  Readable represents the script to be run.
+   * @param threads int represents the number of instructions that can run at the same time.
+   * @throws IllegalArgumentException if given a null model, view or input, or less than 1 thread.
+   */
+  public BatchController(EnhancedModel model, IView view, Readable inputs, int threads)
+          throws IllegalArgumentException {
+    super(model, view, inputs);
+    if (threads < 1) {
+      throw new IllegalArgumentException("There must be at least one thread!");
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Parses the whole script, then runs its instructions, see the class documentation.
+   *
+   * @param s Scanner represents the script to be run.
+   * @throws IllegalStateException if the script has no quit instruction.
+   */
+  @Override
+  protected void processInputs(Scanner s) throws IllegalStateException {
+    List<Instruction> script = new ArrayList<>();
+    RuntimeException parseFailure = null;
+    boolean quits = false;
+    try {
+      while (!quits && s.hasNext()) {
+        Instruction instruction = this.nextInstruction(s);
+        script.add(instruction);
+        quits = instruction.quits();
+      }
+    } catch (RuntimeException e) {
+      parseFailure = e;
+    }
+    this.runAll(script);
+    if (parseFailure != null) {
+      throw parseFailure;
+    }
+    if (!quits) {
+      throw new IllegalStateException("No more inputs to be read! That's unfortunate.");
+    }
+  }
+
+  /**
+   * Informs the user of the given message, or, on a worker thread, adds it to the messages of the
+   * instruction being run, to be rendered in the order of the script.
+   *
+   * @param message String represents the message to be sent to the user.
+   * @throws IllegalStateException if the view faced some IO exception.
+   */
+  @Override
+  protected void informUser(String message) throws IllegalStateException {
+    List<String> buffer = this.messages.get();
+    if (buffer == null) {
+      super.informUser(message);
+    } else {
+      buffer.add(message);
+    }
+  }
+
+  // Schedules every instruction of the given script after the instructions it depends on, then
+  // renders the messages of each instruction, in order, as soon as it is done. If an instruction
+  // fails, its messages are rendered, the instructions that did not start are dropped, and the
+  // exception is thrown once the ones that did start are done.
+  private void runAll(List<Instruction> script) {
+    ExecutorService pool = Executors.newFixedThreadPool(this.threads, r -> {
+      Thread thread = new Thread(r, "image-processor-batch");
+      thread.setDaemon(true);
+      return thread;
+    });
+    Map<String, CompletableFuture<Void>> lastWriter = new HashMap<>();
+    Map<String, List<CompletableFuture<Void>>> readers = new HashMap<>();
+    List<CompletableFuture<Void>> done = new ArrayList<>();
+    List<List<String>> output = new ArrayList<>();
+    for (Instruction instruction : script) {
+      List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+      for (String resource : instruction.getReads()) {
+        if (lastWriter.containsKey(resource)) {
+          dependencies.add(lastWriter.get(resource));
+        }
+      }
+      for (String resource : instruction.getWrites()) {
+        if (lastWriter.containsKey(resource)) {
+          dependencies.add(lastWriter.get(resource));
+        }
+        dependencies.addAll(readers.getOrDefault(resource, List.of()));
+      }
+      List<String> buffer = new ArrayList<>();
+      CompletableFuture<Void> future = CompletableFuture
+          .allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+          .thenRunAsync(() -> this.runBuffered(instruction, buffer), pool);
+      for (String resource : instruction.getReads()) {
+        readers.computeIfAbsent(resource, k -> new ArrayList<>()).add(future);
+      }
+      for (String resource : instruction.getWrites()) {
+        lastWriter.put(resource, future);
+        readers.remove(resource);
+      }
+      done.add(future);
+      output.add(buffer);
+    }
+    try {
+      for (int i = 0; i < script.size(); i++) {
+        CompletionException failure = null;
+        try {
+          done.get(i).join();
+        } catch (CompletionException e) {
+          failure = e;
+        }
+        for (String message : output.get(i)) {
+          super.informUser(message);
+        }
+        if (failure != null) {
+          pool.shutdownNow();
+          throw this.unwrap(failure);
+        }
+      }
+    } finally {
+      pool.shutdown();
+      try {
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  // Runs the given instruction on the current (worker) thread, adding its messages to the given
+  // buffer.
+  private void runBuffered(Instruction instruction, List<String> buffer) {
+    this.messages.set(buffer);
+    try {
+      instruction.run();
+    } finally {
+      this.messages.remove();
+    }
+  }
+
+  // Returns the exception that an instruction failed with, errors are thrown as they are.
+  private RuntimeException unwrap(CompletionException e) {
+    Throwable cause = e.getCause();
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    return e;
+  }
+}
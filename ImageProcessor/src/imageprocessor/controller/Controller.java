@@ -4,25 +4,34 @@ import java.awt.image.WritableRenderedImage;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.function.Function;
 
 import javax.imageio.ImageIO;
 
-import imageprocessor.Pixel;
 import imageprocessor.controller.commands.Brighten;
+import imageprocessor.controller.commands.ColorMatrixTransform;
+import imageprocessor.controller.commands.Convolve;
 import imageprocessor.controller.commands.Filter;
 import imageprocessor.controller.commands.Flip;
+import imageprocessor.controller.commands.Gamma;
 import imageprocessor.controller.commands.ImageCommand;
 import imageprocessor.controller.commands.LinearTranform;
+import imageprocessor.controller.commands.RegionCommand;
+import imageprocessor.controller.commands.Resize;
 import imageprocessor.controller.commands.Visualize;
+import imageprocessor.controller.io.ImageBinaryPPM;
 import imageprocessor.controller.io.ImageIOHelper;
 import imageprocessor.controller.io.ImagePNGJPGBMP;
 import imageprocessor.controller.io.ImagePPM;
 import imageprocessor.model.EnhancedModel;
+import imageprocessor.model.MaskedImageModel;
+import imageprocessor.model.TiledModel;
 import imageprocessor.view.IView;
 
 /**
@@ -60,6 +69,8 @@ public class Controller implements IController {
   private final Readable inputs;
   private final EnhancedModel model;
   private final IView view;
+  // The images already decoded by load, shared with other controllers, null if not shared.
+  private DecodedImages decodedImages;
 
   /**
    * Constructs a controller with the given model and view.
@@ -104,6 +115,20 @@ public class Controller implements IController {
     this.initCommands();
   }
 
+  /**
+   * Shares the images decoded by the load command through the given DecodedImages, e.g. with the
+   * other sessions of an ImageServer: loading a file with the bytes of a file that was already
+   * decoded takes its raster instead of decoding the file again. Rasters are immutable, thus they
+   * can be shared by any number of models.
+   * Images loaded into a TiledModel are never shared.
+   *
+   * @param decodedImages DecodedImages represents the images already decoded, null to decode
+   *                      every file that is loaded.
+   */
+  public void setDecodedImages(DecodedImages decodedImages) {
+    this.decodedImages = decodedImages;
+  }
+
   @Override
   public void goImageProcessor() throws IllegalStateException {
     this.printMenuToUser();
@@ -128,23 +153,53 @@ public class Controller implements IController {
     knownCommands.put("luma-component", s -> (new Visualize(s.next(), s.next(), "luma")));
     knownImageFormats = new HashMap<>();
     knownImageFormats.put("ppm", new ImagePPM());
+    knownImageFormats.put("pnm", new ImageBinaryPPM(false, 255));
+    knownImageFormats.put("pgm", new ImageBinaryPPM(true, 255));
     knownImageFormats.put("png/bmp/jpg/jpeg", new ImagePNGJPGBMP());
     knownCommands.put("blur", s -> (new Filter("blur", s.next(), s.next())));
     knownCommands.put("sharpen", s -> (new Filter("sharpen", s.next(), s.next())));
     knownCommands.put("sepia", s -> (new LinearTranform("sepia", s.next(), s.next())));
     knownCommands.put("luma", s -> (new LinearTranform("luma", s.next(), s.next())));
+    knownCommands.put("convolve", s -> (new Convolve(s.next(), s.next(), s.next())));
+    knownCommands.put("color-matrix",
+        s -> (new ColorMatrixTransform(s.next(), s.next(), s.next())));
+    knownCommands.put("gamma", s -> (new Gamma(s.nextDouble(), s.next(), s.next())));
+    knownCommands.put("resize",
+        s -> (new Resize(s.next(), s.nextInt(), s.nextInt(), s.next(), s.next())));
+    knownCommands.put("with-mask", s -> (new RegionCommand(s.next(), this.nextCommand(s))));
+    knownCommands.put("with-roi", s -> (new RegionCommand(s.nextInt(), s.nextInt(), s.nextInt(),
+        s.nextInt(), this.nextCommand(s))));
+  }
+
+  /**
+   * Parses the command that a with-mask or with-roi command restricts to a region, which is any
+   * other command of this controller.
+   *
+   * @param s Scanner represents the scanner the command is read from.
+   * @return the ImageCommand that was parsed.
+   * @throws IllegalArgumentException if the command is not supported, or is itself restricted to
+   *                                  a region, or its parameters are invalid.
+   */
+  private ImageCommand nextCommand(Scanner s) throws IllegalArgumentException {
+    String next = s.next();
+    Function<Scanner, ImageCommand> cmd = knownCommands.get(next);
+    if (cmd == null || next.equals("with-mask") || next.equals("with-roi")) {
+      throw new IllegalArgumentException("Unsupported command given!");
+    }
+    return cmd.apply(s);
   }
 
   /**
    * Reads the image file with the given filePath and will store the processed data in our model.
    * This method will check what the filePath ends with and will read the file according to the
-   * image format. This function can only work on ppm, bmp, png, jpg, and jpeg, for now!
+   * image format. This function can only work on ppm, pnm, pgm, bmp, png, jpg, and jpeg, for now!
    * This function will attempt to read the contents of the image and convert it into a 2d list of
    * pixels, which will be stored in the model's history with the given destName.
    *
    * @param filePath String represents the path of the image file to be read.
    * @param destName String represents the desired name of the image to be stored in the model.
-   * @throws IllegalArgumentException if the image format is not one of: ppm/png/jpeg/jpg/bmp
+   * @throws IllegalArgumentException if the image format is not one of:
+   *                                  ppm/pnm/pgm/png/jpeg/jpg/bmp
    *                                  or if the filePath is invalid or some IO issue occurred.
    */
   private void readFile(String filePath, String destName) throws IllegalArgumentException {
@@ -163,18 +218,27 @@ public class Controller implements IController {
     ImageIOHelper imageIO;
     if (filePath.endsWith("ppm")) {
       imageIO = knownImageFormats.get("ppm");
+    } else if (filePath.endsWith("pnm") || filePath.endsWith("pgm")) {
+      imageIO = knownImageFormats.get(filePath.substring(filePath.length() - 3));
     } else if (this.isImageFormatPNGJPGBMP(filePath)) {
       imageIO = knownImageFormats.get("png/bmp/jpg/jpeg");
     } else {
       throw new IllegalArgumentException("Unsupported file format, for now!");
     }
-    List<List<Pixel>> pixels = imageIO.readFile(filePath);
-    model.addToHistory(pixels, destName);
+    if (model instanceof TiledModel) {
+      // the image is read a tile at a time, so it may be larger than the heap.
+      TiledModel tiled = (TiledModel) model;
+      tiled.addTiledToHistory(imageIO.readTiled(filePath, tiled.getCache()), destName);
+      return;
+    }
+    DecodedImages decoded = this.decodedImages;
+    model.addRasterToHistory(decoded == null ? imageIO.readRaster(filePath)
+        : decoded.read(imageIO, filePath), destName);
   }
 
   // Prints the menu to the user, the menu represents the possible commands this controller
   // can accept.
-  private void printMenuToUser() throws IllegalStateException {
+  protected void printMenuToUser() throws IllegalStateException {
     this.informUser("Supported user instructions are: ");
     this.informUser("load file-path destination-name");
     this.informUser("save file-path image-name");
@@ -198,8 +262,27 @@ public class Controller implements IController {
   /**
    * This method will process the elements of the given scanner.
    * Based on this controller's available commands and valid arguments, this method will attempt
-   * to "react" from a scanned data type.
-   * Reactions:
+   * to "react" from a scanned data type: each instruction is parsed by nextInstruction, then run
+   * right away, before the next one is parsed.
+   *
+   * @param s Scanner represents a text scanner that allows us to parse primitive types and strings.
+   * @throws IllegalStateException if the scanner no longer has any inputs to read and the user
+   *                               has not quit the program yet.
+   */
+  protected void processInputs(Scanner s) throws IllegalStateException {
+    while (s.hasNext()) {
+      Instruction instruction = this.nextInstruction(s);
+      instruction.run();
+      if (instruction.quits()) {
+        return;
+      }
+    }
+    throw new IllegalStateException("No more inputs to be read! That's unfortunate.");
+  }
+
+  /**
+   * Parses the next instruction of the given scanner, without running it.
+   * Reactions, once run:
    * "q", "quit", "Q" -> tell user he/she has quit, and end this function (and image processor).
    * "save" -> try to save an image with 2 consecutive strings, tell user he/she saved the image.
    * "load" -> try to load an image with 2 consecutive strings, tell user he/she loaded the image.
@@ -208,65 +291,91 @@ public class Controller implements IController {
    * user why that happened.
    *
    * @param s Scanner represents a text scanner that allows us to parse primitive types and strings.
-   * @throws IllegalStateException if the scanner no longer has any inputs to read and the user
-   *                               has not quit the program yet.
+   * @return the Instruction that was parsed.
+   * @throws java.util.NoSuchElementException if the scanner runs out of inputs in the middle of
+   *                                          an instruction, or a number was expected but not
+   *                                          given.
    */
-  private void processInputs(Scanner s) throws IllegalStateException {
-    while (s.hasNext()) {
-      try {
-        String next = s.next(); // ask ta if this can cause a bug
-        switch (next) {
-          case "q":
-          case "quit":
-          case "Q":
-            this.informUser("ImageProcessor quit! Thank you for your time.");
-            return;
-          case "save":
-            this.saveImageAs(s.next(), s.next());
+  Instruction nextInstruction(Scanner s) {
+    String next = s.next();
+    switch (next) {
+      case "q":
+      case "quit":
+      case "Q":
+        return new Instruction(
+            () -> this.informUser("ImageProcessor quit! Thank you for your time."),
+            Collections.emptySet(), Collections.emptySet(), true);
+      case "save":
+        String savePath = s.next();
+        String imageName = s.next();
+        return new Instruction(() -> {
+          try {
+            this.saveImageAs(savePath, imageName);
             this.informUser("Successfully saved the image!");
-            break;
-          case "load":
-            this.readFile(s.next(), s.next());
+          } catch (IllegalArgumentException e) {
+            this.informUser(e.getMessage());
+          }
+        }, Set.of(Instruction.image(imageName)), Set.of(Instruction.file(savePath)), false);
+      case "load":
+        String loadPath = s.next();
+        String destName = s.next();
+        return new Instruction(() -> {
+          try {
+            this.readFile(loadPath, destName);
             this.informUser("Successfully loaded the image!");
-            break;
-          default:
-            this.commandHelper(next, s);
-            break;
-        }
-      } catch (IllegalArgumentException e) {
-        this.informUser(e.getMessage());
-      }
+          } catch (IllegalArgumentException e) {
+            this.informUser(e.getMessage());
+          }
+        }, Set.of(Instruction.file(loadPath)), Set.of(Instruction.image(destName)), false);
+      default:
+        return this.commandHelper(next, s);
     }
-    throw new IllegalStateException("No more inputs to be read! That's unfortunate.");
   }
 
   /**
-   * Helps the processInputs by trying to identify the given next in this controller's commands.
+   * Helps the nextInstruction by trying to identify the given next in this controller's commands.
    * This method will try to get the Function object from this controller's hashmap of commands,
    * and if it returns a Function, then we will call the apply, giving it the Scanner.
-   * This will return an ImageCommand, and so, we can then call the execute method with the model.
-   * If the execute throws an exception due to the user entering invalid arguments, we catch it and
-   * inform the user.
-   * If getOrDefault returns null, then we inform the user that this is an unsupported command.
+   * This will return an ImageCommand, and so, the instruction calls its execute method with the
+   * model. If the apply or the execute throws an exception due to the user entering invalid
+   * arguments, the instruction informs the user.
+   * If getOrDefault returns null, then the instruction informs the user that this is an
+   * unsupported command.
    *
    * @param next String represents the next element of the processInputs's scanner.
    * @param s    Scanner represents a simple text scanner that allows us to parse the data types and
    *             execute the command if identified.
+   * @return the Instruction running the command.
    */
-  private void commandHelper(String next, Scanner s) {
+  private Instruction commandHelper(String next, Scanner s) {
     Function<Scanner, ImageCommand> cmd =
             knownCommands.getOrDefault(next, null);
     if (cmd == null) {
-      this.informUser("Unsupported command given!");
-    } else {
+      return new Instruction(() -> this.informUser("Unsupported command given!"));
+    }
+    ImageCommand c;
+    try {
+      c = cmd.apply(s);
+    } catch (IllegalArgumentException e) {
+      return new Instruction(() -> this.informUser("Invalid image name or parameters!"));
+    }
+    Set<String> writes = new HashSet<>();
+    writes.add(Instruction.image(c.getDestName()));
+    if (model instanceof MaskedImageModel) {
+      // the masked model also stores the mask of the image it is applied on.
+      writes.add(Instruction.image(c.getImageName() + "mask"));
+    }
+    Set<String> reads = new HashSet<>();
+    for (String imageName : c.getImageNames()) {
+      reads.add(Instruction.image(imageName));
+    }
+    return new Instruction(() -> {
       try {
-        ImageCommand c = cmd.apply(s);
         c.execute(model);
-        c = null;
       } catch (IllegalArgumentException e) {
         this.informUser("Invalid image name or parameters!");
       }
-    }
+    }, reads, writes, false);
   }
 
   /**
@@ -286,12 +395,14 @@ public class Controller implements IController {
   private void saveImageAs(String filePath, String imageName)
           throws IllegalArgumentException {
     if (filePath.endsWith("ppm")) {
-      ImageIOHelper imageIO = this.knownImageFormats.get("ppm");
-      imageIO.saveFile(filePath, model.getPixelsFromHistory(imageName));
+      this.savePPM(this.knownImageFormats.get("ppm"), filePath, imageName);
+    } else if (filePath.endsWith("pnm") || filePath.endsWith("pgm")) {
+      this.savePPM(this.knownImageFormats.get(filePath.substring(filePath.length() - 3)),
+          filePath, imageName);
     } else if (this.isImageFormatPNGJPGBMP(filePath)) {
       ImageIOHelper imageIO = this.knownImageFormats.get("png/bmp/jpg/jpeg");
-      WritableRenderedImage image = imageIO.saveFile(filePath,
-              model.getPixelsFromHistory(imageName));
+      WritableRenderedImage image = imageIO.saveRaster(filePath,
+              model.getRasterFromHistory(imageName));
       try {
         ImageIO.write(image, this.figureFormatOut(filePath), new FileOutputStream(filePath));
       } catch (IOException e) {
@@ -303,6 +414,17 @@ public class Controller implements IController {
     }
   }
 
+  // Saves the image with the given name with the given ppm helper, a tile at a time if the model
+  // is a TiledModel, so that it may be larger than the heap.
+  private void savePPM(ImageIOHelper imageIO, String filePath, String imageName)
+          throws IllegalArgumentException {
+    if (model instanceof TiledModel) {
+      imageIO.saveTiled(filePath, ((TiledModel) model).getTiledFromHistory(imageName));
+    } else {
+      imageIO.saveRaster(filePath, model.getRasterFromHistory(imageName));
+    }
+  }
+
   private String figureFormatOut(String filePath) {
     if (filePath.endsWith("png")) {
       return "png";
@@ -326,7 +448,7 @@ public class Controller implements IController {
    * @param message String represents the message to be sent to the user (ie append to output)
    * @throws IllegalStateException if the view faced some IO exception.
    */
-  private void informUser(String message) throws IllegalStateException {
+  protected void informUser(String message) throws IllegalStateException {
     try {
       view.renderMessage(message + '\n');
     } catch (IOException e) {
@@ -4,23 +4,39 @@ import java.awt.image.WritableRenderedImage;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import javax.imageio.ImageIO;
-import imageprocessor.Pixel;
+import javax.swing.SwingUtilities;
 import imageprocessor.controller.commands.Brighten;
 import imageprocessor.controller.commands.DownSize;
 import imageprocessor.controller.commands.Filter;
 import imageprocessor.controller.commands.Flip;
 import imageprocessor.controller.commands.ImageCommand;
 import imageprocessor.controller.commands.LinearTranform;
+import imageprocessor.controller.commands.RegionCommand;
 import imageprocessor.controller.commands.Visualize;
+import imageprocessor.controller.io.ImageBinaryPPM;
 import imageprocessor.controller.io.ImageIOHelper;
 import imageprocessor.controller.io.ImagePNGJPGBMP;
 import imageprocessor.controller.io.ImagePPM;
+import imageprocessor.model.BandExecutor;
 import imageprocessor.model.EnhancedModel;
+import imageprocessor.model.Histogram;
+import imageprocessor.model.ImagePyramid;
+import imageprocessor.model.Raster;
 import imageprocessor.view.IViewGUI;
 
 /**
@@ -35,20 +51,63 @@ import imageprocessor.view.IViewGUI;
  * interactions between the GUI and the EnhancedModel, unlike the other Controller which is a
  * text base UI. Also, I avoided inheritance and composition because I wanted the two classes to
  * be independent and loosely coupled.
+ * Preview mode: when constructed with a second model for the previews, this controller keeps a
+ * screen-sized version of every image (a level of its ImagePyramid) in that model, and applies
+ * every command on the preview first, so the user sees its result right away. The command is then
+ * applied on the full resolution image on a background thread, and the full resolution result is
+ * swapped in (displayed, with its histogram) once it is ready, if it is still the current image.
+ * The commands run in the background one after another, in the order they were given, and so do
+ * loading, saving and downscaling an image, and loading a mask, whose outcome is applied on the
+ * event thread once they are done: the event thread never waits for the background.
+ * Asynchronous mode (see setAsynchronous): the commands, downscaling, and loading and saving
+ * images and masks run on a background thread, one after another, in the order they were given,
+ * so that the event thread of the GUI is never blocked by them. The
+ * view is shown the progress of the operation being run (its bands that are done), and the user
+ * can cancel the commands, in which case the current image goes back to the last image that was
+ * done. Commands given while others are running are queued, and coalesced: only the result of the
+ * last one is displayed, the results of the others are not even converted nor counted (and, with
+ * a pipelining model, the chain of point operations is computed in a single pass).
  */
 public class ControllerGUI implements Features {
+  // The largest width and height of the previews in preview mode.
+  private static final int PREVIEW_SIZE = 1024;
+
   private final EnhancedModel model;
+  // The model holding the previews of the images, null unless in preview mode.
+  private final EnhancedModel previews;
+  // Runs the commands on the full resolution images in preview mode, or all of the commands in
+  // asynchronous mode, null otherwise.
+  private ExecutorService background;
+  // Whether the commands run in the background, see setAsynchronous.
+  private boolean asynchronous;
+  // The commands submitted in asynchronous mode that are not done yet, oldest first.
+  private final Deque<Job> jobs = new ArrayDeque<>();
+  // The image the current image goes back to if the commands are cancelled.
+  private String lastDoneImage;
+  // The image that the view displays.
+  private String displayedImage;
+  // The last command submitted to the background, null if there is none.
+  private Future<?> lastTask;
+  // The full resolution results computed in the background, to be swapped in on the event thread.
+  private final Queue<Runnable> swaps = new ConcurrentLinkedQueue<>();
   private IViewGUI view;
   private String currentCommand;
   private String currentImage;
+  // The region the commands are restricted to: the name of a mask image, or a rectangle of the
+  // full resolution images, both null if the commands apply on the whole image.
+  private String regionMask;
+  private int[] regionRectangle;
+  // The mask being read in the background, null once the region was changed since.
+  private String pendingMask;
+  // The size of the previews relative to the full resolution images, in preview mode.
+  private double previewScale = 1;
   private Map<String, ImageIOHelper> knownImageFormats;
   private Map<String, Function<String, ImageCommand>> knownCommands;
-  private Map<String, WritableRenderedImage> imageHistory;
 
   /**
    * Constructs a ControllerGUI, with the given EnhancedModel
    * This constructor will not only instantiate the model field, but will also initialize the map
-   * of commands, image formats, and image history.
+   * of commands and image formats.
    * @param m EnhancedModel represents the model that this controller will communicate with.
    * @throws IllegalArgumentException if the given model is null, unacceptable!
    */
@@ -57,15 +116,97 @@ public class ControllerGUI implements Features {
       throw new IllegalArgumentException("Model must be non null!");
     }
     model = m;
+    previews = null;
+    background = null;
+    initMaps();
+  }
+
+  /**
+   * Constructs a ControllerGUI in preview mode, see the class documentation, with the given
+   * EnhancedModel for the full resolution images and the given one for their previews. The two
+   * models should be of the same kind, so that the previews look like the images.
+   * @param m EnhancedModel represents the model that this controller will communicate with.
+   * @param previews EnhancedModel represents the model holding the previews of the images.
+   * @throws IllegalArgumentException if any of the given models is null.
+   */
+  public ControllerGUI(EnhancedModel m, EnhancedModel previews) throws IllegalArgumentException {
+    if (m == null || previews == null) {
+      throw new IllegalArgumentException("Model must be non null!");
+    }
+    model = m;
+    this.previews = previews;
+    background = this.newBackground();
     initMaps();
   }
 
-  // initializes the map of image history, image formats, and commands.
+  // Creates the thread running the commands in the background.
+  private ExecutorService newBackground() {
+    return Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "image-processor-background");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Turns the asynchronous mode on or off, see the class documentation. It is off by default, in
+   * which case every command runs on the thread that gives it, and is done when this controller
+   * returns. Turning it off waits for the commands running in the background.
+   * @param asynchronous boolean represents whether the commands should run in the background.
+   * @throws IllegalStateException if this controller is in preview mode, which already runs the
+   *         commands on the full resolution images in the background.
+   */
+  public void setAsynchronous(boolean asynchronous) throws IllegalStateException {
+    if (previews != null) {
+      throw new IllegalStateException("Preview mode is already asynchronous!");
+    }
+    if (!asynchronous) {
+      this.awaitBackground();
+    }
+    else if (background == null) {
+      background = this.newBackground();
+    }
+    this.asynchronous = asynchronous;
+  }
+
+  /**
+   * A command submitted in asynchronous mode, and the monitor of the operations it runs: their
+   * progress is shown in the view, and they stop once the command is cancelled.
+   */
+  private final class Job implements BandExecutor.Monitor {
+    // What the job runs on the model, e.g. a command, or loading an image.
+    private final Consumer<EnhancedModel> work;
+    private final String imageName;
+    private volatile boolean cancelled;
+    // Set once another command was submitted after this one, so the result is not displayed.
+    private volatile boolean superseded;
+    // The result, converted and counted, null if the command was superseded.
+    private WritableRenderedImage image;
+    private Histogram histogram;
+
+    private Job(Consumer<EnhancedModel> work, String imageName) {
+      this.work = work;
+      this.imageName = imageName;
+    }
+
+    @Override
+    public void bandDone(int done, int total) {
+      SwingUtilities.invokeLater(() -> view.showProgress(done, total));
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return this.cancelled;
+    }
+  }
+
+  // initializes the map of image formats, and commands.
   private void initMaps() {
     knownCommands = new HashMap<>();
     knownImageFormats = new HashMap<>();
-    imageHistory = new HashMap<>();
     knownImageFormats.put("ppm", new ImagePPM());
+    knownImageFormats.put("pnm", new ImageBinaryPPM(false, 255));
+    knownImageFormats.put("pgm", new ImageBinaryPPM(true, 255));
     knownImageFormats.put("png/bmp/jpg/jpeg", new ImagePNGJPGBMP());
     knownCommands.put("flip-horizontal", s -> (new Flip(currentImage, s, true)));
     knownCommands.put("flip-vertical", s -> (new Flip(currentImage, s, false)));
@@ -106,13 +247,21 @@ public class ControllerGUI implements Features {
 
   /**
    * Updates the histogram visualizes in this controller's view field.
-   * The way the histogram is updates is by creating a map of the different rgb values contained in
-   * the image, and the count of each value as the value of the map. This is then used to determine
-   * the size of the rectangles to be drawn on a Panel of some sorts, through the view's
+   * The way the histogram is updates is by getting the histogram of the current image from the
+   * model (which counts it once, and caches it), and converting its red, green, blue and intensity
+   * counts into maps of the values contained in the image to their count. These are then used to
+   * determine the size of the rectangles to be drawn on a Panel of some sorts, through the view's
    * showHistogram method, which takes in a Map as well.
    */
   private void updateHistogram() {
-    Map[] maps = this.createHistogramMaps();
+    this.showHistogram(this.displayed().getHistogram(currentImage));
+  }
+
+  // Shows the red, green, blue and intensity counts of the given histogram in the view.
+  private void showHistogram(Histogram histogram) {
+    Map[] maps = new Map[]{histogram.toMap(Histogram.Channel.RED),
+        histogram.toMap(Histogram.Channel.GREEN), histogram.toMap(Histogram.Channel.BLUE),
+        histogram.toMap(Histogram.Channel.INTENSITY)};
     view.showHistogram(maps);
   }
 
@@ -126,6 +275,12 @@ public class ControllerGUI implements Features {
     if (filePath.endsWith("ppm")) {
       return "ppm";
     }
+    else if (filePath.endsWith("pnm")) {
+      return "pnm";
+    }
+    else if (filePath.endsWith("pgm")) {
+      return "pgm";
+    }
     else if (filePath.endsWith("jpeg") || filePath.endsWith("jpg") ||
             filePath.endsWith("png") || filePath.endsWith("bmp")) {
       return "png/bmp/jpg/jpeg";
@@ -143,24 +298,244 @@ public class ControllerGUI implements Features {
   private void commandHelper(String operation) {
     Function<String, ImageCommand> cmd = this.knownCommands.get(operation);
     ImageCommand imgCMD = cmd.apply(currentImage + operation);
+    boolean executed = false;
     try {
-      imgCMD.execute(model);
+      this.inRegion(imgCMD, previews != null).execute(this.displayed());
+      executed = true;
     }
     catch (IllegalArgumentException e) {
       setErrorMessage(e.getMessage());
     }
     currentImage = currentImage + operation;
+    if (previews != null && executed) {
+      this.runInBackground(this.inRegion(imgCMD, false), currentImage);
+    }
   }
 
   /**
-   * Visualizes the current image of this controller.
+   * Restricts the given command to the region set by the user, if any.
+   * @param command ImageCommand represents the command to be restricted.
+   * @param preview boolean represents whether the command is executed on the previews, in which
+   *                case a rectangle is scaled down to the size of the previews.
+   * @return the ImageCommand restricted to the region, or the given command if there is none.
+   */
+  private ImageCommand inRegion(ImageCommand command, boolean preview) {
+    if (regionMask != null) {
+      // the previews hold the preview of the mask under the same name.
+      return new RegionCommand(regionMask, command);
+    }
+    if (regionRectangle == null) {
+      return command;
+    }
+    double scale = preview ? previewScale : 1;
+    int left = (int) Math.floor(regionRectangle[0] * scale);
+    int top = (int) Math.floor(regionRectangle[1] * scale);
+    int right = (int) Math.ceil((regionRectangle[0] + (double) regionRectangle[2]) * scale);
+    int bottom = (int) Math.ceil((regionRectangle[1] + (double) regionRectangle[3]) * scale);
+    return new RegionCommand(left, top, right - left, bottom - top, command);
+  }
+
+  // Gets the model holding the images displayed to the user: the previews in preview mode.
+  private EnhancedModel displayed() {
+    return previews == null ? model : previews;
+  }
+
+  /**
+   * Visualizes the current image of this controller, or its preview in preview mode.
    */
   private void visualizeImage() {
-    ImageIOHelper imageIO = knownImageFormats.get("png/bmp/jpg/jpeg");
-    WritableRenderedImage image = imageIO.saveFile("DUMMY!"
-                    + currentImage + ".bmp", model.getPixelsFromHistory(currentImage));
+    WritableRenderedImage image = this.toImage(this.displayed().getRasterFromHistory(currentImage),
+        currentImage);
     view.setImage(image);
-    imageHistory.put(currentImage, image);
+    displayedImage = currentImage;
+    lastDoneImage = currentImage;
+  }
+
+  // Converts the given raster, of the image with the given name, into an image that can be
+  // displayed or saved.
+  private WritableRenderedImage toImage(Raster raster, String imageName) {
+    ImageIOHelper imageIO = knownImageFormats.get("png/bmp/jpg/jpeg");
+    return imageIO.saveRaster("DUMMY!" + imageName + ".bmp", raster);
+  }
+
+  // Gets the preview of the given full resolution image.
+  private Raster previewOf(Raster raster) {
+    return ImagePyramid.fit(raster, PREVIEW_SIZE, PREVIEW_SIZE, model.getExecutor());
+  }
+
+  // Stores the given preview of the given full resolution image in the previews, under the given
+  // name, and makes it the current image.
+  private void showPreview(Raster raster, Raster preview, String imageName) {
+    previews.addRasterToHistory(preview, imageName);
+    previewScale = preview.getWidth() / (double) raster.getWidth();
+    currentImage = imageName;
+    this.visualizeImage();
+    this.updateHistogram();
+  }
+
+  /**
+   * Executes the given command on the full resolution images in the background, after the
+   * commands given before it. Once it is done, the full resolution result, with the given name,
+   * is converted, and counted, still in the background, then swapped in on the event thread. If
+   * the command fails, whatever the exception, its message is shown on the event thread instead.
+   * @param command ImageCommand represents the command, already executed on the previews.
+   * @param imageName String represents the name of the result of the command.
+   */
+  private void runInBackground(ImageCommand command, String imageName) {
+    this.inBackground(() -> {
+      command.execute(model);
+      Raster result = model.getRasterFromHistory(imageName);
+      WritableRenderedImage image = this.toImage(result, imageName);
+      Histogram histogram = model.getHistogram(imageName);
+      Raster preview = this.previewOf(result);
+      return () -> {
+        // the preview of the exact result, rather than the result of the command on a preview.
+        previews.addRasterToHistory(preview, imageName);
+        if (imageName.equals(currentImage)) {
+          view.setImage(image);
+          this.showHistogram(histogram);
+        }
+      };
+    });
+  }
+
+  // Runs the given task on the background thread, after the commands given before it, then runs
+  // the outcome it returns, if any, on the event thread, or shows the message of the exception it
+  // threw.
+  private void inBackground(Callable<Runnable> task) {
+    lastTask = background.submit(() -> {
+      Runnable outcome;
+      try {
+        outcome = task.call();
+      }
+      catch (Exception e) {
+        String message = e.getMessage() == null ? "The operation failed!" : e.getMessage();
+        outcome = () -> this.setErrorMessage(message);
+      }
+      if (outcome != null) {
+        swaps.add(outcome);
+        SwingUtilities.invokeLater(this::swapResults);
+      }
+    });
+  }
+
+  // Swaps in the full resolution results that are done, on the event thread.
+  private void swapResults() {
+    Runnable swap = swaps.poll();
+    while (swap != null) {
+      swap.run();
+      swap = swaps.poll();
+    }
+  }
+
+  /**
+   * Submits the given work to the background, in asynchronous mode, e.g. a command. The current
+   * image becomes its result right away, so that the next command is applied on it.
+   * @param work Consumer represents what is run on the model.
+   * @param imageName String represents the name of the image the work stores in the model.
+   */
+  private void submit(Consumer<EnhancedModel> work, String imageName) {
+    Job job = new Job(work, imageName);
+    if (!jobs.isEmpty()) {
+      jobs.peekLast().superseded = true;
+    }
+    jobs.addLast(job);
+    currentImage = imageName;
+    lastTask = background.submit(() -> this.run(job));
+  }
+
+  // Runs the given job on the background thread, then hands its outcome to the event thread.
+  private void run(Job job) {
+    Runnable outcome;
+    try {
+      BandExecutor.monitor(job, () -> {
+        if (job.isCancelled()) {
+          throw new CancellationException("command cancelled!");
+        }
+        job.work.accept(model);
+        if (!job.superseded) {
+          job.image = this.toImage(model.getRasterFromHistory(job.imageName), job.imageName);
+          job.histogram = model.getHistogram(job.imageName);
+        }
+      });
+      outcome = () -> this.finish(job);
+    }
+    catch (CancellationException e) {
+      outcome = () -> this.abort(job, null);
+    }
+    catch (RuntimeException e) {
+      // invalid arguments, but also e.g. a history store failing to spill: the job must still be
+      // removed from the queue, otherwise no later result would ever be displayed.
+      String message = e.getMessage() == null ? "The command failed!" : e.getMessage();
+      outcome = () -> this.abort(job, message);
+    }
+    swaps.add(outcome);
+    SwingUtilities.invokeLater(this::swapResults);
+  }
+
+  // Displays the result of the given job, which is done, unless other commands were submitted
+  // after it.
+  private void finish(Job job) {
+    if (!jobs.remove(job)) {
+      return;
+    }
+    lastDoneImage = job.imageName;
+    if (jobs.isEmpty()) {
+      if (job.image != null) {
+        view.setImage(job.image);
+        displayedImage = job.imageName;
+        this.showHistogram(job.histogram);
+      }
+      view.showProgress(0, 0);
+    }
+  }
+
+  // Aborts the given job and the jobs submitted after it, which depend on it, and goes back to
+  // the last image that was done. Displays the given message, unless it is null.
+  private void abort(Job job, String message) {
+    if (!jobs.contains(job)) {
+      return;
+    }
+    for (Job aborted : jobs) {
+      aborted.cancelled = true;
+    }
+    jobs.clear();
+    view.showProgress(0, 0);
+    currentImage = lastDoneImage;
+    if (message != null) {
+      this.setErrorMessage(message);
+    }
+    // no image was done yet if loading the first image failed.
+    if (currentImage != null && !currentImage.equals(displayedImage)) {
+      this.visualizeImage();
+      this.updateHistogram();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    if (jobs.isEmpty()) {
+      this.setErrorMessage("No command is running!");
+      return;
+    }
+    this.abort(jobs.peekFirst(), null);
+  }
+
+  // Waits for the commands running in the background to be done, and swaps their results in.
+  private void awaitBackground() {
+    if (lastTask == null) {
+      return;
+    }
+    try {
+      lastTask.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException e) {
+      this.setErrorMessage(e.getCause().getMessage());
+    }
+    this.swapResults();
   }
 
   @Override
@@ -179,16 +554,24 @@ public class ControllerGUI implements Features {
       this.setErrorMessage("No file has been loaded yet!");
       return;
     }
-    File file = new File(filePath);
+    String imageName = new File(filePath).getName();
     ImageIOHelper imageIO = knownImageFormats.get(figureFormatOut(filePath));
-    List<List<Pixel>> pixels = imageIO.readFile(filePath);
-    model.addToHistory(pixels, file.getName());
-    try {
-      imageHistory.put(file.getName(), ImageIO.read(file));
-    } catch (IOException e) {
-      setErrorMessage(e.getMessage());
+    if (asynchronous) {
+      // read like a command, so that the next commands are applied on the new image.
+      this.submit(m -> m.addRasterToHistory(imageIO.readRaster(filePath), imageName), imageName);
+      return;
     }
-    currentImage = file.getName();
+    if (previews != null) {
+      this.inBackground(() -> {
+        Raster raster = imageIO.readRaster(filePath);
+        model.addRasterToHistory(raster, imageName);
+        Raster preview = this.previewOf(raster);
+        return () -> this.showPreview(raster, preview, imageName);
+      });
+      return;
+    }
+    model.addRasterToHistory(imageIO.readRaster(filePath), imageName);
+    currentImage = imageName;
     this.visualizeImage();
     this.updateHistogram();
   }
@@ -199,20 +582,36 @@ public class ControllerGUI implements Features {
       this.setErrorMessage("No file has been chosen yet!");
       return;
     }
-    File file = new File(filePath);
-    if (!figureFormatOut(filePath).equals("ppm")) {
-      WritableRenderedImage image = imageHistory.get(currentImage);
-      try {
-        ImageIO.write(image, format(filePath), new FileOutputStream(file));
-      }
-      catch (IOException e) {
-        this.setErrorMessage(e.getMessage());
-        return;
+    String formatOut = figureFormatOut(filePath);
+    String imageName = currentImage;
+    if (background != null) {
+      // saved once the commands given before are done, i.e. once the image is computed.
+      this.inBackground(() -> {
+        this.save(filePath, formatOut, imageName);
+        return null;
+      });
+      return;
+    }
+    try {
+      this.save(filePath, formatOut, imageName);
+    }
+    catch (IOException e) {
+      this.setErrorMessage(e.getMessage());
+    }
+  }
+
+  // Saves the full resolution image with the given name to the given file, in the given format.
+  private void save(String filePath, String formatOut, String imageName) throws IOException {
+    if (formatOut.equals("png/bmp/jpg/jpeg")) {
+      WritableRenderedImage image = knownImageFormats.get(formatOut)
+          .saveRaster(filePath, model.getRasterFromHistory(imageName));
+      try (FileOutputStream out = new FileOutputStream(new File(filePath))) {
+        ImageIO.write(image, format(filePath), out);
       }
     }
     else {
-      ImageIOHelper imageiO = knownImageFormats.get("ppm");
-      imageiO.saveFile(filePath, model.getPixelsFromHistory(currentImage));
+      ImageIOHelper imageiO = knownImageFormats.get(formatOut);
+      imageiO.saveRaster(filePath, model.getRasterFromHistory(imageName));
     }
   }
 
@@ -225,6 +624,21 @@ public class ControllerGUI implements Features {
     else {
       ImageCommand cmd = new DownSize(currentImage, currentImage + "downsize",
               height, width);
+      String destName = currentImage + "downsize";
+      if (asynchronous) {
+        this.submit(cmd::execute, destName);
+        return;
+      }
+      if (previews != null) {
+        // the size is the size of the full resolution image, so is the downscaling.
+        this.inBackground(() -> {
+          cmd.execute(model);
+          Raster raster = model.getRasterFromHistory(destName);
+          Raster preview = this.previewOf(raster);
+          return () -> this.showPreview(raster, preview, destName);
+        });
+        return;
+      }
       try {
         cmd.execute(model);
       }
@@ -232,7 +646,7 @@ public class ControllerGUI implements Features {
         this.setErrorMessage(e.getMessage());
         return;
       }
-      currentImage = currentImage + "downsize";
+      currentImage = destName;
       this.visualizeImage();
       updateHistogram();
     }
@@ -244,10 +658,16 @@ public class ControllerGUI implements Features {
       this.setErrorMessage("You have not chosen a command!");
       return;
     }
-    if (imageHistory.size() == 0) {
+    if (currentImage == null) {
       this.setErrorMessage("You have not yet loaded an image!");
       return;
     }
+    if (asynchronous) {
+      ImageCommand cmd = knownCommands.get(currentCommand).apply(currentImage + currentCommand);
+      this.submit(this.inRegion(cmd, false)::execute, currentImage + currentCommand);
+      currentCommand = null;
+      return;
+    }
     this.commandHelper(currentCommand);
     this.visualizeImage();
     updateHistogram();
@@ -259,38 +679,64 @@ public class ControllerGUI implements Features {
     currentCommand = command;
   }
 
+  @Override
+  public void setRegion(int x, int y, int width, int height) {
+    if (width <= 0 || height <= 0) {
+      this.setErrorMessage("Invalid region given, try again!");
+      return;
+    }
+    regionRectangle = new int[]{x, y, width, height};
+    regionMask = null;
+    pendingMask = null;
+  }
 
-  /**
-   * This method is responsible for retrieving data from the model regarding the current image.
-   * This data is then used to create a map of each rgb value from 0-255 with their corresponding
-   * count as the value in the map. This is done by iterating over the 2d array of marbles
-   * and just adding to the map each new rgb value seen. If an rgb value is seen and already in
-   * the map, we just add to its count so far. We do this for red, green, blue, and intensity.
-   * @return an array of map representing the different rgb values containing in the image and
-   *         their count.
-   */
-  private Map<Integer, Integer>[] createHistogramMaps() {
-    Map<Integer, Integer> countR = new HashMap<>();
-    Map<Integer, Integer> countG = new HashMap<>();
-    Map<Integer, Integer> countB = new HashMap<>();
-    Map<Integer, Integer> countI = new HashMap<>();
-    List<List<Pixel>> pixels = model.getPixelsFromHistory(currentImage);
-    for (int i = 0; i < pixels.size(); i++) {
-      for (int j = 0; j < pixels.get(i).size();j++) {
-        Pixel p = pixels.get(i).get(j);
-        int red = p.getComponent(0);
-        int green = p.getComponent(1);
-        int blue = p.getComponent(2);
-        int intensity = p.executeCommand("intensity").getComponent(0);
-        this.assignValues(red, countR);
-        this.assignValues(blue, countB);
-        this.assignValues(green, countG);
-        this.assignValues(intensity, countI);
-      }
+  @Override
+  public void loadMask(String filePath) {
+    if (filePath.equals("")) {
+      this.setErrorMessage("No mask has been loaded yet!");
+      return;
+    }
+    ImageIOHelper imageIO = knownImageFormats.get(figureFormatOut(filePath));
+    // a name that no command result can have, since those start with the name of an image.
+    String maskName = "mask:" + new File(filePath).getName();
+    if (background == null) {
+      model.addRasterToHistory(imageIO.readRaster(filePath), maskName);
+      this.useMask(maskName, null);
+      return;
+    }
+    // the commands given until the mask is read are applied on the whole image.
+    pendingMask = maskName;
+    this.inBackground(() -> {
+      Raster raster = imageIO.readRaster(filePath);
+      model.addRasterToHistory(raster, maskName);
+      Raster preview = previews == null ? null : this.previewOf(raster);
+      return () -> {
+        if (maskName.equals(pendingMask)) {
+          this.useMask(maskName, preview);
+        }
+      };
+    });
+  }
+
+  // Restricts the next commands to the mask image with the given name, whose given preview is
+  // stored in the previews, unless it is null.
+  private void useMask(String maskName, Raster preview) {
+    if (preview != null) {
+      previews.addRasterToHistory(preview, maskName);
     }
-    return new Map[]{countR, countG,countB, countI};
+    regionMask = maskName;
+    regionRectangle = null;
+    pendingMask = null;
+  }
+
+  @Override
+  public void clearRegion() {
+    regionMask = null;
+    regionRectangle = null;
+    pendingMask = null;
   }
 
+
   /**
    * Returns the format of the given file path of an image.
    * @param filePath String represents the absolute/relative path of some image file.
@@ -298,8 +744,8 @@ public class ControllerGUI implements Features {
    */
   private String format(String filePath) {
     String extension = figureFormatOut(filePath);
-    if (extension.equals("ppm")) {
-      return "ppm";
+    if (!extension.equals("png/bmp/jpg/jpeg")) {
+      return extension;
     }
     else {
       if (filePath.endsWith("jpg")) {
@@ -316,18 +762,4 @@ public class ControllerGUI implements Features {
       }
     }
   }
-
-  /**
-   * Either adds to the map a new rgb value, or adds to the count so far for that value (component).
-   * @param component int represents the value of rgb or intensity.
-   * @param map of int and int represents the map of rgb values of some image and the count of each.
-   */
-  private void assignValues(int component, Map<Integer, Integer> map) {
-    if (map.containsKey(component)) {
-      map.put(component, map.get(component) + 1);
-    }
-    else {
-      map.put(component, 1);
-    }
-  }
 }
@@ -0,0 +1,154 @@
+package imageprocessor.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import imageprocessor.controller.io.ImageIOHelper;
+import imageprocessor.model.Raster;
+
+/**
+ * DecodedImages, the images decoded from files by load commands, by the SHA-256 digest of the
+ * bytes of their file, so that the sessions of an ImageServer loading the same file only decode
+ * it once. Since the key is the content of the file, a file rewritten in place is decoded again,
+ * however soon after it was rewritten and whatever its size, and two files with the same bytes
+ * share one raster.
+ * Looking an image up costs reading and hashing its file, which is still much less than decoding
+ * it. An image whose file changed while it was being decoded is not kept, since it is not known
+ * which bytes it was decoded from. The least recently used images are dropped first, once the
+ * images held exceed the budget. This class is thread-safe.
+ * Invariants:
+ * residentBytes is the number of bytes of the rasters held, and is at most budget.
+ */
+public class DecodedImages {
+  private final long budget;
+  // The images by the digest of their file, the least recently used first.
+  private final LinkedHashMap<String, Raster> images = new LinkedHashMap<>(16, 0.75f, true);
+  private long residentBytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructs an empty DecodedImages.
+   *
+   * @param budget long represents the number of bytes of rasters to be held, 4 per pixel.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public DecodedImages(long budget) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("invalid budget given!");
+    }
+    this.budget = budget;
+  }
+
+  /**
+   * Gets the image of the given file, decoded by the given reader unless an image of a file with
+   * the same bytes was already decoded.
+   *
+   * @param reader   ImageIOHelper represents the reader of the format of the file.
+   * @param filePath String represents the path of the file.
+   * @return the Raster of the image of the file, which must not be modified.
+   * @throws IllegalArgumentException if the reader cannot read the file.
+   */
+  public Raster read(ImageIOHelper reader, String filePath) throws IllegalArgumentException {
+    String digest = digest(filePath);
+    if (digest == null) {
+      // the reader reports the missing or unreadable file.
+      return reader.readRaster(filePath);
+    }
+    synchronized (this.images) {
+      Raster raster = this.images.get(digest);
+      if (raster != null) {
+        this.hits++;
+        return raster;
+      }
+      this.misses++;
+    }
+    Raster raster = reader.readRaster(filePath);
+    if (digest.equals(digest(filePath))) {
+      synchronized (this.images) {
+        this.keep(digest, raster);
+      }
+    }
+    return raster;
+  }
+
+  /**
+   * Gets the number of images that were found already decoded.
+   *
+   * @return a long representing the number of hits.
+   */
+  public long getHits() {
+    synchronized (this.images) {
+      return this.hits;
+    }
+  }
+
+  /**
+   * Gets the number of images that were decoded.
+   *
+   * @return a long representing the number of misses.
+   */
+  public long getMisses() {
+    synchronized (this.images) {
+      return this.misses;
+    }
+  }
+
+  /**
+   * Gets the number of bytes of the images held, 4 bytes per pixel.
+   *
+   * @return a long representing the number of bytes resident.
+   */
+  public long getResidentBytes() {
+    synchronized (this.images) {
+      return this.residentBytes;
+    }
+  }
+
+  // Holds the given image, then drops the least recently used images until the images fit in the
+  // budget. An image larger than the budget is not held.
+  private void keep(String digest, Raster raster) {
+    long bytes = 4L * raster.getWidth() * raster.getHeight();
+    if (this.images.containsKey(digest) || bytes > this.budget) {
+      return;
+    }
+    this.images.put(digest, raster);
+    this.residentBytes += bytes;
+    Iterator<Raster> eldest = this.images.values().iterator();
+    while (this.residentBytes > this.budget) {
+      Raster dropped = eldest.next();
+      this.residentBytes -= 4L * dropped.getWidth() * dropped.getHeight();
+      eldest.remove();
+    }
+  }
+
+  // Gets the SHA-256 digest of the bytes of the given file, in hexadecimal, null if the file
+  // cannot be read.
+  private static String digest(String filePath) {
+    MessageDigest sha;
+    try {
+      sha = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available!");
+    }
+    byte[] buffer = new byte[1 << 16];
+    try (InputStream in = Files.newInputStream(Paths.get(filePath))) {
+      for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+        sha.update(buffer, 0, read);
+      }
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+    StringBuilder result = new StringBuilder();
+    for (byte b : sha.digest()) {
+      result.append(String.format("%02x", b));
+    }
+    return result.toString();
+  }
+}
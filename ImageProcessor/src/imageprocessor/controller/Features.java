@@ -72,4 +72,39 @@ public interface Features {
    * @param command String represents the command to be set!
    */
   void setCommand(String command);
+
+  /**
+   * Cancels the commands that are running in the background, if any, and goes back to the last
+   * image that was done. The operation being run stops as soon as possible, and the commands that
+   * did not start are dropped. If no command is running, the user is informed that there is
+   * nothing to cancel.
+   */
+  void cancel();
+
+  /**
+   * Restricts the commands executed from now on to the given rectangle of the current image (a
+   * region of interest): the pixels outside of it are left as they are. Flips cannot be
+   * restricted, and downscaling always applies on the whole image. A rectangle with no area
+   * should lead to an error message.
+   * @param x int represents the leftmost column of the rectangle.
+   * @param y int represents the top row of the rectangle.
+   * @param width int represents the width of the rectangle.
+   * @param height int represents the height of the rectangle.
+   */
+  void setRegion(int x, int y, int width, int height);
+
+  /**
+   * Loads the mask image with the given filePath, and restricts the commands executed from now on
+   * to its dark pixels, e.g. the black pixels of a black and white image. The mask must have the
+   * size of the images it is applied on, otherwise the commands lead to an error message. Any
+   * unsuccessful attempt should lead to a respectful and elegant error message.
+   * @param filePath String represents the absolute or relative path of the mask image file.
+   */
+  void loadMask(String filePath);
+
+  /**
+   * Lifts the restriction set by setRegion or loadMask: the commands executed from now on apply
+   * on the whole image.
+   */
+  void clearRegion();
 }
@@ -0,0 +1,195 @@
+package imageprocessor.controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import imageprocessor.model.EnhancedModel;
+import imageprocessor.model.TiledModel;
+
+/**
+ * ImageServer, a long-running image processor that accepts clients over a local socket, a TCP
+ * port of the loopback address or a Unix-domain socket file, so that many small jobs can be run
+ * by one warm program instead of starting a program per job.
+ * Every client gets its own session: a Controller reading the text commands of the client (the
+ * same commands as a script file), on its own model, thus the images of a session are not seen by
+ * the other sessions, and writing its messages back to the client. A session ends when the client
+ * quits or closes the connection.
+ * The sessions share the images decoded by their load commands (see DecodedImages), so a file
+ * loaded by many jobs is only decoded once, and a file rewritten between two jobs is decoded
+ * again.
+ * Each session runs on its own thread: a virtual thread when the Java runtime has them (Java 21
+ * and later), a thread of a cached pool otherwise, so thousands of sessions cost little.
+ * Invariants:
+ * channel, models, decodedImages and sessions are never null.
+ */
+public class ImageServer implements Closeable {
+  private final ServerSocketChannel channel;
+  private final Supplier<EnhancedModel> models;
+  private final DecodedImages decodedImages;
+  private final ExecutorService sessions = newSessionExecutor();
+
+  /**
+   * Constructs an ImageServer accepting the clients of the given bound channel.
+   *
+   * @param channel       ServerSocketChannel represents the bound socket the clients connect to.
+   * @param models        Supplier of EnhancedModel represents the factory of the model of each
+   *                      session.
+   * @param decodedImages DecodedImages represents the images decoded by the sessions.
+   * @throws IllegalArgumentException if any of the given arguments is null.
+   */
+  public ImageServer(ServerSocketChannel channel, Supplier<EnhancedModel> models,
+                     DecodedImages decodedImages) throws IllegalArgumentException {
+    if (channel == null || models == null || decodedImages == null) {
+      throw new IllegalArgumentException("Channel, models and decoded images must be non-null!");
+    }
+    this.channel = channel;
+    this.models = models;
+    this.decodedImages = decodedImages;
+  }
+
+  /**
+   * Opens the local socket of the given address: a port number, bound on the loopback address
+   * (0 for any free port), or the path of a Unix-domain socket file, which must not exist.
+   *
+   * @param address String represents the port or the socket file.
+   * @return a new ServerSocketChannel bound to the given address.
+   * @throws IllegalArgumentException if the address is null, or the socket cannot be bound.
+   */
+  public static ServerSocketChannel open(String address) throws IllegalArgumentException {
+    if (address == null) {
+      throw new IllegalArgumentException("Address must be non-null!");
+    }
+    SocketAddress local;
+    ServerSocketChannel channel = null;
+    try {
+      if (address.matches("\\d{1,5}")) {
+        local = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        channel = ServerSocketChannel.open(StandardProtocolFamily.INET);
+      } else {
+        local = UnixDomainSocketAddress.of(address);
+        channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+      }
+      return channel.bind(local);
+    } catch (IOException | RuntimeException e) {
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException ignored) {
+          // the channel was not bound, there is nothing to release.
+        }
+      }
+      throw new IllegalArgumentException("Cannot listen on " + address + "!");
+    }
+  }
+
+  /**
+   * Gets the address the clients connect to.
+   *
+   * @return a SocketAddress representing the local address of this server.
+   * @throws IllegalStateException if this server is closed.
+   */
+  public SocketAddress getAddress() throws IllegalStateException {
+    try {
+      return this.channel.getLocalAddress();
+    } catch (IOException e) {
+      throw new IllegalStateException("The server is closed!");
+    }
+  }
+
+  /**
+   * Accepts clients, starting a session for each one, until this server is closed. The sessions
+   * still running then are left to finish.
+   *
+   * @throws IllegalStateException if the socket failed.
+   */
+  public void serve() throws IllegalStateException {
+    try {
+      while (true) {
+        SocketChannel client = this.channel.accept();
+        this.sessions.execute(() -> this.session(client));
+      }
+    } catch (ClosedChannelException e) {
+      // closed by close (an AsynchronousCloseException), the server is done.
+    } catch (IOException e) {
+      throw new IllegalStateException("The server socket failed!");
+    } finally {
+      this.sessions.shutdown();
+    }
+  }
+
+  /**
+   * Closes this server: no more clients are accepted, and its socket file, if any, is deleted.
+   */
+  @Override
+  public void close() {
+    SocketAddress address = null;
+    try {
+      address = this.channel.getLocalAddress();
+      this.channel.close();
+    } catch (IOException e) {
+      // the channel is closed anyway.
+    }
+    if (address instanceof UnixDomainSocketAddress) {
+      Path path = ((UnixDomainSocketAddress) address).getPath();
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException e) {
+        // a stale socket file only prevents binding that path again.
+      }
+    }
+  }
+
+  // Runs the session of the given client, on a model of its own, until it quits or disconnects.
+  private void session(SocketChannel client) {
+    EnhancedModel model = this.models.get();
+    try (client) {
+      Writer out = new OutputStreamWriter(Channels.newOutputStream(client),
+          StandardCharsets.UTF_8);
+      Controller controller = new Controller(model, message -> {
+        out.write(message);
+        out.flush();
+      }, new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+      controller.setDecodedImages(this.decodedImages);
+      controller.goImageProcessor();
+    } catch (IOException | RuntimeException e) {
+      // the client left without quitting or in the middle of a command, or its connection failed.
+    } finally {
+      if (model instanceof TiledModel) {
+        ((TiledModel) model).close();
+      }
+    }
+  }
+
+  // Creates the executor of the sessions: a virtual thread per session if the runtime has them,
+  // which is looked up by reflection so that this class still runs on Java 17.
+  private static ExecutorService newSessionExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "image-session");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package imageprocessor.controller;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Instruction, represents one instruction of a script given to the Controller, already parsed
+ * but not run yet: the action that runs it (and informs the user of its outcome), and the
+ * resources it reads and writes. A resource is either an image of the model's history, or a file.
+ * The Controller runs each instruction as soon as it is parsed, the BatchController uses the
+ * resources to find which instructions depend on each other.
+ * Invariants:
+ * action, reads and writes are never null.
+ */
+final class Instruction {
+  private final Runnable action;
+  private final Set<String> reads;
+  private final Set<String> writes;
+  private final boolean quits;
+
+  /**
+   * Constructs an Instruction.
+   *
+   * @param action Runnable represents what running this instruction does.
+   * @param reads  Set of String represents the resources this instruction reads, see image/file.
+   * @param writes Set of String represents the resources this instruction writes.
+   * @param quits  boolean represents whether this instruction quits the image processor.
+   */
+  Instruction(Runnable action, Set<String> reads, Set<String> writes, boolean quits) {
+    this.action = action;
+    this.reads = Collections.unmodifiableSet(new LinkedHashSet<>(reads));
+    this.writes = Collections.unmodifiableSet(new LinkedHashSet<>(writes));
+    this.quits = quits;
+  }
+
+  /**
+   * Constructs an Instruction that neither reads nor writes anything, e.g. one that only informs
+   * the user of an error.
+   *
+   * @param action Runnable represents what running this instruction does.
+   */
+  Instruction(Runnable action) {
+    this(action, Collections.emptySet(), Collections.emptySet(), false);
+  }
+
+  /**
+   * Runs this instruction.
+   */
+  void run() {
+    this.action.run();
+  }
+
+  /**
+   * Gets the resources that this instruction reads.
+   *
+   * @return an unmodifiable Set of String representing the resources read.
+   */
+  Set<String> getReads() {
+    return this.reads;
+  }
+
+  /**
+   * Gets the resources that this instruction writes.
+   *
+   * @return an unmodifiable Set of String representing the resources written.
+   */
+  Set<String> getWrites() {
+    return this.writes;
+  }
+
+  /**
+   * Tells whether this instruction quits the image processor, i.e. whether it is the last one.
+   *
+   * @return true if this instruction quits, false otherwise.
+   */
+  boolean quits() {
+    return this.quits;
+  }
+
+  /**
+   * Returns the resource representing the image with the given name in the model's history.
+   *
+   * @param imageName String represents the name of the image.
+   * @return a String representing the resource.
+   */
+  static String image(String imageName) {
+    return "image " + imageName;
+  }
+
+  /**
+   * Returns the resource representing the file with the given path. Two paths to the same file
+   * (e.g. a relative and an absolute one) are the same resource.
+   *
+   * @param filePath String represents the path of the file.
+   * @return a String representing the resource.
+   */
+  static String file(String filePath) {
+    try {
+      return "file " + Paths.get(filePath).toAbsolutePath().normalize();
+    } catch (InvalidPathException e) {
+      return "file " + filePath;
+    }
+  }
+}
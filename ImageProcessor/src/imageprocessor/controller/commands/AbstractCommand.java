@@ -19,4 +19,14 @@ public abstract class AbstractCommand implements ImageCommand {
     this.imageName = imageName;
     this.destName = destName;
   }
+
+  @Override
+  public String getImageName() {
+    return this.imageName;
+  }
+
+  @Override
+  public String getDestName() {
+    return this.destName;
+  }
 }
@@ -0,0 +1,33 @@
+package imageprocessor.controller.commands;
+
+import imageprocessor.controller.io.KernelFile;
+import imageprocessor.model.ColorMatrix;
+import imageprocessor.model.ColorTransform;
+import imageprocessor.model.EnhancedModel;
+
+/**
+ * ColorMatrixTransform command, which applies the color matrix stored in a color matrix file on
+ * an image, like the sepia and luma commands do with their own matrices.
+ */
+public class ColorMatrixTransform extends AbstractCommand implements ImageCommand {
+  private final String matrixPath;
+
+  /**
+   * Constructs a ColorMatrixTransform command, with the given color matrix file path, the image
+   * name, and the dest name. The color matrix file is only read when the command is executed.
+   * @param matrixPath String represents the path of the file containing the color matrix.
+   * @param imageName String represents the name of the image that this command is applied on.
+   * @param destName String represents the desired name of the result of applying this command on
+   *                 the given image.
+   */
+  public ColorMatrixTransform(String matrixPath, String imageName, String destName) {
+    super(imageName, destName);
+    this.matrixPath = matrixPath;
+  }
+
+  @Override
+  public void execute(EnhancedModel m) throws IllegalArgumentException {
+    ColorMatrix matrix = new ColorMatrix(new KernelFile().readColorMatrix(matrixPath));
+    m.colorTransform(ColorTransform.of(matrix), imageName, destName);
+  }
+}
@@ -0,0 +1,29 @@
+package imageprocessor.controller.commands;
+
+import imageprocessor.controller.io.KernelFile;
+import imageprocessor.model.EnhancedModel;
+
+/**
+ * Convolve command, which applies the kernel stored in a kernel file on an image.
+ */
+public class Convolve extends AbstractCommand implements ImageCommand {
+  private final String kernelPath;
+
+  /**
+   * Constructs a Convolve command, with the given kernel file path, the image name, and the dest
+   * name. The kernel file is only read when the command is executed.
+   * @param kernelPath String represents the path of the file containing the kernel.
+   * @param imageName String represents the name of the image that this command is applied on.
+   * @param destName String represents the desired name of the result of applying this command on
+   *                 the given image.
+   */
+  public Convolve(String kernelPath, String imageName, String destName) {
+    super(imageName, destName);
+    this.kernelPath = kernelPath;
+  }
+
+  @Override
+  public void execute(EnhancedModel m) throws IllegalArgumentException {
+    m.convolve(new KernelFile().readFile(kernelPath), imageName, destName);
+  }
+}
@@ -0,0 +1,30 @@
+package imageprocessor.controller.commands;
+
+import imageprocessor.model.ColorTransform;
+import imageprocessor.model.EnhancedModel;
+
+/**
+ * Gamma command, which corrects the gamma of an image by the given gamma.
+ */
+public class Gamma extends AbstractCommand implements ImageCommand {
+  private final double gamma;
+
+  /**
+   * Constructs a Gamma command, with the given gamma, the image name, and the dest name. The
+   * gamma is only checked when the command is executed.
+   * @param gamma double represents the gamma, greater than 1 to brighten the mid-tones, less than
+   *              1 to darken them.
+   * @param imageName String represents the name of the image that this command is applied on.
+   * @param destName String represents the desired name of the result of applying this command on
+   *                 the given image.
+   */
+  public Gamma(double gamma, String imageName, String destName) {
+    super(imageName, destName);
+    this.gamma = gamma;
+  }
+
+  @Override
+  public void execute(EnhancedModel m) throws IllegalArgumentException {
+    m.colorTransform(ColorTransform.gamma(this.gamma), imageName, destName);
+  }
+}
@@ -1,5 +1,7 @@
 package imageprocessor.controller.commands;
 
+import java.util.Set;
+
 import imageprocessor.model.EnhancedModel;
 
 /**
@@ -22,4 +24,26 @@ public interface ImageCommand {
    *          are invalid and the model throws the exception through the method being used.
    */
   void execute(EnhancedModel m) throws IllegalArgumentException;
+
+  /**
+   * Gets the name of the image that this command is applied on, i.e. the image it reads.
+   * @return a String representing the name of the image this command reads.
+   */
+  String getImageName();
+
+  /**
+   * Gets the desired name of the result of this command, i.e. the image it writes.
+   * @return a String representing the name of the image this command writes.
+   */
+  String getDestName();
+
+  /**
+   * Gets the names of all the images that this command reads, e.g. the image it is applied on
+   * and a mask image restricting it. The default implementation returns the image this command
+   * is applied on.
+   * @return a Set of Strings representing the names of the images this command reads.
+   */
+  default Set<String> getImageNames() {
+    return Set.of(this.getImageName());
+  }
 }
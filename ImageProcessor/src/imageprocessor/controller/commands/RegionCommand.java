@@ -0,0 +1,85 @@
+package imageprocessor.controller.commands;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import imageprocessor.model.EnhancedModel;
+import imageprocessor.model.RegionModel;
+
+/**
+ * RegionCommand, which restricts another command to a region of the image it is applied on: the
+ * dark pixels of a mask image, or a rectangle (region of interest). The command is executed on a
+ * RegionModel of the given model, thus the pixels outside of the region are left as they are,
+ * and only the bounding box of the region is computed.
+ */
+public class RegionCommand implements ImageCommand {
+  private final ImageCommand command;
+  private final String maskName;
+  private final int[] rectangle;
+
+  /**
+   * Constructs a RegionCommand restricting the given command to the dark pixels of the mask image
+   * with the given name, which must have the size of the image the command is applied on.
+   * @param maskName String represents the name of the mask image.
+   * @param command ImageCommand represents the command to be restricted.
+   * @throws IllegalArgumentException if any of the given arguments is null.
+   */
+  public RegionCommand(String maskName, ImageCommand command) throws IllegalArgumentException {
+    if (maskName == null || command == null) {
+      throw new IllegalArgumentException("invalid mask name or command given!");
+    }
+    this.command = command;
+    this.maskName = maskName;
+    this.rectangle = null;
+  }
+
+  /**
+   * Constructs a RegionCommand restricting the given command to the given rectangle of the image
+   * it is applied on.
+   * @param x int represents the leftmost column of the rectangle.
+   * @param y int represents the top row of the rectangle.
+   * @param width int represents the width of the rectangle.
+   * @param height int represents the height of the rectangle.
+   * @param command ImageCommand represents the command to be restricted.
+   * @throws IllegalArgumentException if the command is null, or the width or height is negative.
+   */
+  public RegionCommand(int x, int y, int width, int height, ImageCommand command)
+          throws IllegalArgumentException {
+    if (command == null || width < 0 || height < 0) {
+      throw new IllegalArgumentException("invalid rectangle or command given!");
+    }
+    this.command = command;
+    this.maskName = null;
+    this.rectangle = new int[]{x, y, width, height};
+  }
+
+  @Override
+  public void execute(EnhancedModel m) throws IllegalArgumentException {
+    if (this.maskName != null) {
+      this.command.execute(new RegionModel(m, this.maskName));
+    } else {
+      this.command.execute(new RegionModel(m, this.rectangle[0], this.rectangle[1],
+          this.rectangle[2], this.rectangle[3]));
+    }
+  }
+
+  @Override
+  public String getImageName() {
+    return this.command.getImageName();
+  }
+
+  @Override
+  public String getDestName() {
+    return this.command.getDestName();
+  }
+
+  @Override
+  public Set<String> getImageNames() {
+    if (this.maskName == null) {
+      return this.command.getImageNames();
+    }
+    Set<String> result = new HashSet<>(this.command.getImageNames());
+    result.add(this.maskName);
+    return result;
+  }
+}
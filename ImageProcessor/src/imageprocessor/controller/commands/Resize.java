@@ -0,0 +1,39 @@
+package imageprocessor.controller.commands;
+
+import imageprocessor.model.EnhancedModel;
+import imageprocessor.model.Resampler;
+
+/**
+ * Resize command, class used to execute the resize image command: the image is resampled to any
+ * size, smaller or larger, with the filter of the given name (box, bilinear, bicubic or
+ * lanczos3).
+ */
+public class Resize extends AbstractCommand implements ImageCommand {
+  private final Resampler.Filter filter;
+  private final int height;
+  private final int width;
+
+  /**
+   * Constructs a Resize command with the given filter name, the new height and width, the image
+   * name, and the dest name.
+   *
+   * @param filter String represents the name of the resampling filter.
+   * @param height int represents the desired height of the resized image.
+   * @param width int represents the desired width of the resized image.
+   * @param imageName String represents the name of the image to apply the command on.
+   * @param destName String represents the desired name of the resized image.
+   * @throws IllegalArgumentException if there is no filter with the given name.
+   */
+  public Resize(String filter, int height, int width, String imageName, String destName)
+          throws IllegalArgumentException {
+    super(imageName, destName);
+    this.filter = Resampler.Filter.of(filter);
+    this.height = height;
+    this.width = width;
+  }
+
+  @Override
+  public void execute(EnhancedModel m) throws IllegalArgumentException {
+    m.resize(imageName, destName, height, width, filter);
+  }
+}
@@ -0,0 +1,176 @@
+package imageprocessor.controller.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * AsciiTokenizer, reads the whitespace separated tokens of a netpbm (ppm) file straight from a
+ * byte channel, through a fixed size buffer. Unlike a Scanner over the contents of the file, it
+ * never holds more than its buffer in memory, and parses integers digit by digit without creating
+ * any String. Everything from a # to the end of its line is a comment, and is skipped like
+ * whitespace.
+ * Invariants:
+ * position is always between 0 and limit, and limit is at most the size of the buffer.
+ */
+class AsciiTokenizer {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ReadableByteChannel channel;
+  private final byte[] buffer;
+  private final ByteBuffer wrapper;
+  private int position;
+  private int limit;
+  private long consumed;
+
+  /**
+   * Constructs an AsciiTokenizer reading from the given channel. The channel is not closed by
+   * this tokenizer.
+   *
+   * @param channel ReadableByteChannel represents the contents of the file to be tokenized.
+   */
+  AsciiTokenizer(ReadableByteChannel channel) {
+    this.channel = channel;
+    this.buffer = new byte[BUFFER_SIZE];
+    this.wrapper = ByteBuffer.wrap(this.buffer);
+    this.position = 0;
+    this.limit = 0;
+    this.consumed = 0;
+  }
+
+  /**
+   * Tells whether there is another token to be read, skipping any whitespace and comments.
+   *
+   * @return true if there is another token, false if the end of the file was reached.
+   * @throws IOException if the channel could not be read.
+   */
+  boolean hasNext() throws IOException {
+    return this.skipSeparators() >= 0;
+  }
+
+  /**
+   * Reads the next token as a String.
+   *
+   * @return a String representing the next token.
+   * @throws IOException            if the channel could not be read.
+   * @throws NoSuchElementException if there is no token left.
+   */
+  String next() throws IOException {
+    if (this.skipSeparators() < 0) {
+      throw new NoSuchElementException("no more tokens!");
+    }
+    StringBuilder token = new StringBuilder();
+    int c = this.peek();
+    while (c >= 0 && !this.isSeparator(c)) {
+      token.append((char) c);
+      this.position++;
+      c = this.peek();
+    }
+    return token.toString();
+  }
+
+  /**
+   * Reads the next token as a (possibly signed) decimal int.
+   *
+   * @return an int representing the next token.
+   * @throws IOException            if the channel could not be read.
+   * @throws NoSuchElementException if there is no token left.
+   * @throws InputMismatchException if the next token is not an int.
+   */
+  int nextInt() throws IOException {
+    int c = this.skipSeparators();
+    if (c < 0) {
+      throw new NoSuchElementException("no more tokens!");
+    }
+    boolean negative = c == '-';
+    if (c == '-' || c == '+') {
+      this.position++;
+      c = this.peek();
+    }
+    if (c < '0' || c > '9') {
+      throw new InputMismatchException("token is not an int!");
+    }
+    long value = 0;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + (c - '0');
+      if (value > (long) Integer.MAX_VALUE + 1) {
+        throw new InputMismatchException("token is out of range!");
+      }
+      this.position++;
+      c = this.peek();
+    }
+    if (c >= 0 && !this.isSeparator(c)) {
+      throw new InputMismatchException("token is not an int!");
+    }
+    value = negative ? -value : value;
+    if (value > Integer.MAX_VALUE) {
+      throw new InputMismatchException("token is out of range!");
+    }
+    return (int) value;
+  }
+
+  /**
+   * Gets the offset in the channel of the next byte to be read, i.e. the number of bytes that were
+   * consumed by this tokenizer so far. Used to find where the binary data of a file starts, right
+   * after its header.
+   *
+   * @return a long representing the offset of the next byte to be read.
+   */
+  long offset() {
+    return this.consumed + this.position;
+  }
+
+  // Skips whitespace and comments, then returns the next byte without consuming it, or -1 at the
+  // end of the file.
+  private int skipSeparators() throws IOException {
+    int c = this.peek();
+    while (c >= 0) {
+      if (c == '#') {
+        while (c >= 0 && c != '\n' && c != '\r') {
+          this.position++;
+          c = this.peek();
+        }
+      } else if (this.isWhitespace(c)) {
+        this.position++;
+        c = this.peek();
+      } else {
+        return c;
+      }
+    }
+    return c;
+  }
+
+  // Returns the next byte without consuming it, refilling the buffer if needed, or -1 at the end
+  // of the file.
+  private int peek() throws IOException {
+    if (this.position == this.limit && !this.fill()) {
+      return -1;
+    }
+    return this.buffer[this.position] & 0xff;
+  }
+
+  // Refills the buffer from the channel, returns false at the end of the file.
+  private boolean fill() throws IOException {
+    this.consumed += this.limit;
+    this.wrapper.clear();
+    int read = 0;
+    while (read == 0) {
+      read = this.channel.read(this.wrapper);
+    }
+    this.position = 0;
+    this.limit = Math.max(read, 0);
+    return read > 0;
+  }
+
+  // Tells whether the given byte ends a token.
+  private boolean isSeparator(int c) {
+    return c == '#' || this.isWhitespace(c);
+  }
+
+  // Tells whether the given byte is whitespace, as defined by the netpbm formats.
+  private boolean isWhitespace(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0b;
+  }
+}
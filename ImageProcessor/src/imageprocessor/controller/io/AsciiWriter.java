@@ -0,0 +1,95 @@
+package imageprocessor.controller.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * AsciiWriter, writes the text of a netpbm (ppm) file to an output stream through a single
+ * reusable byte buffer. Integers are converted to their decimal digits straight into the buffer,
+ * instead of creating a String for each of them.
+ * Invariants:
+ * position is always between 0 and the size of the buffer.
+ */
+class AsciiWriter {
+  private static final int BUFFER_SIZE = 1 << 16;
+  // The longest int, "-2147483648", has 11 characters.
+  private static final int MAX_INT_LENGTH = 11;
+
+  private final OutputStream output;
+  private final byte[] buffer;
+  private int position;
+
+  /**
+   * Constructs an AsciiWriter writing to the given stream. The stream is not closed by this
+   * writer.
+   *
+   * @param output OutputStream represents the destination of the text.
+   */
+  AsciiWriter(OutputStream output) {
+    this.output = output;
+    this.buffer = new byte[BUFFER_SIZE];
+    this.position = 0;
+  }
+
+  /**
+   * Writes the decimal digits of the given int.
+   *
+   * @param value int represents the value to be written.
+   * @throws IOException if the stream could not be written to.
+   */
+  void writeInt(int value) throws IOException {
+    if (this.position + MAX_INT_LENGTH > this.buffer.length) {
+      this.flush();
+    }
+    long v = value;
+    if (v < 0) {
+      this.buffer[this.position++] = '-';
+      v = -v;
+    }
+    int start = this.position;
+    do {
+      this.buffer[this.position++] = (byte) ('0' + v % 10);
+      v /= 10;
+    } while (v > 0);
+    for (int i = start, j = this.position - 1; i < j; i++, j--) {
+      byte digit = this.buffer[i];
+      this.buffer[i] = this.buffer[j];
+      this.buffer[j] = digit;
+    }
+  }
+
+  /**
+   * Writes the given ASCII character.
+   *
+   * @param c char represents the character to be written.
+   * @throws IOException if the stream could not be written to.
+   */
+  void writeChar(char c) throws IOException {
+    if (this.position == this.buffer.length) {
+      this.flush();
+    }
+    this.buffer[this.position++] = (byte) c;
+  }
+
+  /**
+   * Writes the given ASCII text.
+   *
+   * @param text String represents the text to be written.
+   * @throws IOException if the stream could not be written to.
+   */
+  void writeString(String text) throws IOException {
+    for (int i = 0; i < text.length(); i++) {
+      this.writeChar(text.charAt(i));
+    }
+  }
+
+  /**
+   * Writes the content of the buffer to the stream, and empties the buffer.
+   *
+   * @throws IOException if the stream could not be written to.
+   */
+  void flush() throws IOException {
+    this.output.write(this.buffer, 0, this.position);
+    this.position = 0;
+  }
+}
@@ -0,0 +1,316 @@
+package imageprocessor.controller.io;
+
+import java.awt.image.WritableRenderedImage;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+import imageprocessor.Pixel;
+import imageprocessor.model.PixelOp;
+import imageprocessor.model.Raster;
+import imageprocessor.model.TileCache;
+import imageprocessor.model.TiledImage;
+
+/**
+ * ImageBinaryPPM, class is a ImageIOHelper, and is used to help the controller with IO for binary
+ * netpbm images: P6 (binary ppm, rgb) and P5 (binary pgm, greyscale), with a max depth of up to
+ * 65535 (two bytes per component, most significant byte first).
+ * Reading sniffs the format of the file, so any ppm file (P3, P5 or P6) can be read. The header
+ * is parsed by an AsciiTokenizer, and the binary pixels that follow it are copied into the raster
+ * in bulk, row by row. Large files are memory mapped with FileChannel.map instead of being read
+ * into a buffer. Components are scaled from the max depth of the file to 255, the max depth of
+ * our model. A TiledImage is read and saved one tile at a time (see RasterSink).
+ * Saving writes a P6 file, or a P5 file if this helper was constructed for greyscale, in which
+ * case each pixel is written as its luma (0.2126r + 0.7152g + 0.0722b), like luma-component does.
+ * Invariants:
+ * maxDepth is between 1 and 65535.
+ */
+public class ImageBinaryPPM implements ImageIOHelper {
+  // Files with at least this many bytes of pixels are memory mapped instead of read.
+  private static final long MAP_THRESHOLD = 1 << 20;
+  // Largest region mapped at once, FileChannel.map cannot map more than Integer.MAX_VALUE bytes.
+  private static final long MAX_MAPPED_REGION = 1 << 30;
+
+  private final boolean greyscale;
+  private final int maxDepth;
+
+  /**
+   * Constructs an ImageBinaryPPM that saves P6 files with a max depth of 255.
+   */
+  public ImageBinaryPPM() {
+    this(false, 255);
+  }
+
+  /**
+   * Constructs an ImageBinaryPPM that saves P5 (greyscale) or P6 files with the given max depth.
+   *
+   * @param greyscale boolean represents whether to save P5 files instead of P6 files.
+   * @param maxDepth  int represents the max depth of the saved files, 255 or less means one byte
+   *                  per component, more means two bytes per component.
+   * @throws IllegalArgumentException if the given max depth is not between 1 and 65535.
+   */
+  public ImageBinaryPPM(boolean greyscale, int maxDepth) throws IllegalArgumentException {
+    if (maxDepth <= 0 || maxDepth > 65535) {
+      throw new IllegalArgumentException("max depth must be between 1 and 65535!");
+    }
+    this.greyscale = greyscale;
+    this.maxDepth = maxDepth;
+  }
+
+  @Override
+  public List<List<Pixel>> readFile(String filePath) throws IllegalArgumentException {
+    return this.readRaster(filePath).toPixels();
+  }
+
+  /**
+   * Attempts to read the ppm or pgm file in the given filePath and returns its pixels in a Raster.
+   * @param filePath String represents the path of the image file to be read.
+   * @throws IllegalArgumentException if the given filePath is invalid, or the image is corrupt,
+   *         or the file is not a P3, P5 or P6 file.
+   */
+  @Override
+  public Raster readRaster(String filePath) throws IllegalArgumentException {
+    Raster result = read(filePath, RasterSink.raster());
+    return result == null ? new ImagePPM().readRaster(filePath) : result;
+  }
+
+  /**
+   * Attempts to read the ppm or pgm file in the given filePath and returns its pixels in a
+   * TiledImage, decoding one tile at a time.
+   * @param filePath String represents the path of the image file to be read.
+   * @param cache TileCache represents the cache holding the tiles of the image.
+   * @throws IllegalArgumentException if the given filePath is invalid, or the image is corrupt,
+   *         or the file is not a P3, P5 or P6 file.
+   */
+  @Override
+  public TiledImage readTiled(String filePath, TileCache cache) throws IllegalArgumentException {
+    TiledImage result = read(filePath, RasterSink.tiled(cache));
+    return result == null ? new ImagePPM().readTiled(filePath, cache) : result;
+  }
+
+  // Reads the binary file in the given filePath, handing its bands of rows to the given sink, or
+  // returns null if the file is not a binary file.
+  private static <T> T read(String filePath, RasterSink<T> sink) throws IllegalArgumentException {
+    FileInputStream input;
+    try {
+      input = new FileInputStream(filePath);
+    } catch (FileNotFoundException e) {
+      throw new IllegalArgumentException("file could not be found!");
+    }
+    try (FileChannel channel = input.getChannel()) {
+      AsciiTokenizer header = new AsciiTokenizer(channel);
+      String token = header.next();
+      if (token.equals("P6") || token.equals("P5")) {
+        return readBinary(channel, header, token.equals("P5"), sink);
+      }
+    } catch (NoSuchElementException n) {
+      sink.abort();
+      throw new IllegalArgumentException("Invalid ppm file given, no more elements to read!");
+    } catch (IOException e) {
+      sink.abort();
+      throw new IllegalArgumentException("Something went wrong! IO issue.");
+    } catch (RuntimeException e) {
+      sink.abort();
+      throw e;
+    }
+    return null;
+  }
+
+  /**
+   * Reads the rest of the header and the pixels of a binary file, whose magic number was already
+   * read by the given tokenizer, and hands them to the given sink band by band.
+   * @param channel FileChannel represents the file being read.
+   * @param header AsciiTokenizer represents the tokenizer that read the magic number of the file.
+   * @param greyscale boolean represents whether the file is a P5 file rather than a P6 file.
+   * @param sink RasterSink represents the sink making the image out of its bands of rows.
+   * @param <T> the type of the image made by the sink.
+   * @return the image made by the sink out of the pixels of the file.
+   * @throws IOException if the file could not be read.
+   * @throws IllegalArgumentException if the file is corrupt.
+   * @throws NoSuchElementException if the header is incomplete.
+   */
+  static <T> T readBinary(FileChannel channel, AsciiTokenizer header, boolean greyscale,
+                          RasterSink<T> sink) throws IOException {
+    int width = header.nextInt();
+    int height = header.nextInt();
+    int depth = header.nextInt();
+    if (width < 0 || height < 0 || depth <= 0 || depth > 65535
+            || (long) width * height > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Given ppm file is invalid.");
+    }
+    // the header ends with a single whitespace after the max depth.
+    long start = header.offset() + 1;
+    int samples = greyscale ? 1 : 3;
+    int bytes = depth < 256 ? 1 : 2;
+    int rowBytes = Math.multiplyExact(width, samples * bytes);
+    long expected = (long) rowBytes * height;
+    long available = channel.size() - start;
+    if (available < expected) {
+      throw new IllegalArgumentException("Invalid ppm file given, no more elements to read!");
+    }
+    if (available > expected) {
+      throw new IllegalArgumentException("Invalid ppm file given, more elements than needed!");
+    }
+    int[] scale = new int[depth + 1];
+    for (int v = 0; v <= depth; v++) {
+      scale[v] = (v * 255 + depth / 2) / depth;
+    }
+    int bandRows = sink.begin(width, height);
+    int[] band = null;
+    int bandStart = 0;
+    int bandEnd = 0;
+    byte[] row = new byte[rowBytes];
+    int[] components = new int[samples];
+    int rowsPerRegion = rowBytes == 0 ? height : (int) Math.max(1, MAX_MAPPED_REGION / rowBytes);
+    for (int first = 0; first < height; first += rowsPerRegion) {
+      int rows = Math.min(rowsPerRegion, height - first);
+      long position = start + (long) first * rowBytes;
+      ByteBuffer payload = payload(channel, position, (long) rows * rowBytes);
+      for (int i = first; i < first + rows; i++) {
+        if (band == null) {
+          bandStart = i;
+          bandEnd = (int) Math.min(height, (long) i + bandRows);
+          band = new int[(bandEnd - bandStart) * width];
+        }
+        payload.get(row);
+        int offset = (i - bandStart) * width;
+        for (int j = 0, b = 0; j < width; j++) {
+          for (int k = 0; k < samples; k++, b += bytes) {
+            int v = bytes == 1 ? row[b] & 0xff : (row[b] & 0xff) << 8 | (row[b + 1] & 0xff);
+            if (v > depth) {
+              throw new IllegalArgumentException("Given ppm file is invalid.");
+            }
+            components[k] = scale[v];
+          }
+          int r = components[0];
+          int g = components[samples == 3 ? 1 : 0];
+          int blue = components[samples - 1];
+          band[offset + j] = 0xff000000 | r << 16 | g << 8 | blue;
+        }
+        if (i + 1 == bandEnd) {
+          sink.accept(new Raster(width, bandEnd - bandStart, band));
+          band = null;
+        }
+      }
+    }
+    return sink.end();
+  }
+
+  // Returns the given region of the file, memory mapped if it is large enough, read otherwise.
+  private static ByteBuffer payload(FileChannel channel, long position, long size)
+          throws IOException {
+    if (size >= MAP_THRESHOLD) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IllegalArgumentException("Invalid ppm file given, no more elements to read!");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public WritableRenderedImage saveFile(String filePath, List<List<Pixel>> pixelsOfImage)
+          throws IllegalArgumentException {
+    return this.saveRaster(filePath, Raster.fromPixels(pixelsOfImage));
+  }
+
+  /**
+   * Saves the given raster in a P6 file, or in a P5 file if this helper is for greyscale, with
+   * this helper's max depth. Each row is encoded in one reusable buffer and written at once.
+   * @param filePath String represents the file path of the image to be saved.
+   * @param raster Raster represents the pixels of the image to be saved.
+   * @return null, binary ppm images are not supported by ImageIO, so there is no image to return.
+   * @throws IllegalArgumentException if given an invalid filePath, or an I/O issue occurred.
+   */
+  @Override
+  public WritableRenderedImage saveRaster(String filePath, Raster raster)
+          throws IllegalArgumentException {
+    return this.save(filePath, raster.getWidth(), raster.getHeight(), 1, band -> raster);
+  }
+
+  /**
+   * Saves the given image like saveRaster does, one tile at a time.
+   * @param filePath String represents the file path of the image to be saved.
+   * @param image TiledImage represents the pixels of the image to be saved.
+   * @return null, binary ppm images are not supported by ImageIO, so there is no image to return.
+   * @throws IllegalArgumentException if given an invalid filePath, or an I/O issue occurred.
+   */
+  @Override
+  public WritableRenderedImage saveTiled(String filePath, TiledImage image)
+          throws IllegalArgumentException {
+    return this.save(filePath, image.getWidth(), image.getHeight(), image.getTileCount(),
+        image::getTile);
+  }
+
+  // Saves the image of the given size, made of the given number of bands of rows from the top,
+  // in a P6 or P5 file.
+  private WritableRenderedImage save(String filePath, int width, int height, int bands,
+                                     IntFunction<Raster> band) throws IllegalArgumentException {
+    int samples = this.greyscale ? 1 : 3;
+    int bytes = this.maxDepth < 256 ? 1 : 2;
+    String header = (this.greyscale ? "P5" : "P6") + "\n" + width + " " + height
+            + "\n" + this.maxDepth + "\n";
+    try (FileOutputStream os = new FileOutputStream(filePath);
+         FileChannel channel = os.getChannel()) {
+      this.writeFully(channel, ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+      int[] pixels = new int[width];
+      ByteBuffer row = ByteBuffer.allocate(width * samples * bytes);
+      for (int t = 0; t < bands; t++) {
+        Raster raster = band.apply(t);
+        for (int i = 0; i < raster.getHeight(); i++) {
+          raster.copyRow(i, pixels, 0);
+          row.clear();
+          for (int j = 0; j < width; j++) {
+            if (this.greyscale) {
+              this.putSample(row, this.luma(pixels[j]), bytes);
+            } else {
+              this.putSample(row, (pixels[j] >> 16) & 0xff, bytes);
+              this.putSample(row, (pixels[j] >> 8) & 0xff, bytes);
+              this.putSample(row, pixels[j] & 0xff, bytes);
+            }
+          }
+          row.flip();
+          this.writeFully(channel, row);
+        }
+      }
+      return null;
+    } catch (FileNotFoundException f) {
+      throw new IllegalArgumentException("Given file not found, make sure path is valid!");
+    } catch (IOException s) {
+      throw new IllegalArgumentException("Something went wrong! IO issue.");
+    }
+  }
+
+  // Scales the given component from 255 to this helper's max depth and puts it in the buffer.
+  private void putSample(ByteBuffer row, int component, int bytes) {
+    int v = (component * this.maxDepth + 127) / 255;
+    if (bytes == 2) {
+      row.putShort((short) v);
+    } else {
+      row.put((byte) v);
+    }
+  }
+
+  // Computes the luma of the given packed pixel, exactly like Pixel does.
+  private int luma(int argb) {
+    return PixelOp.LUMA.applyAsInt(argb) & 0xff;
+  }
+
+  // Writes the whole buffer to the channel.
+  private void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -4,6 +4,9 @@ import java.awt.image.WritableRenderedImage;
 import java.util.List;
 
 import imageprocessor.Pixel;
+import imageprocessor.model.Raster;
+import imageprocessor.model.TileCache;
+import imageprocessor.model.TiledImage;
 
 /**
  * ImageIOHelper, interface represents operations that deal with I/O of an image.
@@ -32,4 +35,59 @@ public interface ImageIOHelper {
    */
   WritableRenderedImage saveFile(String filePath, List<List<Pixel>> pixelsOfImage)
           throws IllegalArgumentException;
+
+  /**
+   * Reads an image file from the given file path, and returns the pixels of the image as a Raster.
+   * Helpers that can decode straight into a raster should override this method, the default
+   * implementation packs the 2D list of pixels returned by readFile.
+   * @param filePath String represents the file path of the image file to be read.
+   * @return a Raster which represents the pixels of the image file.
+   * @throws IllegalArgumentException if the given filePath is invalid, or the image file itself is
+   *                                 corrupt or this function faced some IO issue.
+   */
+  default Raster readRaster(String filePath) throws IllegalArgumentException {
+    return Raster.fromPixels(this.readFile(filePath));
+  }
+
+  /**
+   * Saves an image file from the given file path, and Raster. Helpers that can encode straight
+   * from a raster should override this method, the default implementation goes through saveFile.
+   * @param filePath String represents the file path of the image to be saved.
+   * @param raster Raster represents the pixels of the image to be saved.
+   * @return a WritableRenderedImage of the saved image, or null if the format has none.
+   * @throws IllegalArgumentException if given an invalid filePath, or an I/O issue occurred.
+   */
+  default WritableRenderedImage saveRaster(String filePath, Raster raster)
+          throws IllegalArgumentException {
+    return this.saveFile(filePath, raster.toPixels());
+  }
+
+  /**
+   * Reads an image file from the given file path, and returns the pixels of the image as a
+   * TiledImage whose tiles are held by the given cache. Helpers that can decode a tile at a time
+   * should override this method, so that images larger than the heap can be read, the default
+   * implementation splits the Raster returned by readRaster into tiles.
+   * @param filePath String represents the file path of the image file to be read.
+   * @param cache TileCache represents the cache holding the tiles of the image.
+   * @return a TiledImage which represents the pixels of the image file.
+   * @throws IllegalArgumentException if the given filePath is invalid, or the image file itself is
+   *                                 corrupt or this function faced some IO issue.
+   */
+  default TiledImage readTiled(String filePath, TileCache cache) throws IllegalArgumentException {
+    return TiledImage.of(this.readRaster(filePath), cache);
+  }
+
+  /**
+   * Saves an image file from the given file path, and TiledImage. Helpers that can encode a tile
+   * at a time should override this method, the default implementation goes through saveRaster
+   * with the whole image.
+   * @param filePath String represents the file path of the image to be saved.
+   * @param image TiledImage represents the pixels of the image to be saved.
+   * @return a WritableRenderedImage of the saved image, or null if the format has none.
+   * @throws IllegalArgumentException if given an invalid filePath, or an I/O issue occurred.
+   */
+  default WritableRenderedImage saveTiled(String filePath, TiledImage image)
+          throws IllegalArgumentException {
+    return this.saveRaster(filePath, image.toRaster());
+  }
 }
@@ -1,14 +1,19 @@
 package imageprocessor.controller.io;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.awt.image.WritableRenderedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import javax.imageio.ImageIO;
 import imageprocessor.Pixel;
+import imageprocessor.model.Raster;
 
 /**
  * ImagePNGJPGBMP is a ImageIOHelper, and is used to save/read image files (bmp, png, jpeg, jpg).
@@ -17,59 +22,127 @@ import imageprocessor.Pixel;
  * jpg/jpeg compresses image data and can lose the original properties of the image (color).
  * Thus, it is expected that the 2D array of pixels reading from a png will be different than that
  * of a jpg, even if the images look exactly the same to your eyes.
+ * The pixels are copied between our rasters and the data buffers of the BufferedImages in bulk.
+ * The layouts that ImageIO decodes most images into (TYPE_INT_ARGB, TYPE_INT_RGB, TYPE_3BYTE_BGR
+ * and TYPE_4BYTE_ABGR) are read straight from their DataBufferInt/DataBufferByte, any other layout
+ * goes through BufferedImage.getRGB one row at a time, which converts its colors for us.
  */
 public class ImagePNGJPGBMP implements ImageIOHelper {
 
-  // This method uses ImageIO's read function to read the file with the given filePath.
-  // A BufferedImage is returned, which is used to get the height/width of the image and a pixel
-  // at the given x, y coordinates. Using these methods, we will be able to construct the
-  // 2D list of pixels according to the values given by BufferedImage. This method will assume
-  // that BufferedImage can do the job right!
   @Override
   public List<List<Pixel>> readFile(String filePath) throws IllegalArgumentException {
+    return this.readRaster(filePath).toPixels();
+  }
+
+  // This method uses ImageIO's read function to read the file with the given filePath.
+  // A BufferedImage is returned, whose pixels are converted into a Raster, see toRaster. This
+  // method will assume that BufferedImage can do the job right!
+  @Override
+  public Raster readRaster(String filePath) throws IllegalArgumentException {
     File file = new File(filePath);
     try {
       BufferedImage buff = ImageIO.read(file);
       if (buff == null) {
         throw new IllegalArgumentException("invalid file!");
       }
-      List<List<Pixel>> result = new ArrayList();
-      for (int i = 0; i < buff.getHeight(); i++) {
-        List<Pixel> inner = new ArrayList();
-        for (int j = 0; j < buff.getWidth(); j++) {
-          int color = buff.getRGB(j, i);
-          int blue = color & 0xff;
-          int green = (color & 0xff00) >> 8;
-          int red = (color & 0xff0000) >> 16;
-          int alpha = (color & 0xff000000) >>> 24;
-          inner.add(new Pixel(red, green, blue, alpha));
-        }
-        result.add(inner);
-      }
-      return result;
+      return this.toRaster(buff);
     } catch (IOException e) {
       throw new IllegalArgumentException("File path was invalid!");
     }
   }
 
-  // This method will use ImageIO's write function to write the array of pixels to the file.
-  // However, before we can do so, we need to parse the 2d array of Pixels, and add each pixel
-  // to a BufferedImage using the set method. But we must convert the Pixel to a 4 Byte int
-  // representation.
   @Override
   public WritableRenderedImage saveFile(String filePath, List<List<Pixel>> pixelsOfImage)
           throws IllegalArgumentException {
-    BufferedImage image = this.determineImage(filePath,
-            pixelsOfImage.get(0).size(), pixelsOfImage.size());
-    for (int i = 0; i < pixelsOfImage.size(); i++) {
-      for (int j = 0; j < pixelsOfImage.get(i).size(); j++) {
-        Pixel p = pixelsOfImage.get(i).get(j);
-        image.setRGB(j, i, this.getColorBit(p));
+    return this.saveRaster(filePath, Raster.fromPixels(pixelsOfImage));
+  }
+
+  // This method builds the BufferedImage that the controller gives to ImageIO's write function.
+  // Both BufferedImages we construct store one packed int per pixel, exactly like our rasters, so
+  // each row of the raster is copied straight into the image's data buffer. The image without
+  // an alpha channel ignores the alpha byte, which we clear like setRGB would.
+  @Override
+  public WritableRenderedImage saveRaster(String filePath, Raster raster)
+          throws IllegalArgumentException {
+    BufferedImage image = this.determineImage(filePath, raster.getWidth(), raster.getHeight());
+    int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    int width = raster.getWidth();
+    for (int i = 0; i < raster.getHeight(); i++) {
+      raster.copyRow(i, data, i * width);
+    }
+    if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+      for (int i = 0; i < data.length; i++) {
+        data[i] &= 0xffffff;
       }
     }
     return image;
   }
 
+  /**
+   * Converts the pixels of the given BufferedImage into a Raster of packed ARGB pixels, the same
+   * values that BufferedImage.getRGB returns.
+   * Packed int images are wrapped without copying (their pixels are already packed like ours),
+   * interleaved byte images are unpacked with the offsets of their bands, and any other image
+   * is converted by getRGB, row by row.
+   *
+   * @param buff BufferedImage represents the decoded image.
+   * @return a Raster representing the pixels of the image.
+   */
+  private Raster toRaster(BufferedImage buff) {
+    int width = buff.getWidth();
+    int height = buff.getHeight();
+    WritableRaster raster = buff.getRaster();
+    DataBuffer buffer = raster.getDataBuffer();
+    boolean untranslated = raster.getSampleModelTranslateX() == 0
+            && raster.getSampleModelTranslateY() == 0 && buffer.getNumBanks() == 1;
+    switch (untranslated ? buff.getType() : BufferedImage.TYPE_CUSTOM) {
+      case BufferedImage.TYPE_INT_ARGB:
+      case BufferedImage.TYPE_INT_RGB:
+        int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        int[] data = ((DataBufferInt) buffer).getData();
+        if (buff.getType() == BufferedImage.TYPE_INT_RGB) {
+          for (int i = 0; i < height; i++) {
+            int start = buffer.getOffset() + i * stride;
+            for (int j = start; j < start + width; j++) {
+              data[j] |= 0xff000000;
+            }
+          }
+        }
+        return new Raster(width, height, data, buffer.getOffset(), stride);
+      case BufferedImage.TYPE_3BYTE_BGR:
+      case BufferedImage.TYPE_4BYTE_ABGR:
+        return this.fromInterleaved(buff, (ComponentSampleModel) raster.getSampleModel(),
+                ((DataBufferByte) buffer).getData(), buffer.getOffset());
+      default:
+        int[] result = new int[width * height];
+        for (int i = 0; i < height; i++) {
+          buff.getRGB(0, i, width, 1, result, i * width, width);
+        }
+        return new Raster(width, height, result);
+    }
+  }
+
+  // Packs the pixels of an image that stores each of its bands in a byte, interleaved, where the
+  // bands are red, green, blue and, if there are 4, alpha.
+  private Raster fromInterleaved(BufferedImage buff, ComponentSampleModel model, byte[] data,
+                                 int offset) {
+    int width = buff.getWidth();
+    int height = buff.getHeight();
+    int pixelStride = model.getPixelStride();
+    int[] bands = model.getBandOffsets();
+    boolean hasAlpha = bands.length == 4;
+    int[] result = new int[width * height];
+    for (int i = 0; i < height; i++) {
+      int p = offset + i * model.getScanlineStride();
+      for (int j = 0; j < width; j++, p += pixelStride) {
+        int alpha = hasAlpha ? data[p + bands[3]] & 0xff : 0xff;
+        result[i * width + j] = alpha << 24 | (data[p + bands[0]] & 0xff) << 16
+                | (data[p + bands[1]] & 0xff) << 8 | (data[p + bands[2]] & 0xff);
+      }
+    }
+    return new Raster(width, height, result);
+  }
+
   /**
    * Determines which BufferedImaged to construct based on the given filePath.
    * The difference b/w the 2 buffered images are the type of pixel to be used, where one includes
@@ -90,18 +163,6 @@ public class ImagePNGJPGBMP implements ImageIOHelper {
     return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
   }
 
-  /**
-   * Helper method returns the int 4 byte representation of the given Pixel.
-   *
-   * @param p Pixel represents the given pixel to be converted into an int.
-   * @return an int representing the pixel.
-   */
-  private int getColorBit(Pixel p) {
-    Color color = new Color(p.getComponent(0), p.getComponent(1),
-            p.getComponent(2), p.getComponent(3));
-    return color.getRGB();
-  }
-
   // This method will try to determine the informal format of the image, in order to
   // give to the ImageIO's write static function.
   private String figureFormatOut(String filePath) {
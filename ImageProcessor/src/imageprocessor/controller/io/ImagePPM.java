@@ -1,57 +1,53 @@
 package imageprocessor.controller.io;
 
 import java.awt.image.WritableRenderedImage;
-import java.io.BufferedWriter;
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.util.ArrayList;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Scanner;
-import javax.imageio.ImageIO;
+import java.util.function.IntFunction;
 import imageprocessor.Pixel;
+import imageprocessor.model.Raster;
+import imageprocessor.model.TileCache;
+import imageprocessor.model.TiledImage;
 
 /**
  * ImagePPM, class is a ImageIOHelper, and is used to help the controller with IO for ppm images.
  * This class implements the read and save methods.
+ * Both are streaming: the file is parsed straight from a file channel by an AsciiTokenizer, with
+ * the pixels written into the raster as they are read, and the file is written through the
+ * reusable buffer of an AsciiWriter. Thus, reading or saving an image only needs the memory of
+ * the image itself, no matter how large the file is, and reading or saving a TiledImage only
+ * needs the memory of one of its tiles at a time (see RasterSink).
+ * Binary files (P6 and P5) are also read, by ImageBinaryPPM, files are always saved as P3.
  */
 public class ImagePPM implements ImageIOHelper {
 
-  // Gets the content of the file as an Appendable, by iterating over each line and appending
-  // it to the result. We ignore lines starting with # because that would be a comment.
-  private Appendable getFileContentsAsString(String filePath) throws IllegalArgumentException {
-    Scanner sc;
-    try {
-      sc = new Scanner(new FileInputStream(filePath));
-    } catch (FileNotFoundException e) {
-      throw new IllegalArgumentException("file could not be found!");
-    }
-    StringBuilder builder = new StringBuilder();
-    //read the file line by line, and populate a string. This will throw away any comment lines
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s + System.lineSeparator());
-      }
-    }
-    return builder;
+  /**
+   * Attempts to read the image file in the given filePath and returns its pixels.
+   * See readRaster, the returned list is a read-only view of the raster it returns.
+   * @param filePath String represents the path of the image file to be read.
+   * @throws IllegalArgumentException if the given filePath is invalid, or the image is corrupt,
+   *         or the file type is unsupported (for now).
+   */
+  @Override
+  public List<List<Pixel>> readFile(String filePath) throws IllegalArgumentException {
+    return this.readRaster(filePath).toPixels();
   }
 
   /**
-   * Attempts to read the image file in the given filePath and sends the processed data to the
-   * Model. By iterating over the list with values i and j set to the height and width, we can
-   * ensure that the given 2d array of pixels's dimensions, is equal to the dimensions of the image.
-   * If it so happens that the scanner still has strings to read, then we throw an exception.
+   * Attempts to read the image file in the given filePath and returns its pixels in a Raster.
+   * By reading exactly width * height pixels, we can ensure that the raster's dimensions are
+   * equal to the dimensions of the image.
+   * If it so happens that the file still has tokens to read, then we throw an exception.
    * If it so happens that one of the pixels has an r/g/b value is greater than the provided
    * max depth, which is indeed a required specification, then we also throw an exception.
-   * If it so happens that the scanner no longer has any string to read while we are still
-   * constructing the 2d array of pixels, based on the given specification,
-   * then we throw an exception.
+   * If it so happens that the file no longer has any token to read while we are still
+   * reading pixels, based on the given specification, then we throw an exception.
    * If it so happens that an image format other than ppm is given, we also throw an exception,
    * only because our current image processor operates on ppm file. This is open for extension.
    * @param filePath String represents the path of the image file to be read.
@@ -59,35 +55,71 @@ public class ImagePPM implements ImageIOHelper {
    *         or the file type is unsupported (for now).
    */
   @Override
-  public List<List<Pixel>> readFile(String filePath) throws IllegalArgumentException {
-    Appendable builder = this.getFileContentsAsString(filePath);
-    Scanner sc = new Scanner(builder.toString());
+  public Raster readRaster(String filePath) throws IllegalArgumentException {
+    return read(filePath, RasterSink.raster());
+  }
+
+  /**
+   * Attempts to read the image file in the given filePath and returns its pixels in a TiledImage,
+   * decoding one tile at a time, see readRaster.
+   * @param filePath String represents the path of the image file to be read.
+   * @param cache TileCache represents the cache holding the tiles of the image.
+   * @throws IllegalArgumentException if the given filePath is invalid, or the image is corrupt,
+   *         or the file type is unsupported (for now).
+   */
+  @Override
+  public TiledImage readTiled(String filePath, TileCache cache) throws IllegalArgumentException {
+    return read(filePath, RasterSink.tiled(cache));
+  }
+
+  // Reads the image file in the given filePath, handing its bands of rows to the given sink.
+  private static <T> T read(String filePath, RasterSink<T> sink) throws IllegalArgumentException {
+    FileInputStream input;
     try {
+      input = new FileInputStream(filePath);
+    } catch (FileNotFoundException e) {
+      throw new IllegalArgumentException("file could not be found!");
+    }
+    try (FileChannel channel = input.getChannel()) {
+      AsciiTokenizer sc = new AsciiTokenizer(channel);
       String token = sc.next();
+      if (token.equals("P6") || token.equals("P5")) {
+        return ImageBinaryPPM.readBinary(channel, sc, token.equals("P5"), sink);
+      }
       if (!token.equals("P3")) {
-        throw new IllegalArgumentException("Invalid ppm file, should start with P3!");
+        throw new IllegalArgumentException("Invalid ppm file, should start with P3, P5 or P6!");
       }
       int width = sc.nextInt();
       int height = sc.nextInt();
       int maxDepth = sc.nextInt();
-      List<List<Pixel>> result = new ArrayList<>();
-      for (int i = 0; i < height; i++) {
-        List<Pixel> inner = new ArrayList<>();
-        for (int j = 0; j < width; j++) {
-          int r = this.isInvalidDepth(sc.nextInt(), 255);
-          int g = this.isInvalidDepth(sc.nextInt(), 255);
-          int b = this.isInvalidDepth(sc.nextInt(), 255);
-          Pixel pixel = new Pixel(r, g, b);
-          inner.add(pixel);
+      if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Given ppm file is invalid.");
+      }
+      int bandRows = sink.begin(width, height);
+      for (long first = 0; first < height; first += bandRows) {
+        int rows = (int) Math.min(bandRows, height - first);
+        int[] band = new int[rows * width];
+        for (int i = 0; i < band.length; i++) {
+          int r = isInvalidDepth(sc.nextInt(), 255);
+          int g = isInvalidDepth(sc.nextInt(), 255);
+          int b = isInvalidDepth(sc.nextInt(), 255);
+          band[i] = 0xff000000 | r << 16 | g << 8 | b;
         }
-        result.add(inner);
+        sink.accept(new Raster(width, rows, band));
       }
       if (sc.hasNext()) {
         throw new IllegalArgumentException("Invalid ppm file given, more elements than needed!");
       }
-      return result;
+      return sink.end();
     } catch (NoSuchElementException n) {
+      sink.abort();
       throw new IllegalArgumentException("Invalid ppm file given, no more elements to read!");
+    } catch (IOException e) {
+      sink.abort();
+      throw new IllegalArgumentException("Something went wrong! IO issue.");
+    } catch (RuntimeException e) {
+      sink.abort();
+      throw e;
     }
   }
 
@@ -101,52 +133,86 @@ public class ImagePPM implements ImageIOHelper {
    * @throws IllegalArgumentException if the given component is greater than the max depth, or
    *        the given component is less than 0.
    */
-  private int isInvalidDepth(int component, int depth) throws IllegalArgumentException {
+  private static int isInvalidDepth(int component, int depth) throws IllegalArgumentException {
     if (component > depth || component < 0) {
       throw new IllegalArgumentException("Given ppm file is invalid.");
     }
     return component;
   }
 
+  /**
+   * Saves the given pixels in a ppm file, see saveRaster.
+   * @param filePath String represents the file path of the image to be saved.
+   * @param pixelsOfImage 2D list of pixels represents the pixels of the image to be saved.
+   * @return null, ppm images are not supported by ImageIO, so there is no image to return.
+   * @throws IllegalArgumentException if given an invalid filePath, or an I/O issue occurred.
+   */
   @Override
   public WritableRenderedImage saveFile(String filePath, List<List<Pixel>> pixelsOfImage)
           throws IllegalArgumentException {
-    OutputStream os;
-    File file = new File(filePath);
-    try {
-      List<List<Pixel>> pixels = pixelsOfImage;
-      try {
-        os = new FileOutputStream(file);
-        OutputStreamWriter output = new OutputStreamWriter(os);
-        BufferedWriter writer = new BufferedWriter(output);
-        writer.write("P3");
-        writer.newLine();
-        writer.write(pixels.get(0).size() + " ");
-        writer.write(pixels.size() + "");
-        writer.newLine();
-        writer.write("255");
-        writer.newLine();
-        for (int i = 0; i < pixels.size(); i++) { // rows
-          for (int j = 0; j < pixels.get(i).size(); j++) { //cols
-            for (int k = 0; k < 3; k++) { // rgb
-              writer.write(pixels.get(i).get(j).getComponent(k) + "");
-              if (k != 3) {
-                writer.write(" ");
-              }
-              if (j != pixels.get(0).size() - 1) {
-                writer.write(" ");
+    return this.saveRaster(filePath, Raster.fromPixels(pixelsOfImage));
+  }
+
+  /**
+   * Saves the given raster in a P3 ppm file, with a max depth of 255. Each row of the image is
+   * written on its own line.
+   * @param filePath String represents the file path of the image to be saved.
+   * @param raster Raster represents the pixels of the image to be saved.
+   * @return null, ppm images are not supported by ImageIO, so there is no image to return.
+   * @throws IllegalArgumentException if given an invalid filePath, or an I/O issue occurred.
+   */
+  @Override
+  public WritableRenderedImage saveRaster(String filePath, Raster raster)
+          throws IllegalArgumentException {
+    return save(filePath, raster.getWidth(), raster.getHeight(), 1, band -> raster);
+  }
+
+  /**
+   * Saves the given image in a P3 ppm file, one tile at a time, see saveRaster.
+   * @param filePath String represents the file path of the image to be saved.
+   * @param image TiledImage represents the pixels of the image to be saved.
+   * @return null, ppm images are not supported by ImageIO, so there is no image to return.
+   * @throws IllegalArgumentException if given an invalid filePath, or an I/O issue occurred.
+   */
+  @Override
+  public WritableRenderedImage saveTiled(String filePath, TiledImage image)
+          throws IllegalArgumentException {
+    return save(filePath, image.getWidth(), image.getHeight(), image.getTileCount(),
+        image::getTile);
+  }
+
+  // Saves the image of the given size, made of the given number of bands of rows from the top,
+  // in a P3 ppm file.
+  private static WritableRenderedImage save(String filePath, int width, int height, int bands,
+                                            IntFunction<Raster> band)
+          throws IllegalArgumentException {
+    String newLine = System.lineSeparator();
+    try (OutputStream os = new FileOutputStream(filePath)) {
+      AsciiWriter writer = new AsciiWriter(os);
+      int[] row = new int[width];
+      writer.writeString("P3" + newLine);
+      writer.writeString(width + " " + height + newLine);
+      writer.writeString("255" + newLine);
+      for (int t = 0; t < bands; t++) {
+        Raster raster = band.apply(t);
+        for (int i = 0; i < raster.getHeight(); i++) { // rows
+          raster.copyRow(i, row, 0);
+          for (int j = 0; j < width; j++) { //cols
+            for (int k = 16; k >= 0; k -= 8) { // rgb
+              writer.writeInt((row[j] >> k) & 0xff);
+              writer.writeChar(' ');
+              if (j != width - 1) {
+                writer.writeChar(' ');
               }
             }
           }
-          writer.newLine();
+          writer.writeString(newLine);
         }
-        os.flush();
-        writer.close();
-        os.close();
-        return ImageIO.read(new File(filePath));
-      } catch (FileNotFoundException f) {
-        throw new IllegalArgumentException("Given file not found, make sure path is valid!");
       }
+      writer.flush();
+      return null;
+    } catch (FileNotFoundException f) {
+      throw new IllegalArgumentException("Given file not found, make sure path is valid!");
     } catch (IOException s) {
       throw new IllegalArgumentException("Something went wrong! IO issue.");
     }
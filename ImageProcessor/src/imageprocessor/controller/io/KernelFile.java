@@ -0,0 +1,121 @@
+package imageprocessor.controller.io;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * KernelFile, class used to help the controller read the kernel files given to the convolve
+ * command, and the color matrix files given to the color-matrix command. A kernel file is a plain
+ * text file that starts with the size of the kernel (an odd number), followed by the size * size
+ * weights of the kernel, row by row. A weight is either a decimal number (0.25, -1) or a fraction
+ * (1/16, -1/8). Everything that follows a # on a line is
+ * a comment. For example, the blur kernel is:
+ * 3
+ * 1/16 1/8 1/16
+ * 1/8  1/4 1/8
+ * 1/16 1/8 1/16
+ */
+public class KernelFile {
+
+  /**
+   * Reads the kernel file in the given filePath.
+   *
+   * @param filePath String represents the path of the kernel file to be read.
+   * @return a 2d array of doubles representing the weights of the kernel, row by row.
+   * @throws IllegalArgumentException if the given filePath is invalid, or the file is not a
+   *                                  valid kernel file.
+   */
+  public double[][] readFile(String filePath) throws IllegalArgumentException {
+    return this.parse(this.read(filePath));
+  }
+
+  /**
+   * Reads the color matrix file in the given filePath. A color matrix file holds the weights of a
+   * color matrix, row by row, like a kernel file but without the size: 9 weights for a 3x3
+   * matrix, or 12 weights for a 3x4 matrix whose last column is the offset added to each
+   * component. For example, the sepia matrix is:
+   * 0.393 0.769 0.189
+   * 0.349 0.686 0.168
+   * 0.272 0.534 0.131
+   *
+   * @param filePath String represents the path of the color matrix file to be read.
+   * @return a 2d array of doubles representing the weights of the matrix, 3 rows of 3 or 4.
+   * @throws IllegalArgumentException if the given filePath is invalid, or the file is not a
+   *                                  valid color matrix file.
+   */
+  public double[][] readColorMatrix(String filePath) throws IllegalArgumentException {
+    Scanner sc = this.read(filePath);
+    List<Double> weights = new ArrayList<>();
+    while (sc.hasNext()) {
+      weights.add(this.parseWeight(sc.next()));
+    }
+    if (weights.size() != 9 && weights.size() != 12) {
+      throw new IllegalArgumentException("Invalid color matrix file, 9 or 12 weights needed!");
+    }
+    double[][] matrix = new double[3][weights.size() / 3];
+    for (int k = 0; k < weights.size(); k++) {
+      matrix[k / matrix[0].length][k % matrix[0].length] = weights.get(k);
+    }
+    return matrix;
+  }
+
+  // Reads the file in the given filePath, without its comments.
+  private Scanner read(String filePath) throws IllegalArgumentException {
+    Scanner sc;
+    try {
+      sc = new Scanner(new FileInputStream(filePath));
+    } catch (FileNotFoundException e) {
+      throw new IllegalArgumentException("file could not be found!");
+    }
+    StringBuilder builder = new StringBuilder();
+    while (sc.hasNextLine()) {
+      String line = sc.nextLine();
+      int comment = line.indexOf('#');
+      builder.append(comment < 0 ? line : line.substring(0, comment))
+              .append(System.lineSeparator());
+    }
+    sc.close();
+    return new Scanner(builder.toString());
+  }
+
+  // Parses the size and the weights of the kernel from the given scanner.
+  private double[][] parse(Scanner sc) throws IllegalArgumentException {
+    try {
+      int size = sc.nextInt();
+      if (size <= 0 || size % 2 == 0) {
+        throw new IllegalArgumentException("Invalid kernel file, size must be odd!");
+      }
+      double[][] weights = new double[size][size];
+      for (int k = 0; k < size; k++) {
+        for (int s = 0; s < size; s++) {
+          weights[k][s] = this.parseWeight(sc.next());
+        }
+      }
+      if (sc.hasNext()) {
+        throw new IllegalArgumentException("Invalid kernel file given, more elements than needed!");
+      }
+      return weights;
+    } catch (NoSuchElementException n) {
+      throw new IllegalArgumentException("Invalid kernel file given, no more elements to read!");
+    }
+  }
+
+  // Parses a weight given as a decimal number or as a fraction.
+  private double parseWeight(String token) throws IllegalArgumentException {
+    try {
+      int slash = token.indexOf('/');
+      if (slash < 0) {
+        return Double.parseDouble(token);
+      }
+      return Double.parseDouble(token.substring(0, slash))
+              / Double.parseDouble(token.substring(slash + 1));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid file given, " + token
+              + " is not a weight!");
+    }
+  }
+}
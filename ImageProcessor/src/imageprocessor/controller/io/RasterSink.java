@@ -0,0 +1,108 @@
+package imageprocessor.controller.io;
+
+import imageprocessor.model.Raster;
+import imageprocessor.model.TileCache;
+import imageprocessor.model.TiledImage;
+
+/**
+ * RasterSink, receives the pixels of an image being decoded, band of rows after band of rows from
+ * the top, and makes the decoded image out of them. A decoder only holds one band at a time, thus
+ * the sink decides how much memory decoding takes: a single band of the whole image for a Raster,
+ * one tile at a time for a TiledImage.
+ *
+ * @param <T> the type of the decoded image.
+ */
+interface RasterSink<T> {
+
+  /**
+   * Starts the image, once its size is known.
+   *
+   * @param width  int represents the width of the image.
+   * @param height int represents the height of the image.
+   * @return an int representing the number of rows of every band but the last one, positive.
+   */
+  int begin(int width, int height);
+
+  /**
+   * Takes the next band of rows of the image.
+   *
+   * @param band Raster represents the rows of the band, handed over to this sink.
+   */
+  void accept(Raster band);
+
+  /**
+   * Ends the image, once every band was given.
+   *
+   * @return the decoded image.
+   */
+  T end();
+
+  /**
+   * Drops the image, because it could not be decoded.
+   */
+  default void abort() {
+  }
+
+  /**
+   * Gets a sink making a Raster out of a single band of the whole image.
+   *
+   * @return a new RasterSink of a Raster.
+   */
+  static RasterSink<Raster> raster() {
+    return new RasterSink<>() {
+      private Raster result;
+
+      @Override
+      public int begin(int width, int height) {
+        this.result = new Raster(width, 0, new int[0]);
+        return Math.max(1, height);
+      }
+
+      @Override
+      public void accept(Raster band) {
+        this.result = band;
+      }
+
+      @Override
+      public Raster end() {
+        return this.result;
+      }
+    };
+  }
+
+  /**
+   * Gets a sink making a TiledImage out of bands of one tile each.
+   *
+   * @param cache TileCache represents the cache of the image.
+   * @return a new RasterSink of a TiledImage.
+   */
+  static RasterSink<TiledImage> tiled(TileCache cache) {
+    return new RasterSink<>() {
+      private TiledImage result;
+      private int tile;
+
+      @Override
+      public int begin(int width, int height) {
+        this.result = new TiledImage(width, height, cache);
+        return this.result.getTileHeight();
+      }
+
+      @Override
+      public void accept(Raster band) {
+        this.result.setTile(this.tile++, band);
+      }
+
+      @Override
+      public TiledImage end() {
+        return this.result;
+      }
+
+      @Override
+      public void abort() {
+        if (this.result != null) {
+          this.result.close();
+        }
+      }
+    };
+  }
+}
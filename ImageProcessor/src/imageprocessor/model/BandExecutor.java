@@ -0,0 +1,249 @@
+package imageprocessor.model;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * BandExecutor, the execution engine that the model uses to run an operation over the rows of an
+ * image. The rows of the image are split into bands of consecutive rows, and the bands are run on
+ * a ForkJoinPool, each band on its own, so that an operation uses every core of the machine
+ * instead of walking the whole image on a single thread.
+ * An operation given to this executor computes the output rows of the band it is given, and
+ * only writes to those rows. It may read any row of its source image though: a convolution kernel
+ * reads a halo of rows above and below its band (half the size of the kernel). Since the images of
+ * the history are immutable rasters that are fully resident, the halo is read straight from the
+ * source raster, and no halo has to be copied or exchanged between bands. Every output pixel is
+ * thus computed by the exact same code, from the exact same inputs, as in the serial path, which
+ * makes the results bit-identical no matter how the image was split.
+ * An operation can be monitored (see monitor): every band that is done is reported to the
+ * Monitor, and the bands that did not start yet are skipped once the Monitor is cancelled, in
+ * which case the operation throws a CancellationException. A monitored operation is always split
+ * in bands, even on a serial executor, so that it can be cancelled in the middle.
+ * Invariants:
+ * the minimum number of pixels per band is always positive. A null pool means that the bands
+ * are run one after the other on the calling thread.
+ */
+public final class BandExecutor {
+  private static final int DEFAULT_PIXELS_PER_BAND = 1 << 16;
+
+  // The monitor of the operations run by each thread, see monitor.
+  private static final ThreadLocal<Monitor> MONITOR = new ThreadLocal<>();
+
+  private final ForkJoinPool pool;
+  private final int minPixelsPerBand;
+
+  /**
+   * Function object representing the work to be done on a band of rows of an image.
+   */
+  public interface BandTask {
+
+    /**
+     * Computes the output rows from startRow (inclusive) to endRow (exclusive).
+     *
+     * @param startRow int represents the first row of the band.
+     * @param endRow   int represents the row right after the last row of the band.
+     */
+    void run(int startRow, int endRow);
+  }
+
+  /**
+   * Observer of the operations run by a thread, e.g. to show their progress and let the user
+   * cancel them. Its methods may be called from any thread.
+   */
+  public interface Monitor {
+
+    /**
+     * Reports that a band of an operation is done.
+     *
+     * @param done  int represents the number of bands of the operation that are done.
+     * @param total int represents the number of bands of the operation.
+     */
+    void bandDone(int done, int total);
+
+    /**
+     * Tells whether the operations should stop, the bands that did not start yet are skipped.
+     *
+     * @return true if the operations are cancelled, false otherwise.
+     */
+    boolean isCancelled();
+  }
+
+  /**
+   * Constructs a BandExecutor that runs its bands on the given pool. An image is only split when
+   * it is large enough for every band to have at least the given number of pixels, because small
+   * bands cost more to schedule than they save.
+   *
+   * @param pool             ForkJoinPool represents the pool the bands are run on, or null to run
+   *                         every band on the calling thread.
+   * @param minPixelsPerBand int represents the minimum number of pixels of a band.
+   * @throws IllegalArgumentException if the given minimum number of pixels is not positive.
+   */
+  public BandExecutor(ForkJoinPool pool, int minPixelsPerBand) throws IllegalArgumentException {
+    if (minPixelsPerBand <= 0) {
+      throw new IllegalArgumentException("a band must have at least one pixel!");
+    }
+    this.pool = pool;
+    this.minPixelsPerBand = minPixelsPerBand;
+  }
+
+  /**
+   * Returns a BandExecutor that runs every operation on the calling thread.
+   *
+   * @return a serial BandExecutor.
+   */
+  public static BandExecutor serial() {
+    return new BandExecutor(null, DEFAULT_PIXELS_PER_BAND);
+  }
+
+  /**
+   * Returns a BandExecutor that runs the bands of an operation on the common ForkJoinPool.
+   *
+   * @return a parallel BandExecutor using the common pool.
+   */
+  public static BandExecutor common() {
+    return new BandExecutor(ForkJoinPool.commonPool(), DEFAULT_PIXELS_PER_BAND);
+  }
+
+  /**
+   * Returns a BandExecutor that runs the bands of an operation on a new ForkJoinPool with the
+   * given number of threads.
+   *
+   * @param threads int represents the number of threads of the pool.
+   * @return a parallel BandExecutor using its own pool.
+   * @throws IllegalArgumentException if the given number of threads is not positive.
+   */
+  public static BandExecutor withThreads(int threads) throws IllegalArgumentException {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("number of threads must be positive!");
+    }
+    if (threads == 1) {
+      return serial();
+    }
+    return new BandExecutor(new ForkJoinPool(threads), DEFAULT_PIXELS_PER_BAND);
+  }
+
+  /**
+   * Runs the given action on the calling thread, with every operation it runs on a BandExecutor
+   * (from the calling thread) reported to the given monitor.
+   *
+   * @param monitor Monitor represents the monitor of the operations.
+   * @param action  Runnable represents the action to be run.
+   * @throws CancellationException if the monitor was cancelled while an operation was running.
+   */
+  public static void monitor(Monitor monitor, Runnable action) throws CancellationException {
+    Monitor outer = MONITOR.get();
+    MONITOR.set(monitor);
+    try {
+      action.run();
+    } finally {
+      MONITOR.set(outer);
+    }
+  }
+
+  /**
+   * Gets the number of bands that this executor can run at the same time.
+   *
+   * @return an int representing the parallelism of this executor, 1 if it is serial.
+   */
+  public int getParallelism() {
+    return this.pool == null ? 1 : this.pool.getParallelism();
+  }
+
+  /**
+   * Runs the given task over all the rows of an image of the given dimensions, split in bands.
+   * This method only returns once every band is done. If a band throws an exception, the first
+   * exception thrown is rethrown as is, once the other bands are done.
+   *
+   * @param width  int represents the width of the image, used to size the bands.
+   * @param height int represents the number of rows of the image.
+   * @param task   BandTask represents the work to be done on each band.
+   * @throws RuntimeException the first exception thrown by the task, if any, or a
+   *                          CancellationException if the monitor of this thread was cancelled.
+   */
+  public void forEachBand(int width, int height, BandTask task) {
+    int rowsPerBand = this.rowsPerBand(width, height);
+    Monitor monitor = MONITOR.get();
+    if (monitor != null) {
+      task = this.monitored(task, monitor, (height + rowsPerBand - 1) / rowsPerBand);
+      if (this.pool == null) {
+        for (int start = 0; start < height; start += rowsPerBand) {
+          task.run(start, Math.min(height, start + rowsPerBand));
+        }
+        return;
+      }
+    }
+    if (this.pool == null || rowsPerBand >= height) {
+      task.run(0, height);
+      return;
+    }
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    BandAction action = new BandAction(task, 0, height, rowsPerBand, failure);
+    if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == this.pool) {
+      action.invoke();
+    } else {
+      this.pool.invoke(action);
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  // Wraps the given task so that it reports its bands to the given monitor, and throws instead
+  // of running them once the monitor is cancelled.
+  private BandTask monitored(BandTask task, Monitor monitor, int bands) {
+    AtomicInteger done = new AtomicInteger();
+    return (start, end) -> {
+      if (monitor.isCancelled()) {
+        throw new CancellationException("operation cancelled!");
+      }
+      task.run(start, end);
+      monitor.bandDone(done.incrementAndGet(), bands);
+    };
+  }
+
+  // Determines the number of rows of a band: enough rows to reach the minimum number of pixels,
+  // but small enough to have a few bands per thread, so that a slow band does not hold the others.
+  private int rowsPerBand(int width, int height) {
+    int minRows = Math.max(1, this.minPixelsPerBand / Math.max(1, width));
+    int bands = Math.max(1, this.getParallelism() * 4);
+    return Math.max(minRows, (height + bands - 1) / bands);
+  }
+
+  // Recursively splits a range of rows in halves until it is no larger than a band, then runs it.
+  private static final class BandAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final BandTask task;
+    private final int startRow;
+    private final int endRow;
+    private final int rowsPerBand;
+    private final AtomicReference<RuntimeException> failure;
+
+    private BandAction(BandTask task, int startRow, int endRow, int rowsPerBand,
+                       AtomicReference<RuntimeException> failure) {
+      this.task = task;
+      this.startRow = startRow;
+      this.endRow = endRow;
+      this.rowsPerBand = rowsPerBand;
+      this.failure = failure;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.endRow - this.startRow <= this.rowsPerBand) {
+        try {
+          this.task.run(this.startRow, this.endRow);
+        } catch (RuntimeException e) {
+          this.failure.compareAndSet(null, e);
+        }
+        return;
+      }
+      int middle = (this.startRow + this.endRow) >>> 1;
+      invokeAll(new BandAction(this.task, this.startRow, middle, this.rowsPerBand, this.failure),
+              new BandAction(this.task, middle, this.endRow, this.rowsPerBand, this.failure));
+    }
+  }
+}
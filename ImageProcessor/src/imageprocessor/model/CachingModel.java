@@ -0,0 +1,333 @@
+package imageprocessor.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import imageprocessor.Pixel;
+
+/**
+ * CachingModel, an EnhancedModel that memoizes the operations of another EnhancedModel (the
+ * delegate) in a ResultCache, so that an operation that was already run on the same pixels is
+ * not run again: its result is taken from the cache and added to the history of the delegate
+ * under the new name.
+ * Every image of the history has a digest, standing for its content: the digest of an image
+ * that was added to the history (e.g. loaded) is the SHA-256 of its pixels, computed when it is
+ * first needed, and the digest of the result of an operation is the SHA-256 of the name of the
+ * operation, its parameters, and the digest of the image it was applied on. The digest of a
+ * result is thus known without computing it, and the same image loaded again, in this session or
+ * in a later one, leads to the same digests for the same operations. Since the operations are
+ * deterministic, the digest of a result is the key it is cached under.
+ * Filters, convolutions, downscales and resizes are cached as soon as they are run. Point
+ * operations (visualize, brighten/darken, color transforms) are cached when their result is first
+ * read, so that the pipelining of the delegate (see EnhancedModelImpl) still skips the images
+ * that are never read. Flips are never cached, they cost nothing, but their digest is still
+ * derived so that the operations on a flipped image can be cached.
+ * The delegate must only be used through this model, and its operations must only write their
+ * destination image, which is why a MaskedImageModel, which also writes the mask of the image,
+ * cannot be cached.
+ * This model is thread-safe if its delegate is.
+ */
+public class CachingModel implements EnhancedModel {
+  private final EnhancedModel delegate;
+  private final ResultCache cache;
+  // Tells apart the results of different kinds of delegates in a shared disk tier.
+  private final String namespace;
+  // The digests of the images whose digest is known, guarded by the lock of this map.
+  private final Map<String, String> digests = new HashMap<>();
+  // The images whose digest is the key of a result that is not cached yet, guarded by the lock of
+  // the digests.
+  private final Set<String> uncached = new HashSet<>();
+
+  /**
+   * Constructs a CachingModel memoizing the operations of the given model in the given cache.
+   *
+   * @param delegate EnhancedModel represents the model running the operations.
+   * @param cache    ResultCache represents the cache of the results.
+   * @throws IllegalArgumentException if any of the given arguments is null, or the given model
+   *                                  is a MaskedImageModel.
+   */
+  public CachingModel(EnhancedModel delegate, ResultCache cache)
+          throws IllegalArgumentException {
+    if (delegate == null || cache == null || delegate instanceof MaskedImageModel) {
+      throw new IllegalArgumentException("invalid model or cache given!");
+    }
+    this.delegate = delegate;
+    this.cache = cache;
+    this.namespace = delegate.getClass().getName();
+  }
+
+  /**
+   * Gets the ResultCache of this model, e.g. to read its counters.
+   *
+   * @return the ResultCache of this model.
+   */
+  public ResultCache getCache() {
+    return this.cache;
+  }
+
+  @Override
+  public void addToHistory(List<List<Pixel>> pixels, String destName) {
+    this.delegate.addToHistory(pixels, destName);
+    this.setDigest(destName, null, false);
+  }
+
+  @Override
+  public void addRasterToHistory(Raster raster, String destName) {
+    this.delegate.addRasterToHistory(raster, destName);
+    this.setDigest(destName, null, false);
+  }
+
+  @Override
+  public void flip(boolean horizontalHuh, String imageName, String destName)
+          throws IllegalArgumentException {
+    String key = this.key("flip", String.valueOf(horizontalHuh), imageName);
+    this.delegate.flip(horizontalHuh, imageName, destName);
+    this.setDigest(destName, key, false);
+  }
+
+  @Override
+  public void visualizeComponent(String component, String imageName, String destName)
+          throws IllegalArgumentException {
+    String key = this.key("visualize-component", component, imageName);
+    if (!this.link(key, destName)) {
+      this.delegate.visualizeComponent(component, imageName, destName);
+      this.setDigest(destName, key, true);
+    }
+  }
+
+  @Override
+  public void brightenOrDarkenBy(int increment, String imageName, String destName)
+          throws IllegalArgumentException {
+    String key = this.key("brighten", String.valueOf(increment), imageName);
+    if (!this.link(key, destName)) {
+      this.delegate.brightenOrDarkenBy(increment, imageName, destName);
+      this.setDigest(destName, key, true);
+    }
+  }
+
+  @Override
+  public void colorTransform(String transformMethod, String imageName, String destName)
+          throws IllegalArgumentException {
+    String key = this.key("color-transform", transformMethod, imageName);
+    if (!this.link(key, destName)) {
+      this.delegate.colorTransform(transformMethod, imageName, destName);
+      this.setDigest(destName, key, true);
+    }
+  }
+
+  @Override
+  public void colorTransform(ColorTransform transform, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (transform == null) {
+      throw new IllegalArgumentException("color transform cannot be null!");
+    }
+    // the description of a transform is exact, so equal strings are equal transforms.
+    String key = this.key("color-grading", transform.toString(), imageName);
+    if (!this.link(key, destName)) {
+      this.delegate.colorTransform(transform, imageName, destName);
+      this.setDigest(destName, key, true);
+    }
+  }
+
+  @Override
+  public void filter(String filterMethod, String imageName, String destName)
+          throws IllegalArgumentException {
+    String key = this.key("filter", filterMethod, imageName);
+    if (!this.link(key, destName)) {
+      this.delegate.filter(filterMethod, imageName, destName);
+      this.cacheResult(key, destName);
+    }
+  }
+
+  @Override
+  public void downscaleImage(String imageName, String destName, int height, int width)
+          throws IllegalArgumentException {
+    String key = this.key("downscale", height + "x" + width, imageName);
+    if (!this.link(key, destName)) {
+      this.delegate.downscaleImage(imageName, destName, height, width);
+      this.cacheResult(key, destName);
+    }
+  }
+
+  @Override
+  public void resize(String imageName, String destName, int height, int width,
+                     Resampler.Filter filter) throws IllegalArgumentException {
+    if (filter == null) {
+      throw new IllegalArgumentException("resampling filter cannot be null!");
+    }
+    String key = this.key("resize", filter + " " + height + "x" + width, imageName);
+    if (!this.link(key, destName)) {
+      this.delegate.resize(imageName, destName, height, width, filter);
+      this.cacheResult(key, destName);
+    }
+  }
+
+  @Override
+  public void convolve(double[][] kernel, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (kernel == null) {
+      throw new IllegalArgumentException("kernel cannot be null!");
+    }
+    // Double.toString gives back the exact double, so equal strings are equal kernels.
+    String key = this.key("convolve", Arrays.deepToString(kernel), imageName);
+    if (!this.link(key, destName)) {
+      this.delegate.convolve(kernel, imageName, destName);
+      this.cacheResult(key, destName);
+    }
+  }
+
+  @Override
+  public int getDepth() {
+    return this.delegate.getDepth();
+  }
+
+  @Override
+  public List<List<Pixel>> getPixelsFromHistory(String imageName)
+          throws IllegalArgumentException {
+    return this.getRasterFromHistory(imageName).toPixels();
+  }
+
+  @Override
+  public Raster getRasterFromHistory(String imageName) throws IllegalArgumentException {
+    Raster result = this.delegate.getRasterFromHistory(imageName);
+    String key = null;
+    synchronized (this.digests) {
+      if (this.uncached.remove(imageName)) {
+        key = this.digests.get(imageName);
+      }
+    }
+    if (key != null) {
+      this.cache.put(key, result);
+    }
+    return result;
+  }
+
+  @Override
+  public BandExecutor getExecutor() {
+    return this.delegate.getExecutor();
+  }
+
+  @Override
+  public Histogram getHistogram(String imageName) throws IllegalArgumentException {
+    return this.delegate.getHistogram(imageName);
+  }
+
+  /**
+   * Adds the cached result with the given key, if there is one, to the history of the delegate
+   * under the given name.
+   *
+   * @param key      String represents the key of the result.
+   * @param destName String represents the desired name of the result.
+   * @return true if the result was cached, false if the operation must be run.
+   */
+  private boolean link(String key, String destName) {
+    Raster cached = this.cache.get(key);
+    if (cached == null) {
+      return false;
+    }
+    this.delegate.addRasterToHistory(cached, destName);
+    this.setDigest(destName, key, false);
+    return true;
+  }
+
+  // Caches the image with the given name, which was just computed, as the result with the given
+  // key.
+  private void cacheResult(String key, String destName) {
+    this.setDigest(destName, key, false);
+    this.cache.put(key, this.delegate.getRasterFromHistory(destName));
+  }
+
+  // Sets the digest of the image with the given name, null if it is not known yet, and whether
+  // that image is a result that is not cached yet.
+  private void setDigest(String imageName, String digest, boolean uncached) {
+    synchronized (this.digests) {
+      if (digest == null) {
+        this.digests.remove(imageName);
+      } else {
+        this.digests.put(imageName, digest);
+      }
+      if (uncached) {
+        this.uncached.add(imageName);
+      } else {
+        this.uncached.remove(imageName);
+      }
+    }
+  }
+
+  /**
+   * Computes the key of the result of the given operation on the image with the given name.
+   *
+   * @param operation  String represents the name of the operation.
+   * @param parameters String represents the parameters of the operation.
+   * @param imageName  String represents the name of the image the operation is applied on.
+   * @return a String representing the key of the result.
+   * @throws IllegalArgumentException if the given image name is not in the history.
+   */
+  private String key(String operation, String parameters, String imageName)
+          throws IllegalArgumentException {
+    MessageDigest sha = sha256();
+    for (String part : new String[]{this.namespace, operation, parameters,
+        this.digest(imageName)}) {
+      sha.update(part.getBytes(StandardCharsets.UTF_8));
+      sha.update((byte) 0);
+    }
+    return hex(sha.digest());
+  }
+
+  // Gets the digest of the image with the given name, hashing its pixels if it is not known.
+  private String digest(String imageName) throws IllegalArgumentException {
+    synchronized (this.digests) {
+      String digest = this.digests.get(imageName);
+      if (digest != null) {
+        return digest;
+      }
+    }
+    Raster raster = this.delegate.getRasterFromHistory(imageName);
+    MessageDigest sha = sha256();
+    ByteBuffer bytes = ByteBuffer.allocate(4 * Math.max(2, raster.getWidth()));
+    bytes.putInt(raster.getWidth()).putInt(raster.getHeight()).flip();
+    sha.update(bytes);
+    int[] row = new int[raster.getWidth()];
+    for (int i = 0; i < raster.getHeight(); i++) {
+      raster.copyRow(i, row, 0);
+      bytes.clear();
+      bytes.asIntBuffer().put(row);
+      bytes.limit(4 * row.length);
+      sha.update(bytes);
+    }
+    String digest = hex(sha.digest());
+    synchronized (this.digests) {
+      // the image may have been replaced while it was being hashed.
+      if (this.delegate.getRasterFromHistory(imageName) == raster) {
+        this.digests.put(imageName, digest);
+      }
+    }
+    return digest;
+  }
+
+  // Gets a new SHA-256 MessageDigest, which every Java platform provides.
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available!");
+    }
+  }
+
+  // Converts the given bytes to lowercase hexadecimal digits.
+  private static String hex(byte[] bytes) {
+    StringBuilder result = new StringBuilder();
+    for (byte b : bytes) {
+      result.append(String.format("%02x", b));
+    }
+    return result.toString();
+  }
+}
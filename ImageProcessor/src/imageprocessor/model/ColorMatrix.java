@@ -0,0 +1,126 @@
+package imageprocessor.model;
+
+import java.util.Arrays;
+
+/**
+ * ColorMatrix, the matrix of a linear (or affine) color transformation: each component of the
+ * result is a weighted sum of the red, green and blue components of the pixel, plus an offset.
+ * A ColorMatrix is given as a 3x3 matrix (no offset), or as a 3x4 matrix whose last column is the
+ * offset, the rows being the red, green and blue components of the result. For example, the row
+ * {0.2126, 0.7152, 0.0722} computes the luma of a pixel.
+ * A ColorMatrix only holds the weights, a ColorTransform applies it on pixels. This class is
+ * immutable.
+ */
+public final class ColorMatrix {
+  /**
+   * The matrix of the sepia transformation, like Pixel.setToSepia.
+   */
+  public static final ColorMatrix SEPIA = new ColorMatrix(new double[][]{
+      {0.393, 0.769, 0.189}, {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}});
+  /**
+   * The matrix of the luma transformation, like Pixel.setToLuma: every component of the result is
+   * the luma of the pixel.
+   */
+  public static final ColorMatrix LUMA = new ColorMatrix(new double[][]{
+      {0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}});
+
+  // 3 rows of 4 weights, the last one being the offset.
+  private final double[][] weights;
+
+  /**
+   * Constructs a ColorMatrix with the given weights, which are copied.
+   *
+   * @param matrix 2d array of doubles represents the weights, 3 rows (red, green and blue) of 3
+   *               weights (applied on red, green and blue), optionally followed by an offset.
+   * @throws IllegalArgumentException if the given matrix is null, is not a 3x3 or a 3x4 matrix,
+   *                                  or any weight is not a finite number.
+   */
+  public ColorMatrix(double[][] matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.length != 3 || matrix[0] == null
+        || (matrix[0].length != 3 && matrix[0].length != 4)) {
+      throw new IllegalArgumentException("color matrix must be a 3x3 or a 3x4 matrix!");
+    }
+    this.weights = new double[3][4];
+    for (int i = 0; i < 3; i++) {
+      if (matrix[i] == null || matrix[i].length != matrix[0].length) {
+        throw new IllegalArgumentException("color matrix must be a 3x3 or a 3x4 matrix!");
+      }
+      for (int j = 0; j < matrix[i].length; j++) {
+        if (!Double.isFinite(matrix[i][j])) {
+          throw new IllegalArgumentException("color matrix weights must be finite numbers!");
+        }
+        this.weights[i][j] = matrix[i][j];
+      }
+    }
+  }
+
+  /**
+   * Gets the weight at the given row and column of this matrix.
+   *
+   * @param row int represents the component of the result, 0 (red), 1 (green) or 2 (blue).
+   * @param col int represents the component it is applied on, 0 (red), 1 (green) or 2 (blue),
+   *            or 3 for the offset.
+   * @return a double representing the weight.
+   * @throws IllegalArgumentException if the given row or column is out of bounds.
+   */
+  public double get(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row > 2 || col < 0 || col > 3) {
+      throw new IllegalArgumentException("invalid row or column of a color matrix!");
+    }
+    return this.weights[row][col];
+  }
+
+  /**
+   * Tells whether the three rows of this matrix are the same, that is, whether it turns every
+   * pixel into a grey.
+   *
+   * @return true if this matrix gives grey pixels, false otherwise.
+   */
+  public boolean isGrey() {
+    return Arrays.equals(this.weights[0], this.weights[1])
+        && Arrays.equals(this.weights[1], this.weights[2]);
+  }
+
+  /**
+   * Composes this matrix with the given one: the result is the single matrix applying this one,
+   * then the given one (their product). Unlike chaining two ColorTransforms, nothing is truncated
+   * nor clamped between the two matrices, which is usually what a grading pipeline wants, but may
+   * give slightly different pixels than applying the two transformations one after the other.
+   *
+   * @param after ColorMatrix represents the matrix applied after this one.
+   * @return a new ColorMatrix applying both matrices at once.
+   * @throws IllegalArgumentException if the given matrix is null.
+   */
+  public ColorMatrix then(ColorMatrix after) throws IllegalArgumentException {
+    if (after == null) {
+      throw new IllegalArgumentException("color matrix cannot be null!");
+    }
+    double[][] product = new double[3][4];
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 4; j++) {
+        double sum = j == 3 ? after.weights[i][3] : 0;
+        for (int k = 0; k < 3; k++) {
+          sum += after.weights[i][k] * this.weights[k][j];
+        }
+        product[i][j] = sum;
+      }
+    }
+    return new ColorMatrix(product);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof ColorMatrix
+        && Arrays.deepEquals(this.weights, ((ColorMatrix) other).weights);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.deepHashCode(this.weights);
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.deepToString(this.weights);
+  }
+}
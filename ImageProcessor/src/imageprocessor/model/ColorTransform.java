@@ -0,0 +1,352 @@
+package imageprocessor.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ColorTransform, a color transformation of 8-bit pixels computed with lookup tables: a chain of
+ * stages, each stage being either a ColorMatrix followed by a clamping of each component between
+ * 0 and 255, or a lookup table per component (such as a gamma correction).
+ * The matrix of a stage is turned into tables of products: for each component of the result and
+ * each component of the pixel, the table holds the weight times every possible value (0 to 255).
+ * Each component of the result is then three lookups and three additions, done in the same order
+ * as Pixel does them, thus the result is exactly the one of the double arithmetic of Pixel
+ * (truncated, then clamped). The clamped value is looked up again, in a table of 256 values that
+ * holds the lookup tables following the matrix, if any.
+ * Chaining transforms (then) composes their tables before any pixel is transformed, as long as
+ * the result stays exact: lookup tables are folded into the products of the next matrix, or into
+ * the clamping table of the previous one, and a matrix following a matrix that gives grey pixels
+ * (e.g. luma) is folded entirely into the clamping table of the first, since its result only
+ * depends on that grey. The other chains of matrices are kept as several stages, all applied in a
+ * single pass over the pixels; to merge two matrices regardless of the truncation between them,
+ * compose them first with ColorMatrix.then.
+ * A ColorTransform is a PointKernel, which keeps the alpha of every pixel, and composing it with
+ * another ColorTransform (andThen) chains them. This class is immutable, thus thread-safe.
+ */
+public final class ColorTransform implements PointKernel {
+  private static final int ALPHA = 0xff000000;
+  private static final int[] IDENTITY = new int[256];
+
+  static {
+    for (int v = 0; v < 256; v++) {
+      IDENTITY[v] = v;
+    }
+  }
+
+  /**
+   * The sepia transformation, like Pixel.setToSepia.
+   */
+  public static final ColorTransform SEPIA = of(ColorMatrix.SEPIA);
+  /**
+   * The luma transformation, like Pixel.setToLuma.
+   */
+  public static final ColorTransform LUMA = of(ColorMatrix.LUMA);
+
+  private final Stage[] stages;
+  // How this transform was built, exact, e.g. for the keys of a ResultCache.
+  private final String description;
+
+  // A stage of a transform. The tables are never modified once the stage is built.
+  private static final class Stage {
+    // products[c][k][v] is the weight of component k in component c of the result, times v
+    // mapped by the lookup tables preceding this stage; null for a stage of lookup tables only.
+    private final double[][][] products;
+    private final double[] offsets;
+    // Whether the three rows of products and offsets are the same.
+    private final boolean grey;
+    // lookups[c][v] is component c of the result, given the clamped sum v (or the component v of
+    // the pixel for a stage of lookup tables only).
+    private final int[][] lookups;
+
+    private Stage(double[][][] products, double[] offsets, boolean grey, int[][] lookups) {
+      this.products = products;
+      this.offsets = offsets;
+      this.grey = grey;
+      this.lookups = lookups;
+    }
+
+    // Applies this stage on the given packed pixel, whose alpha is ignored.
+    private int apply(int rgb) {
+      int r = (rgb >> 16) & 0xff;
+      int g = (rgb >> 8) & 0xff;
+      int b = rgb & 0xff;
+      int[][] lookups = this.lookups;
+      if (this.products == null) {
+        return lookups[0][r] << 16 | lookups[1][g] << 8 | lookups[2][b];
+      }
+      int red = this.sum(0, r, g, b);
+      if (this.grey) {
+        return lookups[0][red] << 16 | lookups[1][red] << 8 | lookups[2][red];
+      }
+      return lookups[0][red] << 16 | lookups[1][this.sum(1, r, g, b)] << 8
+          | lookups[2][this.sum(2, r, g, b)];
+    }
+
+    // Computes component c of the matrix of this stage, truncated and clamped between 0 and 255.
+    private int sum(int c, int r, int g, int b) {
+      double[][] row = this.products[c];
+      return clamp((int) (row[0][r] + row[1][g] + row[2][b] + this.offsets[c]));
+    }
+
+    // Applies this stage, a matrix whose rows differ, on the given pixels, keeping their alpha.
+    // This is apply with every table in a local variable, the loop of most transforms.
+    private void applyMatrix(int[] pixels, int from, int to) {
+      double[] rr = this.products[0][0];
+      double[] rg = this.products[0][1];
+      double[] rb = this.products[0][2];
+      double[] gr = this.products[1][0];
+      double[] gg = this.products[1][1];
+      double[] gb = this.products[1][2];
+      double[] br = this.products[2][0];
+      double[] bg = this.products[2][1];
+      double[] bb = this.products[2][2];
+      double redOffset = this.offsets[0];
+      double greenOffset = this.offsets[1];
+      double blueOffset = this.offsets[2];
+      int[] red = this.lookups[0];
+      int[] green = this.lookups[1];
+      int[] blue = this.lookups[2];
+      if (red == IDENTITY && green == IDENTITY && blue == IDENTITY) {
+        for (int j = from; j < to; j++) {
+          int argb = pixels[j];
+          int r = (argb >> 16) & 0xff;
+          int g = (argb >> 8) & 0xff;
+          int b = argb & 0xff;
+          pixels[j] = argb & ALPHA
+              | clamp((int) (rr[r] + rg[g] + rb[b] + redOffset)) << 16
+              | clamp((int) (gr[r] + gg[g] + gb[b] + greenOffset)) << 8
+              | clamp((int) (br[r] + bg[g] + bb[b] + blueOffset));
+        }
+        return;
+      }
+      for (int j = from; j < to; j++) {
+        int argb = pixels[j];
+        int r = (argb >> 16) & 0xff;
+        int g = (argb >> 8) & 0xff;
+        int b = argb & 0xff;
+        pixels[j] = argb & ALPHA
+            | red[clamp((int) (rr[r] + rg[g] + rb[b] + redOffset))] << 16
+            | green[clamp((int) (gr[r] + gg[g] + gb[b] + greenOffset))] << 8
+            | blue[clamp((int) (br[r] + bg[g] + bb[b] + blueOffset))];
+      }
+    }
+
+    // Keeps the given value between 0 and 255.
+    private static int clamp(int value) {
+      return Math.max(0, Math.min(255, value));
+    }
+
+    /**
+     * Fuses this stage with the given next stage, if the fused stage gives exactly the same
+     * pixels as the two of them.
+     *
+     * @param next Stage represents the stage applied after this one.
+     * @return the fused Stage, or null if the two stages cannot be fused.
+     */
+    private Stage fuse(Stage next) {
+      int[][] lookups = new int[3][256];
+      if (next.products == null) {
+        for (int c = 0; c < 3; c++) {
+          for (int v = 0; v < 256; v++) {
+            lookups[c][v] = next.lookups[c][this.lookups[c][v]];
+          }
+        }
+        return new Stage(this.products, this.offsets, this.grey, lookups);
+      }
+      if (this.products == null) {
+        double[][][] products = new double[3][3][256];
+        for (int c = 0; c < 3; c++) {
+          for (int k = 0; k < 3; k++) {
+            for (int v = 0; v < 256; v++) {
+              products[c][k][v] = next.products[c][k][this.lookups[k][v]];
+            }
+          }
+        }
+        return new Stage(products, next.offsets, next.grey, next.lookups);
+      }
+      if (this.grey) {
+        for (int v = 0; v < 256; v++) {
+          int rgb = next.apply(this.lookups[0][v] << 16 | this.lookups[1][v] << 8
+              | this.lookups[2][v]);
+          lookups[0][v] = (rgb >> 16) & 0xff;
+          lookups[1][v] = (rgb >> 8) & 0xff;
+          lookups[2][v] = rgb & 0xff;
+        }
+        return new Stage(this.products, this.offsets, true, lookups);
+      }
+      return null;
+    }
+  }
+
+  private ColorTransform(Stage[] stages, String description) {
+    this.stages = stages;
+    this.description = description;
+  }
+
+  /**
+   * Gets the transform applying the given matrix on every pixel, each component of the result
+   * being truncated, then clamped between 0 and 255.
+   *
+   * @param matrix ColorMatrix represents the matrix to be applied.
+   * @return a ColorTransform applying the given matrix.
+   * @throws IllegalArgumentException if the given matrix is null.
+   */
+  public static ColorTransform of(ColorMatrix matrix) throws IllegalArgumentException {
+    if (matrix == null) {
+      throw new IllegalArgumentException("color matrix cannot be null!");
+    }
+    double[][][] products = new double[3][][];
+    double[] offsets = new double[3];
+    for (int c = 0; c < 3; c++) {
+      offsets[c] = matrix.get(c, 3);
+      if (c > 0 && matrix.isGrey()) {
+        products[c] = products[0];
+        continue;
+      }
+      products[c] = new double[3][256];
+      for (int k = 0; k < 3; k++) {
+        for (int v = 0; v < 256; v++) {
+          products[c][k][v] = matrix.get(c, k) * (double) v;
+        }
+      }
+    }
+    return new ColorTransform(new Stage[]{new Stage(products, offsets, matrix.isGrey(),
+        new int[][]{IDENTITY, IDENTITY, IDENTITY})}, "matrix" + matrix);
+  }
+
+  /**
+   * Gets the transform mapping each component of every pixel with the given lookup tables.
+   *
+   * @param red   array of ints represents the new red for every red (0 to 255).
+   * @param green array of ints represents the new green for every green (0 to 255).
+   * @param blue  array of ints represents the new blue for every blue (0 to 255).
+   * @return a ColorTransform applying the given lookup tables, which are copied.
+   * @throws IllegalArgumentException if any of the given tables is null, does not have 256
+   *                                  values, or has a value that is not between 0 and 255.
+   */
+  public static ColorTransform lookup(int[] red, int[] green, int[] blue)
+          throws IllegalArgumentException {
+    int[][] lookups = new int[][]{red, green, blue};
+    for (int c = 0; c < 3; c++) {
+      if (lookups[c] == null || lookups[c].length != 256) {
+        throw new IllegalArgumentException("lookup tables must have 256 values!");
+      }
+      lookups[c] = lookups[c].clone();
+      for (int value : lookups[c]) {
+        if (value < 0 || value > 255) {
+          throw new IllegalArgumentException("lookup values must be between 0 and 255!");
+        }
+      }
+    }
+    return new ColorTransform(new Stage[]{new Stage(null, null, false, lookups)},
+        "lookup" + Arrays.deepToString(lookups));
+  }
+
+  /**
+   * Gets the gamma correction with the given gamma: each component v becomes
+   * 255 * (v / 255)^(1 / gamma), rounded. A gamma greater than 1 brightens the mid-tones, a gamma
+   * less than 1 darkens them, black and white are unchanged.
+   *
+   * @param gamma double represents the gamma, a positive number.
+   * @return a ColorTransform correcting the gamma of every pixel.
+   * @throws IllegalArgumentException if the given gamma is not a positive finite number.
+   */
+  public static ColorTransform gamma(double gamma) throws IllegalArgumentException {
+    if (!(gamma > 0) || Double.isInfinite(gamma)) {
+      throw new IllegalArgumentException("gamma must be a positive number!");
+    }
+    int[] lookup = new int[256];
+    for (int v = 0; v < 256; v++) {
+      lookup[v] = (int) Math.round(255 * Math.pow(v / 255.0, 1 / gamma));
+    }
+    return new ColorTransform(lookup(lookup, lookup, lookup).stages, "gamma" + gamma);
+  }
+
+  /**
+   * Chains this transform with the given one, which is applied on the result of this one. The
+   * tables of the two transforms are composed when it is exact, see the class documentation.
+   *
+   * @param after ColorTransform represents the transform applied after this one.
+   * @return a ColorTransform applying this transform, then the given one.
+   * @throws IllegalArgumentException if the given transform is null.
+   */
+  public ColorTransform then(ColorTransform after) throws IllegalArgumentException {
+    if (after == null) {
+      throw new IllegalArgumentException("color transform cannot be null!");
+    }
+    List<Stage> stages = new ArrayList<>(Arrays.asList(this.stages));
+    for (Stage next : after.stages) {
+      Stage fused = stages.get(stages.size() - 1).fuse(next);
+      if (fused == null) {
+        stages.add(next);
+      } else {
+        stages.set(stages.size() - 1, fused);
+      }
+    }
+    return new ColorTransform(stages.toArray(new Stage[0]),
+        this.description + " then " + after.description);
+  }
+
+  /**
+   * Gets the number of stages of this transform, that is, the number of passes through lookup
+   * tables per pixel once the chain is composed.
+   *
+   * @return an int representing the number of stages of this transform.
+   */
+  public int getStages() {
+    return this.stages.length;
+  }
+
+  /**
+   * Transforms the given packed pixel, keeping its alpha.
+   *
+   * @param argb int represents a packed pixel, as stored in a Raster.
+   * @return an int representing the transformed packed pixel.
+   */
+  public int transformARGB(int argb) {
+    int rgb = argb;
+    for (Stage stage : this.stages) {
+      rgb = stage.apply(rgb);
+    }
+    return argb & ALPHA | rgb;
+  }
+
+  @Override
+  public void apply(int[] pixels, int from, int to) {
+    if (this.stages.length == 1 && this.stages[0].products != null && !this.stages[0].grey) {
+      this.stages[0].applyMatrix(pixels, from, to);
+      return;
+    }
+    if (this.stages.length == 1) {
+      Stage stage = this.stages[0];
+      for (int j = from; j < to; j++) {
+        int argb = pixels[j];
+        pixels[j] = argb & ALPHA | stage.apply(argb);
+      }
+      return;
+    }
+    for (int j = from; j < to; j++) {
+      pixels[j] = this.transformARGB(pixels[j]);
+    }
+  }
+
+  @Override
+  public PointKernel andThen(PointKernel after) {
+    if (after instanceof ColorTransform) {
+      return this.then((ColorTransform) after);
+    }
+    return PointKernel.super.andThen(after);
+  }
+
+  /**
+   * Gets how this transform was built: its matrices and lookup tables, in the order they are
+   * applied. Two transforms with the same description give the same pixels.
+   *
+   * @return a String describing this transform.
+   */
+  @Override
+  public String toString() {
+    return this.description;
+  }
+}
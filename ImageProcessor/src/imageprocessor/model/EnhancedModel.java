@@ -1,10 +1,17 @@
 package imageprocessor.model;
 
+import imageprocessor.model.matrixoperations.ColorGrading;
+import imageprocessor.model.matrixoperations.Convolve;
+import imageprocessor.model.matrixoperations.Kernel;
+import imageprocessor.model.matrixoperations.Resize;
+
 /**
  * The interface for EnhancedModel. This is an extension of the
  * IModel interface. It contains all the same methods of IModel interface,
- * except it offers two new methods: colorTransform(String, String, String),
- * and filter(String, String, String.
+ * except it offers new methods: colorTransform(String, String, String),
+ * filter(String, String, String), downscaleImage(String, String, int, int),
+ * convolve(double[][], String, String), colorTransform(ColorTransform, String, String), and
+ * resize(String, String, int, int, Resampler.Filter).
  */
 public interface EnhancedModel extends IModel {
 
@@ -65,4 +72,60 @@ public interface EnhancedModel extends IModel {
    */
   void downscaleImage(String imageName, String destName, int height, int width)
           throws IllegalArgumentException;
+
+  /**
+   * Applies the given kernel to an image, exactly like the filter method does with the blur and
+   * sharpen kernels: each pixel is set to the sum of its neighbourhood weighted by the kernel, the
+   * center of the kernel being aligned with the pixel, and the pixels outside of the image counting
+   * as black. The new value components are clamped between 0 and 255.
+   * The default implementation runs a Convolve operation on this model.
+   *
+   * @param kernel    2d array of doubles represents the kernel, a square matrix of odd size.
+   * @param imageName the name of the image that is to be convolved
+   * @param destName  the name that the new image will be stored under
+   * @throws IllegalArgumentException if the given kernel is not a square matrix of odd size, or
+   *                                  the given image name is not in the history of images.
+   */
+  default void convolve(double[][] kernel, String imageName, String destName)
+          throws IllegalArgumentException {
+    new Convolve(new Kernel(kernel), imageName, destName).execute(this);
+  }
+
+  /**
+   * Applies the given ColorTransform to an image, exactly like the colorTransform method does with
+   * the sepia and luma matrices, but with any color matrix, gamma correction, or chain of them.
+   * The alpha of every pixel is kept.
+   * The default implementation runs a ColorGrading operation on this model.
+   *
+   * @param transform ColorTransform represents the transformation to be applied.
+   * @param imageName the name of the image that is to be transformed
+   * @param destName  the name that the new image will be stored under
+   * @throws IllegalArgumentException if the given transform is null, or the given image name is
+   *                                  not in the history of images.
+   */
+  default void colorTransform(ColorTransform transform, String imageName, String destName)
+          throws IllegalArgumentException {
+    new ColorGrading(transform, imageName, destName).execute(this);
+  }
+
+  /**
+   * Resizes an image to the given dimensions, smaller or larger, with the given resampling filter
+   * (box, bilinear, bicubic or Lanczos-3, see Resampler), and adds the result to the history with
+   * the given destName. Unlike downscaleImage, the size may grow, and every pixel of the image
+   * contributes to the result when it shrinks.
+   * The default implementation runs a Resize operation on this model.
+   *
+   * @param imageName String represents the name of the image to be resized.
+   * @param destName  String represents the desired name of the resized image.
+   * @param height    int represents the new height of the image.
+   * @param width     int represents the new width of the image.
+   * @param filter    Resampler.Filter represents the filter used to resample the image.
+   * @throws IllegalArgumentException if the given filter is null, the width or height is not
+   *                                  positive, or the given image name is not in the history of
+   *                                  images.
+   */
+  default void resize(String imageName, String destName, int height, int width,
+                      Resampler.Filter filter) throws IllegalArgumentException {
+    new Resize(filter, imageName, destName, height, width).execute(this);
+  }
 }
@@ -3,7 +3,9 @@ package imageprocessor.model;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import imageprocessor.Pixel;
 import imageprocessor.model.matrixoperations.Blur;
@@ -12,6 +14,7 @@ import imageprocessor.model.matrixoperations.ImageMatrixOperations;
 import imageprocessor.model.matrixoperations.Luma;
 import imageprocessor.model.matrixoperations.Sepia;
 import imageprocessor.model.matrixoperations.Sharpen;
+import imageprocessor.model.matrixoperations.Transform;
 
 /**
  * The EnhancedModelImpl class. This is an extension of the Model class,
@@ -27,9 +30,40 @@ import imageprocessor.model.matrixoperations.Sharpen;
  * colorTransform methods work by taking in a String that represents the operation that the user
  * wants to execute, and passing it to a helper method that retrieves the appropriate
  * ImageMatrixOperation object from the hashmap, and using it to execute the operation.
+ * Pipelining: point operations (visualizing a component, brightening/darkening, and the color
+ * transformations), which compute each pixel from that pixel only, are not run right away.
+ * Instead, the result is recorded as a pending image: the raster it is computed from, and the
+ * operation to be applied on each of its pixels. A point operation on a pending image composes
+ * its operation with the pending one (chained ColorTransforms are composed into a single one, see
+ * ColorTransform), and flipping a pending image flips its raster. The pending image is only
+ * computed, in a single pass for the whole chain of operations, when it is read through
+ * getRasterFromHistory, i.e. when it is saved, displayed or used by a neighbourhood operation
+ * (filter, downscale). Images of a chain that are never read are never computed.
+ * Pipelining can be turned off with setPipelining, in which case every operation is run right
+ * away. Either way, the resulting pixels are exactly the same.
+ * The pending images are guarded by the lock of the pending map, which is always taken before
+ * the lock of the history, so that this model stays thread-safe. A pending image is computed
+ * without holding any lock, then stored only if it is still pending.
+ * The histogram of a pending image is derived from the histogram of its source when that one is
+ * cached (see Histogram), so that it can be displayed before the image itself is computed.
  */
 public class EnhancedModelImpl extends Model implements EnhancedModel {
   Map<String, Function<String[], ImageMatrixOperations>> matrixOperations;
+  private final Map<String, PendingImage> pending = new HashMap<>();
+  private volatile boolean pipelining = true;
+
+  // An image that has not been computed yet: the given point operation applied on every pixel of
+  // the given source raster. The result is kept once it is computed.
+  private static final class PendingImage {
+    private final Raster source;
+    private final PointKernel op;
+    private volatile Raster result;
+
+    private PendingImage(Raster source, PointKernel op) {
+      this.source = source;
+      this.op = op;
+    }
+  }
 
   /**
    * Default constructor for EnhancedModelImpl. This uses super() to initialize
@@ -43,6 +77,18 @@ public class EnhancedModelImpl extends Model implements EnhancedModel {
     initOperations();
   }
 
+  /**
+   * Constructs an EnhancedModelImpl with an empty history kept in the given HistoryStore, see
+   * Model. This constructor then calls initOperations() like the default constructor.
+   *
+   * @param store HistoryStore represents the store of the history, it should be empty.
+   * @throws IllegalArgumentException if the given store is null.
+   */
+  public EnhancedModelImpl(HistoryStore store) throws IllegalArgumentException {
+    super(store);
+    initOperations();
+  }
+
   /**
    * calls super() to construct an EnhancedModelImpl from the given 2D List of Pixels, and
    * width/height of an image. This constructor enforces all the same constraints
@@ -80,12 +126,171 @@ public class EnhancedModelImpl extends Model implements EnhancedModel {
     this.matrixOperations.put("luma", s -> (new Luma(s[0], s[1])));
   }
 
+  /**
+   * Turns the pipelining of point operations on or off, it is on by default. Images that are
+   * already pending stay pending until they are read.
+   *
+   * @param pipelining boolean represents whether point operations should be pipelined.
+   */
+  public void setPipelining(boolean pipelining) {
+    this.pipelining = pipelining;
+  }
+
+  @Override
+  public Raster getRasterFromHistory(String imageName) throws IllegalArgumentException {
+    PendingImage image;
+    synchronized (this.pending) {
+      image = this.pending.get(imageName);
+      if (image == null) {
+        return super.getRasterFromHistory(imageName);
+      }
+    }
+    Raster result = this.compute(image);
+    synchronized (this.pending) {
+      // another thread may have computed or replaced the image in the meantime.
+      if (this.pending.get(imageName) == image) {
+        this.pending.remove(imageName);
+        super.addRasterToHistory(result, imageName, this.getCachedHistogram(imageName));
+      }
+    }
+    return result;
+  }
+
+  // Computes the given pending image, or returns it if it was already computed.
+  private Raster compute(PendingImage image) {
+    Raster result = image.result;
+    if (result == null) {
+      result = this.mapPixels(image.source, image.op);
+      image.result = result;
+    }
+    return result;
+  }
+
+  @Override
+  public void addToHistory(List<List<Pixel>> pixels, String imageName) {
+    synchronized (this.pending) {
+      this.pending.remove(imageName);
+      super.addToHistory(pixels, imageName);
+    }
+  }
+
+  @Override
+  protected void addRasterToHistory(Raster raster, String imageName, Histogram histogram) {
+    synchronized (this.pending) {
+      this.pending.remove(imageName);
+      super.addRasterToHistory(raster, imageName, histogram);
+    }
+  }
+
+  @Override
+  public void flip(boolean horizontalHuh, String imageName, String destName)
+          throws IllegalArgumentException {
+    synchronized (this.pending) {
+      PendingImage image = this.pending.get(imageName);
+      if (image == null) {
+        super.flip(horizontalHuh, imageName, destName);
+        return;
+      }
+      Raster flipped = horizontalHuh ? image.source.flipHorizontal() : image.source.flipVertical();
+      Histogram histogram = this.getCachedHistogram(imageName);
+      this.removeFromHistory(destName);
+      this.pending.put(destName, new PendingImage(flipped, image.op));
+      this.setHistogram(destName, histogram);
+    }
+  }
+
+  @Override
+  public void visualizeComponent(String component, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (!this.pipelining) {
+      super.visualizeComponent(component, imageName, destName);
+      return;
+    }
+    // fails right away on an invalid component, instead of when the image is computed.
+    PixelOp op = PixelOp.of(component);
+    this.pipeline(imageName, destName, PointKernels.get().component(op),
+        (histogram, image) -> histogram.visualize(op, image, this.getExecutor()));
+  }
+
+  @Override
+  public void brightenOrDarkenBy(int increment, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (!this.pipelining) {
+      super.brightenOrDarkenBy(increment, imageName, destName);
+      return;
+    }
+    this.pipeline(imageName, destName, PointKernels.get().brighten(increment, this.getDepth()),
+        (histogram, image) -> histogram.brighten(increment, image, this.getExecutor()));
+  }
+
   @Override
   public void colorTransform(String transformMethod, String imageName, String destName)
           throws IllegalArgumentException {
+    Function<String[], ImageMatrixOperations> func = this.matrixOperations.get(transformMethod);
+    if (this.pipelining && func != null) {
+      ImageMatrixOperations op = func.apply(new String[]{imageName, destName});
+      if (op instanceof Transform) {
+        this.pipeline(imageName, destName, ((Transform) op).getKernel(),
+            (histogram, image) -> null);
+        return;
+      }
+    }
     this.helpMatrixOperations(transformMethod, imageName, destName);
   }
 
+  @Override
+  public void colorTransform(ColorTransform transform, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (!this.pipelining || transform == null) {
+      EnhancedModel.super.colorTransform(transform, imageName, destName);
+      return;
+    }
+    this.pipeline(imageName, destName, transform, (histogram, image) -> null);
+  }
+
+  /**
+   * Records the image with the given destName as the given point operation applied on the image
+   * with the given imageName. If that image is pending itself, the given operation is composed
+   * with its pending operation, so that the whole chain is computed in a single pass.
+   * If the histogram of the image with the given imageName is cached, the histogram of the result
+   * is derived from it.
+   *
+   * @param imageName String represents the name of the image the operation is applied on.
+   * @param destName  String represents the desired name of the result.
+   * @param op        PointKernel represents the point operation, on rows of packed pixels.
+   * @param derive    BiFunction represents how to derive the histogram of the result from the
+   *                  histogram of the image and the (lazily computed) result, it returns null if
+   *                  the histogram cannot be derived.
+   * @throws IllegalArgumentException if the given image name is not in the history!
+   */
+  private void pipeline(String imageName, String destName, PointKernel op,
+                        BiFunction<Histogram, Supplier<Raster>, Histogram> derive)
+          throws IllegalArgumentException {
+    Histogram source;
+    PendingImage result;
+    synchronized (this.pending) {
+      PendingImage image = this.pending.get(imageName);
+      if (image == null) {
+        result = new PendingImage(super.getRasterFromHistory(imageName), op);
+      } else {
+        result = new PendingImage(image.source, image.op.andThen(op));
+      }
+      source = this.getCachedHistogram(imageName);
+      this.removeFromHistory(destName);
+      this.pending.put(destName, result);
+    }
+    if (source == null) {
+      return;
+    }
+    // deriving may count the missing channels of the source, so it is done without any lock.
+    Histogram histogram = derive.apply(source, () -> this.compute(result));
+    synchronized (this.pending) {
+      if (this.pending.get(destName) == result) {
+        this.setHistogram(destName, histogram);
+      }
+    }
+  }
+
   @Override
   public void filter(String filterMethod, String imageName, String destName)
           throws IllegalArgumentException {
@@ -95,8 +300,8 @@ public class EnhancedModelImpl extends Model implements EnhancedModel {
   @Override
   public void downscaleImage(String imageName, String destName, int height, int width)
           throws IllegalArgumentException {
-    List<List<Pixel>> pixels = getPixelsFromHistory(imageName);
-    if (height > pixels.size() || width > pixels.get(0).size()) {
+    Raster pixels = getRasterFromHistory(imageName);
+    if (height > pixels.getHeight() || width > pixels.getWidth()) {
       throw new IllegalArgumentException("Given height and width must be" +
               " less than or equal to the image size!");
     }
@@ -0,0 +1,273 @@
+package imageprocessor.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import imageprocessor.Pixel;
+
+/**
+ * Histogram, the counts of the values (0 to 255) of the red, green, blue, intensity, luma and
+ * value components over all the pixels of an image, with the same definitions as Pixel: the
+ * intensity is the average of r, g and b (truncated), the luma is 0.2126r + 0.7152g + 0.0722b
+ * (truncated), and the value is the maximum of r, g and b.
+ * All six histograms are computed in a single pass over the image, into primitive arrays. Large
+ * images are split into bands of rows, each band counting into its own arrays, which are then
+ * added up, so that the bands can be counted by different threads.
+ * A Histogram is immutable, thus it can be cached along with the (immutable) raster it counts.
+ * The histograms of the result of some operations are derived from the histograms of their
+ * source, without counting any pixel: see brighten and visualize. A channel that an operation
+ * does not determine (e.g. the luma of a brightened image) is counted from the result the first
+ * time it is asked for.
+ * Invariants:
+ * each histogram has 256 counts, and the counts of each histogram add up to the number of pixels.
+ * image is null if and only if every channel is counted.
+ */
+public final class Histogram {
+  private static final int VALUES = 256;
+
+  /**
+   * The components that a Histogram counts.
+   */
+  public enum Channel {
+    RED, GREEN, BLUE, INTENSITY, LUMA, VALUE
+  }
+
+  // counts[channel.ordinal()][value] is the number of pixels whose channel is value, null if that
+  // channel was not counted yet. Guarded by this histogram's lock.
+  private final int[][] counts;
+  // The image counted by this histogram and the executor to count it on, used to count the
+  // missing channels, both null once every channel is counted.
+  private Supplier<Raster> image;
+  private BandExecutor executor;
+
+  // Constructs a Histogram holding the given counts, which are not copied. The channels that are
+  // null are counted from the given image when they are first asked for.
+  private Histogram(int[][] counts, Supplier<Raster> image, BandExecutor executor) {
+    this.counts = counts;
+    if (Arrays.asList(counts).contains(null)) {
+      this.image = image;
+      this.executor = executor;
+    }
+  }
+
+  /**
+   * Computes the histograms of the given raster, counting its bands of rows on the given
+   * executor.
+   *
+   * @param raster   Raster represents the image to be counted.
+   * @param executor BandExecutor represents the executor that counts the bands of rows.
+   * @return a new Histogram of the given raster.
+   * @throws IllegalArgumentException if any of the given arguments is null.
+   */
+  public static Histogram of(Raster raster, BandExecutor executor)
+          throws IllegalArgumentException {
+    if (raster == null || executor == null) {
+      throw new IllegalArgumentException("cannot count the pixels of a null image!");
+    }
+    int[][] total = new int[Channel.values().length][VALUES];
+    executor.forEachBand(raster.getWidth(), raster.getHeight(), (start, end) -> {
+      int[][] band = new int[Channel.values().length][VALUES];
+      count(raster, start, end, band);
+      synchronized (total) {
+        for (int c = 0; c < total.length; c++) {
+          for (int v = 0; v < VALUES; v++) {
+            total[c][v] += band[c][v];
+          }
+        }
+      }
+    });
+    return new Histogram(total, null, null);
+  }
+
+  /**
+   * Adds up this histogram and the given one, e.g. the histograms of two bands of rows of an
+   * image. Counts that do not fit in an int are kept at Integer.MAX_VALUE.
+   *
+   * @param other Histogram represents the histogram to be added to this one.
+   * @return a new Histogram holding the sum of the counts of both histograms.
+   */
+  Histogram plus(Histogram other) {
+    int[][] result = new int[Channel.values().length][VALUES];
+    for (Channel channel : Channel.values()) {
+      int[] mine = this.counts(channel);
+      int[] theirs = other.counts(channel);
+      for (int v = 0; v < VALUES; v++) {
+        result[channel.ordinal()][v] = (int) Math.min(Integer.MAX_VALUE,
+            (long) mine[v] + theirs[v]);
+      }
+    }
+    return new Histogram(result, null, null);
+  }
+
+  // Counts the components of the pixels of the given rows into the given arrays.
+  private static void count(Raster raster, int start, int end, int[][] counts) {
+    int[] red = counts[Channel.RED.ordinal()];
+    int[] green = counts[Channel.GREEN.ordinal()];
+    int[] blue = counts[Channel.BLUE.ordinal()];
+    int[] intensity = counts[Channel.INTENSITY.ordinal()];
+    int[] luma = counts[Channel.LUMA.ordinal()];
+    int[] value = counts[Channel.VALUE.ordinal()];
+    int[] row = new int[raster.getWidth()];
+    for (int i = start; i < end; i++) {
+      raster.copyRow(i, row, 0);
+      for (int argb : row) {
+        red[Pixel.red(argb)]++;
+        green[Pixel.green(argb)]++;
+        blue[Pixel.blue(argb)]++;
+        intensity[Pixel.blue(Pixel.intensity(argb))]++;
+        luma[Pixel.blue(Pixel.luma(argb))]++;
+        value[Pixel.blue(Pixel.value(argb))]++;
+      }
+    }
+  }
+
+  /**
+   * Derives the histogram of this histogram's image brightened (or darkened) by the given
+   * increment, like Pixel.incrementPixel with a max depth of 255 does it. Each component is
+   * shifted and clamped independently, so the red, green, blue and value counts are shifted and
+   * clamped. The intensity counts are shifted too when no component is clamped, and the luma
+   * counts, which rounding does not let us shift, are counted from the given image if needed.
+   *
+   * @param increment int represents the increment the image was brightened by.
+   * @param image     Supplier of Raster represents the brightened image.
+   * @param executor  BandExecutor represents the executor to count the image on.
+   * @return a Histogram representing the histogram of the brightened image.
+   */
+  Histogram brighten(int increment, Supplier<Raster> image, BandExecutor executor) {
+    if (increment == 0) {
+      return this;
+    }
+    int[][] result = new int[Channel.values().length][];
+    boolean clamped = false;
+    for (Channel channel : new Channel[]{Channel.RED, Channel.GREEN, Channel.BLUE}) {
+      int[] source = this.counts(channel);
+      for (int v = 0; v < VALUES && !clamped; v++) {
+        clamped = source[v] != 0 && (v + increment < 0 || v + increment >= VALUES);
+      }
+      result[channel.ordinal()] = shift(source, increment);
+    }
+    result[Channel.VALUE.ordinal()] = shift(this.counts(Channel.VALUE), increment);
+    if (!clamped) {
+      // (r + g + b + 3 * increment) / 3 is (r + g + b) / 3 + increment, as neither is negative.
+      result[Channel.INTENSITY.ordinal()] = shift(this.counts(Channel.INTENSITY), increment);
+    }
+    return new Histogram(result, image, executor);
+  }
+
+  // Returns the given counts, with every value shifted by the given increment and clamped.
+  private static int[] shift(int[] counts, int increment) {
+    int[] result = new int[VALUES];
+    for (int v = 0; v < VALUES; v++) {
+      result[Math.max(0, Math.min(VALUES - 1, v + increment))] += counts[v];
+    }
+    return result;
+  }
+
+  /**
+   * Derives the histogram of the given component of this histogram's image, like
+   * Pixel.executeCommand computes it: a greyscale image whose pixels are the component of the
+   * pixels of this image. Thus, its red, green, blue, intensity and value counts are all the
+   * counts of that component, and its luma counts are the luma of those greys.
+   *
+   * @param op       PixelOp represents the component visualized.
+   * @param image    Supplier of Raster represents the visualized image.
+   * @param executor BandExecutor represents the executor to count the image on.
+   * @return a Histogram representing the histogram of the visualized image, or null if the given
+   *          operation does not give a greyscale image (sepia).
+   */
+  Histogram visualize(PixelOp op, Supplier<Raster> image, BandExecutor executor) {
+    Channel channel;
+    switch (op) {
+      case RED:
+        channel = Channel.RED;
+        break;
+      case GREEN:
+        channel = Channel.GREEN;
+        break;
+      case BLUE:
+        channel = Channel.BLUE;
+        break;
+      case INTENSITY:
+        channel = Channel.INTENSITY;
+        break;
+      case VALUE:
+        channel = Channel.VALUE;
+        break;
+      case LUMA:
+        channel = Channel.LUMA;
+        break;
+      default:
+        return null;
+    }
+    int[] grey = this.counts(channel);
+    int[][] result = new int[Channel.values().length][];
+    Arrays.fill(result, grey);
+    int[] luma = new int[VALUES];
+    for (int v = 0; v < VALUES; v++) {
+      luma[Pixel.blue(Pixel.luma(Pixel.pack(v, v, v, 255)))] += grey[v];
+    }
+    result[Channel.LUMA.ordinal()] = luma;
+    return new Histogram(result, image, executor);
+  }
+
+  // Returns the counts of the given channel, counting the missing channels from the image first
+  // if that channel is one of them. The returned array must not be modified.
+  private synchronized int[] counts(Channel channel) {
+    if (this.counts[channel.ordinal()] == null) {
+      Histogram all = Histogram.of(this.image.get(), this.executor);
+      for (int c = 0; c < this.counts.length; c++) {
+        if (this.counts[c] == null) {
+          this.counts[c] = all.counts[c];
+        }
+      }
+      this.image = null;
+      this.executor = null;
+    }
+    return this.counts[channel.ordinal()];
+  }
+
+  /**
+   * Gets the number of pixels whose given channel has the given value.
+   *
+   * @param channel Channel represents the component to be counted.
+   * @param value   int represents the value of the component, from 0 to 255.
+   * @return an int representing the number of pixels.
+   * @throws IllegalArgumentException if the value is not between 0 and 255.
+   */
+  public int getCount(Channel channel, int value) throws IllegalArgumentException {
+    if (value < 0 || value >= VALUES) {
+      throw new IllegalArgumentException("value must be between 0 and 255!");
+    }
+    return this.counts(channel)[value];
+  }
+
+  /**
+   * Gets the counts of the given channel, for every value from 0 to 255.
+   *
+   * @param channel Channel represents the component to be counted.
+   * @return a copy of the 256 counts of the given channel.
+   */
+  public int[] getCounts(Channel channel) {
+    return Arrays.copyOf(this.counts(channel), VALUES);
+  }
+
+  /**
+   * Converts the counts of the given channel into a map from each value that appears in the image
+   * to its count, which is how the view draws a histogram. Values that no pixel has are not keys.
+   *
+   * @param channel Channel represents the component to be counted.
+   * @return a new Map from the values of the given channel to their counts.
+   */
+  public Map<Integer, Integer> toMap(Channel channel) {
+    Map<Integer, Integer> map = new HashMap<>();
+    int[] channelCounts = this.counts(channel);
+    for (int v = 0; v < VALUES; v++) {
+      if (channelCounts[v] != 0) {
+        map.put(v, channelCounts[v]);
+      }
+    }
+    return map;
+  }
+}
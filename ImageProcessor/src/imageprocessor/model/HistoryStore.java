@@ -0,0 +1,76 @@
+package imageprocessor.model;
+
+import java.util.Set;
+
+/**
+ * HistoryStore, the storage of the history of a model: the rasters of the images, by name.
+ * A store may keep only some of its rasters in memory, e.g. SpillingHistoryStore writes the least
+ * recently used ones to disk, and reads them back when they are asked for, thus the raster given
+ * by get is not necessarily the object that was put, but it always holds the same pixels.
+ * The counters of a store tell how well it is doing: hits are the rasters found in memory, misses
+ * the ones that had to be read back, spills the rasters that were moved out of memory.
+ * Implementations must be thread-safe, the model also holds the lock of its store while using it.
+ */
+public interface HistoryStore {
+
+  /**
+   * Gets the raster stored under the given name, reading it back into memory if needed.
+   *
+   * @param imageName String represents the name of the image.
+   * @return the Raster of the image, or null if there is no image with that name.
+   * @throws IllegalStateException if the raster could not be read back.
+   */
+  Raster get(String imageName) throws IllegalStateException;
+
+  /**
+   * Stores the given raster under the given name, replacing the image with that name, if any.
+   *
+   * @param imageName String represents the name of the image.
+   * @param raster    Raster represents the pixels of the image.
+   * @throws IllegalStateException if the rasters could not be moved out of memory to make room.
+   */
+  void put(String imageName, Raster raster) throws IllegalStateException;
+
+  /**
+   * Removes the image with the given name, if there is one.
+   *
+   * @param imageName String represents the name of the image.
+   */
+  void remove(String imageName);
+
+  /**
+   * Gets the names of the images stored.
+   *
+   * @return a new Set of the names of the images.
+   */
+  Set<String> names();
+
+  /**
+   * Gets the number of rasters that get found in memory.
+   *
+   * @return a long representing the number of hits.
+   */
+  long getHits();
+
+  /**
+   * Gets the number of rasters that get had to read back into memory.
+   *
+   * @return a long representing the number of misses.
+   */
+  long getMisses();
+
+  /**
+   * Gets the number of times a raster was moved out of memory.
+   *
+   * @return a long representing the number of spills.
+   */
+  long getSpills();
+
+  /**
+   * Gets the number of bytes of the rasters held in memory, 4 bytes per pixel. Rasters sharing
+   * rows (see Raster) are counted as if they did not.
+   *
+   * @return a long representing the number of bytes resident.
+   */
+  long getResidentBytes();
+}
@@ -22,6 +22,19 @@ public interface IModel extends IModelState {
    */
   void addToHistory(List<List<Pixel>> pixels, String destName);
 
+  /**
+   * Adds the given Raster to this model's history of images that the client created.
+   * If given a destName that is already in the model's history, then the newly given raster will
+   * override the existing one. Models that store their images as rasters should override this
+   * method to store the raster as is, the default implementation goes through addToHistory.
+   *
+   * @param raster   Raster represents the pixels of some image.
+   * @param destName String represents the desired name of the image to be added to history.
+   */
+  default void addRasterToHistory(Raster raster, String destName) {
+    this.addToHistory(raster.toPixels(), destName);
+  }
+
   /**
    * Void method will manipulate the 2D array of pixels representing the given imageName created.
    * Specifically, flip will either flip the image horizontally or vertically by getting the
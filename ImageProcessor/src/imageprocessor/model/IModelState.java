@@ -7,9 +7,11 @@ import imageprocessor.Pixel;
 /**
  * IModelState, represents the state of this Image Processor's model component.
  * This interface provides methods to get insight on the current IModel's state.
- * This interface provides two methods: getDepth which returns the max depth of the model,
- * and getPixelsFromHistory which gets a copy of the 2d array of pixels stored in this model's
- * history of images that the client created/loaded,
+ * This interface provides five methods: getDepth which returns the max depth of the model,
+ * getPixelsFromHistory which gets a read-only 2d array of pixels stored in this model's
+ * history of images that the client created/loaded, getRasterFromHistory which gets the
+ * packed Raster of such an image, getExecutor which gets the BandExecutor that operations
+ * on this model run on, and getHistogram which gets the Histogram of such an image.
  */
 public interface IModelState {
 
@@ -24,13 +26,53 @@ public interface IModelState {
   int getDepth();
 
   /**
-   * Returns a COPY of the 2D array of Pixels that the user has loaded/created in the model history.
-   * We return a shallow copy because the Pixel class does not offer any mutation methods,
-   * and its fields are all private final.
+   * Returns the 2D array of Pixels that the user has loaded/created in the model history.
+   * The returned list must not allow the client to change the image stored in the history, either
+   * by being a copy, or by being a read-only view (Pixels are immutable anyways).
    *
    * @param imageName represents the name of the image that is stored in this model's history of
    *                  images that a client has created/loaded.
    * @return a 2D Array of Pixels representing the pixels of an image the client has created/loaded.
    */
   List<List<Pixel>> getPixelsFromHistory(String imageName);
+
+  /**
+   * Returns the Raster of the image that the user has loaded/created in the model history.
+   * A Raster is never mutated, thus no copy is needed. Models that store their images as rasters
+   * should override this method to hand out the stored raster, the default implementation packs
+   * the 2D array of pixels returned by getPixelsFromHistory.
+   *
+   * @param imageName represents the name of the image that is stored in this model's history of
+   *                  images that a client has created/loaded.
+   * @return a Raster representing the pixels of an image the client has created/loaded.
+   * @throws IllegalArgumentException if the given image name is not in the history of images.
+   */
+  default Raster getRasterFromHistory(String imageName) throws IllegalArgumentException {
+    return Raster.fromPixels(this.getPixelsFromHistory(imageName));
+  }
+
+  /**
+   * Gets the BandExecutor that the operations on this model run on, operations split the rows of
+   * the image they compute into bands and hand them to this executor. The default implementation
+   * runs every operation serially on the calling thread.
+   *
+   * @return the BandExecutor of this model.
+   */
+  default BandExecutor getExecutor() {
+    return BandExecutor.serial();
+  }
+
+  /**
+   * Returns the Histogram of the image that the user has loaded/created in the model history.
+   * Models should cache the histogram of each image of their history, since the images never
+   * change, the default implementation counts the pixels of the image on every call.
+   *
+   * @param imageName represents the name of the image that is stored in this model's history of
+   *                  images that a client has created/loaded.
+   * @return a Histogram of the pixels of an image the client has created/loaded.
+   * @throws IllegalArgumentException if the given image name is not in the history of images.
+   */
+  default Histogram getHistogram(String imageName) throws IllegalArgumentException {
+    return Histogram.of(this.getRasterFromHistory(imageName), this.getExecutor());
+  }
 }
@@ -0,0 +1,93 @@
+package imageprocessor.model;
+
+import java.util.Arrays;
+
+/**
+ * ImagePyramid, the multi-resolution versions (mipmaps) of an image: level 0 is the image itself,
+ * and every level is half the width and half the height of the level before it (rounded up), down
+ * to a level that is 1 pixel wide or 1 pixel high. Each pixel of a level is the average of the
+ * (up to) 2 by 2 pixels of the level before it that it covers, for every component, alpha
+ * included.
+ * Only the levels down to the one asked for are computed, each from the level before it, so asking
+ * for a small level of a large image reads the image once. The rows of a level are computed in
+ * bands by the given executor.
+ * This is used by the GUI to preview large images: commands are first applied on a level that
+ * fits on the screen, see ControllerGUI.
+ */
+public final class ImagePyramid {
+
+  // Utility class, not meant to be instantiated.
+  private ImagePyramid() {
+  }
+
+  /**
+   * Gets the largest level of the pyramid of the given image that fits in the given size, or the
+   * smallest level if none does.
+   *
+   * @param image     Raster represents the image, level 0 of the pyramid.
+   * @param maxWidth  int represents the maximum width of the level.
+   * @param maxHeight int represents the maximum height of the level.
+   * @param executor  BandExecutor represents the executor computing the rows of the levels.
+   * @return a Raster representing the largest level that fits, the image itself if it fits.
+   * @throws IllegalArgumentException if the image or the executor is null.
+   */
+  public static Raster fit(Raster image, int maxWidth, int maxHeight, BandExecutor executor)
+          throws IllegalArgumentException {
+    if (image == null || executor == null) {
+      throw new IllegalArgumentException("cannot build the pyramid of a null image!");
+    }
+    Raster level = image;
+    while ((level.getWidth() > maxWidth || level.getHeight() > maxHeight)
+        && level.getWidth() > 1 && level.getHeight() > 1) {
+      level = halve(level, executor);
+    }
+    return level;
+  }
+
+  // Computes the level after the given one, averaging the 2 by 2 blocks of pixels.
+  private static Raster halve(Raster source, BandExecutor executor) {
+    int width = (source.getWidth() + 1) / 2;
+    int height = (source.getHeight() + 1) / 2;
+    Raster.Builder result = new Raster.Builder(width, height);
+    executor.forEachBand(width, height, (start, end) -> {
+      int[] top = new int[source.getWidth()];
+      int[] bottom = new int[source.getWidth()];
+      for (int i = start; i < end; i++) {
+        source.copyRow(2 * i, top, 0);
+        boolean twoRows = 2 * i + 1 < source.getHeight();
+        if (twoRows) {
+          source.copyRow(2 * i + 1, bottom, 0);
+        }
+        int[] row = new int[width];
+        int[] sum = new int[4];
+        for (int j = 0; j < width; j++) {
+          int last = Math.min(2 * j + 1, source.getWidth() - 1);
+          Arrays.fill(sum, 0);
+          int count = 0;
+          for (int col = 2 * j; col <= last; col++) {
+            add(sum, top[col]);
+            count++;
+            if (twoRows) {
+              add(sum, bottom[col]);
+              count++;
+            }
+          }
+          int argb = 0;
+          for (int k = 0; k < 4; k++) {
+            argb = argb << 8 | (sum[k] + count / 2) / count;
+          }
+          row[j] = argb;
+        }
+        result.setRow(i, row);
+      }
+    });
+    return result.build();
+  }
+
+  // Adds the components of the given packed pixel to the given sums (alpha, red, green, blue).
+  private static void add(int[] sum, int argb) {
+    for (int k = 0; k < 4; k++) {
+      sum[k] += (argb >>> (24 - 8 * k)) & 0xff;
+    }
+  }
+}
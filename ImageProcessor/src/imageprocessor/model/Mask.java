@@ -0,0 +1,304 @@
+package imageprocessor.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Mask, the set of pixels of an image that an operation is applied on, kept as runs: each row
+ * holds the sorted, disjoint spans of consecutive selected columns, as pairs of a start
+ * (inclusive) and an end (exclusive). A row without any selected pixel holds no run at all, so a
+ * mask takes memory in proportion to the number of edges between selected and unselected pixels,
+ * not to the size of the image, and an operation can go straight to the selected spans of a row
+ * and skip (or share, see Raster.Builder) everything else.
+ * A Mask can also be seen as a black and white image (toRaster): black for the selected pixels,
+ * white for the others, which is how masks are shown to the user, and how the user gives masks
+ * back (dark): any image whose dark pixels stand for the selection, e.g. a mask that was saved
+ * then edited, or one drawn in another program. The bounds of the selection are kept too, so
+ * that an operation can be restricted to the rows and columns that hold selected pixels (see
+ * RegionModel).
+ * Invariants:
+ * width and height are never negative, every row has an even number of run bounds, and the bounds
+ * of a row are strictly increasing, between 0 and width. A Mask is never mutated once it was
+ * constructed, thus it can be shared freely between threads.
+ */
+public final class Mask {
+  private static final int[] EMPTY = new int[0];
+  private static final int BLACK = 0xff000000;
+  private static final int WHITE = 0xffffffff;
+  // The masks of the dark pixels of the rasters that were asked for, which are never changed,
+  // thus they are compared by identity, and forgotten along with their raster.
+  private static final Map<Raster, Mask> DARK = Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final int width;
+  private final int height;
+  private final int[][] runs;
+  private final long selected;
+  // The bounds of the selected pixels: rows top (inclusive) to bottom (exclusive), and columns
+  // left (inclusive) to right (exclusive), all 0 if no pixel is selected.
+  private final int top;
+  private final int bottom;
+  private final int left;
+  private final int right;
+  // The black and white image of this mask, computed when it is first needed.
+  private volatile Raster raster;
+
+  private Mask(int width, int height, int[][] runs) {
+    this.width = width;
+    this.height = height;
+    this.runs = runs;
+    long selected = 0;
+    int top = -1;
+    int bottom = 0;
+    int left = width;
+    int right = 0;
+    for (int i = 0; i < height; i++) {
+      int[] row = runs[i];
+      if (row.length == 0) {
+        continue;
+      }
+      for (int k = 0; k < row.length; k += 2) {
+        selected += row[k + 1] - row[k];
+      }
+      top = top < 0 ? i : top;
+      bottom = i + 1;
+      left = Math.min(left, row[0]);
+      right = Math.max(right, row[row.length - 1]);
+    }
+    this.selected = selected;
+    this.top = Math.max(0, top);
+    this.bottom = bottom;
+    this.left = selected == 0 ? 0 : left;
+    this.right = right;
+  }
+
+  /**
+   * Computes the mask of the pixels of the given raster that satisfy the given predicate. The
+   * rows are computed in bands by the given executor.
+   *
+   * @param raster   Raster represents the image whose pixels are selected.
+   * @param selected IntPredicate represents whether a packed pixel is selected.
+   * @param executor BandExecutor represents the executor computing the rows of the mask.
+   * @return a Mask of the selected pixels of the given raster.
+   * @throws IllegalArgumentException if any of the given arguments is null.
+   */
+  public static Mask select(Raster raster, IntPredicate selected, BandExecutor executor)
+          throws IllegalArgumentException {
+    if (raster == null || selected == null || executor == null) {
+      throw new IllegalArgumentException("invalid raster, predicate or executor given!");
+    }
+    int width = raster.getWidth();
+    int[][] runs = new int[raster.getHeight()][];
+    executor.forEachBand(width, raster.getHeight(), (start, end) -> {
+      int[] row = new int[width];
+      // a row has at most width + 1 bounds.
+      int[] bounds = new int[width + 1];
+      for (int i = start; i < end; i++) {
+        raster.copyRow(i, row, 0);
+        int count = 0;
+        boolean in = false;
+        for (int j = 0; j < width; j++) {
+          if (selected.test(row[j]) != in) {
+            bounds[count++] = j;
+            in = !in;
+          }
+        }
+        if (in) {
+          bounds[count++] = width;
+        }
+        runs[i] = count == 0 ? EMPTY : Arrays.copyOf(bounds, count);
+      }
+    });
+    return new Mask(width, raster.getHeight(), runs);
+  }
+
+  /**
+   * Gets the mask of the dark pixels of the given raster, the pixels whose intensity is at most
+   * 127, e.g. the black pixels of a mask given as a black and white image. The masks are cached
+   * per raster, so that the mask of an image is only computed once however many operations are
+   * restricted by it.
+   *
+   * @param raster   Raster represents the image whose dark pixels are selected.
+   * @param executor BandExecutor represents the executor computing the rows of the mask.
+   * @return a Mask of the dark pixels of the given raster.
+   * @throws IllegalArgumentException if any of the given arguments is null.
+   */
+  public static Mask dark(Raster raster, BandExecutor executor) throws IllegalArgumentException {
+    if (raster == null || executor == null) {
+      throw new IllegalArgumentException("invalid raster or executor given!");
+    }
+    Mask mask = DARK.get(raster);
+    if (mask == null) {
+      // the intensity (r + g + b) / 3 is at most 127 when r + g + b is at most 383.
+      mask = select(raster, argb -> ((argb >> 16) & 0xff) + ((argb >> 8) & 0xff)
+          + (argb & 0xff) <= 383, executor);
+      DARK.put(raster, mask);
+    }
+    return mask;
+  }
+
+  /**
+   * Gets the mask of an image of the given size that selects the given rectangle, clipped to the
+   * image. All the rows of the rectangle share the same run.
+   *
+   * @param width  int represents the width of the image.
+   * @param height int represents the height of the image.
+   * @param x      int represents the leftmost column of the rectangle.
+   * @param y      int represents the top row of the rectangle.
+   * @param w      int represents the width of the rectangle.
+   * @param h      int represents the height of the rectangle.
+   * @return a Mask of the pixels of the image inside the given rectangle.
+   * @throws IllegalArgumentException if any of the sizes is negative.
+   */
+  public static Mask rectangle(int width, int height, int x, int y, int w, int h)
+          throws IllegalArgumentException {
+    if (width < 0 || height < 0 || w < 0 || h < 0) {
+      throw new IllegalArgumentException("sizes cannot be negative!");
+    }
+    // computed in longs, so that a huge rectangle does not overflow.
+    int left = (int) Math.max(0, Math.min(width, (long) x));
+    int right = (int) Math.max(0, Math.min(width, (long) x + w));
+    int top = (int) Math.max(0, Math.min(height, (long) y));
+    int bottom = (int) Math.max(0, Math.min(height, (long) y + h));
+    int[][] runs = new int[height][];
+    Arrays.fill(runs, EMPTY);
+    if (left < right) {
+      Arrays.fill(runs, top, bottom, new int[]{left, right});
+    }
+    return new Mask(width, height, runs);
+  }
+
+  /**
+   * Gets the width of this mask, the width of the image it was computed from.
+   *
+   * @return an int representing the width of this mask.
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Gets the height of this mask, the height of the image it was computed from.
+   *
+   * @return an int representing the height of this mask.
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Gets the number of selected pixels of this mask.
+   *
+   * @return a long representing the number of selected pixels.
+   */
+  public long getSelectedCount() {
+    return this.selected;
+  }
+
+  /**
+   * Gets the top row of the selected pixels, 0 if no pixel is selected.
+   *
+   * @return an int representing the first row holding a selected pixel.
+   */
+  public int getTop() {
+    return this.top;
+  }
+
+  /**
+   * Gets the row right below the selected pixels, 0 if no pixel is selected.
+   *
+   * @return an int representing the row after the last row holding a selected pixel.
+   */
+  public int getBottom() {
+    return this.bottom;
+  }
+
+  /**
+   * Gets the leftmost column of the selected pixels, 0 if no pixel is selected.
+   *
+   * @return an int representing the first column holding a selected pixel.
+   */
+  public int getLeft() {
+    return this.left;
+  }
+
+  /**
+   * Gets the column right after the selected pixels, 0 if no pixel is selected.
+   *
+   * @return an int representing the column after the last column holding a selected pixel.
+   */
+  public int getRight() {
+    return this.right;
+  }
+
+  /**
+   * Tells whether the pixel at the given row and column is selected.
+   *
+   * @param row int represents the row of the pixel.
+   * @param col int represents the column of the pixel.
+   * @return true if the pixel is selected, false otherwise.
+   * @throws IndexOutOfBoundsException if the given row or column is out of bounds.
+   */
+  public boolean isSelected(int row, int col) throws IndexOutOfBoundsException {
+    if (col < 0 || col >= this.width) {
+      throw new IndexOutOfBoundsException("column " + col + " is out of bounds!");
+    }
+    // the insertion point of col among the bounds is odd when col is inside a run.
+    int index = Arrays.binarySearch(this.runs[row], col);
+    return index >= 0 ? index % 2 == 0 : (-index - 1) % 2 == 1;
+  }
+
+  /**
+   * Gets the runs of selected pixels of the given row: pairs of a start column (inclusive) and an
+   * end column (exclusive), sorted.
+   *
+   * @param row int represents the row.
+   * @return a new array of ints holding the bounds of the runs of the given row.
+   * @throws IndexOutOfBoundsException if the given row is out of bounds.
+   */
+  public int[] getRuns(int row) throws IndexOutOfBoundsException {
+    return this.runs[row].clone();
+  }
+
+  // Gets the runs of the given row without copying them, they must not be changed.
+  int[] runs(int row) {
+    return this.runs[row];
+  }
+
+  /**
+   * Gets this mask as a black and white image: the selected pixels are black, the others are
+   * white. Rows that are entirely black or entirely white all share the same array.
+   *
+   * @return a Raster representing this mask.
+   */
+  public Raster toRaster() {
+    Raster result = this.raster;
+    if (result != null) {
+      return result;
+    }
+    int[] white = new int[this.width];
+    Arrays.fill(white, WHITE);
+    int[] black = new int[this.width];
+    Arrays.fill(black, BLACK);
+    Raster.Builder builder = new Raster.Builder(this.width, this.height);
+    for (int i = 0; i < this.height; i++) {
+      int[] bounds = this.runs[i];
+      if (bounds.length == 0) {
+        builder.setRow(i, white);
+      } else if (bounds.length == 2 && bounds[0] == 0 && bounds[1] == this.width) {
+        builder.setRow(i, black);
+      } else {
+        int[] row = white.clone();
+        for (int k = 0; k < bounds.length; k += 2) {
+          Arrays.fill(row, bounds[k], bounds[k + 1], BLACK);
+        }
+        builder.setRow(i, row);
+      }
+    }
+    result = builder.build();
+    this.raster = result;
+    return result;
+  }
+}
@@ -1,9 +1,9 @@
 package imageprocessor.model;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import imageprocessor.Pixel;
+import imageprocessor.model.matrixoperations.Kernel;
 
 /**
  * Extension of EnhancedModelImpl. This class performs all of the methods
@@ -11,17 +11,20 @@ import imageprocessor.Pixel;
  * (excluding flipping and downscaling), except it only partially manipulates
  * an image. It will perform an operation on a pixel only if that pixel's intensity component is
  * less than 127.
+ * The pixels an operation is applied on are kept in a Mask, as runs of selected pixels per row,
+ * computed once per image and cached. Operations only compute the selected runs: rows without
+ * any selected pixel are shared with the original image, and the unselected pixels of the other
+ * rows are copied in bulk, so that masked edits of a few pixels cost little more than those
+ * pixels. The mask is still stored in the history as a black and white image, named after the
+ * image with "mask" appended.
  */
 public class MaskedImageModel extends EnhancedModelImpl implements EnhancedModel {
+  private static final int ALPHA = 0xff000000;
   private double[][] blur = new double[][]{{0.0625, 0.125, 0.0625}, {0.125, 0.25, 0.125},
     {0.0625, 0.125, 0.0625}};
   private double[][] sharpen = new double[][]{{-0.125, -0.125, -0.125, -0.125, -0.125},
     {-0.125, 0.25, 0.25, 0.25, 0.25, -0.125}, {-0.125, 0.25, 0.25, 1, 0.25, -0.125},
     {-0.125, 0.25, 0.25, 0.25, 0.25, -0.125}, {-0.125, -0.125, -0.125, -0.125, -0.125}};
-  private double[][] sepia = new double[][]{{0.393, 0.769, 0.189},
-    {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}};
-  private double[][] luma = new double[][]{{0.2126, 0.7152, 0.0722},
-    {0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}};
 
   /**
    * Calls super to initialize this using the EnhancedModelImpl constructor. Sets max depth
@@ -31,6 +34,17 @@ public class MaskedImageModel extends EnhancedModelImpl implements EnhancedModel
     super();
   }
 
+  /**
+   * Calls super to initialize this with an empty history kept in the given HistoryStore. The
+   * masks of the images are stored in the history too, so they may be spilled like any image.
+   *
+   * @param store HistoryStore represents the store of the history, it should be empty.
+   * @throws IllegalArgumentException if the given store is null.
+   */
+  public MaskedImageModel(HistoryStore store) throws IllegalArgumentException {
+    super(store);
+  }
+
   /**
    * Takes in a 2D list of pixels, and the height and width for an image, and
    * calls super() to use the EnhancedModel Impl to initialize each field.
@@ -46,28 +60,54 @@ public class MaskedImageModel extends EnhancedModelImpl implements EnhancedModel
     super(pixels, width, height);
   }
 
-  // Used to create a masked version of an image.
-  private void mask(String imageName, String destName) {
-    List<List<Pixel>> pixels = this.getPixelsFromHistory(imageName);
-    List<List<Pixel>> bAndW = new ArrayList<>();
-    this.createBlackAndWhite(pixels, bAndW);
-    this.addToHistory(bAndW, destName);
+  // Gets the mask of the given image, the pixels whose intensity is at most 127, and stores it
+  // in the history, as a black and white image, with the given destName. The masks are cached
+  // per raster (see Mask.dark), so that the mask of an image is only computed once however many
+  // operations are applied on it.
+  private Mask mask(Raster pixels, String destName) {
+    Mask mask = Mask.dark(pixels, this.getExecutor());
+    this.addRasterToHistory(mask.toRaster(), destName);
+    return mask;
   }
 
-  // creates a black and white version of an image (the masked version).
-  private void createBlackAndWhite(List<List<Pixel>> pixels, List<List<Pixel>> bAndW) {
-    for (int i = 0; i < pixels.size(); i++) {
-      List<Pixel> inner = new ArrayList<Pixel>();
-      for (int j = 0; j < pixels.get(i).size(); j++) {
-        Pixel p = pixels.get(i).get(j);
-        if (p.executeCommand("intensity").getComponent(0) > 127) {
-          inner.add(new Pixel(255, 255, 255));
-        } else {
-          inner.add(new Pixel(0, 0, 0));
+  // Function object applied on the runs of pixels of an image that are selected by its mask.
+  private interface MaskedRunOperation {
+    // Computes, in place, the pixels of the given row from column from (inclusive) to column to
+    // (exclusive). The given array is a copy of that row of the image.
+    void apply(int row, int[] pixels, int from, int to);
+  }
+
+  // Creates the mask of the given image, and applies the given operation on every run of pixels
+  // that is selected by the mask, then stores the result in the history with the given destName.
+  // Rows in which the mask selects no pixel are shared with the original image without being
+  // read, the other rows are copied in one go, then only their selected runs are computed (rows
+  // that the operation leaves unchanged are shared too). The rows are computed in bands by the
+  // executor.
+  private void applyWhereMasked(String imageName, String destName, MaskedRunOperation op) {
+    Raster pixels = this.getRasterFromHistory(imageName);
+    Mask mask = this.mask(pixels, imageName + "mask");
+    Raster.Builder result = new Raster.Builder(pixels.getWidth(), pixels.getHeight());
+    this.getExecutor().forEachBand(pixels.getWidth(), pixels.getHeight(), (start, end) -> {
+      for (int i = start; i < end; i++) {
+        int[] runs = mask.runs(i);
+        if (runs.length == 0) {
+          result.shareRow(i, pixels, i);
+          continue;
+        }
+        int[] row = new int[pixels.getWidth()];
+        pixels.copyRow(i, row, 0);
+        for (int k = 0; k < runs.length; k += 2) {
+          op.apply(i, row, runs[k], runs[k + 1]);
         }
+        result.setRowOrShare(i, row, pixels, i);
       }
-      bAndW.add(inner);
-    }
+    });
+    this.addRasterToHistory(result.build(), destName);
+  }
+
+  // Gets the given point operation as an operation on the runs of pixels.
+  private MaskedRunOperation onRuns(PointKernel kernel) {
+    return (i, pixels, from, to) -> kernel.apply(pixels, from, to);
   }
 
   /**
@@ -84,24 +124,8 @@ public class MaskedImageModel extends EnhancedModelImpl implements EnhancedModel
    */
   public void visualizeComponent(String component, String imageName, String destName)
           throws IllegalArgumentException {
-    List<List<Pixel>> result = new ArrayList<>();
-    List<List<Pixel>> pixelsOfFile = this.getPixelsFromHistory(imageName);
-
-    this.mask(imageName, imageName + "mask");
-    List<List<Pixel>> mask = this.getPixelsFromHistory(imageName + "mask");
-
-    for (int i = 0; i < pixelsOfFile.size(); i++) {
-      List<Pixel> inner = new ArrayList<>();
-      for (int j = 0; j < pixelsOfFile.get(i).size(); j++) {
-        if (mask.get(i).get(j).getComponent(0) == 0) {
-          inner.add(pixelsOfFile.get(i).get(j).executeCommand(component));
-        } else {
-          inner.add(pixelsOfFile.get(i).get(j));
-        }
-      }
-      result.add(inner);
-    }
-    this.addToHistory(result, destName);
+    this.applyWhereMasked(imageName, destName,
+        this.onRuns(PointKernels.get().component(component)));
   }
 
   /**
@@ -118,24 +142,8 @@ public class MaskedImageModel extends EnhancedModelImpl implements EnhancedModel
    */
   public void brightenOrDarkenBy(int increment, String imageName, String destName)
           throws IllegalArgumentException {
-    List<List<Pixel>> result = new ArrayList<>();
-    List<List<Pixel>> pixelsOfFile = this.getPixelsFromHistory(imageName);
-
-    this.mask(imageName, imageName + "mask");
-    List<List<Pixel>> mask = this.getPixelsFromHistory(imageName + "mask");
-
-    for (int i = 0; i < pixelsOfFile.size(); i++) {
-      List<Pixel> inner = new ArrayList<>();
-      for (int j = 0; j < pixelsOfFile.get(0).size(); j++) {
-        if (mask.get(i).get(j).getComponent(0) == 0) {
-          inner.add(pixelsOfFile.get(i).get(j).incrementPixel(increment, this.getDepth()));
-        } else {
-          inner.add(pixelsOfFile.get(i).get(j));
-        }
-      }
-      result.add(inner);
-    }
-    this.addToHistory(result, destName);
+    this.applyWhereMasked(imageName, destName,
+        this.onRuns(PointKernels.get().brighten(increment, this.getDepth())));
   }
 
   /**
@@ -155,73 +163,76 @@ public class MaskedImageModel extends EnhancedModelImpl implements EnhancedModel
     }
   }
 
+  /**
+   * Applies the given kernel to a pixel of an image only if the intensity component of that
+   * pixel is less than 127. See interface for more information.
+   *
+   * @param kernel    the kernel to be applied, a square matrix of odd size
+   * @param imageName the name of the image that is to be convolved
+   * @param destName  the name that the new image will be stored under
+   * @throws IllegalArgumentException if the kernel is invalid or if imageName is not in history
+   */
+  @Override
+  public void convolve(double[][] kernel, String imageName, String destName)
+          throws IllegalArgumentException {
+    Kernel checked = new Kernel(kernel);
+    double[][] weights = new double[checked.getSize()][checked.getSize()];
+    for (int k = 0; k < weights.length; k++) {
+      for (int s = 0; s < weights.length; s++) {
+        weights[k][s] = checked.getWeight(k, s);
+      }
+    }
+    this.filterHelper(imageName, destName, weights);
+  }
+
   /*
    * For the filter method. Applies the appropriate kernel (arr) to a pixel, and computes
    * the new value.
    */
   private void filterHelper(String imageName, String destName, double[][] arr) {
-    List<List<Pixel>> pixels = this.getPixelsFromHistory(imageName);
-    List<List<Pixel>> result = new ArrayList<>();
-    this.mask(imageName, imageName + "mask");
-    List<List<Pixel>> mask = this.getPixelsFromHistory(imageName + "mask");
-    for (int i = 0; i < pixels.size(); i++) {
-      List<Pixel> inner = new ArrayList<>();
-      for (int j = 0; j < pixels.get(i).size(); j++) {
-        if (mask.get(i).get(j).getComponent(0) == 0) {
-          inner.add(this.computeSum(pixels, i, j, arr));
-        } else {
-          inner.add(pixels.get(i).get(j));
-        }
+    Raster pixels = this.getRasterFromHistory(imageName);
+    this.applyWhereMasked(imageName, destName, (i, row, from, to) -> {
+      for (int j = from; j < to; j++) {
+        row[j] = this.computeSum(pixels, i, j, arr);
       }
-      result.add(inner);
-    }
-    this.addToHistory(result, destName);
+    });
   }
 
-  // checks the value of the sum for r/g/b
-  private Pixel computeSum(List<List<Pixel>> pixels, int i, int j, double[][] arr) {
-    int[] indexOffsetI = this.checkIndex(i - arr.length / 2, 0);
-    int[] indexOffsetJ = this.checkIndex(j - arr.length / 2, 0);
+  // Computes the sum of the neighbourhood of the pixel at the given row and column, weighted by
+  // arr, whose center (arr.length / 2 in both directions) is aligned with the pixel. Pixels
+  // outside of the image count as nothing. Each component is clamped between 0 and 255, and the
+  // new pixel is opaque.
+  private int computeSum(Raster pixels, int i, int j, double[][] arr) {
+    int half = arr.length / 2;
     double sumR = 0;
     double sumG = 0;
     double sumB = 0;
-    for (int k = indexOffsetI[1]; k < arr.length; k++) {
-      int threshold1 = indexOffsetI[0] + k - indexOffsetI[1];
-      if (threshold1 >= pixels.size()) {
+    for (int k = Math.max(0, half - i); k < arr.length; k++) {
+      int row = i - half + k;
+      if (row >= pixels.getHeight()) {
         break;
       }
-      for (int s = indexOffsetJ[1]; s < arr[k].length; s++) {
-        int threshold2 = indexOffsetJ[0] + s - indexOffsetJ[1];
-        if (threshold2 >= pixels.get(indexOffsetI[0]).size()) {
+      for (int s = Math.max(0, half - j); s < arr[k].length; s++) {
+        int col = j - half + s;
+        if (col >= pixels.getWidth()) {
           break;
         }
-        Pixel p = pixels.get(threshold1).get(threshold2);
-        sumR += arr[k][s] * p.getComponent(0);
-        sumG += arr[k][s] * p.getComponent(1);
-        sumB += arr[k][s] * p.getComponent(2);
+        int argb = pixels.getARGB(row, col);
+        sumR += arr[k][s] * ((argb >> 16) & 0xff);
+        sumG += arr[k][s] * ((argb >> 8) & 0xff);
+        sumB += arr[k][s] * (argb & 0xff);
       }
     }
-    return new Pixel((int) this.checkValue(sumR),
-            (int) this.checkValue(sumG), (int) this.checkValue(sumB)).clamp();
+    return ALPHA | this.checkValue(sumR) << 16 | this.checkValue(sumG) << 8
+        | this.checkValue(sumB);
   }
 
-  // checks the value of the sum for r/g/b
-  private double checkValue(double sum) {
+  // checks the value of the sum for r/g/b, truncated and kept between 0 and 255.
+  private int checkValue(double sum) {
     if (sum < 0) {
       return 0;
     }
-    return sum;
-  }
-
-  // Returns the correct index and offset. If index is below zero, we add one to it and to the
-  // offset until it is equal to zero. We then return an array of size 2, where first index
-  // is the index, and the 2nd is the offset.
-  private int[] checkIndex(int index, int offSet) {
-    while (index < 0) {
-      index++;
-      offSet++;
-    }
-    return new int[]{index, offSet};
+    return Math.min(255, (int) sum);
   }
 
   /**
@@ -238,47 +249,34 @@ public class MaskedImageModel extends EnhancedModelImpl implements EnhancedModel
    *                                  or if imageName is not in history
    */
   public void colorTransform(String transformMethod, String imageName, String destName) {
-    if (transformMethod.equals("luma")) {
-      this.transformHelper(imageName, destName, this.luma);
-    } else {
-      this.transformHelper(imageName, destName, this.sepia);
-    }
-  }
-
-  //  Help for the transform method. Iterates through a list of pixels and
-  //  applies the correct color transformation (arr) to each pixel.
-  private void transformHelper(String imageName, String destName, double[][] arr) {
-    List<List<Pixel>> result = new ArrayList();
-    List<List<Pixel>> pixels = this.getPixelsFromHistory(imageName);
-    this.mask(imageName, imageName + "mask");
-    List<List<Pixel>> mask = this.getPixelsFromHistory(imageName + "mask");
-    for (int i = 0; i < pixels.size(); i++) {
-      List<Pixel> inner = new ArrayList();
-      for (int j = 0; j < pixels.get(i).size(); j++) {
-        if (mask.get(i).get(j).getComponent(0) == 0) {
-          inner.add(this.transformPixelHelper(arr, pixels.get(i).get(j)));
-        } else {
-          inner.add(pixels.get(i).get(j));
-        }
+    // the transformed pixels used to be created without alpha, thus they are opaque.
+    ColorTransform transform = transformMethod.equals("luma")
+        ? ColorTransform.LUMA : ColorTransform.SEPIA;
+    this.applyWhereMasked(imageName, destName, (i, pixels, from, to) -> {
+      transform.apply(pixels, from, to);
+      for (int j = from; j < to; j++) {
+        pixels[j] |= ALPHA;
       }
-      result.add(inner);
-    }
-    this.addToHistory(result, destName);
+    });
   }
 
-  // Applies a color transformation to a pixel and returns the new value.
-  private Pixel transformPixelHelper(double[][] arr, Pixel p) {
-    int[] values = new int[3];
-    for (int i = 0; i < 3; i++) {
-      int newComponent = (int) ((arr[i][0] * (double) p.getComponent(0))
-              + (arr[i][1] * (double) p.getComponent(1)) +
-              (arr[i][2] * (double) p.getComponent(2)));
-      values[i] = newComponent;
+  /**
+   * Applies the given ColorTransform on a pixel only if that pixel's intensity component is less
+   * than 127, keeping the alpha of the pixel.
+   *
+   * @param transform ColorTransform represents the transformation to be applied.
+   * @param imageName the name of the image that is to be transformed
+   * @param destName  the name that the new image will be stored under
+   * @throws IllegalArgumentException if the given transform is null, or if imageName is not in
+   *                                  history
+   */
+  @Override
+  public void colorTransform(ColorTransform transform, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (transform == null) {
+      throw new IllegalArgumentException("color transform cannot be null!");
     }
-    int r = values[0];
-    int g = values[1];
-    int b = values[2];
-    return new Pixel(r, g, b).clamp();
+    this.applyWhereMasked(imageName, destName, this.onRuns(transform));
   }
 
 }
@@ -0,0 +1,70 @@
+package imageprocessor.model;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MemoryHistoryStore, a HistoryStore keeping every raster in memory, in a HashMap, with no bound
+ * on its size. This is the store of a model by default. It never misses nor spills.
+ */
+public class MemoryHistoryStore implements HistoryStore {
+  private final Map<String, Raster> rasters = new HashMap<>();
+  private long hits;
+  private long residentBytes;
+
+  @Override
+  public synchronized Raster get(String imageName) {
+    Raster result = this.rasters.get(imageName);
+    if (result != null) {
+      this.hits++;
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized void put(String imageName, Raster raster) {
+    this.remove(imageName);
+    this.rasters.put(imageName, raster);
+    this.residentBytes += this.bytes(raster);
+  }
+
+  @Override
+  public synchronized void remove(String imageName) {
+    Raster removed = this.rasters.remove(imageName);
+    if (removed != null) {
+      this.residentBytes -= this.bytes(removed);
+    }
+  }
+
+  @Override
+  public synchronized Set<String> names() {
+    return new HashSet<>(this.rasters.keySet());
+  }
+
+  @Override
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  @Override
+  public long getMisses() {
+    return 0;
+  }
+
+  @Override
+  public long getSpills() {
+    return 0;
+  }
+
+  @Override
+  public synchronized long getResidentBytes() {
+    return this.residentBytes;
+  }
+
+  // Gets the number of bytes of the given raster.
+  private long bytes(Raster raster) {
+    return 4L * raster.getWidth() * raster.getHeight();
+  }
+}
@@ -1,6 +1,5 @@
 package imageprocessor.model;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +17,11 @@ import imageprocessor.Pixel;
  * is waiting for the client to start creating and storing images using the addToHistory method,
  * OR the model was given a 2D array of pixels and a width and height of an image, and adds the
  * given array to the history map, with the key being "initialModel".
+ * The images are stored as immutable Rasters in a HistoryStore (see Raster and HistoryStore),
+ * and the operations compute their rows in bands on this model's BandExecutor, the point
+ * operations with the PointKernels. The model is thread-safe: the history, and the histograms
+ * cached with its images (see Histogram), are only accessed while holding the lock of the
+ * history, and the operations are computed without holding it.
  * Assumptions: we assume that the maxDepth (the max values of r/g/b) is 255, which
  * is the convention for PPM files. We also assume that the inner lists of the 2d array of pixels,
  * which represents the columns, are all of the same size (all same size as first). These 2
@@ -40,8 +44,11 @@ import imageprocessor.Pixel;
  * 2D Array of Pixels will always be a none null.
  */
 public class Model implements IModel {
-  private final Map<String, List<List<Pixel>>> history;
+  private final HistoryStore history;
+  // The histograms of the images of the history that were asked for, guarded by the history lock.
+  private final Map<String, Histogram> histograms = new HashMap<>();
   private final int maxDepth;
+  private volatile BandExecutor executor;
 
   /**
    * Constructs a Model, with no arguments whatsover.
@@ -53,8 +60,23 @@ public class Model implements IModel {
    * This constructor may also be used for testing.
    */
   public Model() {
-    this.history = new HashMap<>();
+    this(new MemoryHistoryStore());
+  }
+
+  /**
+   * Constructs a Model with an empty history kept in the given HistoryStore, e.g. a
+   * SpillingHistoryStore to bound the memory taken by the images of a long session.
+   *
+   * @param store HistoryStore represents the store of the history, it should be empty.
+   * @throws IllegalArgumentException if the given store is null.
+   */
+  public Model(HistoryStore store) throws IllegalArgumentException {
+    if (store == null) {
+      throw new IllegalArgumentException("history store cannot be null!");
+    }
+    this.history = store;
     this.maxDepth = 255;
+    this.executor = BandExecutor.common();
   }
 
   /**
@@ -79,9 +101,10 @@ public class Model implements IModel {
     if (this.checkConstructorValidity(pixels, width, height)) {
       throw new IllegalArgumentException("invalid 2d array of pixels given!");
     }
-    this.history = new HashMap<>();
+    this.history = new MemoryHistoryStore();
     this.maxDepth = 255;
-    this.history.put("initialModel", new ArrayList(pixels));
+    this.executor = BandExecutor.common();
+    this.history.put("initialModel", Raster.fromPixels(pixels));
   }
 
   /**
@@ -102,68 +125,73 @@ public class Model implements IModel {
   }
 
   /**
-   * Helper method for the IModel's flip method, flips the image of the given imageName in history.
+   * Helper method for the IModel's flip method, flips the given image of the history.
    * This helper is responsible for flipping the image horizontally.
    * This helper will try to reverse the columns while keeping the rows static.
    *
-   * @param imageName String represents the name of the image stored in this model's history
-   *                  and to be horizontally flipped.
-   * @return a 2D array of Pixels representing the horizontally flipped image.
-   * @throws IllegalArgumentException if the given imageName is not found in this model's history
-   *                                  of images that the user has created/laoded.
+   * @param source Raster represents the image stored in this model's history and to be
+   *               horizontally flipped.
+   * @return a Raster representing the horizontally flipped image, it is a view that shares the
+   *          rows of the original image, no pixel is copied.
    */
-  private List<List<Pixel>> flipHorizontal(String imageName) throws IllegalArgumentException {
-    List<List<Pixel>> result = new ArrayList<>();
-    List<List<Pixel>> pixelsOfFile = this.getPixelsFromHistory(imageName);
-    for (int i = 0; i < pixelsOfFile.size(); i++) {
-      List<Pixel> inner = new ArrayList<>();
-      for (int j = pixelsOfFile.get(0).size() - 1; j >= 0; j--) {
-        inner.add(pixelsOfFile.get(i).get(j));
-      }
-      result.add(inner);
-    }
-    return result;
+  private Raster flipHorizontal(Raster source) {
+    return source.flipHorizontal();
   }
 
   /**
-   * Helper method for the IModel's flip method, flips the image of the given imageName in history.
+   * Helper method for the IModel's flip method, flips the given image of the history.
    * This helper is responsible for flipping the image vertically.
    * This helper will try to reverse the rows while keeping the column static.
    *
-   * @param imageName String represents the name of the image stored in this model's history
-   *                  and to be vertically flipped.
-   * @return a 2D array of Pixels representing the vertically flipped image.
-   * @throws IllegalArgumentException if the given imageName is not found in this model's history
-   *                                  of images that the user has created/laoded.
+   * @param source Raster represents the image stored in this model's history and to be
+   *               vertically flipped.
+   * @return a Raster representing the vertically flipped image, it is a view that shares the
+   *          rows of the original image, no pixel is copied.
    */
-  private List<List<Pixel>> flipVertically(String imageName) throws IllegalArgumentException {
-    List<List<Pixel>> result = new ArrayList<>();
-    List<List<Pixel>> pixelsOfFile = this.getPixelsFromHistory(imageName);
-    for (int i = pixelsOfFile.size() - 1; i >= 0; i--) {
-      List<Pixel> inner = new ArrayList<>();
-      for (int j = 0; j < pixelsOfFile.get(0).size(); j++) {
-        inner.add(pixelsOfFile.get(i).get(j));
-      }
-      result.add(inner);
-    }
-    return result;
+  private Raster flipVertically(Raster source) {
+    return source.flipVertical();
   }
 
   @Override
   public void addToHistory(List<List<Pixel>> pixels, String imageName) {
-    this.history.put(imageName, pixels);
+    Raster raster = Raster.fromPixels(pixels);
+    synchronized (this.history) {
+      this.history.put(imageName, raster);
+      this.histograms.remove(imageName);
+    }
+  }
+
+  @Override
+  public void addRasterToHistory(Raster raster, String imageName) {
+    this.addRasterToHistory(raster, imageName, null);
+  }
+
+  /**
+   * Adds the given raster to the history, with the given histogram of it.
+   *
+   * @param raster    Raster represents the image to be added.
+   * @param imageName String represents the name of the image.
+   * @param histogram Histogram represents the histogram of the given raster, null if unknown.
+   */
+  protected void addRasterToHistory(Raster raster, String imageName, Histogram histogram) {
+    synchronized (this.history) {
+      this.history.put(imageName, raster);
+      this.setHistogram(imageName, histogram);
+    }
   }
 
   @Override
   public void flip(boolean horizontalHuh, String imageName, String destName)
           throws IllegalArgumentException {
-    List<List<Pixel>> result;
+    Raster source = this.getRasterFromHistory(imageName);
+    Raster result;
     if (horizontalHuh) {
-      result = this.flipHorizontal(imageName);
+      result = this.flipHorizontal(source);
     } else {
-      result = this.flipVertically(imageName);
+      result = this.flipVertically(source);
     }
-    this.history.put(destName, result);
+    // flipping moves the pixels around, it does not change them.
+    this.addRasterToHistory(result, destName, this.getCachedHistogram(imageName, source));
   }
 
   @Override
@@ -171,43 +199,167 @@ public class Model implements IModel {
     return this.maxDepth;
   }
 
+  /**
+   * Gets the HistoryStore holding the history of this model, e.g. to read its counters.
+   *
+   * @return the HistoryStore of this model.
+   */
+  public HistoryStore getHistoryStore() {
+    return this.history;
+  }
+
+  @Override
+  public BandExecutor getExecutor() {
+    return this.executor;
+  }
+
+  /**
+   * Sets the BandExecutor that the operations on this model run on, e.g. a serial executor to
+   * run every operation on the calling thread, or an executor with its own pool to bound the
+   * number of threads used by this model.
+   *
+   * @param executor BandExecutor represents the executor to run the operations on.
+   * @throws IllegalArgumentException if the given executor is null.
+   */
+  public void setExecutor(BandExecutor executor) throws IllegalArgumentException {
+    if (executor == null) {
+      throw new IllegalArgumentException("executor cannot be null!");
+    }
+    this.executor = executor;
+  }
+
   @Override
   public List<List<Pixel>> getPixelsFromHistory(String imageName) throws IllegalArgumentException {
-    List<List<Pixel>> result = this.history.get(imageName);
+    return this.getRasterFromHistory(imageName).toPixels();
+  }
+
+  @Override
+  public Raster getRasterFromHistory(String imageName) throws IllegalArgumentException {
+    Raster result;
+    synchronized (this.history) {
+      result = this.history.get(imageName);
+    }
     if (result != null) {
-      return new ArrayList<>(result);
+      return result;
     }
     throw new IllegalArgumentException("given file name is invalid!" +
             " Not in history of images you created!");
   }
 
   @Override
-  public void visualizeComponent(String component, String imageName, String destName)
-          throws IllegalArgumentException {
-    List<List<Pixel>> result = new ArrayList<>();
-    List<List<Pixel>> pixelsOfFile = this.getPixelsFromHistory(imageName);
-    for (int i = 0; i < pixelsOfFile.size(); i++) {
-      List<Pixel> inner = new ArrayList<>();
-      for (int j = 0; j < pixelsOfFile.get(i).size(); j++) {
-        inner.add(pixelsOfFile.get(i).get(j).executeCommand(component));
+  public Histogram getHistogram(String imageName) throws IllegalArgumentException {
+    Histogram cached = this.getCachedHistogram(imageName);
+    if (cached != null) {
+      return cached;
+    }
+    Raster raster = this.getRasterFromHistory(imageName);
+    Histogram result = Histogram.of(raster, this.getExecutor());
+    synchronized (this.history) {
+      // the image may have been replaced while it was being counted.
+      if (this.history.get(imageName) == raster) {
+        this.histograms.put(imageName, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Gets the histogram of the image with the given name if it is cached, without computing it.
+   *
+   * @param imageName String represents the name of the image.
+   * @return the cached Histogram of the image, or null if there is none.
+   */
+  protected Histogram getCachedHistogram(String imageName) {
+    synchronized (this.history) {
+      return this.histograms.get(imageName);
+    }
+  }
+
+  // Gets the cached histogram of the image with the given name, only if that image is still the
+  // given raster, null otherwise.
+  private Histogram getCachedHistogram(String imageName, Raster raster) {
+    synchronized (this.history) {
+      return this.history.get(imageName) == raster ? this.histograms.get(imageName) : null;
+    }
+  }
+
+  /**
+   * Caches the given histogram as the histogram of the image with the given name, e.g. of an
+   * image that a subclass keeps outside of the history. The cached histogram is dropped when the
+   * image is replaced or removed from the history.
+   *
+   * @param imageName String represents the name of the image.
+   * @param histogram Histogram represents the histogram of that image, null to drop it.
+   */
+  protected void setHistogram(String imageName, Histogram histogram) {
+    synchronized (this.history) {
+      if (histogram == null) {
+        this.histograms.remove(imageName);
+      } else {
+        this.histograms.put(imageName, histogram);
       }
-      result.add(inner);
     }
-    this.history.put(destName, result);
+  }
+
+  @Override
+  public void visualizeComponent(String component, String imageName, String destName)
+          throws IllegalArgumentException {
+    PixelOp op = PixelOp.of(component);
+    Raster source = this.getRasterFromHistory(imageName);
+    Histogram histogram = this.getCachedHistogram(imageName, source);
+    Raster result = this.mapPixels(source, PointKernels.get().component(op));
+    this.addRasterToHistory(result, destName, histogram == null ? null
+        : histogram.visualize(op, () -> result, this.executor));
   }
 
   @Override
   public void brightenOrDarkenBy(int increment, String imageName, String destName)
           throws IllegalArgumentException {
-    List<List<Pixel>> result = new ArrayList<>();
-    List<List<Pixel>> pixelsOfFile = this.getPixelsFromHistory(imageName);
-    for (int i = 0; i < pixelsOfFile.size(); i++) {
-      List<Pixel> inner = new ArrayList<>();
-      for (int j = 0; j < pixelsOfFile.get(0).size(); j++) {
-        inner.add(pixelsOfFile.get(i).get(j).incrementPixel(increment, maxDepth));
+    Raster source = this.getRasterFromHistory(imageName);
+    Histogram histogram = this.getCachedHistogram(imageName, source);
+    if (increment == 0) {
+      this.addRasterToHistory(source, destName, histogram);
+      return;
+    }
+    Raster result = this.mapPixels(source, PointKernels.get().brighten(increment, maxDepth));
+    this.addRasterToHistory(result, destName, histogram == null ? null
+        : histogram.brighten(increment, () -> result, this.executor));
+  }
+
+  /**
+   * Applies the given point operation (an operation computing each pixel from that pixel only) on
+   * every pixel of the given raster, a row at a time. The rows are computed in bands by this
+   * model's executor, and the rows that the operation leaves unchanged are shared with the given
+   * raster.
+   *
+   * @param source Raster represents the image the operation is applied on.
+   * @param op     PointKernel represents the operation, applied on each row of packed pixels.
+   * @return a new Raster representing the result of the operation.
+   * @throws IllegalArgumentException if the operation throws it on one of the rows.
+   */
+  protected Raster mapPixels(Raster source, PointKernel op) throws IllegalArgumentException {
+    Raster.Builder result = new Raster.Builder(source.getWidth(), source.getHeight());
+    this.executor.forEachBand(source.getWidth(), source.getHeight(), (start, end) -> {
+      for (int i = start; i < end; i++) {
+        int[] row = new int[source.getWidth()];
+        source.copyRow(i, row, 0);
+        op.apply(row, 0, row.length);
+        result.setRowOrShare(i, row, source, i);
       }
-      result.add(inner);
+    });
+    return result.build();
+  }
+
+  /**
+   * Removes the image with the given name from the history of this model, if there is one.
+   * Used by subclasses that keep some images outside of the history.
+   *
+   * @param imageName String represents the name of the image to be removed.
+   */
+  protected void removeFromHistory(String imageName) {
+    synchronized (this.history) {
+      this.history.remove(imageName);
+      this.histograms.remove(imageName);
     }
-    this.history.put(destName, result);
   }
 }
\ No newline at end of file
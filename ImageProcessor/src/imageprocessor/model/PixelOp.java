@@ -0,0 +1,106 @@
+package imageprocessor.model;
+
+import java.util.function.IntUnaryOperator;
+
+import imageprocessor.Pixel;
+
+/**
+ * PixelOp, the vocabulary of the component command (Pixel.executeCommand) resolved into
+ * operations on packed pixels: visualizing the red, green, blue, intensity, value or luma
+ * component of a pixel as a grey, or transforming it to sepia. A command is resolved once per
+ * operation (of), before any pixel is touched, thus an unknown command fails right away, and the
+ * loop over the pixels only calls the one resolved operation, which the JIT compiler can inline.
+ * Every operation is the corresponding static method of Pixel, which gives exactly the pixels of
+ * the Pixel method, and keeps the alpha of the pixel. The PointKernels of an operation apply it on
+ * whole rows.
+ */
+public enum PixelOp implements IntUnaryOperator {
+  RED("r") {
+    @Override
+    public int applyAsInt(int argb) {
+      return grey(argb, Pixel.red(argb));
+    }
+  },
+  GREEN("g") {
+    @Override
+    public int applyAsInt(int argb) {
+      return grey(argb, Pixel.green(argb));
+    }
+  },
+  BLUE("b") {
+    @Override
+    public int applyAsInt(int argb) {
+      return grey(argb, Pixel.blue(argb));
+    }
+  },
+  INTENSITY("intensity") {
+    @Override
+    public int applyAsInt(int argb) {
+      return Pixel.intensity(argb);
+    }
+  },
+  VALUE("value") {
+    @Override
+    public int applyAsInt(int argb) {
+      return Pixel.value(argb);
+    }
+  },
+  LUMA("luma") {
+    @Override
+    public int applyAsInt(int argb) {
+      return Pixel.luma(argb);
+    }
+  },
+  SEPIA("sepia") {
+    @Override
+    public int applyAsInt(int argb) {
+      return Pixel.sepia(argb);
+    }
+  };
+
+  private final String command;
+
+  PixelOp(String command) {
+    this.command = command;
+  }
+
+  /**
+   * Resolves the given command of the component command into its operation.
+   *
+   * @param command String represents the component, "r", "g", "b", "intensity", "value", "luma"
+   *                or "sepia".
+   * @return the PixelOp of the given command.
+   * @throws IllegalArgumentException if the given command is unidentified.
+   */
+  public static PixelOp of(String command) throws IllegalArgumentException {
+    for (PixelOp op : values()) {
+      if (op.command.equals(command)) {
+        return op;
+      }
+    }
+    throw new IllegalArgumentException("Undefined componenet given!");
+  }
+
+  /**
+   * Gets the command this operation is resolved from.
+   *
+   * @return a String representing the command of this operation, e.g. "luma".
+   */
+  public String getCommand() {
+    return this.command;
+  }
+
+  /**
+   * Applies this operation on the given packed pixel.
+   *
+   * @param argb int represents a packed pixel, as stored in a Raster.
+   * @return an int representing the resulting packed pixel.
+   */
+  @Override
+  public abstract int applyAsInt(int argb);
+
+  // Gets the grey pixel of the given value, with the alpha of the given pixel.
+  private static int grey(int argb, int c) {
+    return Pixel.pack(c, c, c, Pixel.alpha(argb));
+  }
+}
@@ -0,0 +1,32 @@
+package imageprocessor.model;
+
+/**
+ * PointKernel, a point operation (an operation computing each pixel from that pixel only) applied
+ * on a whole run of packed pixels at once, such as a row of a Raster. Working on runs rather than
+ * on single pixels lets an implementation keep the pixels in primitive arrays and registers, and
+ * process several of them per instruction (see PointKernels).
+ */
+public interface PointKernel {
+
+  /**
+   * Applies this point operation, in place, on the given pixels.
+   *
+   * @param pixels array of ints represents packed pixels, in the ARGB format of a Raster.
+   * @param from   int represents the index of the first pixel, inclusive.
+   * @param to     int represents the index of the last pixel, exclusive.
+   */
+  void apply(int[] pixels, int from, int to);
+
+  /**
+   * Composes this point operation with the given one, which is applied on the result of this one.
+   *
+   * @param after PointKernel represents the operation to be applied after this one.
+   * @return a PointKernel applying this operation, then the given one.
+   */
+  default PointKernel andThen(PointKernel after) {
+    return (pixels, from, to) -> {
+      this.apply(pixels, from, to);
+      after.apply(pixels, from, to);
+    };
+  }
+}
@@ -0,0 +1,88 @@
+package imageprocessor.model;
+
+/**
+ * PointKernels, the library of PointKernels for the point operations of the model: visualizing a
+ * component (r, g, b, intensity, value, luma), the sepia transformation, and brightening or
+ * darkening. Every kernel gives exactly the same pixels as the corresponding Pixel method,
+ * double precision truncation and clamping included, without creating any Pixel.
+ * There are two implementations: a scalar one, which is always available, and one using the
+ * SIMD instructions of the processor through the incubating Vector API of the JDK, which lives in
+ * the vector directory, next to src. The scalar one is the default, as it is the fastest on the
+ * JDKs measured so far (see vector/README.txt). The vector implementation is only used when it is
+ * asked for with the imageprocessor.vectorKernels system property set to true, its class is on
+ * the class path and the jdk.incubator.vector module is resolved (java --add-modules
+ * jdk.incubator.vector), otherwise get falls back to the scalar implementation.
+ */
+public abstract class PointKernels {
+  /**
+   * The system property that turns the vector implementation on, when set to true.
+   */
+  public static final String VECTOR_PROPERTY = "imageprocessor.vectorKernels";
+  private static final PointKernels SCALAR = new ScalarPointKernels();
+  private static final PointKernels DEFAULT = load();
+
+  /**
+   * Gets the kernel visualizing the given component of every pixel, or applying the given color
+   * transformation, like Pixel.executeCommand.
+   *
+   * @param component String represents the component, "r", "g", "b", "intensity", "value",
+   *                  "luma" or "sepia".
+   * @return a PointKernel computing that component of every pixel.
+   * @throws IllegalArgumentException if the given component is unidentified.
+   */
+  public PointKernel component(String component) throws IllegalArgumentException {
+    return this.component(PixelOp.of(component));
+  }
+
+  /**
+   * Gets the kernel applying the given operation on every pixel.
+   *
+   * @param op PixelOp represents the resolved component or color transformation.
+   * @return a PointKernel applying the given operation on every pixel.
+   */
+  public abstract PointKernel component(PixelOp op);
+
+  /**
+   * Gets the kernel brightening (or darkening) every pixel by the given increment, like
+   * Pixel.incrementPixel: each component is incremented, then kept between 0 and maxDepth.
+   *
+   * @param increment int represents the increment, negative to darken.
+   * @param maxDepth  int represents the maximum value of a component.
+   * @return a PointKernel brightening every pixel.
+   */
+  public abstract PointKernel brighten(int increment, int maxDepth);
+
+  /**
+   * Gets the implementation to be used: the vector one if it was asked for and can be used, the
+   * scalar one otherwise.
+   *
+   * @return the PointKernels to be used.
+   */
+  public static PointKernels get() {
+    return DEFAULT;
+  }
+
+  /**
+   * Gets the scalar implementation, which is always available.
+   *
+   * @return the scalar PointKernels.
+   */
+  public static PointKernels scalar() {
+    return SCALAR;
+  }
+
+  // Loads the vector implementation if it was asked for, and both its class and the Vector API
+  // are available.
+  private static PointKernels load() {
+    if (!Boolean.getBoolean(VECTOR_PROPERTY)
+        || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      return SCALAR;
+    }
+    try {
+      return (PointKernels) Class.forName("imageprocessor.model.VectorPointKernels")
+          .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return SCALAR;
+    }
+  }
+}
@@ -0,0 +1,449 @@
+package imageprocessor.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import imageprocessor.Pixel;
+
+/**
+ * Raster, the packed in-memory representation of an image stored in the model's history.
+ * Instead of keeping one Pixel object per pixel, a Raster keeps every pixel in an int in the ARGB
+ * format (8 bits per component, alpha in the highest byte, blue in the lowest). This takes 4 bytes
+ * per pixel, instead of a Pixel object and a list slot per pixel, which is what used to blow up
+ * the heap on large images.
+ * The rows of a Raster are kept in a row table: row i is made of width consecutive ints of the
+ * array rowData[i], starting at rowStart[i]. A freshly computed image typically has all of its
+ * rows in one array (one after the other, stride ints apart), but the table is what allows images
+ * in the history to share their storage: a vertical flip is the same rows in reverse order, a
+ * horizontal flip is the same table read from right to left (mirrored), and an operation that
+ * leaves a row untouched can point to the row of its source image instead of copying it (see the
+ * Builder). Thus, a long script of flips and cheap operations only costs memory for the rows that
+ * actually changed.
+ * Since every component is stored in 8 bits, values above 255 are clamped to 255 when a Pixel is
+ * packed into a Raster. This is fine because the model's max depth is 255 anyways.
+ * Invariants:
+ * width and height are never negative, the row table always has height entries, and every row
+ * holds at least width ints starting at its start index.
+ * A Raster is never mutated once it was constructed, and neither are the arrays it points to:
+ * whoever builds an array hands it over to the Raster and stops writing to it. Thus, a Raster, and
+ * its rows, can be shared freely between history entries.
+ */
+public final class Raster {
+  private final int width;
+  private final int height;
+  private final int[][] rowData;
+  private final int[] rowStart;
+  private final boolean mirrored;
+
+  /**
+   * Constructs a Raster of the given dimensions, backed by the given array of packed pixels,
+   * where the rows are stored one after the other, without any gap in between them.
+   *
+   * @param width  int represents the width of the image.
+   * @param height int represents the height of the image.
+   * @param data   int array represents the packed ARGB pixels of the image, row by row.
+   * @throws IllegalArgumentException if the width or height are negative, or the given array is
+   *                                  null or too small to hold width * height pixels.
+   */
+  public Raster(int width, int height, int[] data) throws IllegalArgumentException {
+    this(width, height, data, 0, width);
+  }
+
+  /**
+   * Constructs a Raster of the given dimensions, backed by the given array of packed pixels.
+   * The first pixel of row i is found at offset + i * stride in the given array.
+   *
+   * @param width  int represents the width of the image.
+   * @param height int represents the height of the image.
+   * @param data   int array represents the packed ARGB pixels of the image.
+   * @param offset int represents the index of the first pixel of the image in the array.
+   * @param stride int represents the distance between the start of two consecutive rows.
+   * @throws IllegalArgumentException if the width or height are negative, the stride is smaller
+   *                                  than the width, or the given array is null or too small.
+   */
+  public Raster(int width, int height, int[] data, int offset, int stride)
+          throws IllegalArgumentException {
+    if (width < 0 || height < 0 || data == null || offset < 0 || stride < width) {
+      throw new IllegalArgumentException("invalid raster dimensions given!");
+    }
+    if (height > 0 && (long) offset + (long) (height - 1) * stride + width > data.length) {
+      throw new IllegalArgumentException("raster data is too small for the given dimensions!");
+    }
+    this.width = width;
+    this.height = height;
+    this.rowData = new int[height][];
+    this.rowStart = new int[height];
+    for (int i = 0; i < height; i++) {
+      this.rowData[i] = data;
+      this.rowStart[i] = offset + i * stride;
+    }
+    this.mirrored = false;
+  }
+
+  // Constructs a Raster from an already validated row table, used by the views and the Builder.
+  private Raster(int width, int height, int[][] rowData, int[] rowStart, boolean mirrored) {
+    this.width = width;
+    this.height = height;
+    this.rowData = rowData;
+    this.rowStart = rowStart;
+    this.mirrored = mirrored;
+  }
+
+  /**
+   * Creates a Raster from the given 2D list of pixels, where the outer list represents the rows,
+   * and the inner lists represent the columns.
+   *
+   * @param pixels 2d list of pixels represents the pixels of some image.
+   * @return a new Raster holding a packed copy of the given pixels.
+   * @throws IllegalArgumentException if the given list is null, or if its rows are not all of the
+   *                                  same length.
+   */
+  public static Raster fromPixels(List<List<Pixel>> pixels) throws IllegalArgumentException {
+    if (pixels == null) {
+      throw new IllegalArgumentException("invalid 2d array of pixels given!");
+    }
+    int height = pixels.size();
+    int width = height == 0 ? 0 : pixels.get(0).size();
+    int[] data = new int[width * height];
+    for (int i = 0; i < height; i++) {
+      List<Pixel> row = pixels.get(i);
+      if (row.size() != width) {
+        throw new IllegalArgumentException("invalid 2d array of pixels given!");
+      }
+      for (int j = 0; j < width; j++) {
+        data[i * width + j] = row.get(j).toARGB();
+      }
+    }
+    return new Raster(width, height, data);
+  }
+
+  /**
+   * Gets the width of this Raster.
+   *
+   * @return an int representing the number of columns of the image.
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Gets the height of this Raster.
+   *
+   * @return an int representing the number of rows of the image.
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Gets the packed ARGB value of the pixel at the given row and column.
+   *
+   * @param row int represents the row of the pixel (0 is the top row).
+   * @param col int represents the column of the pixel (0 is the leftmost column).
+   * @return an int representing the pixel in the ARGB format.
+   * @throws IndexOutOfBoundsException if the given row or column is outside of this raster.
+   */
+  public int getARGB(int row, int col) throws IndexOutOfBoundsException {
+    if (row < 0 || row >= this.height || col < 0 || col >= this.width) {
+      throw new IndexOutOfBoundsException("pixel (" + row + ", " + col + ") is out of bounds!");
+    }
+    if (this.mirrored) {
+      col = this.width - 1 - col;
+    }
+    return this.rowData[row][this.rowStart[row] + col];
+  }
+
+  /**
+   * Copies the given row of this raster into the given array, starting at the given index.
+   *
+   * @param row    int represents the row to be copied.
+   * @param dest   int array represents the destination of the copy.
+   * @param destPos int represents where the first pixel of the row is copied to.
+   * @throws IndexOutOfBoundsException if the row is outside of this raster, or the row does not
+   *                                   fit in the given array.
+   */
+  public void copyRow(int row, int[] dest, int destPos) throws IndexOutOfBoundsException {
+    if (row < 0 || row >= this.height) {
+      throw new IndexOutOfBoundsException("row " + row + " is out of bounds!");
+    }
+    int[] data = this.rowData[row];
+    int start = this.rowStart[row];
+    if (this.mirrored) {
+      for (int j = 0; j < this.width; j++) {
+        dest[destPos + j] = data[start + this.width - 1 - j];
+      }
+    } else {
+      System.arraycopy(data, start, dest, destPos, this.width);
+    }
+  }
+
+  /**
+   * Copies the given number of pixels of the given row of this raster, starting at the given
+   * column, into the given array, starting at the given index.
+   *
+   * @param row     int represents the row to be copied.
+   * @param col     int represents the first column to be copied.
+   * @param dest    int array represents the destination of the copy.
+   * @param destPos int represents where the first pixel is copied to.
+   * @param length  int represents the number of pixels to be copied.
+   * @throws IndexOutOfBoundsException if the pixels are outside of this raster, or do not fit in
+   *                                   the given array.
+   */
+  public void copyRow(int row, int col, int[] dest, int destPos, int length)
+          throws IndexOutOfBoundsException {
+    if (row < 0 || row >= this.height || col < 0 || length < 0 || col + length > this.width) {
+      throw new IndexOutOfBoundsException("pixels (" + row + ", " + col + ") to (" + row + ", "
+          + (col + length) + ") are out of bounds!");
+    }
+    int[] data = this.rowData[row];
+    int start = this.rowStart[row];
+    if (this.mirrored) {
+      for (int j = 0; j < length; j++) {
+        dest[destPos + j] = data[start + this.width - 1 - col - j];
+      }
+    } else {
+      System.arraycopy(data, start + col, dest, destPos, length);
+    }
+  }
+
+  /**
+   * Returns this raster flipped horizontally. No pixel is copied: the returned raster shares the
+   * rows of this raster, and simply reads them from right to left.
+   *
+   * @return a Raster representing the horizontally flipped image.
+   */
+  public Raster flipHorizontal() {
+    return new Raster(this.width, this.height, this.rowData, this.rowStart, !this.mirrored);
+  }
+
+  /**
+   * Returns this raster flipped vertically. No pixel is copied: the returned raster shares the
+   * rows of this raster, in reverse order.
+   *
+   * @return a Raster representing the vertically flipped image.
+   */
+  public Raster flipVertical() {
+    int[][] data = new int[this.height][];
+    int[] start = new int[this.height];
+    for (int i = 0; i < this.height; i++) {
+      data[i] = this.rowData[this.height - 1 - i];
+      start[i] = this.rowStart[this.height - 1 - i];
+    }
+    return new Raster(this.width, this.height, data, start, this.mirrored);
+  }
+
+  /**
+   * Returns the given rows of this raster. No pixel is copied: the returned raster shares the
+   * rows of this raster.
+   *
+   * @param start int represents the first row (inclusive).
+   * @param end   int represents the last row (exclusive).
+   * @return a Raster representing rows start to end of this image.
+   * @throws IndexOutOfBoundsException if the rows are not between 0 and the height of this raster.
+   */
+  public Raster getRows(int start, int end) throws IndexOutOfBoundsException {
+    if (start < 0 || end > this.height || start > end) {
+      throw new IndexOutOfBoundsException("rows " + start + " to " + end + " are out of bounds!");
+    }
+    return new Raster(this.width, end - start, Arrays.copyOfRange(this.rowData, start, end),
+        Arrays.copyOfRange(this.rowStart, start, end), this.mirrored);
+  }
+
+  /**
+   * Tells whether the given row of this raster and the given row of the other raster are the
+   * very same storage (and not only equal pixels), which is the case when one of them was shared
+   * with the other instead of being copied.
+   *
+   * @param row        int represents a row of this raster.
+   * @param other      Raster represents the other raster.
+   * @param otherRow   int represents a row of the other raster.
+   * @return true if the two rows are shared, false otherwise.
+   */
+  public boolean sharesRow(int row, Raster other, int otherRow) {
+    return this.rowData[row] == other.rowData[otherRow]
+            && this.rowStart[row] == other.rowStart[otherRow]
+            && this.mirrored == other.mirrored && this.width == other.width;
+  }
+
+  /**
+   * Builder, used to construct a Raster row by row. Every row is either a freshly computed array
+   * that is handed over to the raster, or a row of an existing raster that is shared by reference.
+   * A Builder can only build one raster. Distinct rows may be set from distinct threads (e.g. the
+   * bands of a BandExecutor), as long as the raster is built once they are all done.
+   */
+  public static final class Builder {
+    private final int width;
+    private final int height;
+    private int[][] rowData;
+    private int[] rowStart;
+
+    /**
+     * Constructs a Builder for a raster of the given dimensions, without any row set yet.
+     *
+     * @param width  int represents the width of the image to be built.
+     * @param height int represents the height of the image to be built.
+     * @throws IllegalArgumentException if the width or height are negative.
+     */
+    public Builder(int width, int height) throws IllegalArgumentException {
+      if (width < 0 || height < 0) {
+        throw new IllegalArgumentException("invalid raster dimensions given!");
+      }
+      this.width = width;
+      this.height = height;
+      this.rowData = new int[height][];
+      this.rowStart = new int[height];
+    }
+
+    /**
+     * Sets the given row of the raster to the given array. The array is handed over to the
+     * raster, and must not be changed afterwards.
+     *
+     * @param row  int represents the row to be set.
+     * @param data int array represents the packed ARGB pixels of the row, starting at index 0.
+     * @return this builder.
+     * @throws IllegalArgumentException if the given array is null or smaller than the width.
+     */
+    public Builder setRow(int row, int[] data) throws IllegalArgumentException {
+      if (data == null || data.length < this.width) {
+        throw new IllegalArgumentException("invalid row given!");
+      }
+      this.checkState();
+      this.rowData[row] = data;
+      this.rowStart[row] = 0;
+      return this;
+    }
+
+    /**
+     * Sets the given row of the raster to be the given row of the source raster. The row is
+     * shared by reference, unless the source is mirrored, in which case it is copied.
+     *
+     * @param row       int represents the row to be set.
+     * @param source    Raster represents the raster the row is taken from.
+     * @param sourceRow int represents the row of the source raster to be shared.
+     * @return this builder.
+     * @throws IllegalArgumentException if the source raster does not have the same width.
+     */
+    public Builder shareRow(int row, Raster source, int sourceRow)
+            throws IllegalArgumentException {
+      if (source.width != this.width) {
+        throw new IllegalArgumentException("cannot share a row of a different width!");
+      }
+      this.checkState();
+      if (source.mirrored) {
+        int[] copy = new int[this.width];
+        source.copyRow(sourceRow, copy, 0);
+        this.rowData[row] = copy;
+        this.rowStart[row] = 0;
+      } else {
+        this.rowData[row] = source.rowData[sourceRow];
+        this.rowStart[row] = source.rowStart[sourceRow];
+      }
+      return this;
+    }
+
+    /**
+     * Sets the given row of the raster to the given array, unless the array holds exactly the
+     * same pixels as the given row of the source raster, in which case the source row is shared
+     * instead. This is what operations use so that unchanged rows do not cost any memory.
+     *
+     * @param row       int represents the row to be set.
+     * @param data      int array represents the newly computed pixels of the row.
+     * @param source    Raster represents the raster the row was computed from.
+     * @param sourceRow int represents the row of the source raster the row was computed from.
+     * @return this builder.
+     * @throws IllegalArgumentException if the given array is null or smaller than the width.
+     */
+    public Builder setRowOrShare(int row, int[] data, Raster source, int sourceRow)
+            throws IllegalArgumentException {
+      if (data == null || data.length < this.width) {
+        throw new IllegalArgumentException("invalid row given!");
+      }
+      if (source.width == this.width && !source.mirrored) {
+        int[] sourceData = source.rowData[sourceRow];
+        int start = source.rowStart[sourceRow];
+        boolean same = true;
+        for (int j = 0; j < this.width && same; j++) {
+          same = data[j] == sourceData[start + j];
+        }
+        if (same) {
+          return this.shareRow(row, source, sourceRow);
+        }
+      }
+      return this.setRow(row, data);
+    }
+
+    /**
+     * Builds the raster. Every row must have been set beforehand.
+     *
+     * @return a new Raster made of the rows given to this builder.
+     * @throws IllegalStateException if a row was not set, or this builder was already used.
+     */
+    public Raster build() throws IllegalStateException {
+      this.checkState();
+      for (int i = 0; i < this.height; i++) {
+        if (this.rowData[i] == null) {
+          throw new IllegalStateException("row " + i + " was never set!");
+        }
+      }
+      Raster result = new Raster(this.width, this.height, this.rowData, this.rowStart, false);
+      this.rowData = null;
+      this.rowStart = null;
+      return result;
+    }
+
+    // Makes sure that this builder was not already used to build a raster.
+    private void checkState() throws IllegalStateException {
+      if (this.rowData == null) {
+        throw new IllegalStateException("this builder was already used!");
+      }
+    }
+  }
+
+  /**
+   * Returns a 2D list of pixels that views this raster. The list is read only, and does not copy
+   * the image: a Pixel is only created when it is actually requested through get. This is the
+   * compatibility view that is handed out by getPixelsFromHistory.
+   *
+   * @return a read-only 2D list of pixels representing this raster.
+   */
+  public List<List<Pixel>> toPixels() {
+    return new PixelRows();
+  }
+
+  // The rows of the read-only 2D list of pixels view of this raster.
+  private final class PixelRows extends AbstractList<List<Pixel>> implements RandomAccess {
+    @Override
+    public List<Pixel> get(int index) {
+      if (index < 0 || index >= height) {
+        throw new IndexOutOfBoundsException("row " + index + " is out of bounds!");
+      }
+      return new PixelRow(index);
+    }
+
+    @Override
+    public int size() {
+      return height;
+    }
+  }
+
+  // A single row of the read-only 2D list of pixels view of this raster.
+  private final class PixelRow extends AbstractList<Pixel> implements RandomAccess {
+    private final int row;
+
+    private PixelRow(int row) {
+      this.row = row;
+    }
+
+    @Override
+    public Pixel get(int index) {
+      return Pixel.fromARGB(getARGB(this.row, index));
+    }
+
+    @Override
+    public int size() {
+      return width;
+    }
+  }
+}
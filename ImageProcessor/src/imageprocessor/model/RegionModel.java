@@ -0,0 +1,267 @@
+package imageprocessor.model;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import imageprocessor.Pixel;
+
+/**
+ * RegionModel, an EnhancedModel that restricts the operations of another EnhancedModel (the
+ * delegate) to a region of the image they are applied on: a rectangle (region of interest), or
+ * the dark pixels of a mask image of the history (see Mask.dark), which must have the size of the
+ * image. Every pixel outside of the region is left as it is.
+ * An operation only reads the bounding box of the region, widened by the reach of the operation
+ * (the size of the kernel of a filter or a convolution) and clipped to the image, so that its
+ * result inside the region is exactly the result of the operation on the whole image. The box is
+ * copied into a scratch model, where the operation is run as usual, then only the selected runs
+ * of pixels are copied back: the rows outside of the box are shared with the original image, and
+ * the time taken is in proportion to the size of the box, not to the size of the image.
+ * Flips, downscales and resizes move or merge pixels, thus they cannot be restricted to a region,
+ * and throw an IllegalArgumentException. The region is the only selection of the operations, the
+ * intensity mask of a MaskedImageModel delegate is not used.
+ * The history, and every other method that does not compute an image, is the history of the
+ * delegate. This model is thread-safe if its delegate is.
+ */
+public class RegionModel implements EnhancedModel {
+  // The reach of the named filters, the size of the largest one (sharpen).
+  private static final int FILTER_MARGIN = 5;
+
+  private final EnhancedModel delegate;
+  // Gets the region of a given image.
+  private final Function<Raster, Mask> region;
+  // The name of the mask image, null if the region is a rectangle.
+  private final String maskName;
+
+  /**
+   * Constructs a RegionModel restricting the operations of the given model to the dark pixels of
+   * the mask image with the given name. The mask image is read from the history of the given
+   * model when an operation is run, so it may be replaced between two operations.
+   *
+   * @param delegate EnhancedModel represents the model running the operations.
+   * @param maskName String represents the name of the mask image in the history.
+   * @throws IllegalArgumentException if any of the given arguments is null.
+   */
+  public RegionModel(EnhancedModel delegate, String maskName) throws IllegalArgumentException {
+    if (delegate == null || maskName == null) {
+      throw new IllegalArgumentException("invalid model or mask name given!");
+    }
+    this.delegate = delegate;
+    this.maskName = maskName;
+    this.region = image -> {
+      Raster mask = delegate.getRasterFromHistory(maskName);
+      if (mask.getWidth() != image.getWidth() || mask.getHeight() != image.getHeight()) {
+        throw new IllegalArgumentException("mask must have the size of the image!");
+      }
+      return Mask.dark(mask, delegate.getExecutor());
+    };
+  }
+
+  /**
+   * Constructs a RegionModel restricting the operations of the given model to the given
+   * rectangle, clipped to the image each operation is applied on.
+   *
+   * @param delegate EnhancedModel represents the model running the operations.
+   * @param x        int represents the leftmost column of the rectangle.
+   * @param y        int represents the top row of the rectangle.
+   * @param width    int represents the width of the rectangle.
+   * @param height   int represents the height of the rectangle.
+   * @throws IllegalArgumentException if the given model is null, or the width or height is
+   *                                  negative.
+   */
+  public RegionModel(EnhancedModel delegate, int x, int y, int width, int height)
+          throws IllegalArgumentException {
+    if (delegate == null || width < 0 || height < 0) {
+      throw new IllegalArgumentException("invalid model or rectangle given!");
+    }
+    this.delegate = delegate;
+    this.maskName = null;
+    this.region = image -> Mask.rectangle(image.getWidth(), image.getHeight(), x, y, width,
+        height);
+  }
+
+  /**
+   * Gets the name of the mask image restricting the operations of this model.
+   *
+   * @return a String representing the name of the mask image, null if the region is a rectangle.
+   */
+  public String getMaskName() {
+    return this.maskName;
+  }
+
+  @Override
+  public void addToHistory(List<List<Pixel>> pixels, String destName) {
+    this.delegate.addToHistory(pixels, destName);
+  }
+
+  @Override
+  public void addRasterToHistory(Raster raster, String destName) {
+    this.delegate.addRasterToHistory(raster, destName);
+  }
+
+  @Override
+  public void flip(boolean horizontalHuh, String imageName, String destName)
+          throws IllegalArgumentException {
+    throw new IllegalArgumentException("flip cannot be restricted to a region!");
+  }
+
+  @Override
+  public void visualizeComponent(String component, String imageName, String destName)
+          throws IllegalArgumentException {
+    this.inRegion(imageName, destName, 0,
+        m -> m.visualizeComponent(component, imageName, destName));
+  }
+
+  @Override
+  public void brightenOrDarkenBy(int increment, String imageName, String destName)
+          throws IllegalArgumentException {
+    this.inRegion(imageName, destName, 0,
+        m -> m.brightenOrDarkenBy(increment, imageName, destName));
+  }
+
+  @Override
+  public void colorTransform(String transformMethod, String imageName, String destName)
+          throws IllegalArgumentException {
+    this.inRegion(imageName, destName, 0,
+        m -> m.colorTransform(transformMethod, imageName, destName));
+  }
+
+  @Override
+  public void colorTransform(ColorTransform transform, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (transform == null) {
+      throw new IllegalArgumentException("color transform cannot be null!");
+    }
+    this.inRegion(imageName, destName, 0, m -> m.colorTransform(transform, imageName, destName));
+  }
+
+  @Override
+  public void filter(String filterMethod, String imageName, String destName)
+          throws IllegalArgumentException {
+    this.inRegion(imageName, destName, FILTER_MARGIN,
+        m -> m.filter(filterMethod, imageName, destName));
+  }
+
+  @Override
+  public void downscaleImage(String imageName, String destName, int height, int width)
+          throws IllegalArgumentException {
+    throw new IllegalArgumentException("downscale cannot be restricted to a region!");
+  }
+
+  @Override
+  public void resize(String imageName, String destName, int height, int width,
+                     Resampler.Filter filter) throws IllegalArgumentException {
+    throw new IllegalArgumentException("resize cannot be restricted to a region!");
+  }
+
+  @Override
+  public void convolve(double[][] kernel, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (kernel == null) {
+      throw new IllegalArgumentException("kernel cannot be null!");
+    }
+    int margin = kernel.length;
+    for (double[] row : kernel) {
+      margin = Math.max(margin, row == null ? 0 : row.length);
+    }
+    this.inRegion(imageName, destName, margin, m -> m.convolve(kernel, imageName, destName));
+  }
+
+  @Override
+  public int getDepth() {
+    return this.delegate.getDepth();
+  }
+
+  @Override
+  public List<List<Pixel>> getPixelsFromHistory(String imageName)
+          throws IllegalArgumentException {
+    return this.delegate.getPixelsFromHistory(imageName);
+  }
+
+  @Override
+  public Raster getRasterFromHistory(String imageName) throws IllegalArgumentException {
+    return this.delegate.getRasterFromHistory(imageName);
+  }
+
+  @Override
+  public BandExecutor getExecutor() {
+    return this.delegate.getExecutor();
+  }
+
+  @Override
+  public Histogram getHistogram(String imageName) throws IllegalArgumentException {
+    return this.delegate.getHistogram(imageName);
+  }
+
+  /**
+   * Runs the given operation on the bounding box of the region of the image with the given name,
+   * widened by the given margin, and stores the image with the result inside the region, and the
+   * original pixels outside of it, in the history of the delegate with the given destName.
+   *
+   * @param imageName String represents the name of the image the operation is applied on.
+   * @param destName  String represents the desired name of the result.
+   * @param margin    int represents how far from a pixel the operation reads other pixels.
+   * @param operation Consumer of an EnhancedModel represents the operation, run on a model
+   *                  holding the box under imageName, and writing its result under destName.
+   * @throws IllegalArgumentException if the image or the mask is not in the history, the mask
+   *                                  does not have the size of the image, or the operation
+   *                                  throws it.
+   */
+  private void inRegion(String imageName, String destName, int margin,
+                        Consumer<EnhancedModel> operation) throws IllegalArgumentException {
+    Raster source = this.delegate.getRasterFromHistory(imageName);
+    Mask mask = this.region.apply(source);
+    int top = 0;
+    int bottom = 1;
+    int left = 0;
+    int right = 1;
+    // with no pixel selected, the operation still runs on a single pixel, so that invalid
+    // parameters are rejected all the same.
+    if (mask.getSelectedCount() > 0) {
+      top = Math.max(0, mask.getTop() - margin);
+      bottom = Math.min(source.getHeight(), mask.getBottom() + margin);
+      left = Math.max(0, mask.getLeft() - margin);
+      right = Math.min(source.getWidth(), mask.getRight() + margin);
+    }
+    EnhancedModelImpl scratch = new EnhancedModelImpl();
+    scratch.setExecutor(this.delegate.getExecutor());
+    scratch.addRasterToHistory(crop(source, top, bottom, left, right), imageName);
+    operation.accept(scratch);
+    Raster box = scratch.getRasterFromHistory(destName);
+    Raster.Builder result = new Raster.Builder(source.getWidth(), source.getHeight());
+    int boxTop = top;
+    int boxLeft = left;
+    this.delegate.getExecutor().forEachBand(source.getWidth(), source.getHeight(),
+        (start, end) -> {
+          int[] boxRow = new int[box.getWidth()];
+          for (int i = start; i < end; i++) {
+            int[] runs = mask.runs(i);
+            if (runs.length == 0) {
+              result.shareRow(i, source, i);
+              continue;
+            }
+            int[] row = new int[source.getWidth()];
+            source.copyRow(i, row, 0);
+            box.copyRow(i - boxTop, boxRow, 0);
+            for (int k = 0; k < runs.length; k += 2) {
+              System.arraycopy(boxRow, runs[k] - boxLeft, row, runs[k], runs[k + 1] - runs[k]);
+            }
+            result.setRowOrShare(i, row, source, i);
+          }
+        });
+    this.delegate.addRasterToHistory(result.build(), destName);
+  }
+
+  // Copies the pixels of the given raster from row top to row bottom, and from column left to
+  // column right (the ends are exclusive) into a new raster.
+  private static Raster crop(Raster source, int top, int bottom, int left, int right) {
+    int width = right - left;
+    Raster.Builder result = new Raster.Builder(width, bottom - top);
+    for (int i = top; i < bottom; i++) {
+      int[] row = new int[width];
+      source.copyRow(i, left, row, 0, width);
+      result.setRow(i - top, row);
+    }
+    return result.build();
+  }
+}
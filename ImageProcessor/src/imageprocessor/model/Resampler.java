@@ -0,0 +1,336 @@
+package imageprocessor.model;
+
+import java.util.Arrays;
+
+/**
+ * Resampler, resizes images to any size, smaller or larger, with a choice of filters: box (the
+ * average of the pixels each pixel covers), bilinear, bicubic and Lanczos-3, from the fastest to
+ * the sharpest.
+ * The resampling is separable: every row is first resampled to the new width, then every column
+ * of the result to the new height. The weights of each filter are computed once per resize, for
+ * every column and every row of the result (the range of source pixels it reads and their
+ * weights), and are kept as fixed point integers, so that the two passes only multiply and add
+ * ints over packed pixels, every component (alpha included) separately. When shrinking, the
+ * filter is stretched over all the pixels that a pixel of the result covers, so that no source
+ * pixel is skipped. Each pass computes its rows in bands on the given executor, and a pass is
+ * skipped altogether when its size does not change.
+ * Bicubic and Lanczos-3 have negative lobes: the components are clamped between 0 and 255.
+ * A Resampler is immutable, thus it can be shared freely between threads.
+ */
+public final class Resampler {
+  // The number of fractional bits of the fixed point weights.
+  private static final int PRECISION = 20;
+  private static final int HALF = 1 << (PRECISION - 1);
+
+  /**
+   * The filters a Resampler can use, each being a function of the distance to the center of a
+   * pixel of the result (in pixels of the result) that is 0 beyond its support.
+   */
+  public enum Filter {
+    /**
+     * The box filter: every pixel of the result is the average of the pixels it covers.
+     */
+    BOX("box", 0.5) {
+      @Override
+      double weight(double x) {
+        return x > -0.5 && x <= 0.5 ? 1 : 0;
+      }
+    },
+    /**
+     * The triangle filter: linear interpolation between the two nearest pixels.
+     */
+    BILINEAR("bilinear", 1) {
+      @Override
+      double weight(double x) {
+        x = Math.abs(x);
+        return x < 1 ? 1 - x : 0;
+      }
+    },
+    /**
+     * The cubic convolution filter of Keys (a = -0.5), interpolating between the four nearest
+     * pixels.
+     */
+    BICUBIC("bicubic", 2) {
+      @Override
+      double weight(double x) {
+        final double a = -0.5;
+        x = Math.abs(x);
+        if (x < 1) {
+          return ((a + 2) * x - (a + 3)) * x * x + 1;
+        }
+        if (x < 2) {
+          return ((a * x - 5 * a) * x + 8 * a) * x - 4 * a;
+        }
+        return 0;
+      }
+    },
+    /**
+     * The Lanczos filter with 3 lobes, a windowed sinc interpolating between the six nearest
+     * pixels.
+     */
+    LANCZOS3("lanczos3", 3) {
+      @Override
+      double weight(double x) {
+        if (x <= -3 || x >= 3) {
+          return 0;
+        }
+        return sinc(x) * sinc(x / 3);
+      }
+    };
+
+    private final String name;
+    private final double support;
+
+    Filter(String name, double support) {
+      this.name = name;
+      this.support = support;
+    }
+
+    /**
+     * Gets the weight of a source pixel at the given distance of the center of a pixel of the
+     * result, before the weights are normalized.
+     *
+     * @param x double represents the distance, in pixels of the result.
+     * @return a double representing the weight.
+     */
+    abstract double weight(double x);
+
+    /**
+     * Gets the filter with the given name: box, bilinear, bicubic or lanczos3.
+     *
+     * @param name String represents the name of the filter.
+     * @return the Filter with the given name.
+     * @throws IllegalArgumentException if there is no filter with the given name.
+     */
+    public static Filter of(String name) throws IllegalArgumentException {
+      for (Filter filter : values()) {
+        if (filter.name.equals(name)) {
+          return filter;
+        }
+      }
+      throw new IllegalArgumentException("invalid resampling filter given!");
+    }
+
+    @Override
+    public String toString() {
+      return this.name;
+    }
+
+    private static double sinc(double x) {
+      if (x == 0) {
+        return 1;
+      }
+      x *= Math.PI;
+      return Math.sin(x) / x;
+    }
+  }
+
+  // The source pixels that the pixels of the result read along one axis: pixel i of the result
+  // reads count[i] source pixels starting at start[i], with the weights at i * stride.
+  static final class Weights {
+    private final int[] start;
+    private final int[] count;
+    private final int[] weights;
+    private final int stride;
+
+    private Weights(Filter filter, int in, int out) {
+      double scale = (double) in / out;
+      // when shrinking, the filter covers every source pixel of a pixel of the result.
+      double filterScale = Math.max(1, scale);
+      double support = filter.support * filterScale;
+      this.stride = (int) Math.ceil(support) * 2 + 1;
+      this.start = new int[out];
+      this.count = new int[out];
+      this.weights = new int[out * this.stride];
+      double[] w = new double[this.stride];
+      for (int i = 0; i < out; i++) {
+        double center = (i + 0.5) * scale;
+        int min = Math.max(0, (int) (center - support + 0.5));
+        int max = Math.min(in, (int) (center + support + 0.5));
+        int n = Math.min(max - min, this.stride);
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+          w[k] = filter.weight((k + min - center + 0.5) / filterScale);
+          sum += w[k];
+        }
+        if (sum == 0) {
+          // a pixel of the result that falls between the taps of the filter takes the nearest.
+          min = Math.min(in - 1, (int) center);
+          n = 1;
+          w[0] = 1;
+          sum = 1;
+        }
+        this.start[i] = min;
+        this.count[i] = n;
+        for (int k = 0; k < n; k++) {
+          this.weights[i * this.stride + k] = (int) Math.round(w[k] / sum * (1 << PRECISION));
+        }
+      }
+    }
+
+    // Gets the first source pixel read by pixels start (inclusive) to end (exclusive).
+    int firstSource(int start, int end) {
+      int first = Integer.MAX_VALUE;
+      for (int i = start; i < end; i++) {
+        first = Math.min(first, this.start[i]);
+      }
+      return first;
+    }
+
+    // Gets the source pixel right after the last one read by pixels start to end.
+    int endSource(int start, int end) {
+      int last = 0;
+      for (int i = start; i < end; i++) {
+        last = Math.max(last, this.start[i] + this.count[i]);
+      }
+      return last;
+    }
+  }
+
+  private final Filter filter;
+
+  /**
+   * Constructs a Resampler with the given filter.
+   *
+   * @param filter Filter represents the filter used to resample.
+   * @throws IllegalArgumentException if the given filter is null.
+   */
+  public Resampler(Filter filter) throws IllegalArgumentException {
+    if (filter == null) {
+      throw new IllegalArgumentException("resampling filter cannot be null!");
+    }
+    this.filter = filter;
+  }
+
+  /**
+   * Gets the filter of this resampler.
+   *
+   * @return the Filter of this resampler.
+   */
+  public Filter getFilter() {
+    return this.filter;
+  }
+
+  /**
+   * Resizes the given image to the given size, smaller or larger. The rows of each pass are
+   * computed in bands by the given executor.
+   *
+   * @param source   Raster represents the image to be resized.
+   * @param width    int represents the width of the result.
+   * @param height   int represents the height of the result.
+   * @param executor BandExecutor represents the executor computing the rows.
+   * @return a Raster representing the resized image, the given one if its size does not change.
+   * @throws IllegalArgumentException if the image or the executor is null, or the width or
+   *                                  height is not positive.
+   */
+  public Raster resize(Raster source, int width, int height, BandExecutor executor)
+          throws IllegalArgumentException {
+    if (source == null || executor == null) {
+      throw new IllegalArgumentException("invalid image or executor given!");
+    }
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Given height and width must be positive!");
+    }
+    Raster result = source;
+    if (width != source.getWidth()) {
+      result = this.resizeRows(result, width, executor);
+    }
+    if (height != source.getHeight()) {
+      result = this.resizeColumns(result, height, executor);
+    }
+    return result;
+  }
+
+  // Gets the weights of the pixels of an axis of the given size resampled to the given size.
+  Weights weights(int in, int out) {
+    return new Weights(this.filter, in, out);
+  }
+
+  // Resamples every row of the given image to the given width.
+  Raster resizeRows(Raster source, int width, BandExecutor executor) {
+    Weights weights = new Weights(this.filter, source.getWidth(), width);
+    int[] result = new int[width * source.getHeight()];
+    executor.forEachBand(width, source.getHeight(), (startRow, endRow) -> {
+      int[] row = new int[source.getWidth()];
+      for (int i = startRow; i < endRow; i++) {
+        source.copyRow(i, row, 0);
+        int offset = i * width;
+        for (int j = 0; j < width; j++) {
+          int a = HALF;
+          int r = HALF;
+          int g = HALF;
+          int b = HALF;
+          int start = weights.start[j];
+          int base = j * weights.stride;
+          for (int k = 0, n = weights.count[j]; k < n; k++) {
+            int argb = row[start + k];
+            int w = weights.weights[base + k];
+            a += (argb >>> 24) * w;
+            r += ((argb >> 16) & 0xff) * w;
+            g += ((argb >> 8) & 0xff) * w;
+            b += (argb & 0xff) * w;
+          }
+          result[offset + j] = pack(a, r, g, b);
+        }
+      }
+    });
+    return new Raster(width, source.getHeight(), result);
+  }
+
+  // Resamples every column of the given image to the given height.
+  private Raster resizeColumns(Raster source, int height, BandExecutor executor) {
+    return this.resizeColumns(source, 0, this.weights(source.getHeight(), height), 0, height,
+        executor);
+  }
+
+  // Computes rows start (inclusive) to end (exclusive) of the given image resampled along its
+  // columns with the given weights, from the source rows that they read, which are given in band
+  // from source row firstRow. Each row of the result is accumulated one source row at a time, so
+  // that the source is read along its rows.
+  Raster resizeColumns(Raster band, int firstRow, Weights weights, int start, int end,
+                       BandExecutor executor) {
+    int width = band.getWidth();
+    int[] result = new int[width * (end - start)];
+    executor.forEachBand(width, end - start, (startRow, endRow) -> {
+      int[] row = new int[width];
+      int[] a = new int[width];
+      int[] r = new int[width];
+      int[] g = new int[width];
+      int[] b = new int[width];
+      for (int i = start + startRow; i < start + endRow; i++) {
+        Arrays.fill(a, HALF);
+        Arrays.fill(r, HALF);
+        Arrays.fill(g, HALF);
+        Arrays.fill(b, HALF);
+        int first = weights.start[i] - firstRow;
+        int base = i * weights.stride;
+        for (int k = 0, n = weights.count[i]; k < n; k++) {
+          band.copyRow(first + k, row, 0);
+          int w = weights.weights[base + k];
+          for (int j = 0; j < width; j++) {
+            int argb = row[j];
+            a[j] += (argb >>> 24) * w;
+            r[j] += ((argb >> 16) & 0xff) * w;
+            g[j] += ((argb >> 8) & 0xff) * w;
+            b[j] += (argb & 0xff) * w;
+          }
+        }
+        int offset = (i - start) * width;
+        for (int j = 0; j < width; j++) {
+          result[offset + j] = pack(a[j], r[j], g[j], b[j]);
+        }
+      }
+    });
+    return new Raster(width, end - start, result);
+  }
+
+  // Packs the given fixed point sums, rounded and clamped between 0 and 255, into a pixel.
+  private static int pack(int a, int r, int g, int b) {
+    return clamp(a >> PRECISION) << 24 | clamp(r >> PRECISION) << 16
+        | clamp(g >> PRECISION) << 8 | clamp(b >> PRECISION);
+  }
+
+  private static int clamp(int value) {
+    return value < 0 ? 0 : Math.min(255, value);
+  }
+}
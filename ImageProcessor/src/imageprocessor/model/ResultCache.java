@@ -0,0 +1,269 @@
+package imageprocessor.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * ResultCache, the results of image operations by key, see CachingModel. The key of a result is a
+ * digest of the operation, its parameters, and the content of the image it was applied on, thus
+ * the same key always stands for the same pixels, in any session.
+ * The cache has two tiers. The memory tier holds up to a budget of bytes of rasters, the least
+ * recently used ones being dropped first. The optional disk tier is a directory holding one file
+ * per result, named after its key, which is kept across sessions: a script run again finds the
+ * results of its previous run there. A result found on disk is also put in the memory tier.
+ * A file of the disk tier holds the width and the height of the raster, then its pixels, one
+ * big-endian int per pixel, row after row. Files are written under a temporary name then moved,
+ * so that a file under the name of a key is always complete, even with several programs sharing
+ * the directory. The disk tier is not bounded, the files can be deleted at any time.
+ * The cache is a best effort: a result that cannot be written to or read from disk is simply not
+ * cached there, and a file that is not a valid result is deleted.
+ * Invariants:
+ * residentBytes is the number of bytes of the rasters of the memory tier, and is at most budget.
+ */
+public class ResultCache {
+  private static final String SUFFIX = ".raw";
+  private static final int HEADER = 8;
+
+  private final long budget;
+  private final Path directory;
+  // The results in memory, the least recently used first.
+  private final LinkedHashMap<String, Raster> memory = new LinkedHashMap<>(16, 0.75f, true);
+  private long residentBytes;
+  private long hits;
+  private long diskHits;
+  private long misses;
+
+  /**
+   * Constructs a ResultCache holding results in memory only.
+   *
+   * @param budget long represents the number of bytes of rasters to be held in memory.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public ResultCache(long budget) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("invalid budget given!");
+    }
+    this.budget = budget;
+    this.directory = null;
+  }
+
+  /**
+   * Constructs a ResultCache holding results in memory, and in the given directory, which is
+   * created if it does not exist.
+   *
+   * @param budget    long represents the number of bytes of rasters to be held in memory.
+   * @param directory Path represents the directory of the disk tier.
+   * @throws IllegalArgumentException if the budget is negative, the directory is null, or it
+   *                                  cannot be created.
+   */
+  public ResultCache(long budget, Path directory) throws IllegalArgumentException {
+    if (budget < 0 || directory == null) {
+      throw new IllegalArgumentException("invalid budget or cache directory given!");
+    }
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("cache directory could not be created!");
+    }
+    this.budget = budget;
+    this.directory = directory;
+  }
+
+  /**
+   * Gets the result with the given key, from memory, or from disk if it is not in memory.
+   *
+   * @param key String represents the key of the result.
+   * @return the Raster of the result, or null if it is not cached.
+   */
+  public Raster get(String key) {
+    synchronized (this.memory) {
+      Raster result = this.memory.get(key);
+      if (result != null) {
+        this.hits++;
+        return result;
+      }
+    }
+    Raster result = this.read(key);
+    synchronized (this.memory) {
+      if (result == null) {
+        this.misses++;
+        return null;
+      }
+      this.diskHits++;
+      this.keep(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * Caches the given result under the given key, in memory, and on disk if this cache has a disk
+   * tier and the result is not there yet.
+   *
+   * @param key    String represents the key of the result.
+   * @param raster Raster represents the result.
+   */
+  public void put(String key, Raster raster) {
+    synchronized (this.memory) {
+      this.keep(key, raster);
+    }
+    if (this.directory != null && !Files.exists(this.file(key))) {
+      this.write(key, raster);
+    }
+  }
+
+  /**
+   * Gets the number of results found in memory.
+   *
+   * @return a long representing the number of hits.
+   */
+  public long getHits() {
+    synchronized (this.memory) {
+      return this.hits;
+    }
+  }
+
+  /**
+   * Gets the number of results found on disk only.
+   *
+   * @return a long representing the number of disk hits.
+   */
+  public long getDiskHits() {
+    synchronized (this.memory) {
+      return this.diskHits;
+    }
+  }
+
+  /**
+   * Gets the number of results that were not cached.
+   *
+   * @return a long representing the number of misses.
+   */
+  public long getMisses() {
+    synchronized (this.memory) {
+      return this.misses;
+    }
+  }
+
+  /**
+   * Gets the number of bytes of the results held in memory, 4 bytes per pixel.
+   *
+   * @return a long representing the number of bytes resident.
+   */
+  public long getResidentBytes() {
+    synchronized (this.memory) {
+      return this.residentBytes;
+    }
+  }
+
+  // Puts the given result in memory, then drops the least recently used results until the
+  // results fit in the budget. A result larger than the budget is not kept.
+  private void keep(String key, Raster raster) {
+    Raster replaced = this.memory.remove(key);
+    if (replaced != null) {
+      this.residentBytes -= bytes(replaced);
+    }
+    if (bytes(raster) > this.budget) {
+      return;
+    }
+    this.memory.put(key, raster);
+    this.residentBytes += bytes(raster);
+    Iterator<Raster> eldest = this.memory.values().iterator();
+    while (this.residentBytes > this.budget) {
+      this.residentBytes -= bytes(eldest.next());
+      eldest.remove();
+    }
+  }
+
+  // Gets the number of bytes of the given raster.
+  private static long bytes(Raster raster) {
+    return 4L * raster.getWidth() * raster.getHeight();
+  }
+
+  // Gets the file of the disk tier holding the result with the given key.
+  private Path file(String key) {
+    return this.directory.resolve(key + SUFFIX);
+  }
+
+  // Writes the given result to the disk tier, under a temporary name, then moves it under the
+  // name of its key.
+  private void write(String key, Raster raster) {
+    Path temp = null;
+    try {
+      temp = Files.createTempFile(this.directory, key, ".tmp");
+      try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(raster.getWidth()).putInt(raster.getHeight()).flip();
+        writeFully(out, header);
+        int[] row = new int[raster.getWidth()];
+        ByteBuffer bytes = ByteBuffer.allocate(4 * row.length);
+        for (int i = 0; i < raster.getHeight(); i++) {
+          raster.copyRow(i, row, 0);
+          bytes.clear();
+          bytes.asIntBuffer().put(row);
+          writeFully(out, bytes);
+        }
+      }
+      Files.move(temp, this.file(key), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      // the result is only cached in memory.
+      if (temp != null) {
+        temp.toFile().delete();
+      }
+    }
+  }
+
+  // Writes the whole given buffer to the given channel.
+  private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  // Reads the result with the given key from the disk tier, null if it is not there or invalid.
+  private Raster read(String key) {
+    if (this.directory == null) {
+      return null;
+    }
+    Path file = this.file(key);
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER);
+      readFully(in, header);
+      int width = header.getInt(0);
+      int height = header.getInt(4);
+      if (width <= 0 || height <= 0 || in.size() != HEADER + 4L * width * height) {
+        throw new IOException("invalid cached result");
+      }
+      int[] data = new int[width * height];
+      ByteBuffer bytes = ByteBuffer.allocate(4 * width);
+      for (int i = 0; i < height; i++) {
+        bytes.clear();
+        readFully(in, bytes);
+        bytes.flip();
+        bytes.asIntBuffer().get(data, i * width, width);
+      }
+      return new Raster(width, height, data);
+    } catch (IOException e) {
+      if (Files.exists(file)) {
+        file.toFile().delete();
+      }
+      return null;
+    }
+  }
+
+  // Fills the given buffer from the given channel.
+  private static void readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (in.read(buffer) < 0) {
+        throw new IOException("truncated cached result");
+      }
+    }
+  }
+}
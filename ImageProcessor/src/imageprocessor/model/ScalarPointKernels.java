@@ -0,0 +1,69 @@
+package imageprocessor.model;
+
+import imageprocessor.Pixel;
+
+/**
+ * ScalarPointKernels, the PointKernels written as plain loops over the packed pixels, applying
+ * the static methods of Pixel on every pixel. The luma and sepia kernels are the ColorTransforms
+ * of their matrices, which give exactly the double arithmetic of Pixel with lookup tables.
+ * Every kernel has its own loop, and the methods of Pixel that only need integers are written with
+ * shifts, masks and arithmetic (the intensity divides by 3 with a multiplication, increment clamps
+ * without branches), so that the JIT compiler can vectorize most of these loops by itself.
+ */
+final class ScalarPointKernels extends PointKernels {
+  private static final int ALPHA = 0xff000000;
+
+  @Override
+  public PointKernel component(PixelOp op) {
+    switch (op) {
+      case RED:
+        return (pixels, from, to) -> channel(pixels, from, to, 16);
+      case GREEN:
+        return (pixels, from, to) -> channel(pixels, from, to, 8);
+      case BLUE:
+        return (pixels, from, to) -> channel(pixels, from, to, 0);
+      case INTENSITY:
+        return ScalarPointKernels::intensity;
+      case VALUE:
+        return ScalarPointKernels::value;
+      case LUMA:
+        return ColorTransform.LUMA;
+      case SEPIA:
+        return ColorTransform.SEPIA;
+      default:
+        throw new IllegalArgumentException("Undefined componenet given!");
+    }
+  }
+
+  @Override
+  public PointKernel brighten(int increment, int maxDepth) {
+    return (pixels, from, to) -> {
+      for (int j = from; j < to; j++) {
+        pixels[j] = Pixel.increment(pixels[j], increment, maxDepth);
+      }
+    };
+  }
+
+  // Sets every pixel to the grey of its component at the given shift.
+  private static void channel(int[] pixels, int from, int to, int shift) {
+    for (int j = from; j < to; j++) {
+      int argb = pixels[j];
+      int c = (argb >> shift) & 0xff;
+      pixels[j] = argb & ALPHA | c << 16 | c << 8 | c;
+    }
+  }
+
+  // Sets every pixel to the grey of its intensity.
+  private static void intensity(int[] pixels, int from, int to) {
+    for (int j = from; j < to; j++) {
+      pixels[j] = Pixel.intensity(pixels[j]);
+    }
+  }
+
+  // Sets every pixel to the grey of its value.
+  private static void value(int[] pixels, int from, int to) {
+    for (int j = from; j < to; j++) {
+      pixels[j] = Pixel.value(pixels[j]);
+    }
+  }
+}
@@ -0,0 +1,323 @@
+package imageprocessor.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * SpillingHistoryStore, a HistoryStore with a budget of bytes of rasters held in memory. Once the
+ * rasters in memory take more than the budget, the least recently used ones are spilled to a
+ * spill file: their pixels are written in the raw raster format (one big-endian int per pixel,
+ * row after row, no header) through a memory mapping of the file, and the raster is dropped from
+ * memory. Getting a spilled raster faults it back in, again through a memory mapping, as a new
+ * Raster holding the same pixels, which may spill other rasters.
+ * A raster that was faulted back in keeps its copy in the spill file until it is replaced or
+ * removed, so spilling it again costs no write. The regions of the file that are no longer used
+ * are reused by the next spills, and the file is truncated when its end is no longer used, so it
+ * stays about as large as the rasters it holds.
+ * The budget is a soft limit: the raster used last always stays in memory, even if it is larger
+ * than the budget. Also, rasters that share rows (e.g. an image and its flip) are counted as if
+ * they did not, and a spilled raster is only freed once nobody else (e.g. a pending image of an
+ * EnhancedModelImpl) holds it.
+ * Invariants:
+ * residentBytes is the number of bytes of the rasters of the entries that are in memory, every
+ * entry is in memory, or in the file, or both, and the regions of the entries and the free
+ * regions do not overlap and are all before end.
+ */
+public class SpillingHistoryStore implements HistoryStore, Closeable {
+  // Largest region mapped at once, FileChannel.map cannot map more than Integer.MAX_VALUE bytes.
+  private static final long MAX_MAPPED_REGION = 1 << 30;
+
+  private final long budget;
+  private final FileChannel file;
+  // The entries, the least recently used first.
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  // The free regions of the file before end, from their offset to their length.
+  private final TreeMap<Long, Long> free = new TreeMap<>();
+  private long end;
+  private long residentBytes;
+  private long hits;
+  private long misses;
+  private long spills;
+
+  // An image of the store: its raster if it is in memory, its region in the file if it has one.
+  private static final class Entry {
+    private final int width;
+    private final int height;
+    private Raster raster;
+    private long offset = -1;
+
+    private Entry(Raster raster) {
+      this.width = raster.getWidth();
+      this.height = raster.getHeight();
+      this.raster = raster;
+    }
+
+    private long bytes() {
+      return 4L * this.width * this.height;
+    }
+  }
+
+  /**
+   * Constructs a SpillingHistoryStore spilling to the given file, which is created, or emptied
+   * if it exists, and deleted when this store is closed at the latest (some systems delete its
+   * name right away, the file itself is kept as long as it is open).
+   *
+   * @param budget    long represents the number of bytes of rasters to be held in memory.
+   * @param spillFile Path represents the spill file.
+   * @throws IllegalArgumentException if the budget is negative, the file is null, or it cannot
+   *                                  be opened.
+   */
+  public SpillingHistoryStore(long budget, Path spillFile) throws IllegalArgumentException {
+    if (budget < 0 || spillFile == null) {
+      throw new IllegalArgumentException("invalid budget or spill file given!");
+    }
+    this.budget = budget;
+    try {
+      this.file = FileChannel.open(spillFile, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+          StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("spill file could not be opened!");
+    }
+  }
+
+  /**
+   * Constructs a SpillingHistoryStore spilling to a new temporary file.
+   *
+   * @param budget long represents the number of bytes of rasters to be held in memory.
+   * @throws IllegalArgumentException if the budget is negative, or no temporary file can be
+   *                                  created.
+   */
+  public SpillingHistoryStore(long budget) throws IllegalArgumentException {
+    this(budget, createTempFile());
+  }
+
+  // Creates the temporary spill file.
+  private static Path createTempFile() throws IllegalArgumentException {
+    try {
+      return Files.createTempFile("image-processor-history", ".raw");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("spill file could not be created!");
+    }
+  }
+
+  @Override
+  public synchronized Raster get(String imageName) throws IllegalStateException {
+    Entry entry = this.entries.get(imageName);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.raster != null) {
+      this.hits++;
+      return entry.raster;
+    }
+    this.misses++;
+    entry.raster = this.read(entry);
+    this.residentBytes += entry.bytes();
+    this.spillOverBudget(entry);
+    return entry.raster;
+  }
+
+  @Override
+  public synchronized void put(String imageName, Raster raster) throws IllegalStateException {
+    this.remove(imageName);
+    Entry entry = new Entry(raster);
+    this.entries.put(imageName, entry);
+    this.residentBytes += entry.bytes();
+    this.spillOverBudget(entry);
+  }
+
+  @Override
+  public synchronized void remove(String imageName) {
+    Entry entry = this.entries.remove(imageName);
+    if (entry == null) {
+      return;
+    }
+    if (entry.raster != null) {
+      this.residentBytes -= entry.bytes();
+    }
+    if (entry.offset >= 0) {
+      this.release(entry.offset, entry.bytes());
+    }
+  }
+
+  @Override
+  public synchronized Set<String> names() {
+    return new HashSet<>(this.entries.keySet());
+  }
+
+  @Override
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  @Override
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  @Override
+  public synchronized long getSpills() {
+    return this.spills;
+  }
+
+  @Override
+  public synchronized long getResidentBytes() {
+    return this.residentBytes;
+  }
+
+  /**
+   * Gets the number of bytes of the spill file that hold rasters.
+   *
+   * @return a long representing the number of bytes spilled.
+   */
+  public synchronized long getSpilledBytes() {
+    long result = this.end;
+    for (long length : this.free.values()) {
+      result -= length;
+    }
+    return result;
+  }
+
+  /**
+   * Gets the size of the spill file, the bytes spilled and the free regions before its end.
+   *
+   * @return a long representing the number of bytes of the spill file.
+   * @throws IllegalStateException if the spill file is closed or its size cannot be read.
+   */
+  public synchronized long getFileBytes() throws IllegalStateException {
+    try {
+      return this.file.size();
+    } catch (IOException e) {
+      throw new IllegalStateException("could not get the size of the spill file!");
+    }
+  }
+
+  /**
+   * Closes the spill file, which deletes it. The spilled rasters cannot be read back anymore.
+   *
+   * @throws IOException if the file could not be closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    this.file.close();
+  }
+
+  // Spills the least recently used rasters in memory, but the given one, until the rasters in
+  // memory fit in the budget.
+  private void spillOverBudget(Entry used) throws IllegalStateException {
+    Iterator<Entry> eldest = this.entries.values().iterator();
+    while (this.residentBytes > this.budget && eldest.hasNext()) {
+      Entry entry = eldest.next();
+      if (entry != used && entry.raster != null && entry.bytes() > 0) {
+        if (entry.offset < 0) {
+          long offset = this.allocate(entry.bytes());
+          try {
+            this.write(entry, offset);
+          } catch (IllegalStateException e) {
+            this.release(offset, entry.bytes());
+            throw e;
+          }
+          entry.offset = offset;
+        }
+        entry.raster = null;
+        this.residentBytes -= entry.bytes();
+        this.spills++;
+      }
+    }
+  }
+
+  // Writes the raster of the given entry to the region of the file at the given offset.
+  private void write(Entry entry, long offset) throws IllegalStateException {
+    int[] row = new int[entry.width];
+    try {
+      for (int first = 0; first < entry.height; first += this.rowsPerRegion(entry)) {
+        int rows = Math.min(this.rowsPerRegion(entry), entry.height - first);
+        IntBuffer region = this.file.map(FileChannel.MapMode.READ_WRITE,
+            offset + 4L * entry.width * first, 4L * entry.width * rows).asIntBuffer();
+        for (int i = first; i < first + rows; i++) {
+          entry.raster.copyRow(i, row, 0);
+          region.put(row);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("could not spill an image to disk!");
+    }
+  }
+
+  // Reads the raster of the given entry back from its region of the file.
+  private Raster read(Entry entry) throws IllegalStateException {
+    int[] data = new int[entry.width * entry.height];
+    try {
+      for (int first = 0; first < entry.height; first += this.rowsPerRegion(entry)) {
+        int rows = Math.min(this.rowsPerRegion(entry), entry.height - first);
+        IntBuffer region = this.file.map(FileChannel.MapMode.READ_ONLY,
+            entry.offset + 4L * entry.width * first, 4L * entry.width * rows).asIntBuffer();
+        region.get(data, first * entry.width, rows * entry.width);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("could not read a spilled image back!");
+    }
+    return new Raster(entry.width, entry.height, data);
+  }
+
+  // Gets the number of rows of the given entry that are mapped at once.
+  private int rowsPerRegion(Entry entry) {
+    return (int) Math.max(1, MAX_MAPPED_REGION / Math.max(1, 4L * entry.width));
+  }
+
+  // Finds a region of the given length in the file, the first free region large enough, or the
+  // end of the file, and returns its offset.
+  private long allocate(long length) {
+    for (Map.Entry<Long, Long> region : this.free.entrySet()) {
+      long offset = region.getKey();
+      long available = region.getValue();
+      if (available >= length) {
+        this.free.remove(offset);
+        if (available > length) {
+          this.free.put(offset + length, available - length);
+        }
+        return offset;
+      }
+    }
+    long offset = this.end;
+    this.end += length;
+    return offset;
+  }
+
+  // Frees the given region of the file, merging it with the free regions around it, and
+  // truncates the file if the end of the file is free.
+  private void release(long offset, long length) {
+    Map.Entry<Long, Long> before = this.free.floorEntry(offset);
+    if (before != null && before.getKey() + before.getValue() == offset) {
+      this.free.remove(before.getKey());
+      offset = before.getKey();
+      length += before.getValue();
+    }
+    Long after = this.free.remove(offset + length);
+    if (after != null) {
+      length += after;
+    }
+    if (offset + length == this.end) {
+      this.end = offset;
+      try {
+        this.file.truncate(this.end);
+      } catch (IOException e) {
+        // the file stays larger than needed, its end is reused by the next spills anyways.
+      }
+    } else {
+      this.free.put(offset, length);
+    }
+  }
+}
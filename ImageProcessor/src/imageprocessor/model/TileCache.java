@@ -0,0 +1,208 @@
+package imageprocessor.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * TileCache, the tiles of TiledImages held in memory, with a budget of bytes. A TiledImage keeps
+ * all of its tiles in its tile file, and only the tiles that are cached are in memory: once the
+ * cached tiles take more than the budget, the least recently used ones are dropped, and are read
+ * back from their file when they are needed again. Tiles are written to their file as soon as
+ * they are set, thus dropping a tile never costs a write.
+ * The cache also decides the size of the tiles of the images it holds, and the directory their
+ * files are created in, so that all the images of a TiledModel share one budget.
+ * The budget is a soft limit: the tile used last always stays in memory, and tiles that are being
+ * read or written by an operation are only freed once the operation is done with them.
+ * This class is thread-safe.
+ * Invariants:
+ * residentBytes is the number of bytes of the cached tiles, budget and tileBytes are positive.
+ */
+public final class TileCache {
+  // The default number of bytes of a tile.
+  private static final int DEFAULT_TILE_BYTES = 4 << 20;
+
+  private final long budget;
+  private final int tileBytes;
+  private final Path directory;
+  // The cached tiles, the least recently used first, guarded by this cache's lock.
+  private final LinkedHashMap<Key, Raster> tiles = new LinkedHashMap<>(16, 0.75f, true);
+  private long residentBytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  // A tile of an image, images being compared by identity.
+  private static final class Key {
+    private final TiledImage image;
+    private final int tile;
+
+    private Key(TiledImage image, int tile) {
+      this.image = image;
+      this.tile = tile;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Key && ((Key) other).image == this.image
+          && ((Key) other).tile == this.tile;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(this.image), this.tile);
+    }
+  }
+
+  /**
+   * Constructs a TileCache with the given budget, of tiles of about the given number of bytes,
+   * whose files are created in the given directory.
+   *
+   * @param budget    long represents the number of bytes of tiles held in memory.
+   * @param tileBytes int represents the number of bytes of a tile: a tile holds as many rows of
+   *                  its image as fit in it, at least one.
+   * @param directory Path represents the directory the tile files are created in.
+   * @throws IllegalArgumentException if the budget or the size of the tiles is not positive, or
+   *                                  the directory is null or is not a directory.
+   */
+  public TileCache(long budget, int tileBytes, Path directory) throws IllegalArgumentException {
+    if (budget <= 0 || tileBytes <= 0 || directory == null || !Files.isDirectory(directory)) {
+      throw new IllegalArgumentException("invalid budget, tile size or directory given!");
+    }
+    this.budget = budget;
+    this.tileBytes = tileBytes;
+    this.directory = directory;
+  }
+
+  /**
+   * Constructs a TileCache with the given budget, of tiles of 4 MB, whose files are created in
+   * the temporary directory.
+   *
+   * @param budget long represents the number of bytes of tiles held in memory.
+   * @throws IllegalArgumentException if the budget is not positive.
+   */
+  public TileCache(long budget) throws IllegalArgumentException {
+    this(budget, DEFAULT_TILE_BYTES, Path.of(System.getProperty("java.io.tmpdir")));
+  }
+
+  /**
+   * Gets the number of rows of a tile of an image of the given width.
+   *
+   * @param width int represents the width of the image.
+   * @return an int representing the number of rows of a tile, at least 1.
+   */
+  public int getTileHeight(int width) {
+    return (int) Math.max(1, this.tileBytes / Math.max(1, 4L * width));
+  }
+
+  /**
+   * Gets the budget of this cache.
+   *
+   * @return a long representing the number of bytes of tiles held in memory.
+   */
+  public long getBudget() {
+    return this.budget;
+  }
+
+  /**
+   * Gets the number of times a tile was found in this cache.
+   *
+   * @return a long representing the number of hits.
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Gets the number of times a tile had to be read from its file.
+   *
+   * @return a long representing the number of misses.
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Gets the number of tiles dropped from memory to fit in the budget.
+   *
+   * @return a long representing the number of evictions.
+   */
+  public synchronized long getEvictions() {
+    return this.evictions;
+  }
+
+  /**
+   * Gets the number of bytes of the tiles that are held in memory.
+   *
+   * @return a long representing the number of bytes of the cached tiles.
+   */
+  public synchronized long getResidentBytes() {
+    return this.residentBytes;
+  }
+
+  // Creates a new tile file in the directory of this cache.
+  Path createFile() throws IllegalStateException {
+    try {
+      return Files.createTempFile(this.directory, "image-processor-tiles", ".raw");
+    } catch (IOException e) {
+      throw new IllegalStateException("tile file could not be created!");
+    }
+  }
+
+  // Gets the given tile of the given image, reading it from the file of the image if it is not
+  // cached.
+  Raster get(TiledImage image, int tile) throws IllegalStateException {
+    Key key = new Key(image, tile);
+    synchronized (this) {
+      Raster cached = this.tiles.get(key);
+      if (cached != null) {
+        this.hits++;
+        return cached;
+      }
+      this.misses++;
+    }
+    // read outside of the lock, so that tiles of other images are not held up by the disk.
+    Raster read = image.readTile(tile);
+    this.put(image, tile, read);
+    return read;
+  }
+
+  // Caches the given tile of the given image, which was just read or written.
+  synchronized void put(TiledImage image, int tile, Raster raster) {
+    Raster previous = this.tiles.put(new Key(image, tile), raster);
+    if (previous != null) {
+      this.residentBytes -= bytes(previous);
+    }
+    this.residentBytes += bytes(raster);
+    Iterator<Map.Entry<Key, Raster>> eldest = this.tiles.entrySet().iterator();
+    while (this.residentBytes > this.budget && eldest.hasNext()) {
+      Map.Entry<Key, Raster> entry = eldest.next();
+      if (entry.getValue() != raster) {
+        this.residentBytes -= bytes(entry.getValue());
+        eldest.remove();
+        this.evictions++;
+      }
+    }
+  }
+
+  // Drops every cached tile of the given image, which is being closed.
+  synchronized void removeAll(TiledImage image) {
+    Iterator<Map.Entry<Key, Raster>> entries = this.tiles.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<Key, Raster> entry = entries.next();
+      if (entry.getKey().image == image) {
+        this.residentBytes -= bytes(entry.getValue());
+        entries.remove();
+      }
+    }
+  }
+
+  // Gets the number of bytes of the pixels of the given tile.
+  private static long bytes(Raster raster) {
+    return 4L * raster.getWidth() * raster.getHeight();
+  }
+}
@@ -0,0 +1,262 @@
+package imageprocessor.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TiledImage, an image kept in a tile file instead of the heap, so that images larger than the
+ * heap can be read, processed and saved. The image is cut into tiles of consecutive rows (bands
+ * of the full width, since a Raster is made of rows), all of the same height but the last one.
+ * Every tile is stored in the tile file in the raw raster format (one big-endian int per pixel,
+ * row after row, no header), at a fixed offset, and is read and written through a memory mapping
+ * of its region of the file. The tiles in memory are the ones held by the TileCache of the image,
+ * which decides the height of the tiles and how many of them stay in memory.
+ * A TiledImage is written once, tile by tile (setTile), e.g. by a decoder, then only read, a tile
+ * at a time (getTile), or a few rows at a time (getRows).
+ * Its tile file is created when it is constructed, and deleted when it is closed.
+ * This class is thread-safe.
+ * Invariants:
+ * width and height are never negative, tileHeight is positive, and tile t holds rows
+ * t * tileHeight to min(height, (t + 1) * tileHeight).
+ */
+public final class TiledImage implements Closeable {
+  private final TileCache cache;
+  private final int width;
+  private final int height;
+  private final int tileHeight;
+  private final FileChannel file;
+
+  /**
+   * Constructs a TiledImage of the given size, whose tiles are held by the given cache. Its tile
+   * file is created in the directory of the cache, and every tile must be set before it is read.
+   *
+   * @param width  int represents the width of the image.
+   * @param height int represents the height of the image.
+   * @param cache  TileCache represents the cache holding the tiles of the image in memory.
+   * @throws IllegalArgumentException if the width or height is negative, or the cache is null.
+   * @throws IllegalStateException    if the tile file could not be created.
+   */
+  public TiledImage(int width, int height, TileCache cache)
+          throws IllegalArgumentException, IllegalStateException {
+    if (width < 0 || height < 0 || cache == null) {
+      throw new IllegalArgumentException("invalid image dimensions or cache given!");
+    }
+    this.cache = cache;
+    this.width = width;
+    this.height = height;
+    this.tileHeight = cache.getTileHeight(width);
+    Path path = cache.createFile();
+    try {
+      this.file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.DELETE_ON_CLOSE);
+    } catch (IOException e) {
+      throw new IllegalStateException("tile file could not be opened!");
+    }
+  }
+
+  /**
+   * Creates a TiledImage holding the pixels of the given raster.
+   *
+   * @param raster Raster represents the pixels of the image.
+   * @param cache  TileCache represents the cache holding the tiles of the image in memory.
+   * @return a new TiledImage holding the given pixels.
+   * @throws IllegalArgumentException if any of the given arguments is null.
+   * @throws IllegalStateException    if the tile file could not be created or written.
+   */
+  public static TiledImage of(Raster raster, TileCache cache)
+          throws IllegalArgumentException, IllegalStateException {
+    if (raster == null) {
+      throw new IllegalArgumentException("raster cannot be null!");
+    }
+    TiledImage image = new TiledImage(raster.getWidth(), raster.getHeight(), cache);
+    for (int t = 0; t < image.getTileCount(); t++) {
+      image.setTile(t, raster.getRows(image.getTileStart(t), image.getTileEnd(t)));
+    }
+    return image;
+  }
+
+  /**
+   * Gets the width of this image.
+   *
+   * @return an int representing the number of columns of the image.
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Gets the height of this image.
+   *
+   * @return an int representing the number of rows of the image.
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Gets the number of rows of the tiles of this image, all but the last one.
+   *
+   * @return an int representing the height of a tile.
+   */
+  public int getTileHeight() {
+    return this.tileHeight;
+  }
+
+  /**
+   * Gets the number of tiles of this image.
+   *
+   * @return an int representing the number of tiles.
+   */
+  public int getTileCount() {
+    return (int) (((long) this.height + this.tileHeight - 1) / this.tileHeight);
+  }
+
+  /**
+   * Gets the first row of the given tile.
+   *
+   * @param tile int represents the tile.
+   * @return an int representing the first row (inclusive) of the tile.
+   */
+  public int getTileStart(int tile) {
+    return (int) Math.min(this.height, (long) tile * this.tileHeight);
+  }
+
+  /**
+   * Gets the row right after the given tile.
+   *
+   * @param tile int represents the tile.
+   * @return an int representing the last row (exclusive) of the tile.
+   */
+  public int getTileEnd(int tile) {
+    return (int) Math.min(this.height, ((long) tile + 1) * this.tileHeight);
+  }
+
+  /**
+   * Gets the pixels of the given tile, from the cache, or from the tile file if the tile is not
+   * in memory.
+   *
+   * @param tile int represents the tile.
+   * @return a Raster representing the rows of the given tile.
+   * @throws IndexOutOfBoundsException if the given tile is out of bounds.
+   * @throws IllegalStateException     if the tile file could not be read.
+   */
+  public Raster getTile(int tile) throws IndexOutOfBoundsException, IllegalStateException {
+    this.checkTile(tile);
+    return this.cache.get(this, tile);
+  }
+
+  /**
+   * Gets the given rows of this image, from the tiles they are in. Only the rows of the given
+   * range are held by the returned raster.
+   *
+   * @param start int represents the first row (inclusive).
+   * @param end   int represents the last row (exclusive).
+   * @return a Raster representing rows start to end of this image.
+   * @throws IndexOutOfBoundsException if the rows are not between 0 and the height of the image.
+   * @throws IllegalStateException     if the tile file could not be read.
+   */
+  public Raster getRows(int start, int end)
+          throws IndexOutOfBoundsException, IllegalStateException {
+    if (start < 0 || end > this.height || start > end) {
+      throw new IndexOutOfBoundsException("rows " + start + " to " + end + " are out of bounds!");
+    }
+    int first = start / this.tileHeight;
+    if (start == end || first == (end - 1) / this.tileHeight) {
+      int offset = this.getTileStart(first);
+      return start == end ? new Raster(this.width, 0, new int[0])
+          : this.getTile(first).getRows(start - offset, end - offset);
+    }
+    Raster.Builder result = new Raster.Builder(this.width, end - start);
+    for (int t = first; t <= (end - 1) / this.tileHeight; t++) {
+      Raster tile = this.getTile(t);
+      int offset = this.getTileStart(t);
+      for (int i = Math.max(start, offset); i < Math.min(end, this.getTileEnd(t)); i++) {
+        result.shareRow(i - start, tile, i - offset);
+      }
+    }
+    return result.build();
+  }
+
+  /**
+   * Gets the whole image as a Raster, which brings every tile into memory. This is only meant
+   * for images that fit in the heap, e.g. to display them.
+   *
+   * @return a Raster representing the pixels of this image.
+   * @throws IllegalStateException if the tile file could not be read.
+   */
+  public Raster toRaster() throws IllegalStateException {
+    return this.getRows(0, this.height);
+  }
+
+  /**
+   * Sets the pixels of the given tile, which are written to the tile file right away, and kept
+   * in the cache.
+   *
+   * @param tile   int represents the tile.
+   * @param pixels Raster represents the rows of the tile.
+   * @throws IndexOutOfBoundsException if the given tile is out of bounds.
+   * @throws IllegalArgumentException  if the given raster is null or is not the size of the tile.
+   * @throws IllegalStateException     if the tile file could not be written.
+   */
+  public void setTile(int tile, Raster pixels)
+          throws IndexOutOfBoundsException, IllegalArgumentException, IllegalStateException {
+    this.checkTile(tile);
+    int rows = this.getTileEnd(tile) - this.getTileStart(tile);
+    if (pixels == null || pixels.getWidth() != this.width || pixels.getHeight() != rows) {
+      throw new IllegalArgumentException("pixels must have the size of the tile!");
+    }
+    try {
+      IntBuffer region = this.file.map(FileChannel.MapMode.READ_WRITE, this.offset(tile),
+          4L * this.width * rows).asIntBuffer();
+      int[] row = new int[this.width];
+      for (int i = 0; i < rows; i++) {
+        pixels.copyRow(i, row, 0);
+        region.put(row);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("tile could not be written!");
+    }
+    this.cache.put(this, tile, pixels);
+  }
+
+  /**
+   * Closes this image: its tiles are dropped from the cache, and its tile file is deleted.
+   */
+  @Override
+  public void close() {
+    this.cache.removeAll(this);
+    try {
+      this.file.close();
+    } catch (IOException e) {
+      // the file is deleted when it is closed, there is nothing else to do about it.
+    }
+  }
+
+  // Reads the given tile from the tile file, called by the cache when it does not hold it.
+  Raster readTile(int tile) throws IllegalStateException {
+    int rows = this.getTileEnd(tile) - this.getTileStart(tile);
+    int[] pixels = new int[rows * this.width];
+    try {
+      this.file.map(FileChannel.MapMode.READ_ONLY, this.offset(tile), 4L * pixels.length)
+          .asIntBuffer().get(pixels);
+    } catch (IOException e) {
+      throw new IllegalStateException("tile could not be read!");
+    }
+    return new Raster(this.width, rows, pixels);
+  }
+
+  // Gets the offset of the given tile in the tile file.
+  private long offset(int tile) {
+    return 4L * this.width * this.getTileStart(tile);
+  }
+
+  private void checkTile(int tile) throws IndexOutOfBoundsException {
+    if (tile < 0 || tile >= this.getTileCount()) {
+      throw new IndexOutOfBoundsException("tile " + tile + " is out of bounds!");
+    }
+  }
+}
@@ -0,0 +1,402 @@
+package imageprocessor.model;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+import imageprocessor.Pixel;
+import imageprocessor.model.matrixoperations.Downsize;
+import imageprocessor.model.matrixoperations.Kernel;
+
+/**
+ * TiledModel, an EnhancedModel whose history is made of TiledImages, kept in tile files instead
+ * of the heap, so that images larger than the heap can be processed. Every image of the history
+ * shares the same TileCache, thus the pixels held in memory are bounded by the budget of the
+ * cache, plus the few tiles that an operation is working on, whatever the size of the images.
+ * Every operation is run tile by tile: each tile of the result is computed from the rows of the
+ * source that it reads, i.e. the same tile of the source widened by a halo of the rows around it
+ * (none for the point operations and the horizontal flip, half the size of the kernel for the
+ * filters and the convolutions), and is written to the tile file of the result before the next
+ * tile is computed. The tile is computed by a scratch EnhancedModelImpl, exactly like it would be
+ * on the whole image, and the halo makes its result exactly the result on the whole image: the
+ * pixels beyond the edges of the image are still black, since the halo is clipped to the image.
+ * A vertical flip reads the tiles of the source in reverse order, downscales and resizes compute
+ * their bands of rows from the source rows they are interpolated from (see Downsize and
+ * Resampler), and histograms are added up tile by tile.
+ * Images are read from and saved to PPM files tile by tile (see ImageIOHelper.readTiled), the
+ * other ways of getting an image in or out of this model (getRasterFromHistory, getPixels,
+ * addRasterToHistory) hold the whole image in memory, and are only meant for images that fit in
+ * the heap. Replacing an image of the history closes it, which deletes its tile file, and so does
+ * closing this model for every image.
+ * This model is thread-safe, as long as an image is not replaced while it is being read.
+ */
+public class TiledModel implements EnhancedModel, Closeable {
+  // The reach of the named filters, half the size of the largest one (sharpen).
+  private static final int FILTER_HALO = 2;
+
+  private final TileCache cache;
+  // The images of the history, and the histograms that were asked for, guarded by images' lock.
+  private final Map<String, TiledImage> images = new HashMap<>();
+  private final Map<String, Histogram> histograms = new HashMap<>();
+  private volatile BandExecutor executor = BandExecutor.common();
+
+  /**
+   * Constructs a TiledModel with an empty history, whose tiles are held by the given cache.
+   *
+   * @param cache TileCache represents the cache holding the tiles of the images in memory.
+   * @throws IllegalArgumentException if the given cache is null.
+   */
+  public TiledModel(TileCache cache) throws IllegalArgumentException {
+    if (cache == null) {
+      throw new IllegalArgumentException("tile cache cannot be null!");
+    }
+    this.cache = cache;
+  }
+
+  /**
+   * Gets the TileCache of this model, e.g. to create the TiledImages added to its history, or to
+   * read its counters.
+   *
+   * @return the TileCache of this model.
+   */
+  public TileCache getCache() {
+    return this.cache;
+  }
+
+  /**
+   * Sets the BandExecutor that the rows of each tile are computed on.
+   *
+   * @param executor BandExecutor represents the executor to run the operations on.
+   * @throws IllegalArgumentException if the given executor is null.
+   */
+  public void setExecutor(BandExecutor executor) throws IllegalArgumentException {
+    if (executor == null) {
+      throw new IllegalArgumentException("executor cannot be null!");
+    }
+    this.executor = executor;
+  }
+
+  @Override
+  public BandExecutor getExecutor() {
+    return this.executor;
+  }
+
+  /**
+   * Adds the given TiledImage to the history with the given name, replacing (and closing) the
+   * image that had that name. The image must use the cache of this model, and is closed by this
+   * model once it is replaced.
+   *
+   * @param image     TiledImage represents the image to be added.
+   * @param imageName String represents the name of the image.
+   * @throws IllegalArgumentException if the given image or name is null.
+   */
+  public void addTiledToHistory(TiledImage image, String imageName)
+          throws IllegalArgumentException {
+    if (image == null || imageName == null) {
+      throw new IllegalArgumentException("invalid image or image name given!");
+    }
+    TiledImage previous;
+    synchronized (this.images) {
+      previous = this.images.put(imageName, image);
+      this.histograms.remove(imageName);
+    }
+    if (previous != null && previous != image) {
+      previous.close();
+    }
+  }
+
+  /**
+   * Gets the TiledImage of the history with the given name, e.g. to save it tile by tile.
+   *
+   * @param imageName String represents the name of the image.
+   * @return the TiledImage with the given name.
+   * @throws IllegalArgumentException if the given image name is not in the history.
+   */
+  public TiledImage getTiledFromHistory(String imageName) throws IllegalArgumentException {
+    synchronized (this.images) {
+      TiledImage image = this.images.get(imageName);
+      if (image == null) {
+        throw new IllegalArgumentException("given file name is invalid!" +
+            " Not in history of images you created!");
+      }
+      return image;
+    }
+  }
+
+  @Override
+  public void addToHistory(List<List<Pixel>> pixels, String destName) {
+    this.addRasterToHistory(Raster.fromPixels(pixels), destName);
+  }
+
+  @Override
+  public void addRasterToHistory(Raster raster, String destName) {
+    this.addTiledToHistory(TiledImage.of(raster, this.cache), destName);
+  }
+
+  @Override
+  public List<List<Pixel>> getPixelsFromHistory(String imageName)
+          throws IllegalArgumentException {
+    return this.getRasterFromHistory(imageName).toPixels();
+  }
+
+  /**
+   * Gets the image with the given name as a Raster, which brings the whole image into memory.
+   *
+   * @param imageName String represents the name of the image.
+   * @return a Raster representing the pixels of the image.
+   * @throws IllegalArgumentException if the given image name is not in the history.
+   */
+  @Override
+  public Raster getRasterFromHistory(String imageName) throws IllegalArgumentException {
+    return this.getTiledFromHistory(imageName).toRaster();
+  }
+
+  @Override
+  public int getDepth() {
+    return 255;
+  }
+
+  @Override
+  public Histogram getHistogram(String imageName) throws IllegalArgumentException {
+    TiledImage image = this.getTiledFromHistory(imageName);
+    synchronized (this.images) {
+      Histogram cached = this.histograms.get(imageName);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    Histogram result = Histogram.of(new Raster(image.getWidth(), 0, new int[0]), this.executor);
+    for (int t = 0; t < image.getTileCount(); t++) {
+      result = result.plus(Histogram.of(image.getTile(t), this.executor));
+    }
+    synchronized (this.images) {
+      // the image may have been replaced while it was being counted.
+      if (this.images.get(imageName) == image) {
+        this.histograms.put(imageName, result);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void flip(boolean horizontalHuh, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (horizontalHuh) {
+      this.tiled(imageName, destName, 0, m -> m.flip(true, imageName, destName));
+      return;
+    }
+    TiledImage source = this.getTiledFromHistory(imageName);
+    int height = source.getHeight();
+    TiledImage result = new TiledImage(source.getWidth(), height, this.cache);
+    this.fill(result, t -> result.setTile(t, source.getRows(height - result.getTileEnd(t),
+        height - result.getTileStart(t)).flipVertical()));
+    this.addTiledToHistory(result, destName);
+  }
+
+  @Override
+  public void visualizeComponent(String component, String imageName, String destName)
+          throws IllegalArgumentException {
+    // fails right away on an invalid component, instead of on the first tile.
+    PixelOp.of(component);
+    this.tiled(imageName, destName, 0, m -> m.visualizeComponent(component, imageName, destName));
+  }
+
+  @Override
+  public void brightenOrDarkenBy(int increment, String imageName, String destName)
+          throws IllegalArgumentException {
+    this.tiled(imageName, destName, 0, m -> m.brightenOrDarkenBy(increment, imageName, destName));
+  }
+
+  @Override
+  public void colorTransform(String transformMethod, String imageName, String destName)
+          throws IllegalArgumentException {
+    this.tiled(imageName, destName, 0,
+        m -> m.colorTransform(transformMethod, imageName, destName));
+  }
+
+  @Override
+  public void colorTransform(ColorTransform transform, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (transform == null) {
+      throw new IllegalArgumentException("color transform cannot be null!");
+    }
+    this.tiled(imageName, destName, 0, m -> m.colorTransform(transform, imageName, destName));
+  }
+
+  @Override
+  public void filter(String filterMethod, String imageName, String destName)
+          throws IllegalArgumentException {
+    this.tiled(imageName, destName, FILTER_HALO, m -> m.filter(filterMethod, imageName, destName));
+  }
+
+  @Override
+  public void convolve(double[][] kernel, String imageName, String destName)
+          throws IllegalArgumentException {
+    // validates the kernel before any tile is computed.
+    int halo = new Kernel(kernel).getSize() / 2;
+    this.tiled(imageName, destName, halo, m -> m.convolve(kernel, imageName, destName));
+  }
+
+  @Override
+  public void downscaleImage(String imageName, String destName, int height, int width)
+          throws IllegalArgumentException {
+    TiledImage source = this.getTiledFromHistory(imageName);
+    if (height > source.getHeight() || width > source.getWidth()) {
+      throw new IllegalArgumentException("Given height and width must be" +
+              " less than or equal to the image size!");
+    }
+    if (height < 0 || width < 0) {
+      throw new IllegalArgumentException("Given height and width cannot be negative!");
+    }
+    Downsize down = new Downsize(imageName, destName, height, width);
+    int sourceHeight = source.getHeight();
+    TiledImage result = new TiledImage(width, height, this.cache);
+    this.fill(result, t -> result.setTile(t, this.fromBands(source, result.getTileStart(t),
+        result.getTileEnd(t), i -> down.getFirstSourceRow(sourceHeight, i, i + 1),
+        i -> down.getEndSourceRow(sourceHeight, i, i + 1),
+        (band, first, start, end) -> down.downscale(band, first, sourceHeight, start, end,
+            this.executor))));
+    this.addTiledToHistory(result, destName);
+  }
+
+  @Override
+  public void resize(String imageName, String destName, int height, int width,
+                     Resampler.Filter filter) throws IllegalArgumentException {
+    TiledImage source = this.getTiledFromHistory(imageName);
+    Resampler resampler = new Resampler(filter);
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Given height and width must be positive!");
+    }
+    boolean rows = width != source.getWidth();
+    Resampler.Weights columns = height == source.getHeight() ? null
+        : resampler.weights(source.getHeight(), height);
+    TiledImage result = new TiledImage(width, height, this.cache);
+    this.fill(result, t -> {
+      int start = result.getTileStart(t);
+      int end = result.getTileEnd(t);
+      if (columns == null) {
+        // a narrower result has taller tiles, which are still computed from bands of the source.
+        result.setTile(t, this.fromBands(source, start, end, i -> i, i -> i + 1,
+            (band, first, from, to) -> rows ? resampler.resizeRows(band, width, this.executor)
+                : band));
+        return;
+      }
+      result.setTile(t, this.fromBands(source, start, end, i -> columns.firstSource(i, i + 1),
+          i -> columns.endSource(i, i + 1), (band, first, from, to) -> resampler.resizeColumns(
+              rows ? resampler.resizeRows(band, width, this.executor) : band, first, columns,
+              from, to, this.executor)));
+    });
+    this.addTiledToHistory(result, destName);
+  }
+
+  /**
+   * Closes every image of the history, which deletes their tile files. The history is empty
+   * afterwards.
+   */
+  @Override
+  public void close() {
+    List<TiledImage> closed;
+    synchronized (this.images) {
+      closed = new ArrayList<>(this.images.values());
+      this.images.clear();
+      this.histograms.clear();
+    }
+    for (TiledImage image : closed) {
+      image.close();
+    }
+  }
+
+  /**
+   * Runs the given operation tile by tile on the image with the given name, and stores the result
+   * in the history with the given destName. Each tile of the result is computed by the operation
+   * on the same tile of the source widened by the given halo of rows, clipped to the image.
+   *
+   * @param imageName String represents the name of the image the operation is applied on.
+   * @param destName  String represents the desired name of the result.
+   * @param halo      int represents how many rows away from a pixel the operation reads.
+   * @param operation Consumer of an EnhancedModel represents the operation, run on a model
+   *                  holding the widened tile under imageName, and writing its result under
+   *                  destName, which must have the size of the widened tile.
+   * @throws IllegalArgumentException if the image is not in the history, or the operation
+   *                                  throws it.
+   */
+  private void tiled(String imageName, String destName, int halo,
+                     Consumer<EnhancedModel> operation) throws IllegalArgumentException {
+    TiledImage source = this.getTiledFromHistory(imageName);
+    int height = source.getHeight();
+    EnhancedModelImpl scratch = new EnhancedModelImpl();
+    scratch.setExecutor(this.executor);
+    if (height == 0) {
+      // there is no tile, the operation still runs, so that invalid parameters are rejected.
+      scratch.addRasterToHistory(source.toRaster(), imageName);
+      operation.accept(scratch);
+    }
+    TiledImage result = new TiledImage(source.getWidth(), height, this.cache);
+    this.fill(result, t -> {
+      int start = result.getTileStart(t);
+      int end = result.getTileEnd(t);
+      int top = Math.max(0, start - halo);
+      scratch.addRasterToHistory(source.getRows(top, Math.min(height, end + halo)), imageName);
+      operation.accept(scratch);
+      result.setTile(t, scratch.getRasterFromHistory(destName).getRows(start - top,
+          end - top));
+    });
+    this.addTiledToHistory(result, destName);
+  }
+
+  // Computes rows start to end of an image (e.g. a tile) whose rows are computed by the given
+  // function from the source rows that they read (firstSource to endSource, for each row). The
+  // rows are computed in runs of rows that read at most a tile of source rows, or a single row,
+  // so that a large shrink does not read the whole source at once. There is at least one row.
+  private Raster fromBands(TiledImage source, int start, int end, IntUnaryOperator firstSource,
+                           IntUnaryOperator endSource, BandFunction rows) {
+    Raster.Builder result = null;
+    int run = start;
+    while (run < end) {
+      int first = firstSource.applyAsInt(run);
+      int last = endSource.applyAsInt(run);
+      int next = run + 1;
+      while (next < end && Math.max(last, endSource.applyAsInt(next))
+          - Math.min(first, firstSource.applyAsInt(next)) <= source.getTileHeight()) {
+        first = Math.min(first, firstSource.applyAsInt(next));
+        last = Math.max(last, endSource.applyAsInt(next));
+        next++;
+      }
+      Raster computed = rows.apply(source.getRows(first, last), first, run, next);
+      if (run == start && next == end) {
+        return computed;
+      }
+      if (result == null) {
+        result = new Raster.Builder(computed.getWidth(), end - start);
+      }
+      for (int i = run; i < next; i++) {
+        result.shareRow(i - start, computed, i - run);
+      }
+      run = next;
+    }
+    return result.build();
+  }
+
+  // Computes rows start to end of an image from a band of source rows starting at row first.
+  private interface BandFunction {
+    Raster apply(Raster band, int first, int start, int end);
+  }
+
+  // Sets every tile of the given new image with the given function, in order, and closes the
+  // image if the function throws.
+  private void fill(TiledImage image, IntConsumer tile) throws IllegalArgumentException {
+    try {
+      for (int t = 0; t < image.getTileCount(); t++) {
+        tile.accept(t);
+      }
+    } catch (RuntimeException e) {
+      image.close();
+      throw e;
+    }
+  }
+}
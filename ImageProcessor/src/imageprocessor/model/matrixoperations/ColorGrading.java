@@ -0,0 +1,48 @@
+package imageprocessor.model.matrixoperations;
+
+import imageprocessor.Pixel;
+import imageprocessor.model.ColorTransform;
+import imageprocessor.model.PointKernel;
+
+/**
+ * ColorGrading, a Transform that applies an arbitrary, user supplied, ColorTransform on an image
+ * (a color matrix, a gamma correction, or a chain of them). It works exactly like the Sepia and
+ * Luma transformations, except that the transformation is given upon construction instead of
+ * being hard coded.
+ */
+public class ColorGrading extends Transform implements ImageMatrixOperations {
+  private final ColorTransform transform;
+
+  /**
+   * Constructs a ColorGrading operation with the given transform, the image name, and the dest
+   * name.
+   *
+   * @param transform ColorTransform represents the transformation to be applied on the image.
+   * @param imageName the name of the image that is to be transformed
+   * @param destName  the name that the new image will be stored under
+   * @throws IllegalArgumentException if the given transform is null.
+   */
+  public ColorGrading(ColorTransform transform, String imageName, String destName)
+          throws IllegalArgumentException {
+    super(imageName, destName);
+    if (transform == null) {
+      throw new IllegalArgumentException("color transform cannot be null!");
+    }
+    this.transform = transform;
+  }
+
+  @Override
+  protected Pixel transformPixel(Pixel p) {
+    return Pixel.fromARGB(this.transform.transformARGB(p.toARGB()));
+  }
+
+  @Override
+  public int transformARGB(int argb) {
+    return this.transform.transformARGB(argb);
+  }
+
+  @Override
+  public PointKernel getKernel() {
+    return this.transform;
+  }
+}
@@ -0,0 +1,195 @@
+package imageprocessor.model.matrixoperations;
+
+import java.util.Arrays;
+
+import imageprocessor.model.BandExecutor;
+import imageprocessor.model.Raster;
+
+/**
+ * Convolution, the engine that applies a Kernel on every pixel of a Raster. The pixels outside of
+ * the image are treated as black (they add nothing to the sums), every sum below 0 is set to 0,
+ * truncated, then set to 255 if above 255. The result is fully opaque.
+ * The engine works on primitive arrays only, and allocates nothing per pixel. Each band of rows
+ * keeps a sliding window of as many rows as the kernel has, in a ring buffer: when the band moves
+ * to its next output row, only the one new row entering the window is unpacked (and, for a
+ * separable kernel, filtered horizontally), the other rows are reused.
+ * A separable kernel is applied as a horizontal 1D pass followed by a vertical 1D pass, any other
+ * kernel is applied densely, summing its weights row by row, in the exact order that filters have
+ * always used, so that the results are bit-identical to the previous implementation.
+ */
+public final class Convolution {
+
+  // Utility class, not meant to be instantiated.
+  private Convolution() {
+  }
+
+  /**
+   * Applies the given kernel on the given raster, computing the rows in bands on the given
+   * executor.
+   *
+   * @param source   Raster represents the image to be convolved.
+   * @param kernel   Kernel represents the weights to be applied on each pixel's neighbourhood.
+   * @param executor BandExecutor represents the executor that computes the bands of rows.
+   * @return a new Raster representing the convolved image.
+   * @throws IllegalArgumentException if any of the given arguments is null.
+   */
+  public static Raster apply(Raster source, Kernel kernel, BandExecutor executor)
+          throws IllegalArgumentException {
+    if (source == null || kernel == null || executor == null) {
+      throw new IllegalArgumentException("cannot convolve without an image and a kernel!");
+    }
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int[] result = new int[width * height];
+    executor.forEachBand(width, height, (start, end) -> {
+      if (kernel.isSeparable()) {
+        separableBand(source, kernel, result, start, end);
+      } else {
+        denseBand(source, kernel, result, start, end);
+      }
+    });
+    return new Raster(width, height, result);
+  }
+
+  // Computes the rows from start to end with the 2D kernel, keeping the unpacked source rows of the
+  // window in a ring buffer of size rows. The sums of a whole row are accumulated weight by weight,
+  // so that the inner loop runs over contiguous arrays, each pixel still adding its terms in the
+  // order of the kernel's rows then columns, skipping the terms outside of the image.
+  private static void denseBand(Raster source, Kernel kernel, int[] result, int start, int end) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int size = kernel.getSize();
+    int radius = size / 2;
+    double[] weights = kernel.weights();
+    int[] packed = new int[width];
+    double[][] red = new double[size][width];
+    double[][] green = new double[size][width];
+    double[][] blue = new double[size][width];
+    double[] sumR = new double[width];
+    double[] sumG = new double[width];
+    double[] sumB = new double[width];
+    int nextRow = Math.max(0, start - radius);
+    for (int i = start; i < end; i++) {
+      for (; nextRow < height && nextRow <= i + radius; nextRow++) {
+        int slot = nextRow % size;
+        unpackRow(source, nextRow, packed, red[slot], green[slot], blue[slot]);
+      }
+      Arrays.fill(sumR, 0);
+      Arrays.fill(sumG, 0);
+      Arrays.fill(sumB, 0);
+      int firstK = Math.max(0, radius - i);
+      int lastK = Math.min(size, height - i + radius);
+      for (int k = firstK; k < lastK; k++) {
+        int slot = (i - radius + k) % size;
+        for (int s = 0; s < size; s++) {
+          double weight = weights[k * size + s];
+          accumulate(weight, red[slot], sumR, s - radius);
+          accumulate(weight, green[slot], sumG, s - radius);
+          accumulate(weight, blue[slot], sumB, s - radius);
+        }
+      }
+      pack(sumR, sumG, sumB, result, i * width);
+    }
+  }
+
+  // Computes the rows from start to end with the separable kernel. Each row entering the window is
+  // filtered horizontally once into a ring buffer, then each output row is the vertical pass over
+  // the rows of the window.
+  private static void separableBand(Raster source, Kernel kernel, int[] result,
+                                    int start, int end) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int size = kernel.getSize();
+    int radius = size / 2;
+    double[] columnFactors = kernel.columnFactors();
+    double[] rowFactors = kernel.rowFactors();
+    int[] packed = new int[width];
+    double[] red = new double[width];
+    double[] green = new double[width];
+    double[] blue = new double[width];
+    double[][] hRed = new double[size][width];
+    double[][] hGreen = new double[size][width];
+    double[][] hBlue = new double[size][width];
+    double[] sumR = new double[width];
+    double[] sumG = new double[width];
+    double[] sumB = new double[width];
+    int nextRow = Math.max(0, start - radius);
+    for (int i = start; i < end; i++) {
+      for (; nextRow < height && nextRow <= i + radius; nextRow++) {
+        int slot = nextRow % size;
+        unpackRow(source, nextRow, packed, red, green, blue);
+        horizontalPass(rowFactors, red, hRed[slot]);
+        horizontalPass(rowFactors, green, hGreen[slot]);
+        horizontalPass(rowFactors, blue, hBlue[slot]);
+      }
+      Arrays.fill(sumR, 0);
+      Arrays.fill(sumG, 0);
+      Arrays.fill(sumB, 0);
+      int firstK = Math.max(0, radius - i);
+      int lastK = Math.min(size, height - i + radius);
+      for (int k = firstK; k < lastK; k++) {
+        int slot = (i - radius + k) % size;
+        verticalPass(columnFactors[k], hRed[slot], sumR);
+        verticalPass(columnFactors[k], hGreen[slot], sumG);
+        verticalPass(columnFactors[k], hBlue[slot], sumB);
+      }
+      pack(sumR, sumG, sumB, result, i * width);
+    }
+  }
+
+  // Filters one channel of a row with the given 1D factors, treating pixels outside as black.
+  private static void horizontalPass(double[] factors, double[] channel, double[] dest) {
+    Arrays.fill(dest, 0);
+    int radius = factors.length / 2;
+    for (int s = 0; s < factors.length; s++) {
+      accumulate(factors[s], channel, dest, s - radius);
+    }
+  }
+
+  // Adds the given factor times each value of the given row to the sums.
+  private static void verticalPass(double factor, double[] row, double[] sums) {
+    for (int j = 0; j < sums.length; j++) {
+      sums[j] += factor * row[j];
+    }
+  }
+
+  // Adds the given weight times the component shift columns away from each pixel to the sum of
+  // that pixel, for every pixel whose shifted column is inside of the image.
+  private static void accumulate(double weight, double[] channel, double[] sums, int shift) {
+    int first = Math.max(0, -shift);
+    int last = Math.min(sums.length, sums.length - shift);
+    for (int j = first; j < last; j++) {
+      sums[j] += weight * channel[j + shift];
+    }
+  }
+
+  // Unpacks the given row of the source raster into the three channel arrays.
+  private static void unpackRow(Raster source, int row, int[] packed,
+                                double[] red, double[] green, double[] blue) {
+    source.copyRow(row, packed, 0);
+    for (int j = 0; j < packed.length; j++) {
+      red[j] = (packed[j] >> 16) & 0xff;
+      green[j] = (packed[j] >> 8) & 0xff;
+      blue[j] = packed[j] & 0xff;
+    }
+  }
+
+  // Packs the three sums of each pixel of a row into opaque pixels of the result, starting at the
+  // given offset, see the class documentation for the rounding.
+  private static void pack(double[] sumR, double[] sumG, double[] sumB, int[] result,
+                           int offset) {
+    for (int j = 0; j < sumR.length; j++) {
+      result[offset + j] = 0xff000000 | channel(sumR[j]) << 16 | channel(sumG[j]) << 8
+              | channel(sumB[j]);
+    }
+  }
+
+  // Converts a sum into a component: 0 if negative, truncated, 255 if above 255.
+  private static int channel(double sum) {
+    if (sum < 0) {
+      return 0;
+    }
+    int value = (int) sum;
+    return value > 255 ? 255 : value;
+  }
+}
@@ -0,0 +1,39 @@
+package imageprocessor.model.matrixoperations;
+
+import imageprocessor.model.EnhancedModel;
+import imageprocessor.model.Raster;
+
+/**
+ * Convolve, an ImageMatrixOperations that applies an arbitrary, user supplied, kernel on an image.
+ * It works exactly like the Blur and Sharpen filters, except that the kernel is given upon
+ * construction instead of being hard coded.
+ */
+public class Convolve implements ImageMatrixOperations {
+  private final Kernel kernel;
+  private final String imageName;
+  private final String destName;
+
+  /**
+   * Constructs a Convolve operation with the given kernel, the image name, and the dest name.
+   *
+   * @param kernel    Kernel represents the weights to be applied on the image.
+   * @param imageName the name of the image that is to be convolved
+   * @param destName  the name that the new image will be stored under
+   * @throws IllegalArgumentException if the given kernel is null.
+   */
+  public Convolve(Kernel kernel, String imageName, String destName)
+          throws IllegalArgumentException {
+    if (kernel == null) {
+      throw new IllegalArgumentException("kernel cannot be null!");
+    }
+    this.kernel = kernel;
+    this.imageName = imageName;
+    this.destName = destName;
+  }
+
+  @Override
+  public void execute(EnhancedModel m) throws IllegalArgumentException {
+    Raster pixels = m.getRasterFromHistory(imageName);
+    m.addRasterToHistory(Convolution.apply(pixels, this.kernel, m.getExecutor()), destName);
+  }
+}
@@ -1,10 +1,10 @@
 package imageprocessor.model.matrixoperations;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
-import imageprocessor.Pixel;
+import imageprocessor.model.BandExecutor;
 import imageprocessor.model.EnhancedModel;
+import imageprocessor.model.Raster;
 
 /**
  * Downsize, class used to down size an image in the model. It may seem weird that this class is
@@ -36,60 +36,106 @@ public class Downsize implements ImageMatrixOperations {
 
   @Override
   public void execute(EnhancedModel m) {
-    List<List<Pixel>> pixels = this.downscale(m.getPixelsFromHistory(imageName));
-    m.addToHistory(pixels, destName);
+    Raster source = m.getRasterFromHistory(imageName);
+    Raster pixels = this.downscale(source, 0, source.getHeight(), 0, height, m.getExecutor());
+    m.addRasterToHistory(pixels, destName);
   }
 
-  //
-  private List<List<Pixel>> downscale(List<List<Pixel>> pixels) {
-    List<List<Pixel>> result = new ArrayList<>();
-    double multX = (double) pixels.get(0).size() / (double) width;
-    double multY = (double) pixels.size() / (double) height;
-    for (int i = 0; i < height; i++) {
-      double y = i * multY;
-      ArrayList<Pixel> inner = new ArrayList<>();
-      if (y < pixels.size()) {
-        for (int j = 0; j < width; j++) {
-          double x = j * multX;
-          if (x < pixels.get(0).size()) {
-            // inner.add(pixels.get((int) y).get((int) x));
-            if (x - (int) x != 0.0 || y - (int) y != 0.0) {
-              Pixel p = this.downscaleHelper(pixels, y, x);
-              inner.add(p);
-            } else {
-              inner.add(pixels.get((int) y).get((int) x));
+  /**
+   * Gets the first row of a source image of the given height that rows start to end of its
+   * downscaled image are interpolated from.
+   *
+   * @param sourceHeight int represents the height of the source image.
+   * @param start        int represents the first row (inclusive) of the downscaled image.
+   * @param end          int represents the last row (exclusive) of the downscaled image.
+   * @return an int representing the first source row (inclusive) that the rows read.
+   */
+  public int getFirstSourceRow(int sourceHeight, int start, int end) {
+    double multY = (double) sourceHeight / (double) height;
+    return start >= end ? 0 : (int) Math.min(sourceHeight, start * multY);
+  }
+
+  /**
+   * Gets the row right after the last row of a source image of the given height that rows start
+   * to end of its downscaled image are interpolated from.
+   *
+   * @param sourceHeight int represents the height of the source image.
+   * @param start        int represents the first row (inclusive) of the downscaled image.
+   * @param end          int represents the last row (exclusive) of the downscaled image.
+   * @return an int representing the last source row (exclusive) that the rows read.
+   */
+  public int getEndSourceRow(int sourceHeight, int start, int end) {
+    double multY = (double) sourceHeight / (double) height;
+    return start >= end ? 0 : (int) Math.min(sourceHeight, (end - 1) * multY + 2);
+  }
+
+  /**
+   * Computes rows start to end of the downscaled image of a source image of the given height,
+   * from the source rows they are interpolated from only, see getFirstSourceRow and
+   * getEndSourceRow. Thus, a downscaled image can be computed a band of rows at a time, without
+   * ever holding the whole source image. The rows are computed in bands on the given executor,
+   * each output row only reads the (at most two) source rows it is interpolated from. A pixel of
+   * the result that falls between the pixels of the source is interpolated from the (up to) 2 by 2
+   * pixels around it, the pixels beyond the edges of the image being black.
+   *
+   * @param band         Raster represents the source rows, from source row firstRow.
+   * @param firstRow     int represents the source row of the first row of the band.
+   * @param sourceHeight int represents the height of the source image.
+   * @param start        int represents the first row (inclusive) of the downscaled image.
+   * @param end          int represents the last row (exclusive) of the downscaled image.
+   * @param executor     BandExecutor represents the executor computing the rows.
+   * @return a Raster representing rows start to end of the downscaled image.
+   * @throws IndexOutOfBoundsException if the band does not hold the rows that are read.
+   */
+  public Raster downscale(Raster band, int firstRow, int sourceHeight, int start, int end,
+                          BandExecutor executor) throws IndexOutOfBoundsException {
+    int[] result = new int[width * (end - start)];
+    double multX = (double) band.getWidth() / (double) width;
+    double multY = (double) sourceHeight / (double) height;
+    executor.forEachBand(width, end - start, (startRow, endRow) -> {
+      int[] top = new int[band.getWidth() + 1];
+      int[] bottom = new int[band.getWidth() + 1];
+      for (int i = start + startRow; i < start + endRow; i++) {
+        double y = i * multY;
+        if (y < sourceHeight) {
+          int row = (int) y;
+          band.copyRow(row - firstRow, top, 0);
+          if (row + 1 < sourceHeight) {
+            band.copyRow(row + 1 - firstRow, bottom, 0);
+          } else {
+            Arrays.fill(bottom, 0);
+          }
+          int offset = (i - start) * width;
+          for (int j = 0; j < width; j++) {
+            double x = j * multX;
+            if (x < band.getWidth()) {
+              if (x - (int) x != 0.0 || y - (int) y != 0.0) {
+                result[offset + j] = interpolate(top, bottom, row, y, x);
+              } else {
+                result[offset + j] = top[(int) x];
+              }
             }
           }
         }
       }
-      result.add(inner);
-    }
-    return result;
-  }
-
-  //
-  private Pixel downscaleHelper(List<List<Pixel>> pixels, double x, double y) {
-    int newX = (int) x;
-    int newY = (int) y;
-    List<Integer> components = new ArrayList<>();
-    for (int i = 0; i < 3; i++) {
-      double m = downscaleHelperHelper(pixels, newX + 1, newY, i) * (x - newX)
-              + downscaleHelperHelper(pixels, newX, newY, i) * (newX + 1 - x);
-      double n = downscaleHelperHelper(pixels, newX + 1, newY + 1, i) * (x - newX)
-              + downscaleHelperHelper(pixels, newX, newY + 1, i) * ((newX + 1) - x);
-      int cp = (int) Math.round(n * (y - newY) + m * ((newY + 1) - y));
-      components.add(cp);
-    }
-    return new Pixel(components.get(0), components.get(1), components.get(2)).clamp();
+    });
+    return new Raster(width, end - start, result);
   }
 
-  //
-  private int downscaleHelperHelper(List<List<Pixel>> pixels, int x, int y, int component) {
-    try {
-      int result = pixels.get(x).get(y).getComponent(component);
-      return result;
-    } catch (IndexOutOfBoundsException e) {
-      return 0;
+  // Interpolates the pixel at the given row and column, between the given rows (the top one
+  // being the given row), which are followed by a black pixel. The weights are computed exactly
+  // as they always were, so that the results do not change by a single rounding.
+  private static int interpolate(int[] top, int[] bottom, int row, double y, double x) {
+    int col = (int) x;
+    int argb = 0xff000000;
+    for (int shift = 16; shift >= 0; shift -= 8) {
+      double m = ((bottom[col] >> shift) & 0xff) * (y - row)
+          + ((top[col] >> shift) & 0xff) * (row + 1 - y);
+      double n = ((bottom[col + 1] >> shift) & 0xff) * (y - row)
+          + ((top[col + 1] >> shift) & 0xff) * ((row + 1) - y);
+      int cp = (int) Math.round(n * (x - col) + m * ((col + 1) - x));
+      argb |= Math.max(0, Math.min(255, cp)) << shift;
     }
+    return argb;
   }
 }
@@ -1,9 +1,8 @@
 package imageprocessor.model.matrixoperations;
 
-import java.util.ArrayList;
 import java.util.List;
-import imageprocessor.Pixel;
 import imageprocessor.model.EnhancedModel;
+import imageprocessor.model.Raster;
 
 /**
  * The abstract class for the filter operations (Blur and Sharpen). The logic
@@ -11,6 +10,11 @@ import imageprocessor.model.EnhancedModel;
  * the image kernel that each filter uses. Because of this, all the methods used
  * for applying a filter, aside from initializing the kernel, can be abstracted into
  * one class.
+ * The kernel is applied by the Convolution engine, which runs a separable kernel (such as the
+ * blur kernel) as two 1D passes, and any other kernel (such as the sharpen kernel) densely.
+ * The rows of the filtered image are computed in bands by the model's BandExecutor. A band only
+ * writes its own rows, and reads the halo of rows around it (half the size of the kernel) from the
+ * source raster, which is never mutated, so the result does not depend on how the rows are split.
  */
 public abstract class Filter implements ImageMatrixOperations {
   protected final String imageName;
@@ -36,62 +40,8 @@ public abstract class Filter implements ImageMatrixOperations {
 
   @Override
   public void execute(EnhancedModel m) throws IllegalArgumentException {
-    List<List<Pixel>> pixels = m.getPixelsFromHistory(imageName);
-    List<List<Pixel>> result = new ArrayList<>();
-    for (int i = 0; i < pixels.size(); i++) {
-      List<Pixel> inner = new ArrayList<>();
-      for (int j = 0; j < pixels.get(i).size(); j++) {
-        inner.add(this.computeSum(pixels, i, j));
-      }
-      result.add(inner);
-    }
-    m.addToHistory(result, destName);
-  }
-
-  // Computes the matrix operation sum for a certain pixel at i, j, and this pixel
-  // aligns with the center of the Matrix.
-  private Pixel computeSum(List<List<Pixel>> pixels, int i, int j) { // avg or sum ??
-    int[] indexOffsetI = this.checkIndex(i - matrix.size() / 2, 0);
-    int[] indexOffsetJ = this.checkIndex(j - matrix.size() / 2, 0);
-    double sumR = 0;
-    double sumG = 0;
-    double sumB = 0;
-    for (int k = indexOffsetI[1]; k < this.matrix.size(); k++) {
-      int threshold1 = indexOffsetI[0] + k - indexOffsetI[1];
-      if (threshold1 >= pixels.size()) {
-        break;
-      }
-      for (int s = indexOffsetJ[1]; s < this.matrix.get(k).size(); s++) {
-        int threshold2 = indexOffsetJ[0] + s - indexOffsetJ[1];
-        if (threshold2 >= pixels.get(indexOffsetI[0]).size()) {
-          break;
-        }
-        Pixel p = pixels.get(threshold1).get(threshold2);
-        sumR += this.matrix.get(k).get(s) * p.getComponent(0);
-        sumG += this.matrix.get(k).get(s) * p.getComponent(1);
-        sumB += this.matrix.get(k).get(s) * p.getComponent(2);
-      }
-    }
-    return new Pixel((int) this.checkValue(sumR),
-            (int) this.checkValue(sumG), (int) this.checkValue(sumB)).clamp();
-  }
-
-  // checks the value of the sum for r/g/b
-  private double checkValue(double sum) {
-    if (sum < 0) {
-      return 0;
-    }
-    return sum;
-  }
-
-  // Returns the correct index and offset. If index is below zero, we add one to it and to the
-  // offset until it is equal to zero. We then return an array of size 2, where first index
-  // is the index, and the 2nd is the offset.
-  private int[] checkIndex(int index, int offSet) {
-    while (index < 0) {
-      index++;
-      offSet++;
-    }
-    return new int[]{index, offSet};
+    Raster pixels = m.getRasterFromHistory(imageName);
+    Raster result = Convolution.apply(pixels, Kernel.fromList(this.matrix), m.getExecutor());
+    m.addRasterToHistory(result, destName);
   }
 }
@@ -0,0 +1,185 @@
+package imageprocessor.model.matrixoperations;
+
+import java.util.List;
+
+/**
+ * Kernel, represents the square matrix of weights that a filter applies on the neighbourhood of
+ * each pixel of an image. The center of the kernel is aligned with the pixel being computed.
+ * Upon construction, the kernel checks whether it is separable, meaning that it is the outer
+ * product of a column vector and a row vector (e.g. the blur kernel is the outer product of
+ * [1, 2, 1] with [1/16, 1/8, 1/16]). A separable kernel can be applied as two 1D passes instead of
+ * one 2D pass, which costs 2 * size operations per pixel instead of size * size.
+ * A kernel is only considered separable when both vectors are made of dyadic fractions (e.g.
+ * 1/16, 3/4) of reasonable magnitude, because the sums of such weights times 8 bit components are
+ * exact in double precision. The two passes then give exactly the same result as the 2D pass,
+ * whatever the order of the additions, which keeps the filters bit-identical to how they were
+ * always computed. Other kernels (e.g. sharpen, or a box blur of 1/9) are applied densely.
+ * Invariants:
+ * the kernel is a non-empty square matrix of odd size, and is never mutated.
+ */
+public final class Kernel {
+  // Factors must be multiples of 2^-16, so that every partial sum is a multiple of 2^-32, and
+  // partial sums must stay below 2^20, so that they all fit in the 53 bits of a double.
+  private static final int DYADIC_BITS = 16;
+  private static final double MAX_SUM = 1 << 20;
+
+  private final int size;
+  private final double[] weights;
+  private final double[] columnFactors;
+  private final double[] rowFactors;
+
+  /**
+   * Constructs a Kernel with the given matrix of weights, the given matrix is copied.
+   *
+   * @param weights 2d array of doubles represents the weights of the kernel, row by row.
+   * @throws IllegalArgumentException if the given matrix is null, is not square, has an even
+   *                                  size, or has a weight that is not a finite number.
+   */
+  public Kernel(double[][] weights) throws IllegalArgumentException {
+    if (weights == null || weights.length % 2 == 0) {
+      throw new IllegalArgumentException("kernel must be a square matrix of odd size!");
+    }
+    this.size = weights.length;
+    this.weights = new double[this.size * this.size];
+    for (int k = 0; k < this.size; k++) {
+      if (weights[k] == null || weights[k].length != this.size) {
+        throw new IllegalArgumentException("kernel must be a square matrix of odd size!");
+      }
+      for (int s = 0; s < this.size; s++) {
+        if (!Double.isFinite(weights[k][s])) {
+          throw new IllegalArgumentException("kernel weights must be finite numbers!");
+        }
+        this.weights[k * this.size + s] = weights[k][s];
+      }
+    }
+    double[][] factors = this.factorize();
+    this.columnFactors = factors == null ? null : factors[0];
+    this.rowFactors = factors == null ? null : factors[1];
+  }
+
+  /**
+   * Returns a Kernel with the weights of the given 2d list of weights.
+   *
+   * @param matrix 2d list of doubles represents the weights of the kernel, row by row.
+   * @return a new Kernel with the given weights.
+   * @throws IllegalArgumentException if the given matrix is null, or is not a valid kernel.
+   */
+  public static Kernel fromList(List<List<Double>> matrix) throws IllegalArgumentException {
+    if (matrix == null) {
+      throw new IllegalArgumentException("kernel must be a square matrix of odd size!");
+    }
+    double[][] weights = new double[matrix.size()][];
+    for (int k = 0; k < weights.length; k++) {
+      List<Double> row = matrix.get(k);
+      weights[k] = new double[row == null ? 0 : row.size()];
+      for (int s = 0; s < weights[k].length; s++) {
+        weights[k][s] = row.get(s);
+      }
+    }
+    return new Kernel(weights);
+  }
+
+  /**
+   * Gets the size of this kernel, its number of rows (and columns).
+   *
+   * @return an int representing the size of this kernel.
+   */
+  public int getSize() {
+    return this.size;
+  }
+
+  /**
+   * Gets the weight at the given row and column of this kernel.
+   *
+   * @param row int represents the row of the weight.
+   * @param col int represents the column of the weight.
+   * @return a double representing the weight.
+   * @throws IndexOutOfBoundsException if the given row or column is outside of the kernel.
+   */
+  public double getWeight(int row, int col) throws IndexOutOfBoundsException {
+    if (row < 0 || col < 0 || row >= this.size || col >= this.size) {
+      throw new IndexOutOfBoundsException("weight outside of the kernel!");
+    }
+    return this.weights[row * this.size + col];
+  }
+
+  /**
+   * Tells whether this kernel can be applied as two exact 1D passes.
+   *
+   * @return true if the kernel is separable, false otherwise.
+   */
+  public boolean isSeparable() {
+    return this.columnFactors != null;
+  }
+
+  // Package-private accessors to the primitive arrays, used by the Convolution engine, which never
+  // mutates them.
+  double[] weights() {
+    return this.weights;
+  }
+
+  double[] columnFactors() {
+    return this.columnFactors;
+  }
+
+  double[] rowFactors() {
+    return this.rowFactors;
+  }
+
+  // Tries to write this kernel as the outer product of a column and a row of dyadic fractions.
+  // The row is the first row of the kernel that has a non-zero weight, and every row of the kernel
+  // must be that row times some factor. Returns the column and the row, or null if not separable.
+  private double[][] factorize() {
+    int pivotRow = -1;
+    int pivotCol = -1;
+    for (int i = 0; i < this.weights.length && pivotRow < 0; i++) {
+      if (this.weights[i] != 0) {
+        pivotRow = i / this.size;
+        pivotCol = i % this.size;
+      }
+    }
+    if (pivotRow < 0 || this.size == 1) {
+      return null;
+    }
+    double[] row = new double[this.size];
+    double[] column = new double[this.size];
+    for (int s = 0; s < this.size; s++) {
+      row[s] = this.weights[pivotRow * this.size + s];
+    }
+    for (int k = 0; k < this.size; k++) {
+      column[k] = this.weights[k * this.size + pivotCol] / row[pivotCol];
+    }
+    for (int k = 0; k < this.size; k++) {
+      for (int s = 0; s < this.size; s++) {
+        if (column[k] * row[s] != this.weights[k * this.size + s]) {
+          return null;
+        }
+      }
+    }
+    if (!this.isDyadic(row) || !this.isDyadic(column) || !this.isDyadic(this.weights)
+            || this.absoluteSum(column) * this.absoluteSum(row) * 255 >= MAX_SUM) {
+      return null;
+    }
+    return new double[][]{column, row};
+  }
+
+  // Tells whether every given value is a multiple of 2^-DYADIC_BITS.
+  private boolean isDyadic(double[] values) {
+    for (double v : values) {
+      double scaled = Math.scalb(v, DYADIC_BITS);
+      if (scaled != Math.rint(scaled)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Sums the absolute values of the given values.
+  private double absoluteSum(double[] values) {
+    double sum = 0;
+    for (double v : values) {
+      sum += Math.abs(v);
+    }
+    return sum;
+  }
+}
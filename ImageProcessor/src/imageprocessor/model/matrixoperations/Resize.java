@@ -0,0 +1,47 @@
+package imageprocessor.model.matrixoperations;
+
+import imageprocessor.model.EnhancedModel;
+import imageprocessor.model.Resampler;
+
+/**
+ * Resize, class used to resize an image in the model to any size, smaller or larger, with one
+ * of the filters of the Resampler. Unlike Downsize, which interpolates the nearest pixels only,
+ * every source pixel contributes to the result when shrinking.
+ */
+public class Resize implements ImageMatrixOperations {
+  private final Resampler resampler;
+  private final String imageName;
+  private final String destName;
+  private final int height;
+  private final int width;
+
+  /**
+   * Constructs a Resize with the given filter, the image name, the destination name, the height
+   * and the width.
+   *
+   * @param filter Resampler.Filter represents the filter used to resample the image.
+   * @param imageName String represents the name of the image to be resized.
+   * @param destName String represents the desired name of the resized image.
+   * @param height int represents the new height of the image.
+   * @param width int represents the new width of the image.
+   * @throws IllegalArgumentException if the given filter is null, or the height or width is not
+   *                                  positive.
+   */
+  public Resize(Resampler.Filter filter, String imageName, String destName, int height,
+                int width) throws IllegalArgumentException {
+    if (height <= 0 || width <= 0) {
+      throw new IllegalArgumentException("Given height and width must be positive!");
+    }
+    this.resampler = new Resampler(filter);
+    this.imageName = imageName;
+    this.destName = destName;
+    this.height = height;
+    this.width = width;
+  }
+
+  @Override
+  public void execute(EnhancedModel m) throws IllegalArgumentException {
+    m.addRasterToHistory(this.resampler.resize(m.getRasterFromHistory(imageName), width, height,
+        m.getExecutor()), destName);
+  }
+}
@@ -1,13 +1,16 @@
 package imageprocessor.model.matrixoperations;
 
 import imageprocessor.Pixel;
+import imageprocessor.model.PixelOp;
+import imageprocessor.model.PointKernel;
+import imageprocessor.model.PointKernels;
 
 /**
  * A class that represents a Luma color transformation and
  * extends the Transform abstract class. This class's primary
- * purpose is to pass in the String "sepia" to the executeCommand()
- * method in Pixel, which will then perform the luma calculation
- * on a pixel in an image.
+ * purpose is to apply PixelOp.SEPIA, the operation that the String
+ * "sepia" stands for in the executeCommand() method in Pixel, on
+ * every pixel in an image.
  */
 public class Sepia extends Transform implements ImageMatrixOperations {
 
@@ -24,6 +27,16 @@ public class Sepia extends Transform implements ImageMatrixOperations {
 
   @Override
   protected Pixel transformPixel(Pixel p) {
-    return p.executeCommand("sepia");
+    return Pixel.fromARGB(this.transformARGB(p.toARGB()));
+  }
+
+  @Override
+  public int transformARGB(int argb) {
+    return PixelOp.SEPIA.applyAsInt(argb);
+  }
+
+  @Override
+  public PointKernel getKernel() {
+    return PointKernels.get().component(PixelOp.SEPIA);
   }
 }
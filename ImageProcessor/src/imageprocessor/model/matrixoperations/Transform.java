@@ -1,9 +1,10 @@
 package imageprocessor.model.matrixoperations;
 
-import java.util.ArrayList;
-import java.util.List;
 import imageprocessor.Pixel;
+import imageprocessor.model.BandExecutor;
 import imageprocessor.model.EnhancedModel;
+import imageprocessor.model.PointKernel;
+import imageprocessor.model.Raster;
 
 /**
  * Abstract class that represents each of the color transformation
@@ -38,24 +39,54 @@ public abstract class Transform implements ImageMatrixOperations {
   // of these strings have been passed into the constructor.
   @Override
   public void execute(EnhancedModel m) throws IllegalArgumentException {
-    List<List<Pixel>> pixels = m.getPixelsFromHistory(imageName);
-    m.addToHistory(this.modifyPixels(pixels), destName);
+    Raster pixels = m.getRasterFromHistory(imageName);
+    m.addRasterToHistory(this.modifyPixels(pixels, m.getExecutor()), destName);
   }
 
   // Based on the transformation being applied, transform the given pixel accordingly.
   protected abstract Pixel transformPixel(Pixel p);
 
-  // Return a new 2D List of pixels which is a result of transforming each of the pixels in the
-  // given array of pixels.
-  private List<List<Pixel>> modifyPixels(List<List<Pixel>> pixels) {
-    List<List<Pixel>> result = new ArrayList();
-    for (int i = 0; i < pixels.size(); i++) {
-      List<Pixel> inner = new ArrayList();
-      for (int j = 0; j < pixels.get(i).size(); j++) {
-        inner.add(this.transformPixel(pixels.get(i).get(j)));
+  /**
+   * Transforms the given packed pixel, this is the point operation that this transformation
+   * applies on every pixel of the image, it can be used on its own to fuse this transformation
+   * with other point operations.
+   *
+   * @param argb int represents a packed pixel, as stored in a Raster.
+   * @return an int representing the transformed packed pixel.
+   */
+  public int transformARGB(int argb) {
+    return this.transformPixel(Pixel.fromARGB(argb)).toARGB();
+  }
+
+  /**
+   * Gets this transformation as a PointKernel, applied on whole rows of packed pixels. The default
+   * implementation applies transformARGB on every pixel, subclasses whose transformation is one of
+   * the PointKernels should return that kernel instead.
+   *
+   * @return a PointKernel applying this transformation.
+   */
+  public PointKernel getKernel() {
+    return (pixels, from, to) -> {
+      for (int j = from; j < to; j++) {
+        pixels[j] = this.transformARGB(pixels[j]);
+      }
+    };
+  }
+
+  // Return a new Raster which is a result of transforming each of the pixels in the
+  // given raster. Rows that the transformation leaves unchanged are shared with the given raster.
+  // The rows are transformed in bands by the given executor.
+  private Raster modifyPixels(Raster pixels, BandExecutor executor) {
+    Raster.Builder result = new Raster.Builder(pixels.getWidth(), pixels.getHeight());
+    PointKernel kernel = this.getKernel();
+    executor.forEachBand(pixels.getWidth(), pixels.getHeight(), (start, end) -> {
+      for (int i = start; i < end; i++) {
+        int[] row = new int[pixels.getWidth()];
+        pixels.copyRow(i, row, 0);
+        kernel.apply(row, 0, row.length);
+        result.setRowOrShare(i, row, pixels, i);
       }
-      result.add(inner);
-    }
-    return result;
+    });
+    return result.build();
   }
 }
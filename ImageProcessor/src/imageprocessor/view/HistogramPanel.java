@@ -12,9 +12,13 @@ import javax.swing.JPanel;
  * HistogramPanel class is A Jpanel and is basically used to create a single histogram.
  * This histogram displays the pixels ranging from 0-255 and draws rectangles with a height
  * based on the count of each value.
+ * The heights of the rectangles are computed once, when the map is given, so that repainting the
+ * panel (e.g. when the window is resized or scrolled) only draws them.
  */
 public class HistogramPanel extends JPanel {
   private Map<Integer, Integer> map;
+  // the height of the rectangle of each value from 0-255, scaled to fit in the panel.
+  private int[] heights;
 
   /**
    * Constructs a HistogramPanel with the given map of integer as key, and value. This map should
@@ -29,6 +33,7 @@ public class HistogramPanel extends JPanel {
       throw new IllegalArgumentException("Given map is null idiot@");
     }
     this.map = map;
+    this.heights = this.computeHeights(map);
     this.setPreferredSize(new Dimension(300, 300));
     this.setVisible(true);
   }
@@ -36,36 +41,41 @@ public class HistogramPanel extends JPanel {
   @Override
   protected void paintComponent(Graphics g) {
     super.paintComponent(g);
-    this.drawHistogram(map, g);
+    this.drawHistogram(g);
   }
 
-  // draws the histogram with the given map, which would be this class's map. This function
-  // also takes in Graphics in order to draw rectangles with a height based on the count in of each
-  // value from 0-256 (exclusive)
-  private void drawHistogram(Map<Integer,Integer> map, Graphics g) {
+  // draws the histogram with this class's heights. This function takes in Graphics in order to
+  // draw rectangles with the height computed for each value from 0-256 (exclusive)
+  private void drawHistogram(Graphics g) {
     g.setColor(Color.BLACK);
     g.fillRect(5, 295 - 256, 2, 256);
     g.fillRect(5, 293, 256, 2);
+    g.setColor(Color.RED);
+    for (int i = 0; i < 256; i++) {
+      if (this.heights[i] != 0) {
+        g.fillRect(i + 7, 293 - this.heights[i], 1, this.heights[i]);
+      }
+    }
+  }
+
+  // computes the height of the rectangle of each value from 0-256 (exclusive) with the given map,
+  // scaling the counts down so that the highest rectangle is at most 256 pixels high.
+  private int[] computeHeights(Map<Integer, Integer> map) {
+    int[] result = new int[256];
     if (map.size() != 0) {
       int max = Collections.max(map.values(), null);
       double percentDecrease = 0;
       if (max > 256) {
         percentDecrease = (max - 256) / (double) max;
       }
-      g.setColor(Color.RED);
       for (int i = 0; i < 256; i++) {
         Integer count = map.get(i);
-        if (count == null || count == 0) {
-          g.fillRect(i + 7, 0, 1, 0);
-        }
-        else {
-          count =  count - (int) (count * percentDecrease);
-          g.fillRect(i + 7, 293 - count, 1, count);
+        if (count != null && count != 0) {
+          result[i] = count - (int) (count * percentDecrease);
         }
       }
-      this.revalidate();
-      this.repaint();
     }
+    return result;
   }
 
   /**
@@ -78,6 +88,7 @@ public class HistogramPanel extends JPanel {
       throw new IllegalArgumentException("Given map was null, idiot@");
     }
     this.map = map;
+    this.heights = this.computeHeights(map);
     repaint();
   }
 }
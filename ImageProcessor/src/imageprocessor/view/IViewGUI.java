@@ -41,4 +41,14 @@ public interface IViewGUI extends IView {
    *            they appear in the image.
    */
   void showHistogram(Map<Integer, Integer>[] map);
+
+  /**
+   * Shows the progress of the operation running in the background, e.g. on a progress bar.
+   * By default, the progress is not shown.
+   * @param done the number of bands of the operation that are done.
+   * @param total the number of bands of the operation, 0 once no operation is running.
+   */
+  default void showProgress(int done, int total) {
+    // the progress is not shown.
+  }
 }
@@ -17,6 +17,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
+import javax.swing.JProgressBar;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.BoxLayout;
 import javax.swing.BorderFactory;
@@ -39,6 +40,11 @@ public class JView extends JFrame implements IViewGUI {
   private final JButton save;
   private final JButton execute;
   private final JButton downScale;
+  private final JButton cancel;
+  private final JButton region;
+  private final JButton mask;
+  private final JButton wholeImage;
+  private final JProgressBar progress;
   private final JComboBox combobox;
   private final CurrentImagePanel imagePanel;
   private final HistogramPanel histogramPanelR;
@@ -80,6 +86,11 @@ public class JView extends JFrame implements IViewGUI {
     save = new JButton("save");
     execute = new JButton("Execute");
     downScale = new JButton("Down Scale");
+    cancel = new JButton("Cancel");
+    region = new JButton("Region");
+    mask = new JButton("Mask");
+    wholeImage = new JButton("Whole Image");
+    progress = new JProgressBar();
     combobox = new JComboBox<String>();
     comboBoxPanel.setBorder(BorderFactory.createTitledBorder("Operations"));
     comboBoxPanel.setLayout(new BoxLayout(comboBoxPanel, BoxLayout.PAGE_AXIS));
@@ -100,9 +111,17 @@ public class JView extends JFrame implements IViewGUI {
     buttonPanel.add(save);
     buttonPanel.add(exit);
     buttonPanel.add(downScale);
+    buttonPanel.add(region);
+    buttonPanel.add(mask);
+    buttonPanel.add(wholeImage);
     mainPanel.add(buttonPanel);
     mainPanel.add(comboBoxPanel);
     mainPanel.add(execute);
+    JPanel progressPanel = new JPanel();
+    progressPanel.setLayout(new FlowLayout());
+    progressPanel.add(progress);
+    progressPanel.add(cancel);
+    mainPanel.add(progressPanel);
     mainPanel.add(imagePanel);
     mainPanel.add(histogramPanel);
     JScrollPane mainScrollPane = new JScrollPane(mainPanel);
@@ -125,9 +144,47 @@ public class JView extends JFrame implements IViewGUI {
     save.addActionListener(evt -> features.saveImage(saveButtonHelper()));
     load.addActionListener(evt -> features.loadImage(loadButtonHelper()));
     execute.addActionListener(evt -> features.execute());
+    cancel.addActionListener(evt -> features.cancel());
     exit.addActionListener(evt -> features.exitProgram());
     downScale.addActionListener(evt -> features.downscaleImage(downSizeButtonHeightHelper(),
             downSizeButtonWidthHelper()));
+    region.addActionListener(evt -> {
+      int[] rectangle = regionButtonHelper();
+      if (rectangle != null) {
+        features.setRegion(rectangle[0], rectangle[1], rectangle[2], rectangle[3]);
+      }
+    });
+    mask.addActionListener(evt -> features.loadMask(loadButtonHelper()));
+    wholeImage.addActionListener(evt -> features.clearRegion());
+  }
+
+  // helps the setRegion of features by passing in the rectangle that the user inputted, null if
+  // the input is invalid.
+  private int[] regionButtonHelper() {
+    String input = JOptionPane.showInputDialog("Enter the region as: x y width height");
+    if (input == null) {
+      return null;
+    }
+    String[] values = input.trim().split("\\s+");
+    try {
+      if (values.length != 4) {
+        throw new NumberFormatException("four integers expected!");
+      }
+      int[] rectangle = new int[4];
+      for (int i = 0; i < 4; i++) {
+        rectangle[i] = Integer.parseInt(values[i]);
+      }
+      return rectangle;
+    }
+    catch (NumberFormatException n) {
+      try {
+        this.renderMessage("Must be four integers!");
+      }
+      catch (IOException e) {
+        System.out.println("unreachable statement");
+      }
+      return null;
+    }
   }
 
   // Helps the saveImage method of features by getting the directory chosen and the name of the
@@ -148,7 +205,7 @@ public class JView extends JFrame implements IViewGUI {
   private String loadButtonHelper() {
     JFileChooser fchooser = new JFileChooser(".");
     FileNameExtensionFilter filter = new FileNameExtensionFilter(
-            "Bunch of Formats", "jpg", "jpeg", "png", "ppm", "bmp");
+            "Bunch of Formats", "jpg", "jpeg", "png", "ppm", "pnm", "pgm", "bmp");
     fchooser.setFileFilter(filter);
     int retvalue = fchooser.showOpenDialog(this);
     if (retvalue == JFileChooser.APPROVE_OPTION) {
@@ -203,6 +260,12 @@ public class JView extends JFrame implements IViewGUI {
             JOptionPane.ERROR_MESSAGE);
   }
 
+  @Override
+  public void showProgress(int done, int total) {
+    progress.setMaximum(Math.max(1, total));
+    progress.setValue(total == 0 ? 0 : done);
+  }
+
   /** shows the histogram that is based on the given map of integer, integer, where the key
    /* represents the rgb values between 0-255 and the value represents the count for each value.
    /* Heights of rectangles to be drawn are scaled down and are according to the count. The
@@ -0,0 +1,110 @@
+package imageprocessor.model;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import imageprocessor.Pixel;
+
+/**
+ * VectorPointKernels, the PointKernels computing several pixels per instruction, with the
+ * incubating Vector API of the JDK. The packed pixels are loaded in int vectors, their components
+ * are extracted with shifts and masks, and packed back the same way.
+ * The kernels that only need integers (components, intensity, value, brighten) work on vectors
+ * of the preferred size of the processor, the pixels that do not fill a whole vector are computed
+ * by ScalarPointKernels. The luma and sepia kernels are the ColorTransforms of ScalarPointKernels:
+ * their lookup tables are as fast as vectors of doubles, which need slow conversions, and they
+ * can be composed with other ColorTransforms.
+ * This class is only compiled and used with the jdk.incubator.vector module, see PointKernels.
+ */
+final class VectorPointKernels extends PointKernels {
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+  private static final int ALPHA = 0xff000000;
+
+  @Override
+  public PointKernel component(PixelOp op) {
+    PointKernel scalar = PointKernels.scalar().component(op);
+    switch (op) {
+      case RED:
+        return (pixels, from, to) -> this.channel(pixels, from, to, 16, scalar);
+      case GREEN:
+        return (pixels, from, to) -> this.channel(pixels, from, to, 8, scalar);
+      case BLUE:
+        return (pixels, from, to) -> this.channel(pixels, from, to, 0, scalar);
+      case INTENSITY:
+        return (pixels, from, to) -> this.intensity(pixels, from, to, scalar);
+      case VALUE:
+        return (pixels, from, to) -> this.value(pixels, from, to, scalar);
+      default:
+        return scalar;
+    }
+  }
+
+  @Override
+  public PointKernel brighten(int increment, int maxDepth) {
+    PointKernel scalar = PointKernels.scalar().brighten(increment, maxDepth);
+    // see Pixel.increment.
+    int max = Math.max(0, Math.min(255, maxDepth));
+    return (pixels, from, to) -> {
+      int j = from;
+      for (int end = from + INTS.loopBound(to - from); j < end; j += INTS.length()) {
+        IntVector p = IntVector.fromArray(INTS, pixels, j);
+        IntVector r = component(p, 16).add(increment).max(0).min(max);
+        IntVector g = component(p, 8).add(increment).max(0).min(max);
+        IntVector b = component(p, 0).add(increment).max(0).min(max);
+        pack(p, r, g, b).intoArray(pixels, j);
+      }
+      scalar.apply(pixels, j, to);
+    };
+  }
+
+  // Sets every pixel to the grey of its component at the given shift.
+  private void channel(int[] pixels, int from, int to, int shift, PointKernel scalar) {
+    int j = from;
+    for (int end = from + INTS.loopBound(to - from); j < end; j += INTS.length()) {
+      IntVector p = IntVector.fromArray(INTS, pixels, j);
+      grey(p, component(p, shift)).intoArray(pixels, j);
+    }
+    scalar.apply(pixels, j, to);
+  }
+
+  // Sets every pixel to the grey of its intensity.
+  private void intensity(int[] pixels, int from, int to, PointKernel scalar) {
+    int j = from;
+    for (int end = from + INTS.loopBound(to - from); j < end; j += INTS.length()) {
+      IntVector p = IntVector.fromArray(INTS, pixels, j);
+      IntVector sum = component(p, 16).add(component(p, 8)).add(component(p, 0));
+      IntVector third = sum.mul(Pixel.THIRD).lanewise(VectorOperators.LSHR, 17);
+      grey(p, third).intoArray(pixels, j);
+    }
+    scalar.apply(pixels, j, to);
+  }
+
+  // Sets every pixel to the grey of its value.
+  private void value(int[] pixels, int from, int to, PointKernel scalar) {
+    int j = from;
+    for (int end = from + INTS.loopBound(to - from); j < end; j += INTS.length()) {
+      IntVector p = IntVector.fromArray(INTS, pixels, j);
+      IntVector max = component(p, 16).max(component(p, 8)).max(component(p, 0));
+      grey(p, max).intoArray(pixels, j);
+    }
+    scalar.apply(pixels, j, to);
+  }
+
+  // Gets the components at the given shift of the given packed pixels.
+  private static IntVector component(IntVector pixels, int shift) {
+    return pixels.lanewise(VectorOperators.LSHR, shift).and(0xff);
+  }
+
+  // Gets the grey pixels whose components are the given values, with the alpha of the given
+  // pixels.
+  private static IntVector grey(IntVector pixels, IntVector value) {
+    return pack(pixels, value, value, value);
+  }
+
+  // Packs the given components, with the alpha of the given pixels.
+  private static IntVector pack(IntVector pixels, IntVector r, IntVector g, IntVector b) {
+    return pixels.and(ALPHA).or(r.lanewise(VectorOperators.LSHL, 16))
+        .or(g.lanewise(VectorOperators.LSHL, 8)).or(b);
+  }
+}